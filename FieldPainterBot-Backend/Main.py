@@ -1,12 +1,18 @@
-from fastapi import FastAPI, Header, HTTPException, Query, Body
+from fastapi import FastAPI, Header, HTTPException, Query, Body, Response
+from fastapi.encoders import jsonable_encoder
+from fastapi.middleware.gzip import GZipMiddleware
 from pymongo import MongoClient
 from dotenv import load_dotenv
 from typing import List
+import hashlib
+import json
 import os
 
 load_dotenv()
 
 app = FastAPI()
+# Patterns are repetitive JSON; gzip shrinks them several times over for clients that ask
+app.add_middleware(GZipMiddleware, minimum_size=1000)
 
 MONGO_URI = os.getenv("MONGO_URI")
 API_KEY = os.getenv("API_KEY")
@@ -27,6 +33,32 @@ except Exception as e:
 db = client.get_database("Fields")  # specify your database name
 
 
+def canonical_json(payload):
+    # Sorted keys and fixed separators: the same documents always give the same bytes
+    return json.dumps(
+        jsonable_encoder(payload), sort_keys=True, separators=(",", ":")
+    ).encode("utf-8")
+
+
+def load_items(collection_name: str):
+    collection = db[collection_name]
+    return list(collection.find({}, {"_id": 0}).sort("Instruction Order", 1))
+
+
+def etag_for(body: bytes) -> str:
+    return '"' + hashlib.sha256(body).hexdigest() + '"'
+
+
+def etag_matches(if_none_match, etag: str) -> bool:
+    if not if_none_match:
+        return False
+    # Weak comparison, as RFC 9110 asks for If-None-Match
+    candidates = [tag.strip() for tag in if_none_match.split(",")]
+    return "*" in candidates or any(
+        (tag[2:] if tag.startswith("W/") else tag) == etag for tag in candidates
+    )
+
+
 @app.get("/status")
 def status():
     try:
@@ -41,19 +73,59 @@ def status():
 def get_data(
     collection_name: str = Query(..., description="Name of the MongoDB collection"),
     authorization: str = Header(None),
+    if_none_match: str = Header(None),
 ):
     # Check API key
     if authorization != f"Bearer {API_KEY}":
         raise HTTPException(status_code=401, detail="Unauthorized")
 
     # Fetch data from specified collection, sorted by Instruction Order
-    collection = db[collection_name]
-    items = list(collection.find({}, {"_id": 0}).sort("Instruction Order", 1))
+    items = load_items(collection_name)
 
     if not items:
         raise HTTPException(status_code=404, detail="Collection not found or empty")
 
-    return {"items": items}
+    # The ETag is a hash of exactly the bytes we send, so the app can revalidate its cached copy
+    body = canonical_json({"items": items})
+    etag = etag_for(body)
+    headers = {"ETag": etag, "Cache-Control": "no-cache"}
+    if etag_matches(if_none_match, etag):
+        return Response(status_code=304, headers=headers)
+
+    return Response(content=body, media_type="application/json", headers=headers)
+
+
+@app.get("/FieldData/bundle")
+def get_bundle(
+    authorization: str = Header(None),
+    if_none_match: str = Header(None),
+):
+    # Check API key
+    if authorization != f"Bearer {API_KEY}":
+        raise HTTPException(status_code=401, detail="Unauthorized")
+
+    # Every non-empty collection in one response, so the app can prefetch them all at launch.
+    # Each body is the exact bytes /FieldData sends, with the same ETag, so cached copies
+    # revalidate against either endpoint.
+    collections = []
+    for name in sorted(db.list_collection_names()):
+        if name.startswith("system."):
+            continue
+        items = load_items(name)
+        if not items:
+            continue
+        body = canonical_json({"items": items})
+        collections.append(
+            {"name": name, "etag": etag_for(body), "body": body.decode("utf-8")}
+        )
+
+    bundle = canonical_json({"collections": collections})
+    etag = etag_for(bundle)
+    headers = {"ETag": etag, "Cache-Control": "no-cache"}
+    if etag_matches(if_none_match, etag):
+        return Response(status_code=304, headers=headers)
+
+    return Response(content=bundle, media_type="application/json", headers=headers)
 
 
 @app.post("/FieldData")
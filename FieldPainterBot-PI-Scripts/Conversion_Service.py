@@ -5,6 +5,7 @@ total_instructions = 0  # Tracks the total number of instructions
 
 import time
 import math
+import threading
 from gpiozero import PWMOutputDevice, DigitalOutputDevice
 from distance_utils import update_distance_traveled
 from mpu6050_gyro import get_yaw
@@ -31,6 +32,10 @@ def set_system_paused(paused: bool):
         logger.info("System RESUMED by safety system.")
 
 
+def is_system_paused() -> bool:
+    return system_paused
+
+
 def set_system_cancelled(cancelled: bool):
     global system_cancelled
     system_cancelled = cancelled
@@ -453,12 +458,13 @@ def execute_instruction(instruction: dict) -> bool:
         return False
 
 
-def execute_field_pattern(instructions: list, pause_between: float = 0.5) -> bool:
+def execute_field_pattern(instructions, pause_between: float = 0.5) -> bool:
     """
     Execute a full sequence of instructions.
 
     Args:
-        instructions: List of instruction dicts (from Convert_To_Array)
+        instructions: List of instruction dicts (from Convert_To_Array), or a
+            StreamingJob that yields them as chunks arrive
         pause_between: Seconds to pause between instructions
 
     Returns:
@@ -498,6 +504,11 @@ def execute_field_pattern(instructions: list, pause_between: float = 0.5) -> boo
 
             time.sleep(pause_between)
 
+        if system_cancelled:  # a streamed job stops yielding when cancelled
+            logger.warning("Pattern cancelled by QUIT command.")
+            stop_all()
+            return False
+
         logger.info("Field pattern complete!")
         current_instruction_index = total_instructions
         return True
@@ -618,6 +629,80 @@ def translate_manual_instruction(instruction: dict) -> bool:
     return True
 
 
+# Bit flags of the app's "DRIVE:<mask>" heartbeat (see ManualDriveChannel)
+DRIVE_FORWARD = 1
+DRIVE_BACK = 2
+DRIVE_LEFT = 4
+DRIVE_RIGHT = 8
+DRIVE_SPRAY = 16
+
+
+class SprayWorker:
+    """
+    Moves the spray actuator on one thread toward the most recently requested
+    state. Requests that arrive while it is moving only replace the target,
+    so an on and an off never drive the actuator at the same time, and a
+    burst of taps settles with at most one extra move.
+    """
+
+    def __init__(self, spray_on=handle_spray_on, spray_off=handle_spray_off):
+        self._spray_on = spray_on
+        self._spray_off = spray_off
+        self._condition = threading.Condition()
+        self._target = False
+        self._extended = False  # the actuator starts retracted
+        self._thread = None
+
+    def request(self, on: bool) -> None:
+        with self._condition:
+            self._target = on
+            if self._thread is None:
+                self._thread = threading.Thread(
+                    target=self._run, name="SprayWorker", daemon=True
+                )
+                self._thread.start()
+            self._condition.notify()
+
+    def _run(self) -> None:
+        while True:
+            with self._condition:
+                while self._target == self._extended:
+                    self._condition.wait()
+                target = self._target
+            (self._spray_on if target else self._spray_off)()
+            with self._condition:
+                self._extended = target
+
+
+_manual_spray = SprayWorker()
+
+
+def apply_manual_drive(buttons: int, previous: int = 0) -> None:
+    """
+    Drive the motors for the currently held D-pad buttons.
+    Called only when the held state changes; buttons == 0 stops the rover.
+    """
+    if buttons & DRIVE_FORWARD:
+        motor1_backward(DRIVE_SPEED)
+        motor2_forward(DRIVE_SPEED)
+    elif buttons & DRIVE_BACK:
+        motor1_forward(DRIVE_SPEED)
+        motor2_backward(DRIVE_SPEED)
+    elif buttons & DRIVE_LEFT:
+        motor1_forward(DRIVE_SPEED)
+        motor2_forward(DRIVE_SPEED)
+    elif buttons & DRIVE_RIGHT:
+        motor1_backward(DRIVE_SPEED)
+        motor2_backward(DRIVE_SPEED)
+    else:
+        motor1_halt()
+        motor2_halt()
+
+    # The spray actuator takes 1.5s to move; don't hold up the receive loop
+    if (buttons ^ previous) & DRIVE_SPRAY:
+        _manual_spray.request(bool(buttons & DRIVE_SPRAY))
+
+
 if __name__ == "__main__":
     STARTUP_DELAY = 60  # seconds to place rover before tests begin
     logger.info(
@@ -0,0 +1,121 @@
+"""Receiver for the app's chunked field upload.
+
+The app sends a header line followed by numbered chunks of instructions:
+
+    JOB:<job_id>:<instruction_count>:<chunk_count>
+    CHUNK:<job_id>:<seq>:[{...}, {...}]
+
+(or the equivalent binary frames from wire_codec)
+
+and keeps a small window of chunks in flight, waiting for "ACK:<seq>" (the
+highest chunk received in order) before sending more. A StreamingJob is an
+iterable of converted instructions, so execute_field_pattern can start on
+instruction 1 while later chunks are still arriving.
+"""
+
+import json
+import logging
+import threading
+
+from Conversion_Service import Convert_To_Array
+from payload_codec import PackedStream
+
+logger = logging.getLogger(__name__)
+
+# A pattern that stalls this long waiting for its next chunk is abandoned. Long
+# enough to ride out the app reconnecting and resuming after a dropped link.
+CHUNK_TIMEOUT_S = 120.0
+
+
+class UploadStalled(Exception):
+    pass
+
+
+class StreamingJob:
+    def __init__(self, job_id: int, instruction_count: int, chunk_count: int):
+        self.job_id = job_id
+        self.total = instruction_count
+        self.chunk_count = chunk_count
+        self._instructions = []
+        self._next_seq = 0
+        self._cancelled = False
+        self._packed = None
+        self._cond = threading.Condition()
+
+    @classmethod
+    def from_header(cls, line: str) -> "StreamingJob":
+        _, job_id, count, chunks = line.split(":", 3)
+        return cls(int(job_id), int(count), int(chunks))
+
+    @property
+    def last_acked(self) -> int:
+        with self._cond:
+            return self._next_seq - 1
+
+    @property
+    def cancelled(self) -> bool:
+        """True once the job was cancelled or stalled; it will not run any further chunks."""
+        with self._cond:
+            return self._cancelled
+
+    def add_chunk(self, line: str) -> int:
+        """Adds one text CHUNK line and returns the sequence number to acknowledge."""
+        _, job_id, seq, payload = line.split(":", 3)
+        return self.add_items(int(job_id), int(seq), json.loads(payload))
+
+    def add_items(self, job_id: int, seq: int, items: list) -> int:
+        """Adds one chunk of app-format items and returns the sequence number to acknowledge."""
+        return self._add(job_id, seq, lambda: items)
+
+    def add_packed(self, job_id: int, seq: int, deflated: bytes) -> int:
+        """Adds one packed (wire codec v2) chunk; see payload_codec."""
+        if self._packed is None:
+            self._packed = PackedStream()
+        return self._add(job_id, seq, lambda: self._packed.feed(deflated))
+
+    def _add(self, job_id: int, seq: int, decode) -> int:
+        with self._cond:
+            if job_id != self.job_id:
+                logger.warning("Chunk for job %s ignored, current job is %s", job_id, self.job_id)
+                return self._next_seq - 1
+            if seq != self._next_seq:
+                # Duplicate after a resend, or a gap; the ack tells the app where we are
+                return self._next_seq - 1
+
+        # Only in-order chunks get here, so a packed stream sees each chunk exactly once
+        instructions = Convert_To_Array({"items": decode()})
+
+        with self._cond:
+            self._instructions.extend(instructions)
+            self._next_seq += 1
+            self._cond.notify_all()
+            return self._next_seq - 1
+
+    def cancel(self):
+        with self._cond:
+            self._cancelled = True
+            self._cond.notify_all()
+
+    def __len__(self):
+        return self.total
+
+    def __iter__(self):
+        index = 0
+        while True:
+            with self._cond:
+                while (
+                    index >= len(self._instructions)
+                    and self._next_seq < self.chunk_count
+                    and not self._cancelled
+                ):
+                    if not self._cond.wait(timeout=CHUNK_TIMEOUT_S):
+                        self._cancelled = True
+                        raise UploadStalled(
+                            f"job {self.job_id}: no chunk for {CHUNK_TIMEOUT_S}s "
+                            f"after {self._next_seq}/{self.chunk_count}"
+                        )
+                if self._cancelled or index >= len(self._instructions):
+                    return
+                instruction = self._instructions[index]
+            index += 1
+            yield instruction
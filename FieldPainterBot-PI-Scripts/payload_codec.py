@@ -0,0 +1,85 @@
+"""Decoder for packed field uploads (wire codec version 2).
+
+Mirrors the app's FieldPayloadCodec. A job's instructions arrive as one
+deflate stream, sync-flushed at every chunk boundary, that inflates to ops:
+
+    LITERAL  type byte (0xFF + name for unknown types) | flags | zigzag delta of
+             the quantity (hundredths) from the last instruction of the same type
+    REPEAT   varint span | varint times: replay the previous span instructions
+    ORDER    varint order of the next instruction (otherwise implicit, +1 each)
+
+Chunks must be fed in order, exactly once.
+"""
+
+import zlib
+
+from wire_codec import FLAG_PAINT, MOVEMENT_OTHER, MOVEMENT_TYPES, QUANTITY_SCALE, Reader
+
+OP_LITERAL = 1
+OP_REPEAT = 2
+OP_ORDER = 3
+
+
+class PackedStreamError(ValueError):
+    """The stream is corrupt, as opposed to an op that continues in the next chunk."""
+
+
+class PackedStream:
+    def __init__(self):
+        self._inflater = zlib.decompressobj()
+        self._pending = b""
+        self._steps = []  # (type, quantity hundredths, paint) of every instruction so far
+        self._last_quantity = [0] * (len(MOVEMENT_TYPES) + 1)
+        self._order = 0
+
+    def feed(self, deflated: bytes) -> list:
+        """Inflates one chunk and returns its instructions as app-format items."""
+        data = self._pending + self._inflater.decompress(deflated)
+        reader = Reader(data, 0)
+        items = []
+        while reader.position < len(data):
+            start = reader.position
+            try:
+                items.extend(self._op(reader))
+            except PackedStreamError:
+                raise
+            except ValueError:
+                # An op cut at the chunk boundary; finish it with the next chunk
+                reader.position = start
+                break
+        self._pending = data[reader.position:]
+        return items
+
+    def _op(self, reader: Reader) -> list:
+        op = reader.byte()
+        if op == OP_ORDER:
+            self._order = reader.varint()
+            return []
+        if op == OP_REPEAT:
+            span, times = reader.varint(), reader.varint()
+            if span <= 0 or span > len(self._steps):
+                raise PackedStreamError(f"Bad repeat span {span}")
+            start = len(self._steps) - span
+            return [self._emit(*self._steps[start + k]) for k in range(span * times)]
+        if op == OP_LITERAL:
+            code = reader.byte()
+            if code == MOVEMENT_OTHER:
+                move_type = reader.string()
+            else:
+                move_type = MOVEMENT_TYPES[code] if code < len(MOVEMENT_TYPES) else ""
+            slot = min(code, len(MOVEMENT_TYPES))
+            paint = bool(reader.byte() & FLAG_PAINT)
+            self._last_quantity[slot] += reader.zigzag()
+            return [self._emit(move_type, self._last_quantity[slot], paint)]
+        raise PackedStreamError(f"Unknown op {op}")
+
+    def _emit(self, move_type: str, quantity: int, paint: bool) -> dict:
+        self._steps.append((move_type, quantity, paint))
+        item = {
+            "Instruction Order": self._order,
+            "Type of Movement": move_type,
+            "Quantity": quantity / QUANTITY_SCALE,
+            "Paint": paint,
+        }
+        self._order += 1
+        return item
@@ -17,9 +17,13 @@ from Conversion_Service import (
     Convert_To_Array,
     execute_field_pattern,
     translate_manual_instruction,
+    apply_manual_drive,
     set_system_paused,
+    is_system_paused,
     set_system_cancelled,
 )
+from chunked_upload import StreamingJob
+import wire_codec
 from status_checks import battery_percent, read_battery_voltage, progress_check, get_paint_level
 import logging
 
@@ -27,6 +31,22 @@ import logging
 logger = logging.getLogger(__name__)
 logging.basicConfig(level=logging.INFO)
 
+# Stop the motors if the app's 20 Hz drive heartbeat goes quiet for this long
+DRIVE_TIMEOUT_S = 0.5
+
+# Chunk markers used by the app's bulk send lane
+BULK_CONTINUE = b"@B+"
+BULK_FINAL = b"@B."
+
+# Replies to RESUME_JOB when the app's job can't be continued from a chunk
+RESUME_UNKNOWN_JOB = -2   # never got its header: the app starts over
+RESUME_ABANDONED = -3     # cancelled or stalled while the app was away
+
+# The running pattern outlives the connection that started it, so the app can
+# reconnect after a dropped link and carry on streaming the same job.
+pattern_thread = None
+streaming_job = None
+
 
 def setup_bluetooth_server():
     subprocess.call(["sudo", "hciconfig", "hci0", "piscan"])
@@ -48,15 +68,35 @@ def setup_bluetooth_server():
 
 
 def handle_client(client_sock):
+    global pattern_thread, streaming_job
+
+    send_lock = threading.Lock()
+    # Set once the app's HELLO offers a codec version we support
+    wire = {"binary": False}
+
+    def send_frame(msg):
+        # Every text frame is newline terminated so the app can split back-to-back
+        # telemetry; the lock keeps frames from different threads whole.
+        frame = None
+        if wire["binary"]:
+            key, _, value = msg.partition(":")
+            try:
+                frame = wire_codec.encode_telemetry(key, int(value))
+            except ValueError:
+                frame = None  # e.g. "SPRAY:ERR" stays text
+        if frame is None:
+            frame = (msg + "\n").encode("utf-8")
+        with send_lock:
+            client_sock.sendall(frame)
 
     bat = "BATTERY:66"
     paint = "SPRAY:33"
     progress = "PROGRESS:60"
     # Send initial status
     time.sleep(1)
-    client_sock.send(bat.encode("utf-8"))
-    client_sock.send(paint.encode("utf-8"))
-    client_sock.send(progress.encode("utf-8"))
+    send_frame(bat)
+    send_frame(paint)
+    send_frame(progress)
 
     stop_battery_thread = threading.Event()
 
@@ -66,7 +106,7 @@ def handle_client(client_sock):
                 try:
                     bat_msg = f"BATTERY:{int(battery_percent(read_battery_voltage()))}"
                     logger.info("Sending battery status: %s", bat_msg)
-                    client_sock.send(bat_msg.encode("utf-8"))
+                    send_frame(bat_msg)
                 except Exception as e:
                     logger.error("Battery status error: %s", e)
 
@@ -74,7 +114,7 @@ def handle_client(client_sock):
                 try:
                     progress_msg = f"PROGRESS:{int(progress_check())}"
                     logger.info("Sending progress status: %s", progress_msg)
-                    client_sock.send(progress_msg.encode("utf-8"))
+                    send_frame(progress_msg)
                 except Exception as e:
                     logger.error("Progress status error: %s", e)
 
@@ -85,7 +125,7 @@ def handle_client(client_sock):
                     else:
                         paint_msg = "SPRAY:ERR"
                     logger.info("Sending paint status: %s", paint_msg)
-                    client_sock.send(paint_msg.encode("utf-8"))
+                    send_frame(paint_msg)
                 except Exception as e:
                     logger.error("Paint status error: %s", e)
 
@@ -97,10 +137,28 @@ def handle_client(client_sock):
     battery_thread = threading.Thread(target=battery_update_loop, daemon=True)
     battery_thread.start()
 
-    pattern_thread = None
+    drive_lock = threading.Lock()
+    drive_state = {"buttons": 0, "last_tick": 0.0}
+
+    def drive_watchdog_loop():
+        while not stop_battery_thread.is_set():
+            with drive_lock:
+                if (
+                    drive_state["buttons"]
+                    and time.monotonic() - drive_state["last_tick"] > DRIVE_TIMEOUT_S
+                ):
+                    logger.warning("Drive heartbeat lost: stopping motors.")
+                    apply_manual_drive(0, drive_state["buttons"])
+                    drive_state["buttons"] = 0
+            time.sleep(0.1)
+
+    drive_watchdog = threading.Thread(target=drive_watchdog_loop, daemon=True)
+    drive_watchdog.start()
+
+    bulk_parts = []
 
     try:
-        buffer = ""
+        buffer = b""
         while True:
             # receive commands
             data = client_sock.recv(4096)
@@ -108,14 +166,112 @@ def handle_client(client_sock):
             if not data:
                 break
 
-            buffer += data.decode("utf-8")
+            buffer += data
 
-            # Process all complete messages in the buffer (split by newline)
-            while "\n" in buffer:
-                decoded_data, buffer = buffer.split("\n", 1)
-                decoded_data = decoded_data.strip()
+            # Process all complete messages in the buffer: text lines and binary frames
+            frames, buffer = wire_codec.split_frames(buffer)
+            for kind, frame in frames:
+                if kind == wire_codec.BINARY:
+                    try:
+                        if frame[0] == wire_codec.TYPE_CHUNK:
+                            # Binary chunks go straight in, no JSON involved
+                            job_id, seq, items = wire_codec.decode_chunk(frame)
+                            if streaming_job is None:
+                                logger.warning("Chunk without a job header ignored.")
+                            else:
+                                send_frame(f"ACK:{streaming_job.add_items(job_id, seq, items)}")
+                            continue
+                        if frame[0] == wire_codec.TYPE_PACKED_CHUNK:
+                            # Deflated instruction stream (large patterns): inflate and run as it arrives
+                            job_id, seq, deflated = wire_codec.decode_packed_chunk(frame)
+                            if streaming_job is None:
+                                logger.warning("Chunk without a job header ignored.")
+                            else:
+                                send_frame(f"ACK:{streaming_job.add_packed(job_id, seq, deflated)}")
+                            continue
+                        decoded_data = wire_codec.as_text(frame)
+                    except Exception as e:
+                        # A malformed frame costs that frame, never the connection
+                        logger.error("Bad binary frame: %s", e)
+                        continue
+                    if decoded_data is None:
+                        logger.warning("Unknown binary frame type %d", frame[0])
+                        continue
+                else:
+                    line = frame
+                    # Large payloads arrive as chunk lines so HALT can be sent between them.
+                    # Chunks are not stripped: a split can fall right next to a space.
+                    if line.startswith(BULK_CONTINUE):
+                        bulk_parts.append(line[len(BULK_CONTINUE):])
+                        continue
+                    if line.startswith(BULK_FINAL):
+                        bulk_parts.append(line[len(BULK_FINAL):])
+                        line = b"".join(bulk_parts)
+                        bulk_parts = []
+                    try:
+                        decoded_data = line.decode("utf-8").strip()
+                    except UnicodeDecodeError as e:
+                        logger.error("Bad text frame: %s", e)
+                        continue
                 if not decoded_data:
                     continue
+                if decoded_data.startswith("HELLO:"):
+                    try:
+                        offered = int(decoded_data[len("HELLO:"):])
+                    except ValueError:
+                        offered = 0
+                    # Reply in text first; binary telemetry may follow right after it
+                    send_frame(f"HELLO:{wire_codec.SUPPORTED_VERSIONS}")
+                    # The app remembers our channel so it can dial it next time without an SDP lookup
+                    try:
+                        channel = client_sock.getsockname()[1]
+                    except (OSError, IndexError, TypeError):
+                        channel = None
+                    if channel:
+                        send_frame(f"CHANNEL:{channel}")
+                    wire["binary"] = bool(offered & wire_codec.SUPPORTED_VERSIONS)
+                    logger.info("Wire codec: %s", "binary" if wire["binary"] else "text")
+                    continue
+                if decoded_data.startswith("PING:"):
+                    # Link probe: PING:<seq>:<app ms>. Answer straight from the reader so the
+                    # app measures the link, not the motor loop. The clock goes first so
+                    # the app can pair it with the PONG that follows.
+                    seq = decoded_data.split(":")[1] if ":" in decoded_data else ""
+                    send_frame(f"PONG_CLOCK:{int(time.time() * 1000) & 0x7FFFFFFF}")
+                    send_frame(f"PONG:{seq}")
+                    continue
+                if decoded_data.startswith("DRIVE:"):
+                    try:
+                        buttons = int(decoded_data[len("DRIVE:"):])
+                    except ValueError:
+                        logger.warning("Invalid drive state: %s", decoded_data)
+                        continue
+                    with drive_lock:
+                        drive_state["last_tick"] = time.monotonic()
+                        if buttons != drive_state["buttons"]:
+                            apply_manual_drive(buttons, drive_state["buttons"])
+                            drive_state["buttons"] = buttons
+                    continue
+                if decoded_data.startswith("RESUME_JOB:"):
+                    # Sent by the app after it reconnects: RESUME_JOB:<job_id>:<last_acked>:<paused>
+                    try:
+                        _, job_id, _, paused = decoded_data.split(":")
+                        job_id = int(job_id)
+                    except ValueError:
+                        logger.warning("Invalid resume request: %s", decoded_data)
+                        continue
+                    # Only re-apply a HALT; never clear a pause the LIDAR safety set
+                    if paused == "1" and not is_system_paused():
+                        set_system_paused(True)
+                    if streaming_job is None or streaming_job.job_id != job_id:
+                        resume_from = RESUME_UNKNOWN_JOB
+                    elif streaming_job.cancelled:
+                        resume_from = RESUME_ABANDONED
+                    else:
+                        resume_from = streaming_job.last_acked
+                    logger.info("App resumed job %s, continuing after chunk %s", job_id, resume_from)
+                    send_frame(f"RESUME_JOB:{resume_from}")
+                    continue
                 if decoded_data == "HALT":
                     set_system_paused(True)
                     logger.warning("HALT command received: system paused.")
@@ -125,6 +281,8 @@ def handle_client(client_sock):
                     logger.info("RESUME command received: system resumed.")
                     continue
                 elif decoded_data == "QUIT":
+                    if streaming_job:
+                        streaming_job.cancel()
                     set_system_cancelled(True)
                     set_system_paused(False)  # Unblock any paused wait loop
                     if pattern_thread and pattern_thread.is_alive():
@@ -133,6 +291,36 @@ def handle_client(client_sock):
                         "QUIT command received: pattern execution cancelled."
                     )
                     continue
+                if decoded_data.startswith("JOB:"):
+                    if pattern_thread and pattern_thread.is_alive():
+                        logger.warning("Pattern already running, ignoring job header.")
+                        continue
+                    try:
+                        streaming_job = StreamingJob.from_header(decoded_data)
+                    except ValueError:
+                        logger.warning("Invalid job header: %s", decoded_data)
+                        continue
+                    logger.info(
+                        "Job %s: %s instructions in %s chunks",
+                        streaming_job.job_id, streaming_job.total, streaming_job.chunk_count,
+                    )
+                    # Start right away; the pattern waits for each chunk as it needs it
+                    pattern_thread = threading.Thread(
+                        target=execute_field_pattern,
+                        args=(streaming_job,),
+                        daemon=True,
+                    )
+                    pattern_thread.start()
+                    continue
+                if decoded_data.startswith("CHUNK:"):
+                    if streaming_job is None:
+                        logger.warning("Chunk without a job header ignored.")
+                        continue
+                    try:
+                        send_frame(f"ACK:{streaming_job.add_chunk(decoded_data)}")
+                    except Exception as e:
+                        logger.error("Bad chunk for job %s: %s", streaming_job.job_id, e)
+                    continue
                 logger.info("Received %s", decoded_data)
                 valid_json = decoded_data.replace("'", '"')
                 logger.info("Formatted message for JSON: %s", valid_json)
@@ -168,8 +356,15 @@ def handle_client(client_sock):
     except OSError:
         raise
     finally:
+        # A streaming job is left running: the app resumes it after reconnecting,
+        # and it cancels itself if no chunk arrives within CHUNK_TIMEOUT_S
         stop_battery_thread.set()
         battery_thread.join(timeout=2)
+        drive_watchdog.join(timeout=2)
+        with drive_lock:
+            if drive_state["buttons"]:
+                apply_manual_drive(0, drive_state["buttons"])
+                drive_state["buttons"] = 0
 
 
 def main():
@@ -178,11 +373,20 @@ def main():
     start_lidar_safety()
     server_sock = setup_bluetooth_server()
     try:
-        client_sock, client_info = server_sock.accept()
-        logger.info("Accepted connection from %s", client_info)
-        handle_client(client_sock)
-        logger.info("Disconnected.")
-        client_sock.close()
+        # Keep accepting so the app can reconnect after the link drops
+        while True:
+            client_sock, client_info = server_sock.accept()
+            logger.info("Accepted connection from %s", client_info)
+            try:
+                handle_client(client_sock)
+            except OSError as e:
+                logger.warning("Connection lost: %s", e)
+            except Exception:
+                # Whatever one client did, the next one must still get through
+                logger.exception("Client handler failed")
+            finally:
+                client_sock.close()
+            logger.info("Disconnected.")
     except Exception as e:
         logger.error("Error: %s", e)
     finally:
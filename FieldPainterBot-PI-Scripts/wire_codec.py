@@ -0,0 +1,191 @@
+"""Binary wire codec (versions 1 and 2), shared with the app's WireCodec.java.
+
+    frame    0xB1 | varint payload length | payload | CRC32 of payload (4 bytes, big-endian)
+    payload  type byte | fields
+
+0xB1 can never start a UTF-8 text line, so binary frames and newline
+terminated text lines are mixed freely on one stream: split_frames() returns
+both kinds and the HELLO handshake only decides what each side sends.
+Integers are LEB128 varints (signed ones zigzag encoded) and instruction
+quantities are fixed-point hundredths of the app's units (ft or degrees).
+"""
+
+import logging
+import zlib
+
+logger = logging.getLogger(__name__)
+
+VERSION = 2
+VERSION_PACKED = 2  # adds PACKED_CHUNK
+SUPPORTED_VERSIONS = (1 << VERSION) - 1  # bitmask exchanged in HELLO, bit n-1 = version n
+
+SYNC = 0xB1
+MAX_PAYLOAD = 16 * 1024
+
+TYPE_TELEMETRY = 1
+TYPE_COMMAND = 2
+TYPE_DRIVE = 3
+TYPE_JOB = 4
+TYPE_CHUNK = 5
+TYPE_PACKED_CHUNK = 6  # v2: job id, seq, deflated payload_codec ops
+
+TELEMETRY_KEYS = [None, "BATTERY", "SPRAY", "PROGRESS", "ACK"]
+COMMANDS = [None, "HALT", "RESUME", "QUIT"]
+MOVEMENT_TYPES = ["walk", "rotation", "circle"]
+MOVEMENT_OTHER = 0xFF
+QUANTITY_SCALE = 100
+FLAG_PAINT = 1
+
+TEXT = "text"
+BINARY = "binary"
+
+
+class Reader:
+    def __init__(self, payload: bytes, position: int = 1):
+        self.payload = payload
+        self.position = position
+
+    def byte(self) -> int:
+        if self.position >= len(self.payload):
+            raise ValueError("Truncated payload")
+        value = self.payload[self.position]
+        self.position += 1
+        return value
+
+    def varint(self) -> int:
+        value = 0
+        for shift in range(0, 35, 7):
+            b = self.byte()
+            value |= (b & 0x7F) << shift
+            if not b & 0x80:
+                return value
+        raise ValueError("Varint too long")
+
+    def zigzag(self) -> int:
+        raw = self.varint()
+        return (raw >> 1) ^ -(raw & 1)
+
+    def string(self) -> str:
+        length = self.varint()
+        if length > len(self.payload) - self.position:
+            raise ValueError("Truncated string")
+        value = self.payload[self.position:self.position + length].decode("utf-8")
+        self.position += length
+        return value
+
+
+def _varint(value: int) -> bytes:
+    out = bytearray()
+    value &= 0xFFFFFFFF
+    while value & ~0x7F:
+        out.append((value & 0x7F) | 0x80)
+        value >>= 7
+    out.append(value)
+    return bytes(out)
+
+
+def _zigzag(value: int) -> bytes:
+    return _varint(((value << 1) ^ (value >> 31)) & 0xFFFFFFFF)
+
+
+def encode_frame(payload: bytes) -> bytes:
+    crc = zlib.crc32(payload) & 0xFFFFFFFF
+    return bytes([SYNC]) + _varint(len(payload)) + payload + crc.to_bytes(4, "big")
+
+
+def encode_telemetry(key: str, value: int):
+    """Binary frame for "KEY:value" telemetry, or None if KEY has no id."""
+    if key not in TELEMETRY_KEYS[1:]:
+        return None
+    return encode_frame(
+        bytes([TYPE_TELEMETRY]) + _varint(TELEMETRY_KEYS.index(key)) + _zigzag(value)
+    )
+
+
+def split_frames(buffer: bytes):
+    """Splits complete frames off the front of buffer.
+
+    Returns ([(TEXT, line) | (BINARY, payload), ...], rest). Frames with a
+    bad CRC are dropped; an impossible length is skipped like a text line.
+    """
+    frames = []
+    pos = 0
+    while pos < len(buffer):
+        if buffer[pos] == SYNC:
+            reader = Reader(buffer, pos + 1)
+            try:
+                length = reader.varint()
+            except ValueError:
+                if len(buffer) - pos <= 5:
+                    break  # length not complete yet
+                length = 0
+            if length == 0 or length > MAX_PAYLOAD:
+                logger.warning("Bad binary frame length %d, resyncing", length)
+                newline = buffer.find(b"\n", pos)
+                if newline < 0:
+                    return frames, b""
+                pos = newline + 1
+                continue
+            start = reader.position
+            end = start + length + 4
+            if end > len(buffer):
+                break
+            payload = buffer[start:start + length]
+            if zlib.crc32(payload) & 0xFFFFFFFF == int.from_bytes(buffer[start + length:end], "big"):
+                frames.append((BINARY, payload))
+            else:
+                logger.warning("Binary frame failed CRC check, dropped")
+            pos = end
+        else:
+            newline = buffer.find(b"\n", pos)
+            if newline < 0:
+                break
+            frames.append((TEXT, buffer[pos:newline]))
+            pos = newline + 1
+    return frames, buffer[pos:]
+
+
+def decode_chunk(payload: bytes):
+    """CHUNK payload -> (job_id, seq, items) with items in the app's JSON field names."""
+    reader = Reader(payload)
+    job_id, seq, count = reader.varint(), reader.varint(), reader.varint()
+    items = []
+    for _ in range(count):
+        order = reader.varint()
+        code = reader.byte()
+        if code == MOVEMENT_OTHER:
+            move_type = reader.string()
+        else:
+            move_type = MOVEMENT_TYPES[code] if code < len(MOVEMENT_TYPES) else ""
+        paint = bool(reader.byte() & FLAG_PAINT)
+        quantity = reader.zigzag() / QUANTITY_SCALE
+        items.append(
+            {
+                "Instruction Order": order,
+                "Type of Movement": move_type,
+                "Quantity": quantity,
+                "Paint": paint,
+            }
+        )
+    return job_id, seq, items
+
+
+def decode_packed_chunk(payload: bytes):
+    """PACKED_CHUNK payload -> (job_id, seq, deflated bytes) for payload_codec."""
+    reader = Reader(payload)
+    job_id, seq = reader.varint(), reader.varint()
+    return job_id, seq, payload[reader.position:]
+
+
+def as_text(payload: bytes):
+    """Text form of a COMMAND, DRIVE or JOB payload, or None for other types."""
+    kind = payload[0]
+    reader = Reader(payload)
+    if kind == TYPE_COMMAND:
+        command = reader.varint()
+        return COMMANDS[command] if 0 < command < len(COMMANDS) else None
+    if kind == TYPE_DRIVE:
+        return f"DRIVE:{reader.varint()}"
+    if kind == TYPE_JOB:
+        return f"JOB:{reader.varint()}:{reader.varint()}:{reader.varint()}"
+    return None
@@ -0,0 +1,53 @@
+package com.example.fieldpainterbot;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * The one OkHttpClient every backend call goes through, so they share a
+ * connection pool (and one HTTP/2 connection to Render) instead of paying a
+ * fresh TLS handshake per request.
+ */
+public final class BackendHttp {
+
+    static final long CONNECT_TIMEOUT_S = 15;
+    // A cold instance holds the first request open while it boots
+    static final long READ_TIMEOUT_S = 60;
+    static final long WRITE_TIMEOUT_S = 15;
+    // The whole call, retries and backoff included
+    static final long CALL_TIMEOUT_S = 150;
+    private static final int IDLE_CONNECTIONS = 4;
+    private static final long KEEP_ALIVE_MIN = 5;
+
+    private static final class Holder {
+        static final HttpTimingListener TIMINGS = new HttpTimingListener();
+        static final OkHttpClient CLIENT = newClientBuilder(TIMINGS, new RetryInterceptor()).build();
+    }
+
+    private BackendHttp() {}
+
+    public static OkHttpClient client() {
+        return Holder.CLIENT;
+    }
+
+    public static HttpMetrics getMetrics() {
+        return Holder.TIMINGS.getMetrics();
+    }
+
+    static OkHttpClient.Builder newClientBuilder(HttpTimingListener timings, RetryInterceptor retry) {
+        return new OkHttpClient.Builder()
+                // HTTP/2 over TLS when the server offers it, so prefetch and fetches multiplex
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectionPool(new ConnectionPool(IDLE_CONNECTIONS, KEEP_ALIVE_MIN, TimeUnit.MINUTES))
+                .connectTimeout(CONNECT_TIMEOUT_S, TimeUnit.SECONDS)
+                .readTimeout(READ_TIMEOUT_S, TimeUnit.SECONDS)
+                .writeTimeout(WRITE_TIMEOUT_S, TimeUnit.SECONDS)
+                .callTimeout(CALL_TIMEOUT_S, TimeUnit.SECONDS)
+                .addInterceptor(retry)
+                .eventListenerFactory(timings);
+    }
+}
@@ -5,19 +5,36 @@ import android.util.Log;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
 
 public class BluetoothIOThread extends Thread {
     private static final String TAG = "BluetoothIOThread";
+    private static final int MAX_FRAME_LENGTH = 1024;
 
     private final BluetoothSocket socket;
     private final InputStream inputStream;
-    private final BluetoothService.DataListener dataListener;
+    private final TelemetryParser telemetryParser;
+    private final FrameDecoder frameDecoder;
     private volatile boolean running = true;
+    private volatile Runnable onLinkLost;
 
-    public BluetoothIOThread(BluetoothSocket socket, BluetoothService.DataListener listener) throws IOException {
+    public BluetoothIOThread(BluetoothSocket socket, TelemetryParser parser) throws IOException {
         this.socket = socket;
         this.inputStream = socket.getInputStream();
-        this.dataListener = listener;
+        this.telemetryParser = parser;
+        this.frameDecoder = new FrameDecoder(MAX_FRAME_LENGTH, this::onFrame);
+        this.frameDecoder.setBinaryListener(this::onBinaryFrame);
+    }
+
+    // Runs on this thread when the link drops by itself, not after close()
+    public void setOnLinkLost(Runnable onLinkLost) {
+        this.onLinkLost = onLinkLost;
+    }
+
+    /** Runs the read loop on a pooled connection thread instead of this one. */
+    public void start(Executor executor) {
+        executor.execute(this);
     }
 
     @Override
@@ -28,9 +45,11 @@ public class BluetoothIOThread extends Thread {
             try {
                 int bytesRead = inputStream.read(buffer);
                 if (bytesRead > 0) {
-                    String received = new String(buffer, 0, bytesRead).trim();
-                    Log.d(TAG, "Received: " + received);
-                    parseIncoming(received);
+                    // A single read can hold several frames or only part of one
+                    frameDecoder.feed(buffer, 0, bytesRead);
+                } else if (bytesRead < 0) {
+                    Log.d(TAG, "Input stream closed");
+                    break;
                 }
             } catch (IOException e) {
                 Log.e(TAG, "Error reading input stream", e);
@@ -38,20 +57,31 @@ public class BluetoothIOThread extends Thread {
             }
         }
 
+        boolean lost = running;
         close();
+        Runnable callback = onLinkLost;
+        if (lost && callback != null) callback.run();
+    }
+
+    private void onFrame(byte[] frame, int offset, int length) {
+        // Only build the log string when verbose logging is switched on for this tag
+        if (Log.isLoggable(TAG, Log.VERBOSE)) {
+            Log.v(TAG, "Received: " + new String(frame, offset, length, StandardCharsets.UTF_8));
+        }
+        telemetryParser.parse(frame, offset, length);
     }
 
-    private void parseIncoming(String received) {
+    // Binary frames can arrive once the HELLO handshake picked binary mode
+    private void onBinaryFrame(byte[] payload, int offset, int length) {
         try {
-            if (received.startsWith("BATTERY:")) {
-                dataListener.onBatteryLevelReceived(Integer.parseInt(received.split(":")[1]));
-            } else if (received.startsWith("SPRAY:")) {
-                dataListener.onSprayLevelReceived(Integer.parseInt(received.split(":")[1]));
-            } else if (received.startsWith("PROGRESS:")) {
-                dataListener.onProgressLevelReceived(Integer.parseInt(received.split(":")[1]));
+            int type = WireCodec.type(payload, offset, length);
+            if (type == WireCodec.TYPE_TELEMETRY) {
+                WireCodec.dispatchTelemetry(payload, offset, length, telemetryParser);
+            } else if (Log.isLoggable(TAG, Log.VERBOSE)) {
+                Log.v(TAG, "Ignoring binary frame of type " + type);
             }
-        } catch (Exception e) {
-            Log.w(TAG, "Invalid format: " + received);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Malformed binary frame", e);
         }
     }
 
@@ -0,0 +1,46 @@
+package com.example.fieldpainterbot;
+
+import android.bluetooth.BluetoothSocket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * A socket and the reader and writer that serve it, held together in a
+ * {@link ConnectionState}. While the socket is still connecting there is no
+ * reader or writer yet.
+ */
+final class BluetoothLink implements Closeable {
+
+    final BluetoothSocket socket;
+    final BluetoothIOThread reader;
+    final BluetoothSendThread writer;
+
+    private BluetoothLink(BluetoothSocket socket, BluetoothIOThread reader, BluetoothSendThread writer) {
+        this.socket = socket;
+        this.reader = reader;
+        this.writer = writer;
+    }
+
+    static BluetoothLink connecting(BluetoothSocket socket) {
+        return new BluetoothLink(socket, null, null);
+    }
+
+    /** Wraps a connected socket; the reader and writer start with {@link #start}. */
+    static BluetoothLink open(BluetoothSocket socket, TelemetryParser parser) throws IOException {
+        return new BluetoothLink(socket, new BluetoothIOThread(socket, parser), new BluetoothSendThread(socket));
+    }
+
+    void start(Executor executor) {
+        reader.start(executor);
+        writer.start(executor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) reader.close();
+        if (writer != null) writer.close();
+        socket.close();
+    }
+}
@@ -1,42 +1,551 @@
 package com.example.fieldpainterbot;
 
 import android.bluetooth.BluetoothSocket;
+import android.os.Looper;
+import android.util.Log;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class BluetoothSendThread extends Thread {
+    private static final String TAG = "BluetoothSendThread";
+
+    // Roughly a handful of RFCOMM packets; larger frames are written on their own
+    private static final int BATCH_CAPACITY = 4096;
+
+    // Bulk frames longer than this are split into chunk lines that rfserver reassembles:
+    // "@B+" marks a continuation chunk and "@B." the final one
+    static final int BULK_CHUNK_SIZE = 512;
+    static final byte[] BULK_CONTINUE = {'@', 'B', '+'};
+    static final byte[] BULK_FINAL = {'@', 'B', '.'};
+
+    public static final long DEFAULT_SEND_TIMEOUT_MS = 10_000;
+    private static final long WATCHDOG_PERIOD_MS = 250;
+
+    // Messages (not chunks) each lane holds, indexed by SendLane ordinal
+    private static final int[] DEFAULT_CAPACITY = {Integer.MAX_VALUE, 64, 64, 8};
+    private static final OverflowPolicy[] DEFAULT_POLICY = {
+            OverflowPolicy.REJECT,       // SAFETY: unbounded, so a HALT never waits and is never lost
+            OverflowPolicy.DROP_OLDEST,  // CONTROL: newer commands supersede
+            OverflowPolicy.DROP_OLDEST,  // TELEMETRY
+            OverflowPolicy.BLOCK         // BULK: field data is all-or-nothing
+    };
+
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "SendWatchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // One queued message; bulk messages go out one chunk per write pass
+    private static final class OutgoingMessage {
+        final byte[][] chunks;
+        final SendLane lane;
+        final long enqueuedNanos;
+        final long deadlineNanos;
+        final SendFuture future;  // null for latest-state frames
+        int nextChunk = 0;        // guarded by lock
+
+        OutgoingMessage(byte[][] chunks, SendLane lane, long enqueuedNanos, long deadlineNanos,
+                        SendFuture future) {
+            this.chunks = chunks;
+            this.lane = lane;
+            this.enqueuedNanos = enqueuedNanos;
+            this.deadlineNanos = deadlineNanos;
+            this.future = future;
+        }
+    }
+
     private final OutputStream outputStream;
-    private final BlockingQueue<String> sendQueue = new LinkedBlockingQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<OutgoingMessage>[] lanes;
+    private final int[] capacities = DEFAULT_CAPACITY.clone();
+    private final OverflowPolicy[] policies = DEFAULT_POLICY.clone();
+    // Written but not yet flushed; guarded by lock so the watchdog can fail them
+    private final List<OutgoingMessage> inFlight = new ArrayList<>();
+    private final List<OutgoingMessage> flushed = new ArrayList<>();  // writer thread only
+    // Latest-state-wins slot for the manual drive heartbeat: an unsent state is overwritten, not queued
+    private final AtomicReference<OutgoingMessage> latestControl = new AtomicReference<>();
+    private final byte[] batch = new byte[BATCH_CAPACITY];
     private volatile boolean running = true;
+    // Thread running the send loop: this one, or a pooled one after start(Executor)
+    private volatile Thread worker;
+    private volatile long sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SEND_TIMEOUT_MS);
+    private ScheduledFuture<?> watchdogTask;
+
+    // Metrics
+    private int queuedMessages = 0;  // guarded by lock
+    private volatile int maxQueuedMessages = 0;
+    private final AtomicLong sentMessages = new AtomicLong();
+    private final AtomicLong totalFlushLatencyNanos = new AtomicLong();
+    private volatile long maxFlushLatencyNanos = 0;
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final AtomicLong rejectedMessages = new AtomicLong();
+    private final AtomicLong timedOutMessages = new AtomicLong();
+
+    // Enqueue-to-flush time of SAFETY frames
+    private volatile long lastSafetyLatencyNanos = 0;
+    private volatile long maxSafetyLatencyNanos = 0;
 
     public BluetoothSendThread(BluetoothSocket socket) throws IOException {
-        this.outputStream = socket.getOutputStream();
+        this(socket.getOutputStream());
     }
 
-    public void enqueueMessage(String msg) {
-        sendQueue.add(msg);
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BluetoothSendThread(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        this.lanes = new ArrayDeque[SendLane.values().length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayDeque<>();
+        }
+    }
+
+    /** Encodes a text command as one UTF-8, newline-terminated frame. */
+    public static byte[] encodeLine(String msg) {
+        byte[] body = msg.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[body.length + 1];
+        System.arraycopy(body, 0, frame, 0, body.length);
+        frame[body.length] = '\n';
+        return frame;
+    }
+
+    /** Sets how many messages {@code lane} holds and what happens when it is full. */
+    public void configureLane(SendLane lane, int capacity, OverflowPolicy policy) {
+        if (capacity < 1) throw new IllegalArgumentException("Lane capacity must be positive");
+        lock.lock();
+        try {
+            capacities[lane.ordinal()] = capacity;
+            policies[lane.ordinal()] = policy;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Time after which a message that has not been flushed fails with a timeout. */
+    public void setSendTimeout(long timeout, TimeUnit unit) {
+        sendTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    public SendFuture enqueueMessage(String msg) {
+        return enqueue(SendLane.CONTROL, encodeLine(msg));
+    }
+
+    public SendFuture enqueue(byte[] frame) {
+        return enqueue(SendLane.CONTROL, frame);
+    }
+
+    /**
+     * Queues an already encoded frame; the array must not be modified afterwards.
+     * The returned future completes once the whole frame has been flushed.
+     * With {@link OverflowPolicy#BLOCK} this waits for room, up to the send timeout,
+     * except on the main thread: there a full lane fails the message at once
+     * rather than freezing the UI.
+     */
+    public SendFuture enqueue(SendLane lane, byte[] frame) {
+        // Only text lines are split; a binary frame's bytes aren't UTF-8 and may end in a 0x0A CRC byte
+        byte[][] chunks = lane == SendLane.BULK && frame.length > BULK_CHUNK_SIZE + 1
+                && frame[0] != WireCodec.SYNC
+                ? splitBulkFrame(frame)
+                : new byte[][] { frame };
+
+        long now = System.nanoTime();
+        SendFuture future = new SendFuture();
+        OutgoingMessage message = new OutgoingMessage(chunks, lane, now, now + sendTimeoutNanos, future);
+        OutgoingMessage dropped = null;
+        IOException failure = null;
+        boolean mayWait = !onMainThread();
+
+        lock.lock();
+        try {
+            ArrayDeque<OutgoingMessage> queue = lanes[lane.ordinal()];
+            while (running && queue.size() >= capacities[lane.ordinal()]) {
+                OverflowPolicy policy = policies[lane.ordinal()];
+                if (policy == OverflowPolicy.REJECT) {
+                    rejectedMessages.incrementAndGet();
+                    failure = new IOException("Send queue full: " + lane);
+                    break;
+                }
+                if (policy == OverflowPolicy.DROP_OLDEST) {
+                    dropped = removeOldestUnstartedLocked(queue);
+                    if (dropped != null) break;
+                    // Only a half-sent bulk message left; wait for it like BLOCK
+                }
+                if (!mayWait) {
+                    rejectedMessages.incrementAndGet();
+                    failure = new IOException("Send queue full: " + lane + " (not waiting on the main thread)");
+                    break;
+                }
+                long remaining = message.deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    timedOutMessages.incrementAndGet();
+                    failure = new IOException("Timed out waiting for room on " + lane);
+                    break;
+                }
+                try {
+                    notFull.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = new IOException("Interrupted waiting for room on " + lane);
+                    break;
+                }
+            }
+            if (failure == null && !running) failure = new IOException("Connection closed");
+
+            if (failure == null) {
+                queue.addLast(message);
+                queuedMessages++;
+                if (queuedMessages > maxQueuedMessages) maxQueuedMessages = queuedMessages;
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (dropped != null) {
+            droppedMessages.incrementAndGet();
+            dropped.future.fail(new IOException("Dropped for newer data on " + lane));
+        }
+        if (failure != null) future.fail(failure);
+        return future;
+    }
+
+    /** Queues the remaining bytes of {@code frame} without moving its position. */
+    public SendFuture enqueue(SendLane lane, ByteBuffer frame) {
+        byte[] copy = new byte[frame.remaining()];
+        frame.duplicate().get(copy);
+        return enqueue(lane, copy);
+    }
+
+    /**
+     * Offers a CONTROL frame that replaces any previously offered frame still
+     * waiting to be written. Goes out ahead of queued CONTROL frames.
+     */
+    public void offerLatest(byte[] frame) {
+        long now = System.nanoTime();
+        latestControl.set(new OutgoingMessage(new byte[][] { frame }, SendLane.CONTROL, now, Long.MAX_VALUE, null));
+        lock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        super.start();
+        startWatchdog();
+    }
+
+    /** Runs the send loop on a pooled connection thread instead of this one. */
+    public synchronized void start(Executor executor) {
+        executor.execute(this);
+        startWatchdog();
+    }
+
+    private void startWatchdog() {
+        watchdogTask = watchdog.scheduleWithFixedDelay(this::expireStuckMessages,
+                WATCHDOG_PERIOD_MS, WATCHDOG_PERIOD_MS, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void run() {
-        while (running) {
-            try {
-                String msg = sendQueue.take();  // waits until message exists
-                outputStream.write((msg + "\n").getBytes());
-                outputStream.flush();
-            } catch (Exception e) {
-                e.printStackTrace();
-                break;
+        worker = Thread.currentThread();
+        // close() may have run before the executor got to us
+        if (!running) worker.interrupt();
+        try {
+            while (running) {
+                if (!writePass()) awaitWork();
             }
+        } catch (InterruptedException e) {
+            // closed
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing output stream", e);
+        } finally {
+            running = false;
+            // A pooled thread moves on to other work; close() must not interrupt that
+            worker = null;
+            failEverything(new IOException("Connection closed"));
         }
     }
 
+    private void awaitWork() throws InterruptedException {
+        lock.lock();
+        try {
+            while (running && queuedMessages == 0 && latestControl.get() == null) {
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * One write + flush: everything queued on SAFETY, CONTROL and TELEMETRY,
+     * then at most one BULK chunk. Returns false if there was nothing to send.
+     */
+    private boolean writePass() throws IOException {
+        int length = 0;
+        long oldestSafetyNanos = 0;
+        byte[] oversized = null;
+
+        lock.lock();
+        try {
+            for (SendLane lane : SendLane.values()) {
+                if (lane == SendLane.CONTROL) {
+                    OutgoingMessage latest = latestControl.getAndSet(null);
+                    if (latest != null) {
+                        byte[] data = latest.chunks[0];
+                        if (data.length > batch.length - length) {
+                            // No room behind the safety frames; keep it unless a newer state arrived
+                            latestControl.compareAndSet(null, latest);
+                            break;
+                        }
+                        System.arraycopy(data, 0, batch, length, data.length);
+                        length += data.length;
+                    }
+                }
+
+                ArrayDeque<OutgoingMessage> queue = lanes[lane.ordinal()];
+                OutgoingMessage message;
+                boolean full = false;
+                while ((message = queue.peekFirst()) != null) {
+                    byte[] data = message.chunks[message.nextChunk];
+                    if (data.length > batch.length - length) {
+                        full = true;
+                        if (length > 0) break;  // send what we have first
+                        oversized = data;       // oversized frame on its own
+                    } else {
+                        System.arraycopy(data, 0, batch, length, data.length);
+                        length += data.length;
+                    }
+
+                    if (++message.nextChunk == message.chunks.length) {
+                        queue.pollFirst();
+                        queuedMessages--;
+                        inFlight.add(message);
+                        notFull.signalAll();
+                    }
+                    if (lane == SendLane.SAFETY && oldestSafetyNanos == 0) {
+                        oldestSafetyNanos = message.enqueuedNanos;
+                    }
+                    if (oversized != null || lane == SendLane.BULK) break;  // one chunk per pass
+                }
+                if (full || oversized != null) break;  // batch full, flush before lower lanes
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (oversized != null) {
+            outputStream.write(oversized);
+        } else if (length > 0) {
+            outputStream.write(batch, 0, length);
+        } else {
+            return false;
+        }
+        outputStream.flush();
+
+        long now = System.nanoTime();
+        if (oldestSafetyNanos != 0) recordSafetyLatency(now - oldestSafetyNanos);
+        completeFlushed(now);
+        return true;
+    }
+
+    private void completeFlushed(long now) {
+        lock.lock();
+        try {
+            flushed.addAll(inFlight);
+            inFlight.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        for (int i = 0; i < flushed.size(); i++) {
+            OutgoingMessage message = flushed.get(i);
+            long latency = now - message.enqueuedNanos;
+            sentMessages.incrementAndGet();
+            totalFlushLatencyNanos.addAndGet(latency);
+            if (latency > maxFlushLatencyNanos) maxFlushLatencyNanos = latency;
+            message.future.complete();  // no-op if the watchdog already failed it
+        }
+        flushed.clear();
+    }
+
+    // Fails messages past their deadline: queued ones are removed, in-flight ones
+    // (stuck in write) only have their future failed. A bulk message that is
+    // partly written is left alone: its remaining chunks still go out, since
+    // rfserver would otherwise glue the next frame onto the half it has, and
+    // its future settles when the last chunk flushes or the connection closes.
+    private void expireStuckMessages() {
+        long now = System.nanoTime();
+        List<OutgoingMessage> expired = new ArrayList<>();
+
+        lock.lock();
+        try {
+            for (ArrayDeque<OutgoingMessage> queue : lanes) {
+                Iterator<OutgoingMessage> it = queue.iterator();
+                while (it.hasNext()) {
+                    OutgoingMessage message = it.next();
+                    if (now - message.deadlineNanos < 0 || message.future.isDone()) continue;
+                    if (message.nextChunk > 0) continue;  // a half-sent bulk message has to finish
+                    expired.add(message);
+                    it.remove();
+                    queuedMessages--;
+                }
+            }
+            for (OutgoingMessage message : inFlight) {
+                if (now - message.deadlineNanos >= 0 && !message.future.isDone()) expired.add(message);
+            }
+            if (!expired.isEmpty()) notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        for (OutgoingMessage message : expired) {
+            if (message.future.fail(new IOException("Send timed out on " + message.lane))) {
+                timedOutMessages.incrementAndGet();
+            }
+        }
+    }
+
+    private static boolean onMainThread() {
+        Looper main = Looper.getMainLooper();
+        return main != null && main.getThread() == Thread.currentThread();
+    }
+
+    private OutgoingMessage removeOldestUnstartedLocked(ArrayDeque<OutgoingMessage> queue) {
+        Iterator<OutgoingMessage> it = queue.iterator();
+        while (it.hasNext()) {
+            OutgoingMessage message = it.next();
+            if (message.nextChunk == 0) {
+                it.remove();
+                queuedMessages--;
+                return message;
+            }
+        }
+        return null;
+    }
+
+    private void failEverything(IOException cause) {
+        List<OutgoingMessage> pending = new ArrayList<>();
+        lock.lock();
+        try {
+            for (ArrayDeque<OutgoingMessage> queue : lanes) {
+                pending.addAll(queue);
+                queue.clear();
+            }
+            pending.addAll(inFlight);
+            inFlight.clear();
+            queuedMessages = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (OutgoingMessage message : pending) {
+            message.future.fail(cause);
+        }
+    }
+
+    private void recordSafetyLatency(long latency) {
+        lastSafetyLatencyNanos = latency;
+        if (latency > maxSafetyLatencyNanos) maxSafetyLatencyNanos = latency;
+    }
+
+    public long getLastSafetyLatencyNanos() {
+        return lastSafetyLatencyNanos;
+    }
+
+    /** Worst enqueue-to-flush time of any HALT/RESUME/QUIT on this connection. */
+    public long getMaxSafetyLatencyNanos() {
+        return maxSafetyLatencyNanos;
+    }
+
+    public int getQueueDepth(SendLane lane) {
+        lock.lock();
+        try {
+            return lanes[lane.ordinal()].size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public SendMetrics getMetrics() {
+        int depth;
+        lock.lock();
+        try {
+            depth = queuedMessages;
+        } finally {
+            lock.unlock();
+        }
+        long sent = sentMessages.get();
+        return new SendMetrics(
+                depth,
+                maxQueuedMessages,
+                sent > 0 ? totalFlushLatencyNanos.get() / sent : 0,
+                maxFlushLatencyNanos,
+                maxSafetyLatencyNanos,
+                sent,
+                droppedMessages.get(),
+                rejectedMessages.get(),
+                timedOutMessages.get());
+    }
+
+    // Splits "<body>\n" into "@B+<piece>\n" ... "@B.<last piece>\n", never inside a UTF-8 sequence
+    static byte[][] splitBulkFrame(byte[] frame) {
+        int bodyLength = frame[frame.length - 1] == '\n' ? frame.length - 1 : frame.length;
+
+        int count = 0;
+        int[] bounds = new int[bodyLength / 16 + 2];
+        int start = 0;
+        while (start < bodyLength) {
+            int end = Math.min(start + BULK_CHUNK_SIZE, bodyLength);
+            while (end < bodyLength && end > start + 1 && (frame[end] & 0xC0) == 0x80) end--;
+            bounds[count++] = end;
+            start = end;
+        }
+
+        byte[][] chunks = new byte[count][];
+        start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = bounds[i];
+            byte[] marker = i == count - 1 ? BULK_FINAL : BULK_CONTINUE;
+            byte[] chunk = new byte[marker.length + (end - start) + 1];
+            System.arraycopy(marker, 0, chunk, 0, marker.length);
+            System.arraycopy(frame, start, chunk, marker.length, end - start);
+            chunk[chunk.length - 1] = '\n';
+            chunks[i] = chunk;
+            start = end;
+        }
+        return chunks;
+    }
+
+    /** Stops the thread; anything not yet flushed fails with "Connection closed". */
     public void close() {
         running = false;
-        this.interrupt();
+        synchronized (this) {
+            if (watchdogTask != null) watchdogTask.cancel(false);
+        }
+        Thread thread = worker;
+        if (thread != null) thread.interrupt();
+        failEverything(new IOException("Connection closed"));
     }
 }
-
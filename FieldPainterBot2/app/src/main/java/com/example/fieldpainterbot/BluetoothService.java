@@ -9,40 +9,82 @@ import android.util.Log;
 
 import androidx.lifecycle.MutableLiveData;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps one RobotSession per robot, keyed by device address, and routes the
+ * single-robot API the screens use to whichever robot is active. Switching
+ * the active robot only changes which session the UI follows; every other
+ * robot stays connected and keeps its own threads, queue and telemetry.
+ */
 public class BluetoothService {
 
     private static final String TAG = "BluetoothService";
-    private static final UUID APP_UUID =
-            UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
     private static final String SERVICE_NAME = "FieldPainter";
 
     private static BluetoothService instance;
 
+    private static final String JOURNAL_DIRECTORY = "journal";
+    // Returned while no robot is active, so callers never see null
+    private static final TelemetryHistory EMPTY_HISTORY = new TelemetryHistory();
+
+    private final Context appContext;
     private final BluetoothAdapter bluetoothAdapter;
-    private BluetoothIOThread ioThread;
-    private BluetoothSendThread sendThread;
-    private BluetoothSocket socket;
-    private BluetoothServerThread serverThread;
-    private DataListener dataListener;
+    private final AtomicReference<BluetoothServerThread> serverThread = new AtomicReference<>();
+    private final ConcurrentHashMap<String, RobotSession> sessions = new ConcurrentHashMap<>();
+    // The robot the screens show and command; null until one connects
+    private volatile RobotSession active;
+    private volatile DataListener dataListener;
+    // Telemetry handlers added by key, applied to every session including later ones
+    private final Map<String, TelemetryParser.Handler> extraHandlers = new ConcurrentHashMap<>();
+    private final KnownRobotRegistry knownRobots;
+    private final RobotSession.Listener sessionListener = new RobotSession.Listener() {
+        @Override
+        public void onStatusChanged(RobotSession session, ConnectionStatus status) {
+            if (status == ConnectionStatus.CONNECTED) {
+                knownRobots.record(session.getAddress(), session.getName(), session.getChannel(),
+                        System.currentTimeMillis());
+            }
+            if (session == active) connectionStatus.postValue(status);
+        }
+
+        @Override
+        public void onChannelReported(RobotSession session, int channel) {
+            knownRobots.record(session.getAddress(), session.getName(), channel, System.currentTimeMillis());
+        }
+
+        @Override
+        public void onTelemetry(RobotSession session, TelemetryChannel channel, int value) {
+            // Only the active robot reaches the UI, so each frame costs the same however many are connected
+            if (session == active) deliver(channel, value);
+        }
+    };
 
-    private final MutableLiveData<List<BluetoothDevice>> devicesLiveData;
+    private final MutableLiveData<List<DiscoveredDevice>> devicesLiveData;
     private final MutableLiveData<ConnectionStatus> connectionStatus;
 
     private BluetoothService(Context context,
-                             MutableLiveData<List<BluetoothDevice>> devices,
+                             MutableLiveData<List<DiscoveredDevice>> devices,
                              MutableLiveData<ConnectionStatus> connectionStatus) {
+        this.appContext = context;
         this.bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
         this.devicesLiveData = devices;
         this.connectionStatus = connectionStatus;
+        this.knownRobots = new KnownRobotRegistry(context);
     }
 
     public static synchronized BluetoothService getInstance(
             Context context,
-            MutableLiveData<List<BluetoothDevice>> devices,
+            MutableLiveData<List<DiscoveredDevice>> devices,
             MutableLiveData<ConnectionStatus> connectionStatus
     ) {
         if (instance == null) {
@@ -76,33 +118,108 @@ public class BluetoothService {
         }
     }
 
-
     /* -------------------------------------------------------
-                          CLIENT CONNECT
+                          SESSIONS
        ------------------------------------------------------- */
 
-    public void connect(BluetoothDevice device) {
-        if (socket != null && socket.isConnected()) return;
+    private RobotSession sessionFor(String address, String name) {
+        return sessions.computeIfAbsent(address, key -> {
+            RobotSession session = new RobotSession(key, name, bluetoothAdapter, getJournalDirectory(), sessionListener);
+            for (Map.Entry<String, TelemetryParser.Handler> handler : extraHandlers.entrySet()) {
+                session.registerTelemetryHandler(handler.getKey(), handler.getValue());
+            }
+            return session;
+        });
+    }
 
-        connectionStatus.postValue(ConnectionStatus.CONNECTING);
+    // Sorted by address so the order doesn't shift as robots come and go
+    public List<RobotSession> getSessions() {
+        List<RobotSession> list = new ArrayList<>(sessions.values());
+        Collections.sort(list, (a, b) -> a.getAddress().compareTo(b.getAddress()));
+        return list;
+    }
 
-        new Thread(() -> {
-            try {
-                bluetoothAdapter.cancelDiscovery();
-                socket = device.createInsecureRfcommSocketToServiceRecord(APP_UUID);
-                socket.connect();  // <-- blocks until Pi accepts
-                Log.e(TAG, "Connected");
+    public RobotSession getActiveSession() {
+        return active;
+    }
 
-                connectionStatus.postValue(ConnectionStatus.CONNECTED);
-                Log.e(TAG, "Connected is included to status");
-                startIOThreads(socket);
+    /**
+     * Makes the robot at {@code address} the one the screens show and command,
+     * without touching any connection. Its status and last known telemetry are
+     * published straight away. Returns false if there is no such robot.
+     */
+    public boolean selectRobot(String address) {
+        RobotSession session = sessions.get(address);
+        if (session == null) return false;
+        active = session;
+        connectionStatus.postValue(session.getStatus());
+        for (TelemetryChannel channel : TelemetryChannel.values()) {
+            deliver(channel, session.getLatest(channel));
+        }
+        Log.d(TAG, "Active robot is now " + session.getName());
+        return true;
+    }
 
-            } catch (IOException e) {
-                Log.e(TAG, "Connection failed", e);
-                connectionStatus.postValue(ConnectionStatus.DISCONNECTED);
-                closeSocket();
+    /**
+     * Queues {@code command} on every connected robot and returns without
+     * waiting for any of them; each future completes on that robot's writer.
+     */
+    public List<SendFuture> broadcast(String command, SendLane lane) {
+        List<SendFuture> futures = new ArrayList<>(sessions.size());
+        for (RobotSession session : sessions.values()) {
+            if (session.getStatus() != ConnectionStatus.CONNECTED) continue;
+            futures.add(session.send(command, lane, () -> {},
+                    () -> Log.w(TAG, "Broadcast of " + command + " to " + session.getName() + " failed")));
+        }
+        return futures;
+    }
+
+    /* -------------------------------------------------------
+                          CLIENT CONNECT
+       ------------------------------------------------------- */
+
+    // Connects (or keeps) this robot's session and makes it the active one
+    public void connect(BluetoothDevice device) {
+        KnownRobot known = knownRobots.get(device.getAddress());
+        // A device from getRemoteDevice() has no name until it has been seen
+        String name = device.getName() != null ? device.getName() : known != null ? known.name : null;
+        RobotSession session = sessionFor(device.getAddress(), name);
+        active = session;
+        session.connect(device, known != null ? known.channel : KnownRobot.CHANNEL_UNKNOWN);
+        // Covers already connected, where connect() makes no transition to report
+        connectionStatus.postValue(session.getStatus());
+    }
+
+    /**
+     * Dials the robot this phone connected to most recently, preferring one
+     * that is still bonded, without waiting for a discovery scan. Returns the
+     * robot being dialled, or null if there is none to try.
+     */
+    public KnownRobot connectToLastRobot() {
+        if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) return null;
+        List<KnownRobot> robots = knownRobots.getAll();
+        if (robots.isEmpty()) return null;
+
+        KnownRobot target = robots.get(0);
+        Set<BluetoothDevice> bonded = bluetoothAdapter.getBondedDevices();
+        if (bonded != null) {
+            Set<String> bondedAddresses = new HashSet<>();
+            for (BluetoothDevice device : bonded) bondedAddresses.add(device.getAddress());
+            for (KnownRobot robot : robots) {
+                if (bondedAddresses.contains(robot.address)) {
+                    target = robot;
+                    break;
+                }
             }
-        }).start();
+        }
+        Log.d(TAG, "Dialling last known robot " + target.address + " (channel " + target.channel + ")");
+        connect(bluetoothAdapter.getRemoteDevice(target.address));
+        return target;
+    }
+
+    // Newest first
+    public List<KnownRobot> getKnownRobots() {
+        return knownRobots.getAll();
     }
 
     /* -------------------------------------------------------
@@ -110,9 +227,14 @@ public class BluetoothService {
        ------------------------------------------------------- */
 
     public void startServer() {
-        if (serverThread == null) {
-            serverThread = new BluetoothServerThread();
-            serverThread.start();
+        if (serverThread.get() != null) return;
+        BluetoothServerThread started = new BluetoothServerThread();
+        if (serverThread.compareAndSet(null, started)) {
+            for (RobotSession session : sessions.values()) session.setListening(true);
+            if (active == null) connectionStatus.postValue(ConnectionStatus.LISTENING);
+            started.start();
+        } else {
+            started.cancel();
         }
     }
 
@@ -122,12 +244,11 @@ public class BluetoothService {
         public BluetoothServerThread() {
             BluetoothServerSocket tmp = null;
             try {
-                tmp = bluetoothAdapter.listenUsingRfcommWithServiceRecord(SERVICE_NAME, APP_UUID);
+                tmp = bluetoothAdapter.listenUsingRfcommWithServiceRecord(SERVICE_NAME, RobotSession.APP_UUID);
             } catch (IOException e) {
                 Log.e(TAG, "Server socket creation failed", e);
             }
             serverSocket = tmp;
-            connectionStatus.postValue(ConnectionStatus.LISTENING);
         }
 
         @Override
@@ -136,103 +257,218 @@ public class BluetoothService {
             while (true) {
                 try {
                     clientSocket = serverSocket.accept(); // blocks until a device connects
-                    if (clientSocket != null) {
-                        Log.d(TAG, "Device connected: " + clientSocket.getRemoteDevice().getName());
-                        socket = clientSocket;
-                        connectionStatus.postValue(ConnectionStatus.CONNECTED);
-                        startIOThreads(clientSocket);
-                    }
                 } catch (IOException e) {
                     Log.e(TAG, "Accept failed", e);
                     break;
                 }
+                if (clientSocket == null) continue;
+                BluetoothDevice remote = clientSocket.getRemoteDevice();
+                Log.d(TAG, "Device connected: " + remote.getName());
+                // Each robot that dials in gets its own session; the first one becomes active
+                RobotSession session = sessionFor(remote.getAddress(), remote.getName());
+                if (active == null) active = session;
+                try {
+                    if (!session.accept(clientSocket)) {
+                        Log.w(TAG, remote.getAddress() + " already connected, incoming connection closed");
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Incoming connection failed", e);
+                    try { clientSocket.close(); } catch (IOException ignored) {}
+                }
             }
+            serverThread.compareAndSet(this, null);
+            for (RobotSession session : sessions.values()) session.setListening(false);
         }
 
         public void cancel() {
-            try { serverSocket.close(); } catch (IOException ignored) {}
+            try {
+                if (serverSocket != null) serverSocket.close();
+            } catch (IOException ignored) {}
         }
     }
 
     /* -------------------------------------------------------
-                          I/O THREADS
+                      ACTIVE ROBOT
        ------------------------------------------------------- */
 
-    private void startIOThreads(BluetoothSocket socket) throws IOException {
-        ioThread = new BluetoothIOThread(socket, dataListener);
-        ioThread.start();
+    ConnectionState<BluetoothDevice, BluetoothLink> getState() {
+        RobotSession session = active;
+        return session != null ? session.getState() : ConnectionState.initial();
+    }
 
-        sendThread = new BluetoothSendThread(socket);
-        sendThread.start();
+    public WireFormat getWireFormat() {
+        RobotSession session = active;
+        return session != null ? session.getWireFormat() : WireFormat.TEXT;
     }
 
-    /* -------------------------------------------------------
-                           SEND
-       ------------------------------------------------------- */
+    public boolean isReconnecting() {
+        RobotSession session = active;
+        return session != null && session.isReconnecting();
+    }
 
-    public void send(String message, Runnable onSuccess, Runnable onError) {
-        if (sendThread != null) {
-            try {
-                sendThread.enqueueMessage(message);
-                onSuccess.run();
-            } catch (Exception e) {
-                Log.e(TAG, "Send failed", e);
-                onError.run();
-            }
-        } else {
-            Log.w(TAG, "Send failed: no connection (sendThread is null)");
+    public ReconnectMetrics getReconnectMetrics() {
+        RobotSession session = active;
+        return session != null ? session.getReconnectMetrics() : ReconnectMetrics.EMPTY;
+    }
+
+    public SendFuture send(String message, Runnable onSuccess, Runnable onError) {
+        return send(message, SendLane.CONTROL, onSuccess, onError);
+    }
+
+    public SendFuture send(String message, SendLane lane, Runnable onSuccess, Runnable onError) {
+        RobotSession session = active;
+        if (session == null) return noRobot(onError);
+        return session.send(message, lane, onSuccess, onError);
+    }
+
+    public SendFuture send(byte[] frame, SendLane lane, Runnable onSuccess, Runnable onError) {
+        RobotSession session = active;
+        if (session == null) return noRobot(onError);
+        return session.send(frame, lane, onSuccess, onError);
+    }
+
+    private SendFuture noRobot(Runnable onError) {
+        SendFuture future = SendFuture.failed(new IOException("No connection"));
+        return future.whenDone(() -> {}, () -> {
+            Log.e(TAG, "Send failed", future.getFailure());
             onError.run();
-        }
+        });
+    }
+
+    public void sendLatest(byte[] frame) {
+        RobotSession session = active;
+        if (session != null) session.sendLatest(frame);
     }
 
+    public long getMaxHaltLatencyMs() {
+        RobotSession session = active;
+        return session != null ? session.getMaxHaltLatencyMs() : 0;
+    }
+
+    // Threads alive across every robot's pool
+    public int getLiveIoThreadCount() {
+        int count = 0;
+        for (RobotSession session : sessions.values()) count += session.getLiveIoThreadCount();
+        return count;
+    }
 
+    public SendMetrics getSendMetrics() {
+        RobotSession session = active;
+        return session != null ? session.getSendMetrics() : SendMetrics.EMPTY;
+    }
 
+    public RttMetrics getRttMetrics() {
+        RobotSession session = active;
+        return session != null ? session.getRttMetrics() : RttMetrics.EMPTY;
+    }
 
+    public void uploadField(String fieldJson, Runnable onStarted, Runnable onComplete, Runnable onError) {
+        RobotSession session = active;
+        if (session == null) {
+            Log.e(TAG, "Upload failed: no connection");
+            onError.run();
+            return;
+        }
+        session.uploadField(fieldJson, onStarted, onComplete, onError);
+    }
 
     /* -------------------------------------------------------
                         DISCONNECT
        ------------------------------------------------------- */
 
+    // Disconnects every robot and stops accepting new ones
     public void disconnect() {
+        BluetoothServerThread server = serverThread.getAndSet(null);
+        if (server != null) server.cancel();
 
-        if (ioThread != null) {
-            ioThread.close();
-            ioThread = null;
-        }
+        for (RobotSession session : sessions.values()) session.disconnect();
+        RobotSession session = active;
+        connectionStatus.postValue(session != null ? session.getStatus() : ConnectionStatus.DISCONNECTED);
+    }
 
-        if (sendThread != null) {
-            sendThread.close();
-            sendThread = null;
-        }
+    // Disconnects one robot; the others, and the active selection, are left alone
+    public void disconnect(String address) {
+        RobotSession session = sessions.get(address);
+        if (session != null) session.disconnect();
+    }
 
-        if (serverThread != null) {
-            serverThread.cancel();
-            serverThread = null;
+    /**
+     * Disconnects the robot at {@code address}, drops its session and shuts
+     * down that session's threads. If it was the active robot there is no
+     * active robot afterwards. Returns false if there was no such session.
+     */
+    public boolean removeRobot(String address) {
+        RobotSession session = sessions.remove(address);
+        if (session == null) return false;
+        session.close();
+        if (active == session) {
+            active = null;
+            connectionStatus.postValue(serverThread.get() != null
+                    ? ConnectionStatus.LISTENING : ConnectionStatus.DISCONNECTED);
         }
+        Log.d(TAG, "Removed " + session.getName());
+        return true;
+    }
 
-        closeSocket();
+    /* -------------------------------------------------------
+                     DATA LISTENER SETUP
+       ------------------------------------------------------- */
 
-        connectionStatus.postValue(ConnectionStatus.DISCONNECTED);
-        Log.d(TAG, "Disconnected");
+    public void setDataListener(DataListener listener) {
+        this.dataListener = listener;
     }
 
-    private void closeSocket() {
-        try {
-            if (socket != null) {
-                socket.close();
-                socket = null;
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Error closing socket", e);
+    private void deliver(TelemetryChannel channel, int value) {
+        DataListener listener = dataListener;
+        if (listener == null) return;
+
+        switch (channel) {
+            case BATTERY:
+                listener.onBatteryLevelReceived(value);
+                break;
+            case SPRAY:
+                listener.onSprayLevelReceived(value);
+                break;
+            case PROGRESS:
+                listener.onProgressLevelReceived(value);
+                break;
         }
     }
 
     /* -------------------------------------------------------
-                     DATA LISTENER SETUP
+                     SESSION JOURNAL
        ------------------------------------------------------- */
 
-    public void setDataListener(DataListener listener) {
-        this.dataListener = listener;
+    public void startJournal(String fieldName) {
+        RobotSession session = active;
+        if (session != null) session.startJournal(fieldName);
+    }
+
+    public void finishJournal() {
+        RobotSession session = active;
+        if (session != null) session.finishJournal();
+    }
+
+    public File getJournalDirectory() {
+        return new File(appContext.getFilesDir(), JOURNAL_DIRECTORY);
+    }
+
+    // The active robot's history; empty until one connects
+    public TelemetryHistory getTelemetryHistory() {
+        RobotSession session = active;
+        return session != null ? session.getTelemetryHistory() : EMPTY_HISTORY;
+    }
+
+    // New telemetry keys plug in here instead of another branch in the reader
+    public void registerTelemetryHandler(String key, TelemetryParser.Handler handler) {
+        extraHandlers.put(key, handler);
+        for (RobotSession session : sessions.values()) session.registerTelemetryHandler(key, handler);
+    }
+
+    public long getTelemetryErrorCount() {
+        long count = 0;
+        for (RobotSession session : sessions.values()) count += session.getTelemetryErrorCount();
+        return count;
     }
 
     public interface DataListener {
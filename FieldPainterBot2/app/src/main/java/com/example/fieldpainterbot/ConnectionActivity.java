@@ -52,9 +52,13 @@ public class ConnectionActivity extends AppCompatActivity {
             viewModel.stopDiscovery();
             Log.d("ConnectionActivity", "stopDiscovery() called");
             
-            // Reset connection status to DISCONNECTED for fresh start
-            viewModel.resetConnectionStatus();
-            Log.d("ConnectionActivity", "Connection status reset to DISCONNECTED");
+            // Reset connection status to DISCONNECTED for fresh start, unless the
+            // launch-time connect to the last robot is still running or already got through
+            if (!viewModel.isAutoConnecting()
+                    && viewModel.getConnectionStatus().getValue() != ConnectionStatus.CONNECTED) {
+                viewModel.resetConnectionStatus();
+                Log.d("ConnectionActivity", "Connection status reset to DISCONNECTED");
+            }
             
             bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
             Log.d("ConnectionActivity", "BluetoothAdapter obtained");
@@ -189,8 +193,9 @@ public class ConnectionActivity extends AppCompatActivity {
             }
         }
 
-        // If we reach here → permissions OK
-        viewModel.startDiscovery();
+        // If we reach here → permissions OK. No scan while the last robot is being
+        // dialled; the ViewModel starts one if that fails.
+        if (!viewModel.isAutoConnecting()) viewModel.startDiscovery();
     }
 
     @Override
@@ -0,0 +1,167 @@
+package com.example.fieldpainterbot;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads for the Bluetooth connection: the blocking connect, the reader and
+ * the writer. The same pool threads are reused from one connection to the
+ * next instead of starting fresh ones, and {@link #awaitIdle} lets the caller
+ * make sure the previous connection's tasks have finished before the next
+ * connection's start.
+ */
+public class ConnectionExecutor implements Executor {
+
+    private static final String TAG = "ConnectionExecutor";
+
+    // connect + reader + writer; more only while a stuck task is still winding down
+    static final int CORE_THREADS = 3;
+    private static final int MAX_THREADS = 8;
+    private static final long KEEP_ALIVE_S = 30;
+
+    private final ThreadPoolExecutor pool;
+    private final AtomicInteger liveThreads = new AtomicInteger();
+    private final AtomicInteger createdThreads = new AtomicInteger();
+
+    // Tasks submitted and not yet finished, guarded by itself
+    private final List<Task> running = new ArrayList<>();
+
+    private final class Task implements Runnable {
+        final Runnable body;
+        volatile Thread thread;
+
+        Task(Runnable body) {
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                body.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Connection task failed", e);
+            } finally {
+                thread = null;
+                synchronized (running) {
+                    running.remove(this);
+                    running.notifyAll();
+                }
+            }
+        }
+    }
+
+    public ConnectionExecutor() {
+        pool = new ThreadPoolExecutor(CORE_THREADS, MAX_THREADS, KEEP_ALIVE_S, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+                    Thread thread = new Thread(() -> {
+                        liveThreads.incrementAndGet();
+                        try {
+                            r.run();
+                        } finally {
+                            liveThreads.decrementAndGet();
+                        }
+                    }, "BluetoothIO-" + createdThreads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Task task = new Task(command);
+        synchronized (running) {
+            running.add(task);
+        }
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            synchronized (running) {
+                running.remove(task);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until every task except the caller's own has returned. Tasks
+     * still running after the timeout are interrupted and waited for once
+     * more; returns false if any of them is still stuck after that.
+     */
+    public boolean awaitIdle(long timeoutMs) {
+        if (awaitOthers(timeoutMs)) return true;
+
+        List<Task> stuck;
+        synchronized (running) {
+            stuck = new ArrayList<>(running);
+        }
+        for (Task task : stuck) {
+            Thread thread = task.thread;
+            if (thread != null && thread != Thread.currentThread()) {
+                Log.w(TAG, "Interrupting " + thread.getName() + " left over from the last connection");
+                thread.interrupt();
+            }
+        }
+        return awaitOthers(timeoutMs);
+    }
+
+    private boolean awaitOthers(long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        synchronized (running) {
+            while (true) {
+                int others = 0;
+                for (Task task : running) {
+                    if (task.thread != Thread.currentThread()) others++;
+                }
+                if (others == 0) return true;
+
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) return false;
+                try {
+                    running.wait(remainingMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets the threads exit once the tasks already running return, and turns
+     * away any new ones. For a robot that is being forgotten, not for a
+     * reconnect, which should keep reusing the same threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    /** Threads this executor currently has alive, busy or idle. */
+    public int getLiveThreadCount() {
+        return liveThreads.get();
+    }
+
+    /** Connection tasks currently running. */
+    public int getActiveTaskCount() {
+        synchronized (running) {
+            return running.size();
+        }
+    }
+
+    /** Threads ever started; stays flat across reconnects while threads are being reused. */
+    public int getCreatedThreadCount() {
+        return createdThreads.get();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.fieldpainterbot;
+
+import java.io.Closeable;
+
+/**
+ * One immutable snapshot of the connection lifecycle. The status, the device
+ * and the link always belong together; {@link ConnectionStateMachine} swaps
+ * whole snapshots, so a reader never sees a socket from one connection with
+ * the status of another.
+ *
+ * <pre>
+ *   DISCONNECTED / LISTENING  --connect-->  CONNECTING  --connected-->  CONNECTED
+ *             ^      ^                         |   ^                       |
+ *             |      +-------- failed ---------+   +------ link lost ------+  (client: reconnect)
+ *             +--------------------- link lost (server) / disconnect ------+
+ *   DISCONNECTED / LISTENING  --accepted-->  CONNECTED
+ * </pre>
+ */
+public final class ConnectionState<D, L extends Closeable> {
+
+    public final ConnectionStatus status;
+    // Bumped by every connect, accept and reconnect, so a stale attempt can't complete
+    public final long attempt;
+    // Robot being connected or reconnected to; null in server mode and when disconnected
+    public final D device;
+    // CONNECTING: the socket being connected (or null); CONNECTED: the live link
+    public final L link;
+    // Whether the server socket is accepting; decides where a dropped link goes back to
+    public final boolean listening;
+
+    ConnectionState(ConnectionStatus status, long attempt, D device, L link, boolean listening) {
+        this.status = status;
+        this.attempt = attempt;
+        this.device = device;
+        this.link = link;
+        this.listening = listening;
+    }
+
+    static <D, L extends Closeable> ConnectionState<D, L> initial() {
+        return new ConnectionState<>(ConnectionStatus.DISCONNECTED, 0, null, null, false);
+    }
+
+    ConnectionState<D, L> idle(boolean listening) {
+        return new ConnectionState<>(listening ? ConnectionStatus.LISTENING : ConnectionStatus.DISCONNECTED,
+                attempt, null, null, listening);
+    }
+
+    boolean isIdle() {
+        return status != ConnectionStatus.CONNECTING && status != ConnectionStatus.CONNECTED;
+    }
+
+    @Override
+    public String toString() {
+        return status + "#" + attempt + (device != null ? " to " + device : "")
+                + (listening ? " (listening)" : "");
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.fieldpainterbot;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free connection lifecycle. Every transition is a compare-and-set of
+ * the whole {@link ConnectionState}, retried until it either succeeds or is
+ * no longer allowed, so connect, accept, link loss and disconnect can race
+ * from any thread without a lock.
+ *
+ * Whoever removes a link from the state closes it: the machine closes links
+ * it drops, and closes a link it was offered but could not install. Callers
+ * never close a link they handed over.
+ */
+public class ConnectionStateMachine<D, L extends Closeable> {
+
+    private static final String TAG = "ConnectionStateMachine";
+
+    public interface Listener<D, L extends Closeable> {
+        // Runs on the thread that made the transition
+        void onTransition(ConnectionState<D, L> state);
+    }
+
+    private final AtomicReference<ConnectionState<D, L>> state =
+            new AtomicReference<>(ConnectionState.initial());
+    private final Listener<D, L> listener;
+
+    public ConnectionStateMachine(Listener<D, L> listener) {
+        this.listener = listener;
+    }
+
+    /** Current snapshot; never blocks. */
+    public ConnectionState<D, L> get() {
+        return state.get();
+    }
+
+    /**
+     * Starts connecting to {@code device}. Returns the attempt id, or -1 if
+     * already connected or already connecting to the same device (a double
+     * tap). Connecting to a different device supersedes the current attempt.
+     */
+    public long beginConnect(D device) {
+        while (true) {
+            ConnectionState<D, L> current = state.get();
+            if (current.status == ConnectionStatus.CONNECTED) return -1;
+            if (current.status == ConnectionStatus.CONNECTING && device.equals(current.device)) return -1;
+
+            ConnectionState<D, L> next = new ConnectionState<>(ConnectionStatus.CONNECTING,
+                    current.attempt + 1, device, null, current.listening);
+            if (swap(current, next)) {
+                close(current.link);
+                return next.attempt;
+            }
+        }
+    }
+
+    /**
+     * Records the socket of {@code attempt} while it connects, so a disconnect
+     * can abort it. Returns false (and closes it) if the attempt is stale.
+     */
+    public boolean attach(long attempt, L pending) {
+        while (true) {
+            ConnectionState<D, L> current = state.get();
+            if (!isAttempt(current, attempt)) {
+                close(pending);
+                return false;
+            }
+            ConnectionState<D, L> next = new ConnectionState<>(ConnectionStatus.CONNECTING,
+                    attempt, current.device, pending, current.listening);
+            if (swap(current, next)) {
+                close(current.link == pending ? null : current.link);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Completes {@code attempt} with a live link. The attached pending link
+     * is taken to be part of {@code link} and is not closed separately.
+     * Returns false (and closes {@code link}) if the attempt is stale.
+     */
+    public boolean connected(long attempt, L link) {
+        while (true) {
+            ConnectionState<D, L> current = state.get();
+            if (!isAttempt(current, attempt)) {
+                close(link);
+                return false;
+            }
+            ConnectionState<D, L> next = new ConnectionState<>(ConnectionStatus.CONNECTED,
+                    attempt, current.device, link, current.listening);
+            if (swap(current, next)) return true;
+        }
+    }
+
+    /**
+     * Installs a link the server socket accepted. Only allowed while idle;
+     * returns false (and closes {@code link}) while connecting or connected.
+     */
+    public boolean accepted(L link) {
+        while (true) {
+            ConnectionState<D, L> current = state.get();
+            if (!current.isIdle()) {
+                close(link);
+                return false;
+            }
+            ConnectionState<D, L> next = new ConnectionState<>(ConnectionStatus.CONNECTED,
+                    current.attempt + 1, null, link, current.listening);
+            if (swap(current, next)) return true;
+        }
+    }
+
+    /**
+     * Fails {@code attempt}. With {@code retry} the state stays CONNECTING for
+     * the next try of the same attempt; otherwise it goes back to idle.
+     * Returns false if the attempt is stale.
+     */
+    public boolean attemptFailed(long attempt, boolean retry) {
+        while (true) {
+            ConnectionState<D, L> current = state.get();
+            if (!isAttempt(current, attempt)) return false;
+            ConnectionState<D, L> next = retry
+                    ? new ConnectionState<>(ConnectionStatus.CONNECTING, attempt, current.device, null, current.listening)
+                    : current.idle(current.listening);
+            if (swap(current, next)) {
+                close(current.link);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The live {@code link} dropped by itself. A client connection moves to
+     * CONNECTING with a new attempt for its device, a server one back to
+     * idle. Returns the new state, or null if {@code link} is no longer the
+     * live one (it was already replaced or disconnected).
+     */
+    public ConnectionState<D, L> linkLost(L link) {
+        while (true) {
+            ConnectionState<D, L> current = state.get();
+            if (current.status != ConnectionStatus.CONNECTED || current.link != link) return null;
+            ConnectionState<D, L> next = current.device != null
+                    ? new ConnectionState<>(ConnectionStatus.CONNECTING, current.attempt + 1,
+                            current.device, null, current.listening)
+                    : current.idle(current.listening);
+            if (swap(current, next)) {
+                close(link);
+                return next;
+            }
+        }
+    }
+
+    /** Marks the server socket open or closed; an idle state follows it. */
+    public void setListening(boolean listening) {
+        while (true) {
+            ConnectionState<D, L> current = state.get();
+            if (current.listening == listening) return;
+            ConnectionState<D, L> next = current.isIdle()
+                    ? current.idle(listening)
+                    : new ConnectionState<>(current.status, current.attempt, current.device, current.link, listening);
+            if (swap(current, next)) return;
+        }
+    }
+
+    /** Drops whatever is connected or connecting and stops listening. Returns the previous state. */
+    public ConnectionState<D, L> disconnect() {
+        while (true) {
+            ConnectionState<D, L> current = state.get();
+            // A fresh attempt id also invalidates anything still in flight
+            ConnectionState<D, L> next = new ConnectionState<>(ConnectionStatus.DISCONNECTED,
+                    current.attempt + 1, null, null, false);
+            if (swap(current, next)) {
+                close(current.link);
+                return current;
+            }
+        }
+    }
+
+    private static boolean isAttempt(ConnectionState<?, ?> state, long attempt) {
+        return state.status == ConnectionStatus.CONNECTING && state.attempt == attempt;
+    }
+
+    private boolean swap(ConnectionState<D, L> current, ConnectionState<D, L> next) {
+        if (!state.compareAndSet(current, next)) return false;
+        if (listener != null) listener.onTransition(next);
+        return true;
+    }
+
+    private static void close(Closeable link) {
+        if (link == null) return;
+        try {
+            link.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing link", e);
+        }
+    }
+}
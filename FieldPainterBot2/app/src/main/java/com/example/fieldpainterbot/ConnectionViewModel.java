@@ -7,51 +7,88 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
-import org.json.JSONObject;
-
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ConnectionViewModel extends AndroidViewModel {
 
+    private static final String TAG = "ConnectionViewModel";
+    // Reordered patterns kept, one per field body; a few fields are all a session uses
+    private static final int MAX_OPTIMIZED = 8;
+
     private static ConnectionViewModel instance;
 
-    private final MutableLiveData<List<BluetoothDevice>> devices = new MutableLiveData<>();
+    private final MutableLiveData<List<DiscoveredDevice>> devices = new MutableLiveData<>();
+    private final DiscoveryStore discoveryStore = new DiscoveryStore(devices);
     private final MutableLiveData<ConnectionStatus> connectionStatus = new MutableLiveData<>();
-    private final MutableLiveData<Integer> batteryLevel = new MutableLiveData<>();
-    private final MutableLiveData<Integer> sprayLevel = new MutableLiveData<>();
-    private final MutableLiveData<Integer> progressLevel = new MutableLiveData<>();
+    private final MutableLiveData<TelemetrySnapshot> telemetry = new MutableLiveData<>();
+    private final TelemetryPublisher telemetryPublisher = new TelemetryPublisher(telemetry);
 
     private final BluetoothService bluetoothService;
+    private final ManualDriveChannel manualDrive;
     private final BluetoothAdapter bluetoothAdapter;
-    private final List<BluetoothDevice> discoveredDevices = new ArrayList<>();
+
+    // Parses and reorders fields off the network threads; one at a time is plenty
+    private final ExecutorService patternWorker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "PatternOptimizer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Keyed by PatternCache.sha256Hex of the body as fetched; the optimizer gives the same answer every time
+    private final Map<String, PatternOptimizer.Result> optimized =
+            new LinkedHashMap<String, PatternOptimizer.Result>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PatternOptimizer.Result> eldest) {
+                    return size() > MAX_OPTIMIZED;
+                }
+            };
+
+    // Process start, for logging how long it takes to get a robot connected
+    private final long launchElapsedMs = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+            ? Process.getStartElapsedRealtime() : SystemClock.elapsedRealtime();
+    // Main thread only
+    private boolean launchConnectLogged = false;
+    private boolean autoConnecting = false;
 
     private ConnectionViewModel(@NonNull Application application) {
         super(application);
 
         bluetoothService = BluetoothService.getInstance(application, devices, connectionStatus);
         bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        manualDrive = new ManualDriveChannel(bluetoothService);
 
         if (bluetoothService != null) {
             bluetoothService.setDataListener(new BluetoothService.DataListener() {
                 @Override
-                public void onBatteryLevelReceived(int level) { batteryLevel.postValue(level); }
+                public void onBatteryLevelReceived(int level) { telemetryPublisher.updateBatteryLevel(level); }
                 @Override
-                public void onSprayLevelReceived(int level) { sprayLevel.postValue(level); }
+                public void onSprayLevelReceived(int level) { telemetryPublisher.updateSprayLevel(level); }
                 @Override
-                public void onProgressLevelReceived(int level) { progressLevel.postValue(level); }
+                public void onProgressLevelReceived(int level) { telemetryPublisher.updateProgressLevel(level); }
             });
         }
 
         registerBluetoothStateReceiver(application);
         registerDeviceDiscoveryReceiver(application);
+        // Lives as long as the process, like this ViewModel
+        connectionStatus.observeForever(this::onConnectionStatus);
     }
 
     public static synchronized ConnectionViewModel getInstance(@NonNull Application application) {
@@ -94,10 +131,10 @@ public class ConnectionViewModel extends AndroidViewModel {
                     // Only add devices with a name and not "Unnamed Device"
                     if (device != null
                             && device.getName() != null
-                            && !device.getName().equals("Unnamed Device")
-                            && !discoveredDevices.contains(device)) {
-                        discoveredDevices.add(device);
-                        devices.postValue(new ArrayList<>(discoveredDevices));
+                            && !device.getName().equals("Unnamed Device")) {
+                        // Repeat sightings only update the RSSI; publishes are batched by the store
+                        int rssi = intent.getShortExtra(BluetoothDevice.EXTRA_RSSI, Short.MIN_VALUE);
+                        discoveryStore.onFound(device, device.getName(), rssi);
                     }
                 }
             }
@@ -106,21 +143,38 @@ public class ConnectionViewModel extends AndroidViewModel {
     }
 
 
-    public LiveData<List<BluetoothDevice>> getDevices() { return devices; }
+    public LiveData<List<DiscoveredDevice>> getDevices() { return devices; }
     public LiveData<ConnectionStatus> getConnectionStatus() { return connectionStatus; }
-    public LiveData<Integer> getBatteryLevel() { return batteryLevel; }
-    public LiveData<Integer> getSprayLevel() { return sprayLevel; }
-    public LiveData<Integer> getProgressLevel() { return progressLevel; }
+    public LiveData<TelemetrySnapshot> getTelemetry() { return telemetry; }
+
+    // Battery/paint trends for the current job (see TelemetryHistory)
+    public TelemetryHistory getTelemetryHistory() { return bluetoothService.getTelemetryHistory(); }
+
+    // Link health of the active robot, for the debug screen
+    public RttMetrics getRttMetrics() { return bluetoothService.getRttMetrics(); }
+    public SendMetrics getSendMetrics() { return bluetoothService.getSendMetrics(); }
+    public ReconnectMetrics getReconnectMetrics() { return bluetoothService.getReconnectMetrics(); }
+    public HttpMetrics getHttpMetrics() { return BackendHttp.getMetrics(); }
 
     public void startDiscovery() {
         if (bluetoothAdapter != null && bluetoothAdapter.isEnabled()) {
-            discoveredDevices.clear();
-            devices.postValue(new ArrayList<>());
+            discoveryStore.clear();
+            discoveryStore.setKnownRobots(knownRobotAddresses());
             bluetoothAdapter.startDiscovery();
             Log.d("DISCOVERY", "Bluetooth discovery started");
         }
     }
 
+    // Robots this app has connected to, now or on an earlier run, are listed first
+    private List<String> knownRobotAddresses() {
+        List<String> addresses = new ArrayList<>();
+        for (RobotSession robot : getRobots()) addresses.add(robot.getAddress());
+        if (bluetoothService != null) {
+            for (KnownRobot robot : bluetoothService.getKnownRobots()) addresses.add(robot.address);
+        }
+        return addresses;
+    }
+
     // used to stop discovery before refresh
     public void stopDiscovery() {
         if (bluetoothService != null) bluetoothService.stopDiscovery();
@@ -138,16 +192,75 @@ public class ConnectionViewModel extends AndroidViewModel {
         if (bluetoothService != null) bluetoothService.disconnect();
     }
 
+    /* ------------------ KNOWN ROBOTS ------------------ */
+
+    /**
+     * Dials the last robot used straight away, at app start. Discovery only
+     * runs if that connection fails. Main thread.
+     */
+    public void autoConnectToLastRobot() {
+        if (bluetoothService == null || autoConnecting) return;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                && ContextCompat.checkSelfPermission(getApplication(), android.Manifest.permission.BLUETOOTH_CONNECT)
+                        != PackageManager.PERMISSION_GRANTED) {
+            return;  // ConnectionActivity asks for it and scans instead
+        }
+        if (connectionStatus.getValue() == ConnectionStatus.CONNECTED) return;
+        KnownRobot robot = bluetoothService.connectToLastRobot();
+        autoConnecting = robot != null;
+    }
+
+    // True while the launch-time connect to the last robot is still in flight
+    public boolean isAutoConnecting() {
+        return autoConnecting;
+    }
+
+    private void onConnectionStatus(ConnectionStatus status) {
+        if (status == ConnectionStatus.CONNECTED) {
+            if (!launchConnectLogged) {
+                launchConnectLogged = true;
+                Log.i(TAG, "App start to CONNECTED: " + (SystemClock.elapsedRealtime() - launchElapsedMs)
+                        + " ms" + (autoConnecting ? " (known robot, no scan)" : " (picked from scan)"));
+            }
+            autoConnecting = false;
+        } else if (autoConnecting
+                && (status == ConnectionStatus.DISCONNECTED || status == ConnectionStatus.LISTENING)) {
+            // The remembered robot didn't answer; fall back to a scan
+            Log.d(TAG, "Known robot unreachable, starting discovery");
+            autoConnecting = false;
+            startDiscovery();
+        }
+    }
+
+    /* ------------------ MULTIPLE ROBOTS ------------------ */
+    public List<RobotSession> getRobots() {
+        return bluetoothService != null ? bluetoothService.getSessions() : new ArrayList<>();
+    }
+
+    public RobotSession getActiveRobot() {
+        return bluetoothService != null ? bluetoothService.getActiveSession() : null;
+    }
+
+    // Switches which robot the screens follow; nothing is reconnected
+    public boolean selectRobot(String address) {
+        return bluetoothService != null && bluetoothService.selectRobot(address);
+    }
+
+    // Disconnects and forgets this robot for the rest of the run, threads and all
+    public boolean removeRobot(String address) {
+        return bluetoothService != null && bluetoothService.removeRobot(address);
+    }
+
     /* ------------------ UTILITY ------------------ */
     private void runOnMain(Runnable runnable) {
         if (runnable == null) return;
-        android.os.Handler mainHandler = new android.os.Handler(getApplication().getMainLooper());
-        mainHandler.post(runnable);
+        MainThreadExecutor.get().execute(runnable);
     }
 
     public void fetchFieldAndSend(String fieldName, Runnable onComplete, Runnable onError) {
 
-        FieldDatabaseConnection db = new FieldDatabaseConnection();
+        // Shared instance: usually answered from the bundle prefetched at launch
+        FieldDatabaseConnection db = FieldDatabaseConnection.get(getApplication());
 
         db.fetchData(fieldName, data -> {
 
@@ -156,36 +269,84 @@ public class ConnectionViewModel extends AndroidViewModel {
                 return;
             }
 
-            bluetoothService.send(
-                    data,
-                    () -> runOnMain(onComplete),
-                    () -> runOnMain(onError)
-            );
+            // Not on OkHttp's dispatcher thread, which other downloads are waiting for
+            patternWorker.execute(() -> {
+                String pattern = reorderForSpeed(fieldName, data);
+                bluetoothService.startJournal(fieldName);
+
+                // Streamed in chunks: the robot starts on the first instructions while the rest follow
+                bluetoothService.uploadField(
+                        pattern,
+                        () -> runOnMain(onComplete),
+                        () -> Log.d("SEND", "Field " + fieldName + " fully received by robot"),
+                        () -> runOnMain(onError)
+                );
+            });
 
+        }, error -> {
+            // Without this the Start button would sit on "Sending" forever
+            Log.e("SEND", "Could not get field " + fieldName + ": " + error);
+            runOnMain(onError);
         });
     }
 
-    public void sendControlCommand(String command, String state) {
+    // Same lines, less unpainted driving in between; the authored order if that isn't faster
+    private String reorderForSpeed(String fieldName, String data) {
+        String sha256 = PatternCache.sha256Hex(data);
+        PatternOptimizer.Result result;
+        synchronized (optimized) {
+            result = optimized.get(sha256);
+        }
+        if (result != null) {
+            Log.d("SEND", "Field " + fieldName + ": reusing " + result);
+            return result.reordered ? result.pattern.toJson() : data;
+        }
         try {
-            JSONObject obj = new JSONObject();
-            obj.put("command", command);
-            obj.put("state", state);
+            result = PatternOptimizer.optimize(FieldPatternParser.parse(data));
+            Log.d("SEND", "Field " + fieldName + ": " + result);
+            synchronized (optimized) {
+                optimized.put(sha256, result);
+            }
+            return result.reordered ? result.pattern.toJson() : data;
+        } catch (IOException | RuntimeException e) {
+            Log.w("SEND", "Sending " + fieldName + " in its authored order", e);
+            return data;
+        }
+    }
 
-            bluetoothService.send(
-                    obj.toString(),
-                    () -> Log.d("SEND", "Sent: " + obj),
-                    () -> Log.e("SEND", "Failed to send: " + obj)
-            );
+    /* ------------------ MANUAL DRIVE ------------------ */
+    public void startManualDrive() {
+        manualDrive.start();
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    public void stopManualDrive() {
+        manualDrive.stop();
+    }
+
+    public void pressDriveButton(String command) {
+        manualDrive.press(ManualDriveChannel.buttonFor(command));
+    }
+
+    public void releaseDriveButton(String command) {
+        manualDrive.release(ManualDriveChannel.buttonFor(command));
     }
+
+    /**
+     * Sends HALT to every connected robot on the safety lane, not just the
+     * active one. Returns how many robots it went to.
+     */
+    public int haltAllRobots() {
+        if (bluetoothService == null) return 0;
+        return bluetoothService.broadcast("HALT", SendLane.SAFETY).size();
+    }
+
     public void sendHaltCommand(String command) {
         try {
 
+            // Safety lane: goes out ahead of any queued field data
             bluetoothService.send(
                     command,
+                    SendLane.SAFETY,
                     () -> Log.d("SEND", "Sent: " + command),
                     () -> Log.e("SEND", "Failed to send: " + command)
             );
@@ -5,6 +5,7 @@ import android.os.Bundle;
 import android.util.Log;
 import android.widget.ImageView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
@@ -12,6 +13,8 @@ import androidx.lifecycle.ViewModelStoreOwner;
 
 import com.google.android.material.card.MaterialCardView;
 
+import java.util.List;
+
 public class DashboardActivity extends AppCompatActivity {
     private ImageView batteryIcon;
     private TextView percentLevel;
@@ -47,33 +50,11 @@ public class DashboardActivity extends AppCompatActivity {
         });
 
 
-        //  Observe battery level updates in real-time
-        viewModel.getBatteryLevel().observe(this, level -> {
-            if (level != null) {
-                updateBatteryUI(level);
-                Log.d("Battery", "Battery updated: " + level);
-            }
-            else {
-                Log.d("Bluetooth", "Disconnected");
-                // Optional: fallback battery level if disconnected
-                updateBatteryUI(70);
-            }
-        });
-
-
         sprayIcon = findViewById(R.id.spray_icon);
         percentSpray = findViewById(R.id.sprayLevel);
-        viewModel.getSprayLevel().observe(this, level -> {
-            if (level != null) {
-                updateSprayUI(level);
-                Log.d("Spray", "Spray updated: " + level);
-            }
-            else {
-                Log.d("Bluetooth", "Disconnected");
-                // Optional: fallback battery level if disconnected
-                updateBatteryUI(100);
-            }
-        });
+
+        //  Observe robot telemetry in real-time (one conflated snapshot, at most 10 Hz)
+        viewModel.getTelemetry().observe(this, this::renderTelemetry);
 
         // Set up Bluetooth icon click → back to connection screen
         bluetoothIcon.setOnClickListener(v -> {
@@ -81,6 +62,22 @@ public class DashboardActivity extends AppCompatActivity {
             startActivity(intent);
         });
 
+        // Long press → link round-trip and queue metrics
+        bluetoothIcon.setOnLongClickListener(v -> {
+            startActivity(new Intent(DashboardActivity.this, LinkDebugActivity.class));
+            return true;
+        });
+
+        // Tap the title to switch to the next connected robot without reconnecting
+        TextView title = findViewById(R.id.DashboardText);
+        title.setOnClickListener(v -> showNextRobot(viewModel));
+
+        // Long press the title to drop the robot shown, e.g. one taken off the field
+        title.setOnLongClickListener(v -> {
+            removeActiveRobot(viewModel);
+            return true;
+        });
+
         // Set up clickable cards
         MaterialCardView card1 = findViewById(R.id.header_clickable_1);
         MaterialCardView card2 = findViewById(R.id.header_clickable_2);
@@ -94,6 +91,31 @@ public class DashboardActivity extends AppCompatActivity {
         });
     }
 
+    private void showNextRobot(ConnectionViewModel viewModel) {
+        List<RobotSession> robots = viewModel.getRobots();
+        if (robots.size() < 2) return;
+
+        RobotSession current = viewModel.getActiveRobot();
+        int next = (robots.indexOf(current) + 1) % robots.size();
+        RobotSession robot = robots.get(next);
+        if (viewModel.selectRobot(robot.getAddress())) {
+            Toast.makeText(this, getString(R.string.robot_selected, robot.getName()), Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void removeActiveRobot(ConnectionViewModel viewModel) {
+        RobotSession robot = viewModel.getActiveRobot();
+        if (robot == null || !viewModel.removeRobot(robot.getAddress())) return;
+        Toast.makeText(this, getString(R.string.robot_removed, robot.getName()), Toast.LENGTH_SHORT).show();
+        showNextRobot(viewModel);
+    }
+
+    private void renderTelemetry(TelemetrySnapshot snapshot) {
+        if (snapshot == null) return;
+        if (snapshot.hasBatteryLevel()) updateBatteryUI(snapshot.getBatteryLevel());
+        if (snapshot.hasSprayLevel()) updateSprayUI(snapshot.getSprayLevel());
+    }
+
     /**
      * Helper function to update battery icon + text based on current level
      */
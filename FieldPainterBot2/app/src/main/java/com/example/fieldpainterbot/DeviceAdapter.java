@@ -1,33 +1,37 @@
 package com.example.fieldpainterbot;
 
-import android.annotation.SuppressLint;
-import android.bluetooth.BluetoothDevice;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
-import java.util.List;
+// Lists are diffed off the main thread (AsyncListDiffer), so only rows that changed are rebound
+public class DeviceAdapter extends ListAdapter<DiscoveredDevice, DeviceAdapter.ViewHolder> {
+
+    private static final DiffUtil.ItemCallback<DiscoveredDevice> DIFF = new DiffUtil.ItemCallback<DiscoveredDevice>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull DiscoveredDevice oldItem, @NonNull DiscoveredDevice newItem) {
+            return oldItem.getAddress().equals(newItem.getAddress());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull DiscoveredDevice oldItem, @NonNull DiscoveredDevice newItem) {
+            return oldItem.sameContents(newItem);
+        }
+    };
 
-public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.ViewHolder> {
-    private final List<BluetoothDevice> devices = new ArrayList<>();
     private final OnDeviceClickListener onClick;
 
     public DeviceAdapter(OnDeviceClickListener onClick) {
+        super(DIFF);
         this.onClick = onClick;
     }
 
-    @SuppressLint("NotifyDataSetChanged")
-    public void submitList(List<BluetoothDevice> newDevices) {
-        devices.clear();
-        devices.addAll(newDevices);
-        notifyDataSetChanged();
-    }
-
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
@@ -38,7 +42,7 @@ public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.ViewHolder
 
     @Override
     public void onBindViewHolder(ViewHolder holder, int position) {
-        BluetoothDevice device = devices.get(position);
+        DiscoveredDevice item = getItem(position);
         String name;
 
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.S &&
@@ -46,23 +50,27 @@ public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.ViewHolder
                         != android.content.pm.PackageManager.PERMISSION_GRANTED) {
             name = "Permission Required";
         } else {
-            name = device.getName();
+            name = item.getName();
         }
 
         holder.textView.setText(name != null ? name : "Unnamed Device");
-        holder.itemView.setOnClickListener(v -> onClick.onDeviceClick(device));
-    }
 
-    @Override
-    public int getItemCount() {
-        return devices.size();
+        String signal = item.hasRssi()
+                ? holder.itemView.getContext().getString(R.string.device_rssi, item.getRssi())
+                : "";
+        holder.detailView.setText(item.isKnownRobot()
+                ? holder.itemView.getContext().getString(R.string.device_known_robot, signal)
+                : signal);
+        holder.itemView.setOnClickListener(v -> onClick.onDeviceClick(item.getDevice()));
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
         TextView textView;
+        TextView detailView;
         ViewHolder(View itemView) {
             super(itemView);
             textView = itemView.findViewById(R.id.deviceName);
+            detailView = itemView.findViewById(R.id.deviceDetail);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,53 @@
+package com.example.fieldpainterbot;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * One row of the discovery list: a device as last seen by a scan.
+ */
+public final class DiscoveredDevice {
+
+    // Short.MIN_VALUE is what ACTION_FOUND reports when the RSSI is missing
+    public static final int RSSI_UNKNOWN = Short.MIN_VALUE;
+
+    private final BluetoothDevice device;
+    private final String address;
+    private final String name;
+    private final int rssi;
+    private final long lastSeenMs;
+    private final boolean knownRobot;
+
+    DiscoveredDevice(BluetoothDevice device, String address, String name, int rssi,
+                     long lastSeenMs, boolean knownRobot) {
+        this.device = device;
+        this.address = address;
+        this.name = name;
+        this.rssi = rssi;
+        this.lastSeenMs = lastSeenMs;
+        this.knownRobot = knownRobot;
+    }
+
+    public BluetoothDevice getDevice() { return device; }
+    public String getAddress() { return address; }
+    public String getName() { return name; }
+    public int getRssi() { return rssi; }
+    public boolean hasRssi() { return rssi != RSSI_UNKNOWN; }
+    // SystemClock.elapsedRealtime() of the latest sighting
+    public long getLastSeenMs() { return lastSeenMs; }
+    public boolean isKnownRobot() { return knownRobot; }
+
+    DiscoveredDevice withSighting(String name, int rssi, long lastSeenMs) {
+        return new DiscoveredDevice(device, address, name != null ? name : this.name,
+                rssi != RSSI_UNKNOWN ? rssi : this.rssi, lastSeenMs, knownRobot);
+    }
+
+    DiscoveredDevice withKnownRobot(boolean knownRobot) {
+        return new DiscoveredDevice(device, address, name, rssi, lastSeenMs, knownRobot);
+    }
+
+    // What the row shows; last-seen time alone doesn't need a rebind
+    boolean sameContents(DiscoveredDevice other) {
+        return rssi == other.rssi && knownRobot == other.knownRobot
+                && (name == null ? other.name == null : name.equals(other.name));
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.fieldpainterbot;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.SystemClock;
+
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Devices found by the current scan, keyed by address, with their latest
+ * RSSI and sighting time. Sightings come in from the discovery receiver as
+ * fast as the radio reports them; the sorted list is published to the UI at
+ * most once per interval, and only when a row would actually change.
+ *
+ * Known robots are listed first, strongest signal first. Everything else
+ * keeps the order it was found in, so rows don't jump around as RSSI jitters.
+ */
+public class DiscoveryStore {
+
+    public static final long DEFAULT_INTERVAL_MS = 250;
+
+    private static final Comparator<DiscoveredDevice> ORDER = (a, b) -> {
+        if (a.isKnownRobot() != b.isKnownRobot()) return a.isKnownRobot() ? -1 : 1;
+        if (a.isKnownRobot()) return Integer.compare(b.getRssi(), a.getRssi());
+        return 0;  // stable sort: first seen stays first
+    };
+
+    private final MutableLiveData<List<DiscoveredDevice>> devices;
+    private final long intervalMs;
+    private final Object lock = new Object();
+
+    // guarded by lock; insertion order is the order devices were first seen
+    private final LinkedHashMap<String, DiscoveredDevice> byAddress = new LinkedHashMap<>();
+    private final Set<String> knownRobots = new HashSet<>();
+    private boolean publishScheduled = false;
+    private long lastPublishUptime = 0;
+
+    private final Runnable publishRunnable = this::publish;
+
+    public DiscoveryStore(MutableLiveData<List<DiscoveredDevice>> devices) {
+        this(devices, DEFAULT_INTERVAL_MS);
+    }
+
+    public DiscoveryStore(MutableLiveData<List<DiscoveredDevice>> devices, long intervalMs) {
+        this.devices = devices;
+        this.intervalMs = intervalMs;
+    }
+
+    /** Called for every ACTION_FOUND; cheap enough to run on the receiver's thread. */
+    public void onFound(BluetoothDevice device, String name, int rssi) {
+        synchronized (lock) {
+            if (record(device, device.getAddress(), name, rssi, SystemClock.elapsedRealtime())) {
+                schedulePublishLocked();
+            }
+        }
+    }
+
+    // Returns true if the list the UI shows changed
+    boolean record(BluetoothDevice device, String address, String name, int rssi, long nowMs) {
+        synchronized (lock) {
+            DiscoveredDevice previous = byAddress.get(address);
+            if (previous == null) {
+                byAddress.put(address, new DiscoveredDevice(device, address, name, rssi, nowMs,
+                        knownRobots.contains(address)));
+                return true;
+            }
+            DiscoveredDevice updated = previous.withSighting(name, rssi, nowMs);
+            byAddress.put(address, updated);
+            return !updated.sameContents(previous);
+        }
+    }
+
+    /** Addresses to list first; the rest of the list is left as it is. */
+    public void setKnownRobots(Collection<String> addresses) {
+        synchronized (lock) {
+            knownRobots.clear();
+            knownRobots.addAll(addresses);
+            boolean changed = false;
+            for (DiscoveredDevice entry : byAddress.values()) {
+                boolean known = knownRobots.contains(entry.getAddress());
+                if (entry.isKnownRobot() != known) {
+                    byAddress.put(entry.getAddress(), entry.withKnownRobot(known));
+                    changed = true;
+                }
+            }
+            if (changed) schedulePublishLocked();
+        }
+    }
+
+    /** Forgets every device, e.g. when a new scan starts. */
+    public void clear() {
+        synchronized (lock) {
+            if (byAddress.isEmpty()) return;
+            byAddress.clear();
+            schedulePublishLocked();
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return byAddress.size();
+        }
+    }
+
+    // Sorted copy of the current list
+    List<DiscoveredDevice> snapshot() {
+        List<DiscoveredDevice> list;
+        synchronized (lock) {
+            list = new ArrayList<>(byAddress.values());
+        }
+        Collections.sort(list, ORDER);
+        return Collections.unmodifiableList(list);
+    }
+
+    private void schedulePublishLocked() {
+        if (publishScheduled) return; // the pending publish will pick this change up
+        publishScheduled = true;
+
+        long delay = Math.max(0, lastPublishUptime + intervalMs - SystemClock.uptimeMillis());
+        MainThreadExecutor.get().postDelayed(publishRunnable, delay);
+    }
+
+    private void publish() {
+        synchronized (lock) {
+            publishScheduled = false;
+            lastPublishUptime = SystemClock.uptimeMillis();
+        }
+        devices.setValue(snapshot());
+    }
+}
@@ -81,6 +81,31 @@ public class FieldChoiceActivity extends AppCompatActivity {
 
 
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Patterns prefetched since the last visit get their preview too
+        showPreviews();
+    }
+
+    // Draws each field's cached pattern over its card; cards without one keep their picture
+    private void showPreviews() {
+        int[] previewIds = {
+                R.id.preview_soccer,
+                R.id.preview_baseball,
+                R.id.preview_tennis,
+                R.id.preview_basketball,
+                R.id.preview_hockey,
+                R.id.preview_rugby
+        };
+        String[] fields = {"soccer", "baseball", "tennis", "basketball", "hockey", "rugby"};
+
+        for (int i = 0; i < previewIds.length; i++) {
+            FieldPreviewView preview = findViewById(previewIds[i]);
+            preview.showCachedPattern(fields[i]);
+        }
+    }
+
     // keeps track of which card is selected
     private MaterialCardView selectedCard = null;
 
@@ -0,0 +1,154 @@
+package com.example.fieldpainterbot;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+
+/**
+ * A field pattern decoded into parallel primitive columns, one row per
+ * instruction in instruction order, instead of a list of JSON objects:
+ * a thousand instructions take about 9 KB. Quantities are as authored
+ * (feet for walk and circle, degrees for rotation). Built by
+ * {@link FieldPatternParser}; {@link #toJson()} turns it back into the
+ * {"items":[...]} document the robot takes.
+ */
+public final class FieldPattern {
+
+    // Same codes as WireCodec.MOVEMENT_TYPES
+    public static final byte WALK = 0;
+    public static final byte ROTATION = 1;
+    public static final byte CIRCLE = 2;
+    private static final String[] TYPE_NAMES = {"Walk", "Rotation", "Circle"};
+
+    private final int size;
+    private final int[] orders;
+    private final byte[] types;
+    private final float[] quantities;
+    private final BitSet paint;
+
+    private FieldPattern(int size, int[] orders, byte[] types, float[] quantities, BitSet paint) {
+        this.size = size;
+        this.orders = orders;
+        this.types = types;
+        this.quantities = quantities;
+        this.paint = paint;
+    }
+
+    public int size() { return size; }
+    public int getOrder(int index) { return orders[index]; }
+    public byte getType(int index) { return types[index]; }
+    public float getQuantity(int index) { return quantities[index]; }
+    public boolean isPaint(int index) { return paint.get(index); }
+
+    /** Movement type code for a "Type of Movement" value, ignoring case; -1 if the robot has no handler for it. */
+    public static byte typeFor(String name) {
+        for (byte type = 0; type < WireCodec.MOVEMENT_TYPES.length; type++) {
+            if (WireCodec.MOVEMENT_TYPES[type].equalsIgnoreCase(name)) return type;
+        }
+        return -1;
+    }
+
+    public static String typeName(byte type) {
+        return TYPE_NAMES[type];
+    }
+
+    // Column storage, for the log line; ignores object headers
+    public int estimateBytes() {
+        return orders.length * 4 + types.length + quantities.length * 4 + paint.size() / 8;
+    }
+
+    /** The pattern as {"items":[...]}, keys sorted the way the backend sends them. */
+    public String toJson() {
+        StringBuilder out = new StringBuilder(size * 80 + 16);
+        out.append("{\"items\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) out.append(',');
+            out.append("{\"Instruction Order\":").append(orders[i])
+                    .append(",\"Paint\":").append(paint.get(i))
+                    .append(",\"Quantity\":").append(formatQuantity(quantities[i]))
+                    .append(",\"Type of Movement\":\"").append(TYPE_NAMES[types[i]]).append("\"}");
+        }
+        return out.append("]}").toString();
+    }
+
+    // 120 rather than 120.0, and the shortest form that reads back as the same float
+    static String formatQuantity(float quantity) {
+        if (quantity == Math.rint(quantity) && Math.abs(quantity) < 1e7f) {
+            return Long.toString((long) quantity);
+        }
+        return Float.toString(quantity);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "FieldPattern(%d instructions, ~%d bytes)", size, estimateBytes());
+    }
+
+    /* ---------------- BUILDING ---------------- */
+
+    /** Appends instructions column by column; sorts by order on build if they came out of order. */
+    public static final class Builder {
+        private int size;
+        private int[] orders;
+        private byte[] types;
+        private float[] quantities;
+        private final BitSet paint = new BitSet();
+        private boolean sorted = true;
+
+        public Builder() {
+            this(64);
+        }
+
+        public Builder(int capacity) {
+            capacity = Math.max(capacity, 1);
+            orders = new int[capacity];
+            types = new byte[capacity];
+            quantities = new float[capacity];
+        }
+
+        public Builder add(int order, byte type, float quantity, boolean paintOn) {
+            if (type < 0 || type >= TYPE_NAMES.length) {
+                throw new IllegalArgumentException("Unknown movement type " + type);
+            }
+            if (size == orders.length) {
+                int capacity = size * 2;
+                orders = Arrays.copyOf(orders, capacity);
+                types = Arrays.copyOf(types, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+            }
+            if (size > 0 && order < orders[size - 1]) sorted = false;
+            orders[size] = order;
+            types[size] = type;
+            quantities[size] = quantity;
+            paint.set(size, paintOn);
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public FieldPattern build() {
+            int[] o = Arrays.copyOf(orders, size);
+            byte[] t = Arrays.copyOf(types, size);
+            float[] q = Arrays.copyOf(quantities, size);
+            BitSet p = (BitSet) paint.clone();
+            if (!sorted) {
+                // Stable, like the robot's own sort: equal orders keep document order
+                Integer[] index = new Integer[size];
+                for (int i = 0; i < size; i++) index[i] = i;
+                Arrays.sort(index, (a, b) -> Integer.compare(orders[a], orders[b]));
+                p = new BitSet(size);
+                for (int i = 0; i < size; i++) {
+                    int from = index[i];
+                    o[i] = orders[from];
+                    t[i] = types[from];
+                    q[i] = quantities[from];
+                    p.set(i, paint.get(from));
+                }
+            }
+            return new FieldPattern(size, o, t, q, p);
+        }
+    }
+}
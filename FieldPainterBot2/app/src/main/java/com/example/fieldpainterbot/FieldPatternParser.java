@@ -0,0 +1,310 @@
+package com.example.fieldpainterbot;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * Decodes a {"items":[...]} field document token by token straight into a
+ * {@link FieldPattern}, without building JSON objects along the way.
+ * Instructions are read the way Conversion_Service.Convert_To_Array reads
+ * them: unknown keys are skipped, empty items are dropped, a missing or null
+ * value takes its default and numbers may come as strings. A movement type
+ * the robot has no handler for is rejected here, before anything is sent.
+ */
+final class FieldPatternParser {
+
+    private static final String ORDER_KEY = "Instruction Order";
+    private static final String TYPE_KEY = "Type of Movement";
+    private static final String QUANTITY_KEY = "Quantity";
+    private static final String PAINT_KEY = "Paint";
+
+    private static final ByteString STRING_SPECIALS = ByteString.encodeUtf8("\"\\");
+    private static final int MAX_DEPTH = 32;
+
+    private final BufferedSource source;
+    private final StringBuilder scratch = new StringBuilder(32);
+
+    private FieldPatternParser(BufferedSource source) {
+        this.source = source;
+    }
+
+    /** Consumes the whole document from source. */
+    static FieldPattern parse(BufferedSource source) throws IOException {
+        return new FieldPatternParser(source).readDocument();
+    }
+
+    static FieldPattern parse(String json) throws IOException {
+        return parse(new Buffer().writeUtf8(json));
+    }
+
+    /* ---------------- DOCUMENT ---------------- */
+
+    private FieldPattern readDocument() throws IOException {
+        FieldPattern pattern = null;
+        expect('{');
+        if (!consumeIf('}')) {
+            do {
+                String key = readString(':');
+                if (key.equals("items")) {
+                    pattern = readItems();
+                } else {
+                    skipValue(0);
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+        if (peekToken() != -1) throw syntaxError("trailing data after the document");
+        if (pattern == null) throw new IOException("Field pattern has no \"items\"");
+        return pattern;
+    }
+
+    private FieldPattern readItems() throws IOException {
+        FieldPattern.Builder builder = new FieldPattern.Builder();
+        expect('[');
+        if (consumeIf(']')) return builder.build();
+        do {
+            if (peekToken() == '{') {
+                readItem(builder);
+            } else {
+                skipValue(1);  // Convert_To_Array ignores anything that isn't an instruction
+            }
+        } while (consumeIf(','));
+        expect(']');
+        return builder.build();
+    }
+
+    private void readItem(FieldPattern.Builder builder) throws IOException {
+        int order = 0;
+        String typeName = null;
+        float quantity = 0;
+        boolean paint = false;
+        boolean empty = true;
+
+        expect('{');
+        if (!consumeIf('}')) {
+            do {
+                String key = readString(':');
+                empty = false;
+                switch (key) {
+                    case ORDER_KEY:
+                        order = (int) readNumber();
+                        break;
+                    case TYPE_KEY:
+                        typeName = readStringOrNull();
+                        break;
+                    case QUANTITY_KEY:
+                        quantity = (float) readNumber();
+                        break;
+                    case PAINT_KEY:
+                        paint = readTruthy();
+                        break;
+                    default:
+                        skipValue(2);
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+        if (empty) return;
+        // The robot skips type-less items too
+        if (typeName == null || typeName.isEmpty()) return;
+
+        byte type = FieldPattern.typeFor(typeName);
+        if (type < 0) {
+            throw new IOException("Unknown movement type \"" + typeName + "\" at instruction " + order);
+        }
+        builder.add(order, type, quantity, paint);
+    }
+
+    /* ---------------- VALUES ---------------- */
+
+    // Numbers, numeric strings and null (as 0), like float(quantity) if quantity else 0.0
+    private double readNumber() throws IOException {
+        int c = peekToken();
+        if (c == '"') {
+            String text = readString(-1).trim();
+            if (text.isEmpty()) return 0;
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                throw syntaxError("not a number: \"" + text + "\"");
+            }
+        }
+        if (c == 'n') {
+            readLiteral("null");
+            return 0;
+        }
+        if (c == 't' || c == 'f') return readTruthy() ? 1 : 0;
+        return readBareNumber();
+    }
+
+    private double readBareNumber() throws IOException {
+        scratch.setLength(0);
+        while (source.request(1)) {
+            byte b = source.getBuffer().getByte(0);
+            if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+                scratch.append((char) b);
+                source.skip(1);
+            } else {
+                break;
+            }
+        }
+        if (scratch.length() == 0) throw syntaxError("expected a value");
+        try {
+            return Double.parseDouble(scratch.toString());
+        } catch (NumberFormatException e) {
+            throw syntaxError("bad number " + scratch);
+        }
+    }
+
+    // Python truthiness, since the robot does bool(paint)
+    private boolean readTruthy() throws IOException {
+        int c = peekToken();
+        switch (c) {
+            case 't':
+                readLiteral("true");
+                return true;
+            case 'f':
+                readLiteral("false");
+                return false;
+            case 'n':
+                readLiteral("null");
+                return false;
+            case '"':
+                return !readString(-1).isEmpty();
+            case '{':
+            case '[':
+                skipValue(3);
+                return true;  // close enough: the backend never sends these
+            default:
+                return readBareNumber() != 0;
+        }
+    }
+
+    private String readStringOrNull() throws IOException {
+        if (peekToken() == 'n') {
+            readLiteral("null");
+            return null;
+        }
+        return readString(-1);
+    }
+
+    // A quoted string, then the separator if one is given (':' after keys)
+    private String readString(int separator) throws IOException {
+        expect('"');
+        scratch.setLength(0);
+        while (true) {
+            long special = source.indexOfElement(STRING_SPECIALS);
+            if (special == -1) throw new EOFException("Unterminated string");
+            scratch.append(source.readUtf8(special));
+            if (source.readByte() == '"') break;
+            readEscape();
+        }
+        String value = scratch.toString();
+        if (separator != -1) expect(separator);
+        return value;
+    }
+
+    private void readEscape() throws IOException {
+        byte c = source.readByte();
+        switch (c) {
+            case '"': scratch.append('"'); break;
+            case '\\': scratch.append('\\'); break;
+            case '/': scratch.append('/'); break;
+            case 'b': scratch.append('\b'); break;
+            case 'f': scratch.append('\f'); break;
+            case 'n': scratch.append('\n'); break;
+            case 'r': scratch.append('\r'); break;
+            case 't': scratch.append('\t'); break;
+            case 'u':
+                try {
+                    scratch.append((char) Integer.parseInt(source.readUtf8(4), 16));
+                } catch (NumberFormatException e) {
+                    throw syntaxError("bad \\u escape");
+                }
+                break;
+            default:
+                throw syntaxError("bad escape \\" + (char) c);
+        }
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        peekToken();
+        for (int i = 0; i < literal.length(); i++) {
+            if (source.readByte() != literal.charAt(i)) throw syntaxError("expected " + literal);
+        }
+    }
+
+    private void skipValue(int depth) throws IOException {
+        if (depth > MAX_DEPTH) throw syntaxError("nested too deeply");
+        int c = peekToken();
+        switch (c) {
+            case '{':
+                expect('{');
+                if (consumeIf('}')) return;
+                do {
+                    readString(':');
+                    skipValue(depth + 1);
+                } while (consumeIf(','));
+                expect('}');
+                return;
+            case '[':
+                expect('[');
+                if (consumeIf(']')) return;
+                do {
+                    skipValue(depth + 1);
+                } while (consumeIf(','));
+                expect(']');
+                return;
+            case '"':
+                readString(-1);
+                return;
+            case 't':
+                readLiteral("true");
+                return;
+            case 'f':
+                readLiteral("false");
+                return;
+            case 'n':
+                readLiteral("null");
+                return;
+            default:
+                readBareNumber();
+        }
+    }
+
+    /* ---------------- TOKENS ---------------- */
+
+    // Skips whitespace and returns the next byte without consuming it; -1 at the end
+    private int peekToken() throws IOException {
+        while (source.request(1)) {
+            byte b = source.getBuffer().getByte(0);
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                source.skip(1);
+            } else {
+                return b;
+            }
+        }
+        return -1;
+    }
+
+    private boolean consumeIf(int c) throws IOException {
+        if (peekToken() != c) return false;
+        source.skip(1);
+        return true;
+    }
+
+    private void expect(int c) throws IOException {
+        int actual = peekToken();
+        if (actual == -1) throw new EOFException("Expected '" + (char) c + "' but the document ended");
+        if (actual != c) throw syntaxError("expected '" + (char) c + "' but found '" + (char) actual + "'");
+        source.skip(1);
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("Malformed field pattern: " + message);
+    }
+}
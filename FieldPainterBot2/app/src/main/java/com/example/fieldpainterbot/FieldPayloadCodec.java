@@ -0,0 +1,228 @@
+package com.example.fieldpainterbot;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Packs a field pattern into a compact instruction stream and deflates it,
+ * for the PACKED_CHUNK frames of wire codec version 2. Mirrors
+ * payload_codec.py on the robot.
+ *
+ * The stream is a sequence of ops:
+ * <pre>
+ *   LITERAL  type byte (0xFF + name for unknown types) | flags | zigzag delta of
+ *            the quantity (hundredths) from the last instruction of the same type
+ *   REPEAT   varint span | varint times: replay the previous span instructions
+ *   ORDER    varint order of the next instruction (orders are otherwise implicit, +1 each)
+ * </pre>
+ * The whole job is one deflate stream, sync-flushed at every chunk boundary,
+ * so the robot can inflate and run each chunk as soon as it arrives while
+ * later chunks still benefit from the earlier ones' dictionary.
+ */
+final class FieldPayloadCodec {
+
+    static final int OP_LITERAL = 1;
+    static final int OP_REPEAT = 2;
+    static final int OP_ORDER = 3;
+
+    // Patterns are packed when their plain binary form would be larger than this
+    static final int DEFAULT_THRESHOLD_BYTES = 1024;
+    private static final int MAX_REPEAT_SPAN = 16;
+    private static final int FLAG_PAINT = 1;
+
+    private static final String ORDER_KEY = "Instruction Order";
+    private static final String TYPE_KEY = "Type of Movement";
+    private static final String QUANTITY_KEY = "Quantity";
+    private static final String PAINT_KEY = "Paint";
+
+    private FieldPayloadCodec() {}
+
+    /** One instruction as the codec compares them; quantity in hundredths. */
+    static final class Step {
+        final int order;
+        final String type;
+        final int quantity;
+        final boolean paint;
+
+        Step(int order, String type, int quantity, boolean paint) {
+            this.order = order;
+            this.type = type;
+            this.quantity = quantity;
+            this.paint = paint;
+        }
+
+        static Step of(JSONObject item) {
+            return new Step(
+                    item.optInt(ORDER_KEY, 0),
+                    item.optString(TYPE_KEY, "").toLowerCase(),
+                    (int) Math.round(item.optDouble(QUANTITY_KEY, 0) * WireCodec.QUANTITY_SCALE),
+                    item.optBoolean(PAINT_KEY, false));
+        }
+
+        // Order is implicit, so it doesn't take part in repeats
+        boolean sameMove(Step other) {
+            return quantity == other.quantity && paint == other.paint && type.equals(other.type);
+        }
+    }
+
+    /**
+     * Packs and deflates {@code items} (already in instruction order) into
+     * chunks of exactly {@code chunkInstructions} instructions each, the last
+     * one excepted. A REPEAT never runs past a chunk boundary, so chunk seq
+     * starts at instruction seq * chunkInstructions like a plain upload's.
+     */
+    static byte[][] pack(List<JSONObject> items, int chunkInstructions) {
+        List<Step> steps = new ArrayList<>(items.size());
+        for (JSONObject item : items) steps.add(Step.of(item));
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        byte[] scratch = new byte[4096];
+        List<byte[]> chunks = new ArrayList<>();
+        WireCodec.Writer ops = new WireCodec.Writer(256);
+        int[] lastQuantity = new int[WireCodec.MOVEMENT_TYPES.length + 1];
+        int expectedOrder = steps.isEmpty() ? 0 : steps.get(0).order;
+        int inChunk = 0;
+
+        // The stream starts with the first order so the common 1..N case needs no ORDER ops
+        ops.writeByte(OP_ORDER).writeVarint(expectedOrder);
+
+        int i = 0;
+        while (i < steps.size()) {
+            int span = 0;
+            int times = 0;
+            if (steps.get(i).order == expectedOrder) {
+                int room = chunkInstructions - inChunk;
+                for (int s = 1; s <= MAX_REPEAT_SPAN && s <= i && s <= room; s++) {
+                    int t = Math.min(repeats(steps, i, s, expectedOrder), room / s);
+                    if (t * s > times * span) {
+                        span = s;
+                        times = t;
+                    }
+                }
+            }
+
+            int covered;
+            if (times * span >= 2) {
+                ops.writeByte(OP_REPEAT).writeVarint(span).writeVarint(times);
+                covered = span * times;
+            } else {
+                Step step = steps.get(i);
+                if (step.order != expectedOrder) {
+                    ops.writeByte(OP_ORDER).writeVarint(step.order);
+                }
+                int code = typeCode(step.type);
+                ops.writeByte(OP_LITERAL);
+                if (code < WireCodec.MOVEMENT_TYPES.length) {
+                    ops.writeByte(code);
+                } else {
+                    ops.writeByte(WireCodec.MOVEMENT_OTHER).writeString(step.type);
+                }
+                ops.writeByte(step.paint ? FLAG_PAINT : 0);
+                ops.writeZigZag(step.quantity - lastQuantity[code]);
+                lastQuantity[code] = step.quantity;
+                covered = 1;
+            }
+
+            i += covered;
+            expectedOrder = (i > 0 ? steps.get(i - 1).order : expectedOrder) + 1;
+            inChunk += covered;
+
+            if (inChunk >= chunkInstructions || i == steps.size()) {
+                chunks.add(deflateChunk(deflater, ops, scratch));
+                ops = new WireCodec.Writer(256);
+                inChunk = 0;
+            }
+        }
+        if (chunks.isEmpty()) chunks.add(deflateChunk(deflater, ops, scratch));
+        deflater.end();
+        return chunks.toArray(new byte[0][]);
+    }
+
+    // How many times steps[i - span, i) repeats from i with consecutive orders
+    private static int repeats(List<Step> steps, int i, int span, int expectedOrder) {
+        int times = 0;
+        int order = expectedOrder;
+        while (i + (times + 1) * span <= steps.size()) {
+            int start = i + times * span;
+            for (int k = 0; k < span; k++) {
+                Step step = steps.get(start + k);
+                if (step.order != order + k || !step.sameMove(steps.get(start + k - span))) return times;
+            }
+            order += span;
+            times++;
+        }
+        return times;
+    }
+
+    private static int typeCode(String type) {
+        for (int i = 0; i < WireCodec.MOVEMENT_TYPES.length; i++) {
+            if (WireCodec.MOVEMENT_TYPES[i].equals(type)) return i;
+        }
+        return WireCodec.MOVEMENT_TYPES.length;  // shared delta slot for unknown types
+    }
+
+    private static byte[] deflateChunk(Deflater deflater, WireCodec.Writer ops, byte[] scratch) {
+        deflater.setInput(ops.toByteArray());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int n;
+        do {
+            n = deflater.deflate(scratch, 0, scratch.length, Deflater.SYNC_FLUSH);
+            out.write(scratch, 0, n);
+        } while (n == scratch.length);
+        return out.toByteArray();
+    }
+
+    /* -------------------------------------------------------
+                  REFERENCE DECODER (tests, tooling)
+       ------------------------------------------------------- */
+
+    /** Inverse of {@link #pack}; the robot's payload_codec.py does the same in Python. */
+    static List<Step> unpack(byte[][] chunks) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        byte[] scratch = new byte[4096];
+        for (byte[] chunk : chunks) {
+            inflater.setInput(chunk);
+            int n;
+            while ((n = inflater.inflate(scratch)) > 0) stream.write(scratch, 0, n);
+        }
+        inflater.end();
+
+        byte[] bytes = stream.toByteArray();
+        WireCodec.Reader reader = new WireCodec.Reader(bytes, 0, bytes.length);
+        List<Step> steps = new ArrayList<>();
+        int[] lastQuantity = new int[WireCodec.MOVEMENT_TYPES.length + 1];
+        int order = 0;
+        while (reader.remaining() > 0) {
+            int op = reader.readByte();
+            if (op == OP_ORDER) {
+                order = reader.readVarint();
+            } else if (op == OP_REPEAT) {
+                int span = reader.readVarint();
+                int times = reader.readVarint();
+                int start = steps.size() - span;
+                for (int k = 0; k < span * times; k++) {
+                    Step from = steps.get(start + k);
+                    steps.add(new Step(order++, from.type, from.quantity, from.paint));
+                }
+            } else if (op == OP_LITERAL) {
+                int code = reader.readByte();
+                String type = code == WireCodec.MOVEMENT_OTHER ? reader.readString()
+                        : code < WireCodec.MOVEMENT_TYPES.length ? WireCodec.MOVEMENT_TYPES[code] : "";
+                int slot = Math.min(code, WireCodec.MOVEMENT_TYPES.length);
+                boolean paint = (reader.readByte() & FLAG_PAINT) != 0;
+                lastQuantity[slot] += reader.readZigZag();
+                steps.add(new Step(order++, type, lastQuantity[slot], paint));
+            } else {
+                throw new DataFormatException("Unknown op " + op);
+            }
+        }
+        return steps;
+    }
+}
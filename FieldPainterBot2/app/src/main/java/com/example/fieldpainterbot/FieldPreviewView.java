@@ -0,0 +1,186 @@
+package com.example.fieldpainterbot;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.DashPathEffect;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.View;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Draws the path a cached field pattern will actually paint over a field
+ * card. The pattern is simulated and rendered once, off the main thread,
+ * into a bitmap kept in a process-wide cache keyed by the pattern's hash and
+ * the view size; after that onDraw is a single drawBitmap. Until then (or
+ * if the pattern isn't cached yet) nothing is drawn and the card's static
+ * image shows through.
+ */
+public class FieldPreviewView extends View {
+
+    private static final String TAG = "FieldPreviewView";
+    // Arcs are flattened to this many line segments per half circle
+    private static final int ARC_STEPS = 32;
+    private static final int CACHE_BYTES = 8 * 1024 * 1024;
+
+    private static final LruCache<String, Bitmap> BITMAPS = new LruCache<String, Bitmap>(CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    };
+    // One thread is plenty: each preview is rendered once
+    private static final ExecutorService RENDERER = Executors.newSingleThreadExecutor();
+
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private String collection;   // main thread only
+    private Bitmap bitmap;
+
+    public FieldPreviewView(Context context) {
+        super(context);
+    }
+
+    public FieldPreviewView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public FieldPreviewView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    /** Shows the preview of collection once it is in the pattern cache; safe to call again to refresh. */
+    public void showCachedPattern(String collection) {
+        this.collection = collection;
+        if (getWidth() > 0 && getHeight() > 0) requestRender();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (collection != null && w > 0 && h > 0) requestRender();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (bitmap != null) canvas.drawBitmap(bitmap, 0, 0, bitmapPaint);
+    }
+
+    private void requestRender() {
+        String wanted = collection;
+        int width = getWidth();
+        int height = getHeight();
+        int left = getPaddingLeft();
+        int top = getPaddingTop();
+        int right = getPaddingRight();
+        int bottom = getPaddingBottom();
+        float density = getResources().getDisplayMetrics().density;
+        PatternCache cache = PatternCache.get(getContext());
+
+        RENDERER.execute(() -> {
+            PatternCache.Entry entry = cache.peek(wanted);  // not a use: leaves the eviction order alone
+            if (entry == null) return;
+            String key = entry.sha256 + ":" + width + "x" + height
+                    + ":" + left + "," + top + "," + right + "," + bottom;
+            Bitmap rendered = BITMAPS.get(key);
+            if (rendered == null) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                SimulatedPath path;
+                try {
+                    path = PathSimulator.simulate(FieldPatternParser.parse(entry.body));
+                } catch (IOException e) {
+                    Log.w(TAG, "No preview for " + wanted, e);
+                    return;
+                }
+                rendered = render(path, width, height, left, top, right, bottom, density);
+                BITMAPS.put(key, rendered);
+                Log.d(TAG, "Preview of " + wanted + " (" + path.size() + " instructions) built in "
+                        + (SystemClock.elapsedRealtimeNanos() - start) / 1000 + " µs");
+            }
+            Bitmap result = rendered;
+            post(() -> {
+                if (!wanted.equals(collection)) return;  // the card was pointed elsewhere meanwhile
+                bitmap = result;
+                invalidate();
+            });
+        });
+    }
+
+    /* ---------------- RENDERING ---------------- */
+
+    static Bitmap render(SimulatedPath path, int width, int height,
+                         int left, int top, int right, int bottom, float density) {
+        Path painted = new Path();
+        Path travel = new Path();
+        Path spots = new Path();
+        for (int i = 0; i < path.size(); i++) {
+            if (path.getKind(i) == SimulatedPath.TURN) {
+                // A painted turn sprays in place: a spot, radius in field cm
+                if (path.isPainted(i)) spots.addCircle(path.getStartX(i), path.getStartY(i), 10f, Path.Direction.CW);
+                continue;
+            }
+            appendSegment(path.isPainted(i) ? painted : travel, path, i);
+        }
+
+        // Fit the field's bounds into the view, y flipped so left turns look like left turns
+        float spanX = Math.max(1f, path.getMaxX() - path.getMinX());
+        float spanY = Math.max(1f, path.getMaxY() - path.getMinY());
+        float usableW = Math.max(1, width - left - right);
+        float usableH = Math.max(1, height - top - bottom);
+        float scale = Math.min(usableW / spanX, usableH / spanY);
+        Matrix matrix = new Matrix();
+        matrix.setTranslate(-path.getMinX(), -path.getMaxY());
+        matrix.postScale(scale, -scale);
+        matrix.postTranslate(left + (usableW - spanX * scale) / 2, top + (usableH - spanY * scale) / 2);
+        painted.transform(matrix);
+        travel.transform(matrix);
+        spots.transform(matrix);
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.argb(140, 0, 0, 0));
+
+        Paint stroke = new Paint(Paint.ANTI_ALIAS_FLAG);
+        stroke.setStyle(Paint.Style.STROKE);
+        stroke.setStrokeJoin(Paint.Join.ROUND);
+        stroke.setStrokeCap(Paint.Cap.ROUND);
+
+        stroke.setColor(Color.argb(160, 255, 235, 59));
+        stroke.setStrokeWidth(1f * density);
+        stroke.setPathEffect(new DashPathEffect(new float[]{3 * density, 3 * density}, 0));
+        canvas.drawPath(travel, stroke);
+
+        stroke.setColor(Color.WHITE);
+        stroke.setStrokeWidth(2.5f * density);
+        stroke.setPathEffect(null);
+        canvas.drawPath(painted, stroke);
+
+        Paint fill = new Paint(Paint.ANTI_ALIAS_FLAG);
+        fill.setColor(Color.WHITE);
+        canvas.drawPath(spots, fill);
+        return bitmap;
+    }
+
+    // One contour per segment, arcs flattened
+    private static void appendSegment(Path target, SimulatedPath path, int i) {
+        target.moveTo(path.getStartX(i), path.getStartY(i));
+        if (path.getKind(i) == SimulatedPath.LINE) {
+            target.lineTo(path.getEndX(i), path.getEndY(i));
+            return;
+        }
+        for (int step = 1; step <= ARC_STEPS; step++) {
+            float t = step / (float) ARC_STEPS;
+            target.lineTo(path.pointX(i, t), path.pointY(i, t));
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.fieldpainterbot;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams a field pattern to the robot in numbered chunks so it can start
+ * painting while the rest is still on its way.
+ *
+ * Text wire format (one line each, sent on the BULK lane; see
+ * {@link WireCodec} for the binary equivalents):
+ * <pre>
+ *   JOB:&lt;jobId&gt;:&lt;instructionCount&gt;:&lt;chunkCount&gt;
+ *   CHUNK:&lt;jobId&gt;:&lt;seq&gt;:[{...}, {...}]
+ * </pre>
+ * The robot answers "ACK:&lt;seq&gt;" with the highest chunk it has received
+ * in order. At most {@code window} chunks are sent beyond the last ack, so
+ * the robot never has to buffer much more than it is about to execute.
+ *
+ * If no ACK arrives for the outstanding chunks within the ack timeout, they
+ * are sent again from the last acknowledged one (the robot re-acks duplicates
+ * and ignores a repeated header while the job runs); after
+ * {@link #MAX_RETRANSMITS} timeouts without progress the upload fails. A
+ * failed send fails the upload unless the link is being redialled, in which
+ * case the robot's answer to RESUME_JOB says where to carry on from.
+ */
+class FieldUpload {
+
+    private static final String TAG = "FieldUpload";
+
+    static final int DEFAULT_CHUNK_INSTRUCTIONS = 8;
+    static final int DEFAULT_WINDOW = 4;
+    static final long DEFAULT_ACK_TIMEOUT_MS = 5_000;
+    static final int MAX_RETRANSMITS = 5;
+    // Time for the reader to notice a dropped link before a failed send is judged
+    static final long DEFAULT_SEND_FAILURE_GRACE_MS = 500;
+    private static final String ORDER_KEY = "Instruction Order";
+
+    // Robot replies to RESUME_JOB other than a chunk number
+    static final int RESUME_UNKNOWN_JOB = -2;
+    static final int RESUME_ABANDONED = -3;
+
+    interface Sender {
+        SendFuture send(byte[] frame);
+    }
+
+    // Whether the session is redialling a dropped link, after which RESUME_JOB follows
+    interface LinkState {
+        boolean isReconnecting();
+    }
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "FieldUploadTimer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int jobId;
+    private final int instructionCount;
+    private final byte[] header;
+    private final byte[][] chunks;
+    private final boolean packed;
+    private final int jsonSize;
+    private final int window;
+    private final int chunkInstructions;
+    private final Runnable onStarted;
+    private final Runnable onComplete;
+    private final Runnable onError;
+
+    private volatile long ackTimeoutMs = DEFAULT_ACK_TIMEOUT_MS;
+    private volatile long sendFailureGraceMs = DEFAULT_SEND_FAILURE_GRACE_MS;
+
+    // guarded by this
+    private Sender sender;
+    private LinkState linkState;
+    private ScheduledFuture<?> ackTimer;
+    private int retransmits = 0;  // consecutive timeouts without an ack
+    private int nextToSend = 0;
+    private int lastAcked = -1;
+    private boolean started = false;
+    private boolean finished = false;
+    private long startNanos;
+
+    FieldUpload(int jobId, String fieldJson, WireFormat format, int chunkInstructions, int window,
+                Runnable onStarted, Runnable onComplete, Runnable onError) throws JSONException {
+        this(jobId, fieldJson, format, chunkInstructions, window, Integer.MAX_VALUE,
+                onStarted, onComplete, onError);
+    }
+
+    /**
+     * Uploads larger than {@code packThresholdBytes} in their plain encoding are
+     * sent as deflated FieldPayloadCodec chunks when {@code format} allows it.
+     */
+    FieldUpload(int jobId, String fieldJson, WireFormat format, int chunkInstructions, int window,
+                int packThresholdBytes, Runnable onStarted, Runnable onComplete, Runnable onError)
+            throws JSONException {
+        this.jobId = jobId;
+        this.window = window;
+        this.chunkInstructions = chunkInstructions;
+        this.onStarted = onStarted;
+        this.onComplete = onComplete;
+        this.onError = onError;
+        this.jsonSize = fieldJson.length();
+
+        List<JSONObject> items = sortedItems(fieldJson);
+        this.instructionCount = items.size();
+        int chunkCount = Math.max(1, (items.size() + chunkInstructions - 1) / chunkInstructions);
+        byte[][] plain = new byte[chunkCount][];
+        int plainSize = 0;
+        for (int seq = 0; seq < chunkCount; seq++) {
+            int end = Math.min(items.size(), (seq + 1) * chunkInstructions);
+            plain[seq] = format.chunk(jobId, seq, items.subList(seq * chunkInstructions, end));
+            plainSize += plain[seq].length;
+        }
+
+        if (format.canPack() && plainSize > packThresholdBytes) {
+            byte[][] deflated = FieldPayloadCodec.pack(items, chunkInstructions);
+            this.chunks = new byte[deflated.length][];
+            for (int seq = 0; seq < deflated.length; seq++) {
+                chunks[seq] = WireCodec.encodePackedChunk(jobId, seq, deflated[seq]);
+            }
+            this.packed = true;
+        } else {
+            this.chunks = plain;
+            this.packed = false;
+        }
+        this.header = format.jobHeader(jobId, instructionCount, chunks.length);
+    }
+
+    // The robot executes chunks as they arrive, so they must already be in instruction order
+    private static List<JSONObject> sortedItems(String fieldJson) throws JSONException {
+        JSONArray array = new JSONObject(fieldJson).getJSONArray("items");
+        List<JSONObject> items = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject item = array.optJSONObject(i);
+            if (item != null && item.length() > 0) items.add(item);
+        }
+        Collections.sort(items, (a, b) -> Double.compare(a.optDouble(ORDER_KEY, 0), b.optDouble(ORDER_KEY, 0)));
+        return items;
+    }
+
+    int getJobId() { return jobId; }
+    int getInstructionCount() { return instructionCount; }
+    int getChunkCount() { return chunks.length; }
+
+    /** Index of the first instruction in chunk {@code seq}, in the order the robot runs them. */
+    int firstInstructionOf(int seq) { return seq * chunkInstructions; }
+
+    int getEncodedSize() {
+        int size = header.length;
+        for (byte[] chunk : chunks) size += chunk.length;
+        return size;
+    }
+
+    boolean isPacked() { return packed; }
+
+    /** Size of the original JSON document over the bytes actually sent. */
+    double getCompressionRatio() {
+        return jsonSize / (double) getEncodedSize();
+    }
+
+    synchronized int getLastAcked() { return lastAcked; }
+
+    // Package-private for tests
+    void setTimeouts(long ackTimeoutMs, long sendFailureGraceMs) {
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.sendFailureGraceMs = sendFailureGraceMs;
+    }
+
+    /** Sends the header and the first window of chunks. */
+    void start(Sender sender, LinkState linkState) {
+        synchronized (this) {
+            this.sender = sender;
+            this.linkState = linkState;
+            this.startNanos = System.nanoTime();
+        }
+        watch(sender.send(header), -1);
+        pump();
+    }
+
+    /** Called with every "ACK:n" from the robot. */
+    void onAck(int seq) {
+        boolean complete;
+        synchronized (this) {
+            if (finished || seq <= lastAcked || seq >= chunks.length) return;
+            lastAcked = seq;
+            retransmits = 0;
+            cancelAckTimerLocked();  // re-armed by pump() for whatever is still outstanding
+            complete = seq == chunks.length - 1;
+            if (complete) finished = true;
+        }
+        if (complete) {
+            logTransfer(System.nanoTime() - startNanos);
+            onComplete.run();
+        } else {
+            pump();
+        }
+    }
+
+    // Time saved is estimated from the throughput this upload actually got
+    private void logTransfer(long elapsedNanos) {
+        int sent = getEncodedSize();
+        double bytesPerSecond = sent / Math.max(elapsedNanos / 1e9, 1e-3);
+        double savedMs = (jsonSize - sent) / bytesPerSecond * 1000;
+        Log.d(TAG, String.format(Locale.US,
+                "Job %d fully acknowledged: %d bytes sent for %d bytes of JSON (%.1fx), %.0f B/s, ~%.0f ms saved",
+                jobId, sent, jsonSize, getCompressionRatio(), bytesPerSecond, savedMs));
+    }
+
+    /**
+     * Called with the robot's reply to RESUME_JOB after a reconnect: the last
+     * chunk it received in order, or one of the RESUME_ constants.
+     */
+    void onResume(int robotLastSeq) {
+        if (robotLastSeq <= RESUME_ABANDONED) {
+            fail("robot abandoned the job while disconnected");
+            return;
+        }
+        boolean restart = robotLastSeq == RESUME_UNKNOWN_JOB;
+        boolean complete;
+        Sender target;
+        synchronized (this) {
+            if (finished) return;
+            // The robot is the authority now; anything past its last ack may have been lost
+            lastAcked = restart ? -1 : Math.min(robotLastSeq, chunks.length - 1);
+            nextToSend = lastAcked + 1;
+            retransmits = 0;
+            cancelAckTimerLocked();
+            // Every chunk may have arrived with only the final ACK lost
+            complete = lastAcked == chunks.length - 1;
+            if (complete) finished = true;
+            target = sender;
+        }
+        Log.d(TAG, "Job " + jobId + (restart ? " unknown to the robot, sending it again"
+                : " resumed after chunk " + robotLastSeq));
+        if (complete) {
+            logTransfer(System.nanoTime() - startNanos);
+            onComplete.run();
+            return;
+        }
+        if (restart) watch(target.send(header), -1);
+        pump();
+    }
+
+    /** Fails the upload, e.g. when the connection drops. */
+    void fail(String reason) {
+        synchronized (this) {
+            if (finished) return;
+            finished = true;
+            cancelAckTimerLocked();
+        }
+        Log.w(TAG, "Job " + jobId + " failed: " + reason);
+        onError.run();
+    }
+
+    /** Stops sending without reporting an error, e.g. after the user sent QUIT. */
+    void cancel() {
+        synchronized (this) {
+            if (finished) return;
+            finished = true;
+            cancelAckTimerLocked();
+        }
+        Log.d(TAG, "Job " + jobId + " cancelled");
+    }
+
+    synchronized boolean isFinished() {
+        return finished;
+    }
+
+    // Sends chunks until `window` of them are outstanding
+    private void pump() {
+        while (true) {
+            int seq;
+            Sender target;
+            synchronized (this) {
+                if (finished || nextToSend >= chunks.length || nextToSend - lastAcked > window) return;
+                seq = nextToSend++;
+                target = sender;
+                if (ackTimer == null) {
+                    ackTimer = timer.schedule(this::onAckTimeout, ackTimeoutMs, TimeUnit.MILLISECONDS);
+                }
+            }
+            watch(target.send(chunks[seq]), seq);
+        }
+    }
+
+    private void cancelAckTimerLocked() {
+        if (ackTimer != null) {
+            ackTimer.cancel(false);
+            ackTimer = null;
+        }
+    }
+
+    // Nothing acknowledged for a whole timeout: resend from the last acked chunk
+    private void onAckTimeout() {
+        int resumeFrom;
+        Sender target;
+        synchronized (this) {
+            ackTimer = null;
+            if (finished || nextToSend <= lastAcked + 1) return;
+            if (linkState.isReconnecting()) {
+                // The resume after the reconnect says where to carry on; check again later
+                ackTimer = timer.schedule(this::onAckTimeout, ackTimeoutMs, TimeUnit.MILLISECONDS);
+                return;
+            }
+            resumeFrom = ++retransmits > MAX_RETRANSMITS ? -1 : lastAcked + 1;
+            if (resumeFrom >= 0) nextToSend = resumeFrom;
+            target = sender;
+        }
+        if (resumeFrom < 0) {
+            fail("no ACK after " + MAX_RETRANSMITS + " resends");
+            return;
+        }
+        Log.w(TAG, "Job " + jobId + ": no ACK in " + ackTimeoutMs + " ms, resending from chunk " + resumeFrom);
+        // Nothing acked yet: the header may be what got lost
+        if (resumeFrom == 0) watch(target.send(header), -1);
+        pump();
+    }
+
+    private void watch(SendFuture future, int seq) {
+        future.whenDone(() -> {
+            if (seq == 0) onFirstChunkFlushed();
+        }, () -> onSendFailed(seq, future.getFailure()));
+    }
+
+    // A dropped link is resumed after the reconnect; anything else (a send timing
+    // out on a live link, say) would otherwise leave the upload waiting forever
+    private void onSendFailed(int seq, Throwable cause) {
+        String what = seq < 0 ? "header" : "chunk " + seq;
+        Log.w(TAG, "Job " + jobId + ": send of " + what + " failed", cause);
+        timer.schedule(() -> {
+            LinkState link;
+            synchronized (this) {
+                if (finished) return;
+                link = linkState;
+            }
+            if (link.isReconnecting()) {
+                Log.d(TAG, "Job " + jobId + ": link is being redialled, waiting to resume");
+                return;
+            }
+            fail("send of " + what + " failed: " + (cause != null ? cause.getMessage() : "unknown"));
+        }, sendFailureGraceMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void onFirstChunkFlushed() {
+        synchronized (this) {
+            if (started || finished) return;
+            started = true;
+        }
+        onStarted.run();
+    }
+}
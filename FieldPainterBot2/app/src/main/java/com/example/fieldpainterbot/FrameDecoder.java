@@ -0,0 +1,180 @@
+package com.example.fieldpainterbot;
+
+/**
+ * Incremental decoder for the newline-delimited frames sent by rfserver.
+ * Bytes are fed in whatever fragments the socket returns; partial frames are
+ * carried over in a reusable buffer and every complete frame is handed to the
+ * listener as a slice, so nothing is allocated per read.
+ *
+ * With a {@link BinaryFrameListener} set, a frame that starts with
+ * {@link WireCodec#SYNC} is read as a length-prefixed, CRC-checked binary
+ * frame instead of a text line; both kinds can follow each other freely.
+ */
+public class FrameDecoder {
+
+    public interface FrameListener {
+        // The slice is only valid for the duration of the call
+        void onFrame(byte[] buffer, int offset, int length);
+    }
+
+    public interface BinaryFrameListener {
+        // Payload only (type byte onwards), CRC already checked; valid for the duration of the call
+        void onBinaryFrame(byte[] payload, int offset, int length);
+    }
+
+    private static final byte DELIMITER = '\n';
+    private static final int CRC_LENGTH = 4;
+
+    private final byte[] pending;
+    private final FrameListener listener;
+    private BinaryFrameListener binaryListener;
+    private int pendingLength = 0;
+    private boolean discarding = false;
+    private long droppedFrames = 0;
+
+    // Binary frame in progress: -1 while reading text
+    private int binaryLength = -1;
+    private boolean readingBinaryLength = false;
+    private int lengthShift = 0;
+    private long corruptFrames = 0;
+
+    public FrameDecoder(int maxFrameLength, FrameListener listener) {
+        this.pending = new byte[maxFrameLength];
+        this.listener = listener;
+    }
+
+    public void setBinaryListener(BinaryFrameListener binaryListener) {
+        this.binaryListener = binaryListener;
+    }
+
+    public void feed(byte[] data, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+
+        for (int i = offset; i < end; i++) {
+            if (readingBinaryLength || binaryLength >= 0) {
+                i = feedBinary(data, i, end) - 1;
+                start = i + 1;
+                continue;
+            }
+
+            if (i == start && data[i] == WireCodec.SYNC && binaryListener != null
+                    && pendingLength == 0 && !discarding) {
+                readingBinaryLength = true;
+                binaryLength = 0;
+                lengthShift = 0;
+                start = i + 1;
+                continue;
+            }
+
+            if (data[i] != DELIMITER) continue;
+
+            if (discarding) {
+                // Tail of an oversized frame, drop it and resync on this delimiter
+                discarding = false;
+            } else if (pendingLength == 0) {
+                // Whole frame is inside this read, emit straight from the caller's buffer
+                emit(data, start, i - start);
+            } else if (append(data, start, i - start, true)) {
+                emit(pending, 0, pendingLength);
+                pendingLength = 0;
+            }
+            start = i + 1;
+        }
+
+        if (start < end && !discarding && binaryLength < 0) {
+            append(data, start, end - start, false);
+        }
+    }
+
+    // Consumes binary frame bytes from data[from..end) and returns the index after the last one used
+    private int feedBinary(byte[] data, int from, int end) {
+        int i = from;
+        while (readingBinaryLength && i < end) {
+            int b = data[i++] & 0xFF;
+            binaryLength |= (b & 0x7F) << lengthShift;
+            lengthShift += 7;
+            if ((b & 0x80) == 0) {
+                readingBinaryLength = false;
+                if (binaryLength == 0 || binaryLength + CRC_LENGTH > pending.length) {
+                    // Not a frame we can hold; treat the rest as text and resync on a newline
+                    corruptFrames++;
+                    binaryLength = -1;
+                    discarding = true;
+                    return i;
+                }
+            } else if (lengthShift > 28) {
+                corruptFrames++;
+                readingBinaryLength = false;
+                binaryLength = -1;
+                discarding = true;
+                return i;
+            }
+        }
+        if (readingBinaryLength) return i;
+
+        int needed = binaryLength + CRC_LENGTH - pendingLength;
+        int take = Math.min(needed, end - i);
+        System.arraycopy(data, i, pending, pendingLength, take);
+        pendingLength += take;
+        i += take;
+
+        if (pendingLength == binaryLength + CRC_LENGTH) {
+            int crc = ((pending[binaryLength] & 0xFF) << 24)
+                    | ((pending[binaryLength + 1] & 0xFF) << 16)
+                    | ((pending[binaryLength + 2] & 0xFF) << 8)
+                    | (pending[binaryLength + 3] & 0xFF);
+            int payloadLength = binaryLength;
+            binaryLength = -1;
+            pendingLength = 0;
+            if (crc == WireCodec.crc32(pending, 0, payloadLength)) {
+                binaryListener.onBinaryFrame(pending, 0, payloadLength);
+            } else {
+                corruptFrames++;
+            }
+        }
+        return i;
+    }
+
+    public void reset() {
+        pendingLength = 0;
+        discarding = false;
+        binaryLength = -1;
+        readingBinaryLength = false;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /** Binary frames dropped for a bad length or CRC. */
+    public long getCorruptFrames() {
+        return corruptFrames;
+    }
+
+    // ended: the bytes run up to a delimiter, so an oversized frame is already over
+    private boolean append(byte[] data, int offset, int length, boolean ended) {
+        if (pendingLength + length > pending.length) {
+            pendingLength = 0;
+            discarding = !ended;
+            droppedFrames++;
+            return false;
+        }
+        System.arraycopy(data, offset, pending, pendingLength, length);
+        pendingLength += length;
+        return true;
+    }
+
+    private void emit(byte[] data, int offset, int length) {
+        int from = offset;
+        int to = offset + length;
+
+        // Same trimming the old String path did (also strips a trailing \r)
+        while (from < to && (data[from] & 0xFF) <= ' ') from++;
+        while (to > from && (data[to - 1] & 0xFF) <= ' ') to--;
+
+        if (to > from) {
+            listener.onFrame(data, from, to - from);
+        }
+    }
+}
@@ -15,15 +15,18 @@ public class HomepageActivity extends AppCompatActivity {
         setContentView(R.layout.activity_homepage); // Your layout XML file
 
 
-        FieldDatabaseConnection db = new FieldDatabaseConnection();
-        db.wakeServer();
+        // Wake the backend and pull every field pattern while Bluetooth connects
+        FieldDatabaseConnection.get(this).prefetchAll();
+
+        // Dial yesterday's robot while the user is still on this screen
+        ConnectionViewModel.getInstance(getApplication()).autoConnectToLastRobot();
 
         Button button = findViewById(R.id.button_start);
         button.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                FieldDatabaseConnection db = new FieldDatabaseConnection();
-                db.wakeServer();
+                // No-op unless the launch prefetch failed or has gone stale
+                FieldDatabaseConnection.get(HomepageActivity.this).prefetchAll();
                 Intent intent = new Intent(HomepageActivity.this, ConnectionActivity.class);
                 startActivity(intent);
             }
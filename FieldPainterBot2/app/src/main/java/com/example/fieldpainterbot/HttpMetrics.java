@@ -0,0 +1,33 @@
+package com.example.fieldpainterbot;
+
+/**
+ * Point-in-time view of every backend call made through {@link BackendHttp}.
+ */
+public final class HttpMetrics {
+
+    public static final HttpMetrics EMPTY = new HttpMetrics(0, 0, 0, 0, 0, 0, 0, 0, null);
+
+    public final long calls;
+    public final long failures;
+    public final long retries;             // requests written beyond the first of each call
+    public final long reusedConnections;
+    public final long ttfbP50Micros;
+    public final long ttfbP95Micros;
+    public final long totalP50Micros;
+    public final long totalP95Micros;
+    public final HttpTiming last;          // null before the first call completes
+
+    HttpMetrics(long calls, long failures, long retries, long reusedConnections,
+                long ttfbP50Micros, long ttfbP95Micros, long totalP50Micros, long totalP95Micros,
+                HttpTiming last) {
+        this.calls = calls;
+        this.failures = failures;
+        this.retries = retries;
+        this.reusedConnections = reusedConnections;
+        this.ttfbP50Micros = ttfbP50Micros;
+        this.ttfbP95Micros = ttfbP95Micros;
+        this.totalP50Micros = totalP50Micros;
+        this.totalP95Micros = totalP95Micros;
+        this.last = last;
+    }
+}
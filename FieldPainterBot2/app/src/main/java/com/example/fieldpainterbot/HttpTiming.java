@@ -0,0 +1,49 @@
+package com.example.fieldpainterbot;
+
+/**
+ * Where one backend call spent its time, as seen by {@link HttpTimingListener}.
+ * Setup phases that did not happen (a pooled connection skips DNS, connect
+ * and TLS) are {@link #NOT_MEASURED}.
+ */
+public final class HttpTiming {
+
+    public static final long NOT_MEASURED = -1;
+
+    public final String path;
+    public final String protocol;          // e.g. "h2", null if no connection was made
+    public final int attempts;             // requests written, retries included
+    public final long dnsMicros;
+    public final long connectMicros;       // TCP connect, TLS included
+    public final long tlsMicros;
+    public final long ttfbMicros;          // last request headers sent to response headers received
+    public final long totalMicros;
+    public final boolean reusedConnection;
+    public final boolean failed;
+
+    HttpTiming(String path, String protocol, int attempts, long dnsMicros, long connectMicros,
+               long tlsMicros, long ttfbMicros, long totalMicros, boolean reusedConnection,
+               boolean failed) {
+        this.path = path;
+        this.protocol = protocol;
+        this.attempts = attempts;
+        this.dnsMicros = dnsMicros;
+        this.connectMicros = connectMicros;
+        this.tlsMicros = tlsMicros;
+        this.ttfbMicros = ttfbMicros;
+        this.totalMicros = totalMicros;
+        this.reusedConnection = reusedConnection;
+        this.failed = failed;
+    }
+
+    @Override
+    public String toString() {
+        return path + (failed ? " FAILED" : "") + " total=" + totalMicros / 1000 + "ms"
+                + " dns=" + ms(dnsMicros) + " connect=" + ms(connectMicros) + " tls=" + ms(tlsMicros)
+                + " ttfb=" + ms(ttfbMicros) + " attempts=" + attempts
+                + (reusedConnection ? " reused" : "") + (protocol != null ? " " + protocol : "");
+    }
+
+    private static String ms(long micros) {
+        return micros == NOT_MEASURED ? "-" : (micros / 1000) + "ms";
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.fieldpainterbot;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Times the phases of every backend call (DNS, connect, TLS, time to first
+ * byte) and keeps running percentiles, so a slow Start can be pinned on a
+ * cold backend, a bad network or a missed connection reuse.
+ */
+public class HttpTimingListener implements EventListener.Factory {
+
+    private static final String TAG = "HttpTiming";
+
+    private final LatencyHistogram ttfb = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong reusedConnections = new AtomicLong();
+    private volatile HttpTiming last;
+
+    @NotNull
+    @Override
+    public EventListener create(@NotNull Call call) {
+        return new CallTimer(call.request().url().encodedPath());
+    }
+
+    public HttpMetrics getMetrics() {
+        if (calls.get() == 0) return HttpMetrics.EMPTY;
+        return new HttpMetrics(calls.get(), failures.get(), retries.get(), reusedConnections.get(),
+                ttfb.percentileMicros(0.50), ttfb.percentileMicros(0.95),
+                total.percentileMicros(0.50), total.percentileMicros(0.95),
+                last);
+    }
+
+    private void record(HttpTiming timing) {
+        calls.incrementAndGet();
+        if (timing.failed) failures.incrementAndGet();
+        if (timing.attempts > 1) retries.addAndGet(timing.attempts - 1);
+        if (timing.reusedConnection) reusedConnections.incrementAndGet();
+        if (timing.ttfbMicros != HttpTiming.NOT_MEASURED) ttfb.record(timing.ttfbMicros);
+        total.record(timing.totalMicros);
+        last = timing;
+        Log.d(TAG, timing.toString());
+    }
+
+    /* ---------------- PER CALL ---------------- */
+
+    // One per call; OkHttp delivers a call's events one at a time
+    private final class CallTimer extends EventListener {
+        private final String path;
+        private long callStartNanos;
+        private long dnsStartNanos;
+        private long connectStartNanos;
+        private long tlsStartNanos;
+        private long requestStartNanos;
+        private long dnsMicros = HttpTiming.NOT_MEASURED;
+        private long connectMicros = HttpTiming.NOT_MEASURED;
+        private long tlsMicros = HttpTiming.NOT_MEASURED;
+        private long ttfbMicros = HttpTiming.NOT_MEASURED;
+        private int attempts;
+        private boolean connected;   // a new connection was made for this call
+        private String protocol;
+
+        CallTimer(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public void callStart(@NotNull Call call) {
+            callStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(@NotNull Call call, @NotNull String domainName) {
+            dnsStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(@NotNull Call call, @NotNull String domainName, @NotNull List<InetAddress> addresses) {
+            dnsMicros = add(dnsMicros, dnsStartNanos);
+        }
+
+        @Override
+        public void connectStart(@NotNull Call call, @NotNull InetSocketAddress address, @NotNull Proxy proxy) {
+            connectStartNanos = System.nanoTime();
+            connected = true;
+        }
+
+        @Override
+        public void secureConnectStart(@NotNull Call call) {
+            tlsStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(@NotNull Call call, Handshake handshake) {
+            tlsMicros = add(tlsMicros, tlsStartNanos);
+        }
+
+        @Override
+        public void connectEnd(@NotNull Call call, @NotNull InetSocketAddress address, @NotNull Proxy proxy,
+                               Protocol protocol) {
+            connectMicros = add(connectMicros, connectStartNanos);
+        }
+
+        @Override
+        public void connectFailed(@NotNull Call call, @NotNull InetSocketAddress address, @NotNull Proxy proxy,
+                                  Protocol protocol, @NotNull IOException e) {
+            connectMicros = add(connectMicros, connectStartNanos);
+        }
+
+        @Override
+        public void connectionAcquired(@NotNull Call call, @NotNull Connection connection) {
+            protocol = connection.protocol().toString();
+        }
+
+        @Override
+        public void requestHeadersStart(@NotNull Call call) {
+            requestStartNanos = System.nanoTime();
+            attempts++;
+        }
+
+        @Override
+        public void responseHeadersStart(@NotNull Call call) {
+            // Retries overwrite this: the last attempt is the one the caller waited on
+            ttfbMicros = (System.nanoTime() - requestStartNanos) / 1000;
+        }
+
+        @Override
+        public void callEnd(@NotNull Call call) {
+            finish(false);
+        }
+
+        @Override
+        public void callFailed(@NotNull Call call, @NotNull IOException ioe) {
+            finish(true);
+        }
+
+        private void finish(boolean failed) {
+            record(new HttpTiming(path, protocol, attempts, dnsMicros, connectMicros, tlsMicros,
+                    ttfbMicros, (System.nanoTime() - callStartNanos) / 1000,
+                    !connected && protocol != null, failed));
+        }
+
+        // Retries can resolve and connect again; the call pays for all of them
+        private long add(long sumMicros, long startNanos) {
+            long micros = (System.nanoTime() - startNanos) / 1000;
+            return sumMicros == HttpTiming.NOT_MEASURED ? micros : sumMicros + micros;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.fieldpainterbot;
+
+/**
+ * A robot this phone has connected to before, as remembered by
+ * {@link KnownRobotRegistry}.
+ */
+public final class KnownRobot {
+
+    public static final int CHANNEL_UNKNOWN = -1;
+
+    public final String address;
+    public final String name;
+    public final int channel;              // RFCOMM channel of the last connection
+    public final long lastConnectedMs;     // wall clock
+
+    KnownRobot(String address, String name, int channel, long lastConnectedMs) {
+        this.address = address;
+        this.name = name;
+        this.channel = channel;
+        this.lastConnectedMs = lastConnectedMs;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.fieldpainterbot;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Robots this phone has connected to, newest first, kept in SharedPreferences
+ * so the next launch can dial the last one straight away instead of waiting
+ * for a discovery scan.
+ */
+public class KnownRobotRegistry {
+
+    private static final String TAG = "KnownRobotRegistry";
+    private static final String PREFS_NAME = "known_robots";
+    private static final String ROBOTS_KEY = "robots";
+    static final int MAX_ROBOTS = 16;
+
+    private final SharedPreferences prefs;
+    // guarded by this; most recently connected first
+    private final LinkedHashMap<String, KnownRobot> robots = new LinkedHashMap<>();
+
+    public KnownRobotRegistry(Context context) {
+        this(context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+    }
+
+    KnownRobotRegistry(SharedPreferences prefs) {
+        this.prefs = prefs;
+        for (KnownRobot robot : parse(prefs.getString(ROBOTS_KEY, null))) {
+            robots.put(robot.address, robot);
+        }
+    }
+
+    /** Remembers a successful connection; a channel of CHANNEL_UNKNOWN keeps the stored one. */
+    public void record(String address, String name, int channel, long nowMs) {
+        String json;
+        synchronized (this) {
+            KnownRobot previous = robots.remove(address);
+            if (previous != null) {
+                if (name == null) name = previous.name;
+                if (channel == KnownRobot.CHANNEL_UNKNOWN) channel = previous.channel;
+            }
+            LinkedHashMap<String, KnownRobot> reordered = new LinkedHashMap<>();
+            reordered.put(address, new KnownRobot(address, name, channel, nowMs));
+            for (Map.Entry<String, KnownRobot> entry : robots.entrySet()) {
+                if (reordered.size() == MAX_ROBOTS) break;
+                reordered.put(entry.getKey(), entry.getValue());
+            }
+            robots.clear();
+            robots.putAll(reordered);
+            json = serialize(new ArrayList<>(robots.values()));
+        }
+        // apply() writes to disk in the background; this runs on I/O threads too
+        prefs.edit().putString(ROBOTS_KEY, json).apply();
+    }
+
+    public synchronized void forget(String address) {
+        if (robots.remove(address) == null) return;
+        prefs.edit().putString(ROBOTS_KEY, serialize(new ArrayList<>(robots.values()))).apply();
+    }
+
+    // Newest first
+    public synchronized List<KnownRobot> getAll() {
+        return Collections.unmodifiableList(new ArrayList<>(robots.values()));
+    }
+
+    public synchronized KnownRobot get(String address) {
+        return robots.get(address);
+    }
+
+    public synchronized List<String> getAddresses() {
+        return new ArrayList<>(robots.keySet());
+    }
+
+    static List<KnownRobot> parse(String json) {
+        List<KnownRobot> out = new ArrayList<>();
+        if (json == null) return out;
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length() && out.size() < MAX_ROBOTS; i++) {
+                JSONObject item = array.getJSONObject(i);
+                out.add(new KnownRobot(
+                        item.getString("address"),
+                        item.has("name") ? item.getString("name") : null,
+                        item.optInt("channel", KnownRobot.CHANNEL_UNKNOWN),
+                        item.optLong("lastConnected", 0)));
+            }
+        } catch (JSONException e) {
+            // A corrupt entry costs us one discovery scan, nothing more
+            Log.w(TAG, "Ignoring unreadable known robot list", e);
+            out.clear();
+        }
+        return out;
+    }
+
+    static String serialize(List<KnownRobot> robots) {
+        JSONArray array = new JSONArray();
+        try {
+            for (KnownRobot robot : robots) {
+                JSONObject item = new JSONObject();
+                item.put("address", robot.address);
+                if (robot.name != null) item.put("name", robot.name);
+                item.put("channel", robot.channel);
+                item.put("lastConnected", robot.lastConnectedMs);
+                array.put(item);
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);  // only thrown for non-finite numbers
+        }
+        return array.toString();
+    }
+}
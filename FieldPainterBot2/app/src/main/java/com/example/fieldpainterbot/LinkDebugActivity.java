@@ -0,0 +1,134 @@
+package com.example.fieldpainterbot;
+
+import android.os.Bundle;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.Locale;
+
+/**
+ * Live view of the active robot's link: round-trip percentiles and histogram,
+ * robot clock offset, send queue and reconnect counters, plus backend HTTP
+ * timings. Opened by long-pressing the Bluetooth icon on the dashboard.
+ */
+public class LinkDebugActivity extends AppCompatActivity {
+
+    private static final long REFRESH_MS = 1000;
+    private static final int BAR_WIDTH = 24;
+
+    private ConnectionViewModel viewModel;
+    private TextView text;
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            render();
+            text.postDelayed(this, REFRESH_MS);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_link_debug);
+
+        viewModel = ConnectionViewModel.getInstance(getApplication());
+        text = findViewById(R.id.linkDebugText);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Only polls while on screen
+        text.post(refresh);
+    }
+
+    @Override
+    protected void onPause() {
+        text.removeCallbacks(refresh);
+        super.onPause();
+    }
+
+    private void render() {
+        RttMetrics rtt = viewModel.getRttMetrics();
+        SendMetrics send = viewModel.getSendMetrics();
+        ReconnectMetrics reconnect = viewModel.getReconnectMetrics();
+        HttpMetrics http = viewModel.getHttpMetrics();
+        RobotSession robot = viewModel.getActiveRobot();
+
+        StringBuilder out = new StringBuilder();
+        out.append("Robot      ").append(robot != null ? robot.getName() : "none").append('\n');
+        out.append("Codec      ").append(robot != null ? robot.getWireFormat() : WireFormat.TEXT).append("\n\n");
+
+        out.append("ROUND TRIP\n");
+        out.append(String.format(Locale.US, "pings      %d sent, %d answered, %d lost%n",
+                rtt.pingsSent, rtt.pongsReceived, rtt.getLostPings()));
+        out.append(String.format(Locale.US, "last       %s%n", ms(rtt.lastMicros)));
+        out.append(String.format(Locale.US, "p50/95/99  %s / %s / %s%n",
+                ms(rtt.p50Micros), ms(rtt.p95Micros), ms(rtt.p99Micros)));
+        out.append(String.format(Locale.US, "max        %s%n", ms(rtt.maxMicros)));
+        out.append("clock      ").append(rtt.hasClockOffset
+                ? String.format(Locale.US, "robot %+d ms from phone", rtt.clockOffsetMs) : "unknown").append("\n\n");
+        appendHistogram(out, rtt.buckets);
+
+        out.append("\nSEND QUEUE\n");
+        out.append(String.format(Locale.US, "depth      %d (max %d)%n", send.queueDepth, send.maxQueueDepth));
+        out.append(String.format(Locale.US, "flush      avg %s, max %s, HALT max %s%n",
+                ms(send.averageFlushLatencyNanos / 1000), ms(send.maxFlushLatencyNanos / 1000),
+                ms(send.maxSafetyLatencyNanos / 1000)));
+        out.append(String.format(Locale.US, "messages   %d sent, %d dropped, %d rejected, %d timed out%n",
+                send.sentMessages, send.droppedMessages, send.rejectedMessages, send.timedOutMessages));
+
+        out.append("\nRECONNECT\n");
+        out.append(String.format(Locale.US, "losses     %d, %d reconnected in %d tries%n",
+                reconnect.linkLosses, reconnect.reconnects, reconnect.attempts));
+        out.append(String.format(Locale.US, "downtime   last %d ms, avg %d ms, max %d ms%n",
+                reconnect.lastReconnectMs, reconnect.averageReconnectMs, reconnect.maxReconnectMs));
+
+        out.append("\nBACKEND\n");
+        out.append(String.format(Locale.US, "calls      %d, %d failed, %d retries, %d reused%n",
+                http.calls, http.failures, http.retries, http.reusedConnections));
+        out.append(String.format(Locale.US, "ttfb       p50 %s, p95 %s%n", ms(http.ttfbP50Micros), ms(http.ttfbP95Micros)));
+        out.append(String.format(Locale.US, "total      p50 %s, p95 %s%n", ms(http.totalP50Micros), ms(http.totalP95Micros)));
+        if (http.last != null) {
+            HttpTiming last = http.last;
+            out.append(String.format(Locale.US, "last       %s %s%s%n", last.path,
+                    last.protocol != null ? last.protocol : "-", last.reusedConnection ? " (reused)" : ""));
+            out.append(String.format(Locale.US, "           dns %s, connect %s, tls %s, ttfb %s%n",
+                    phase(last.dnsMicros), phase(last.connectMicros), phase(last.tlsMicros), phase(last.ttfbMicros)));
+        }
+
+        text.setText(out);
+    }
+
+    // Only the non-empty range of buckets, one bar each, scaled to the fullest
+    private static void appendHistogram(StringBuilder out, long[] buckets) {
+        int first = -1;
+        int last = -1;
+        long peak = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] == 0) continue;
+            if (first < 0) first = i;
+            last = i;
+            peak = Math.max(peak, buckets[i]);
+        }
+        if (first < 0) {
+            out.append("no samples yet\n");
+            return;
+        }
+        for (int i = first; i <= last; i++) {
+            int width = (int) Math.round(buckets[i] * (double) BAR_WIDTH / peak);
+            out.append(String.format(Locale.US, "%9s ", ms(LatencyHistogram.lowerBound(i))));
+            for (int k = 0; k < width; k++) out.append('#');
+            out.append(' ').append(buckets[i]).append('\n');
+        }
+    }
+
+    private static String phase(long micros) {
+        return micros == HttpTiming.NOT_MEASURED ? "-" : ms(micros);
+    }
+
+    private static String ms(long micros) {
+        return String.format(Locale.US, micros < 10_000 ? "%.2f ms" : "%.0f ms", micros / 1000.0);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.fieldpainterbot;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The one main-thread Handler background callbacks are posted through,
+ * instead of each caller allocating its own.
+ */
+public final class MainThreadExecutor implements Executor {
+
+    private static final class Holder {
+        static final MainThreadExecutor INSTANCE = new MainThreadExecutor();
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private MainThreadExecutor() {}
+
+    public static MainThreadExecutor get() {
+        return Holder.INSTANCE;
+    }
+
+    // Always posts, even when already on the main thread
+    @Override
+    public void execute(Runnable runnable) {
+        handler.post(runnable);
+    }
+
+    public void postDelayed(Runnable runnable, long delayMs) {
+        handler.postDelayed(runnable, delayMs);
+    }
+}
@@ -117,35 +117,11 @@ public class ManualControlActivity extends AppCompatActivity {
         batteryIcon = findViewById(R.id.battery_icon);
         percentLevel = findViewById(R.id.percentLevel);
 
-        //  Observe battery level updates in real-time
-        viewModel.getBatteryLevel().observe(this, level -> {
-            if (level != null) {
-                updateBatteryUI(level);
-                Log.d("Battery", "Battery updated: " + level);
-            }
-            else {
-                Log.d("Bluetooth", "Disconnected");
-                // Optional: fallback battery level if disconnected
-                updateBatteryUI(70);
-            }
-        });
-
-
         sprayIcon = findViewById(R.id.spray_icon);
         percentSpray = findViewById(R.id.sprayLevel);
 
-        percentLevel = findViewById(R.id.percentLevel);
-        viewModel.getSprayLevel().observe(this, level -> {
-            if (level != null) {
-                updateSprayUI(level);
-                Log.d("Spray", "Spray updated: " + level);
-            }
-            else {
-                Log.d("Bluetooth", "Disconnected");
-                // Optional: fallback battery level if disconnected
-                updateBatteryUI(100);
-            }
-        });
+        //  Observe robot telemetry in real-time (one conflated snapshot, at most 10 Hz)
+        viewModel.getTelemetry().observe(this, this::renderTelemetry);
 
 
 
@@ -195,14 +171,14 @@ public class ManualControlActivity extends AppCompatActivity {
 
             if (cmd.isEmpty()) return false;
 
-            // --- 3) Handle press + release events ---
+            // --- 3) Handle press + release events (held state goes out on the drive heartbeat) ---
             if (event.getAction() == MotionEvent.ACTION_DOWN) {
-                viewModel.sendControlCommand(cmd, "pressed");
+                viewModel.pressDriveButton(cmd);
             } else if (event.getAction() == MotionEvent.ACTION_UP ||
                     event.getAction() == MotionEvent.ACTION_CANCEL) {
 
                 v.performClick(); // safe - custom view overrides performClick()
-                viewModel.sendControlCommand(cmd, "released");
+                viewModel.releaseDriveButton(cmd);
             }
 
             return true;
@@ -220,6 +196,25 @@ public class ManualControlActivity extends AppCompatActivity {
 
     }
 
+    private void renderTelemetry(TelemetrySnapshot snapshot) {
+        if (snapshot == null) return;
+        if (snapshot.hasBatteryLevel()) updateBatteryUI(snapshot.getBatteryLevel());
+        if (snapshot.hasSprayLevel()) updateSprayUI(snapshot.getSprayLevel());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Heartbeat only runs while the D-pad is on screen
+        ConnectionViewModel.getInstance(getApplication()).startManualDrive();
+    }
+
+    @Override
+    protected void onPause() {
+        ConnectionViewModel.getInstance(getApplication()).stopManualDrive();
+        super.onPause();
+    }
+
     /**
      * Helper function to update battery icon + text based on current level
      */
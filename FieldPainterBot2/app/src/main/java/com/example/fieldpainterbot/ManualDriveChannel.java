@@ -0,0 +1,136 @@
+package com.example.fieldpainterbot;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manual drive state as a single bit mask of held buttons. A ticker sends
+ * the current mask as a DRIVE frame at a fixed rate through the send
+ * thread's latest-state-wins slot, so rapid tapping never builds a backlog
+ * and the robot can stop on its own if the ticks stop arriving. One ticker
+ * thread serves every start/stop for the life of the channel.
+ */
+public class ManualDriveChannel {
+
+    public static final int DEFAULT_RATE_HZ = 20;
+
+    public static final int FORWARD = 1;
+    public static final int BACK = 1 << 1;
+    public static final int LEFT = 1 << 2;
+    public static final int RIGHT = 1 << 3;
+    public static final int SPRAY = 1 << 4;
+    private static final int ALL_BUTTONS = FORWARD | BACK | LEFT | RIGHT | SPRAY;
+
+    // Where DRIVE frames go: the active robot in the app, a recorder in tests
+    interface Link {
+        WireFormat getWireFormat();
+        void sendLatest(byte[] frame);
+    }
+
+    private final Link link;
+    private final long periodMs;
+    private final ScheduledExecutorService ticker;
+    private final AtomicInteger buttons = new AtomicInteger();
+    private final byte[][][] frames = new byte[WireFormat.values().length][ALL_BUTTONS + 1][];
+    private ScheduledFuture<?> heartbeat;  // guarded by this
+
+    public ManualDriveChannel(BluetoothService bluetoothService) {
+        this(bluetoothService, DEFAULT_RATE_HZ);
+    }
+
+    public ManualDriveChannel(BluetoothService bluetoothService, int rateHz) {
+        this(new Link() {
+            @Override
+            public WireFormat getWireFormat() {
+                return bluetoothService.getWireFormat();
+            }
+
+            @Override
+            public void sendLatest(byte[] frame) {
+                bluetoothService.sendLatest(frame);
+            }
+        }, rateHz, Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ManualDriveTicker");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    ManualDriveChannel(Link link, int rateHz, ScheduledExecutorService ticker) {
+        this.link = link;
+        this.periodMs = Math.max(1, 1000 / rateHz);
+        this.ticker = ticker;
+
+        // Every possible state is encoded once up front, in both wire formats
+        for (WireFormat format : WireFormat.values()) {
+            for (int mask = 0; mask <= ALL_BUTTONS; mask++) {
+                frames[format.ordinal()][mask] = format.drive(mask);
+            }
+        }
+    }
+
+    /** Maps the D-pad command names used by the UI to a button bit, or 0. */
+    public static int buttonFor(String command) {
+        switch (command) {
+            case "FORWARD": return FORWARD;
+            case "BACK": return BACK;
+            case "LEFT": return LEFT;
+            case "RIGHT": return RIGHT;
+            case "SPRAY": return SPRAY;
+            default: return 0;
+        }
+    }
+
+    public void press(int button) {
+        update(button, true);
+    }
+
+    public void release(int button) {
+        update(button, false);
+    }
+
+    private void update(int button, boolean pressed) {
+        int previous;
+        int next;
+        do {
+            previous = buttons.get();
+            next = pressed ? previous | button : previous & ~button;
+        } while (!buttons.compareAndSet(previous, next));
+
+        // Don't wait for the next tick to report a change
+        if (next != previous) sendState(next);
+    }
+
+    public synchronized void start() {
+        if (heartbeat != null) return;
+
+        sendState(buttons.get());
+        heartbeat = ticker.scheduleAtFixedRate(this::tick, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Under the lock, so a tick already running can't resend a held button after stop()'s release
+    private synchronized void tick() {
+        if (heartbeat != null) sendState(buttons.get());
+    }
+
+    /** Stops the heartbeat after releasing every button on the robot. */
+    public synchronized void stop() {
+        if (heartbeat == null) return;
+
+        heartbeat.cancel(false);
+        heartbeat = null;
+        buttons.set(0);
+        sendState(0);
+    }
+
+    synchronized boolean isRunning() {
+        return heartbeat != null;
+    }
+
+    private void sendState(int mask) {
+        link.sendLatest(frames[link.getWireFormat().ordinal()][mask]);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.fieldpainterbot;
+
+/**
+ * What a full send lane does with a new message.
+ */
+public enum OverflowPolicy {
+    BLOCK,        // wait for room, up to the send timeout
+    DROP_OLDEST,  // fail the oldest unsent message and queue the new one
+    REJECT        // fail the new message immediately
+}
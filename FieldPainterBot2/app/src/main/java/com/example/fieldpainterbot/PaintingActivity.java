@@ -3,18 +3,26 @@ package com.example.fieldpainterbot;
 import android.content.Intent;
 import android.graphics.drawable.AnimationDrawable;
 import android.os.Bundle;
-import android.util.Log;
+import android.os.SystemClock;
 import android.widget.Button;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
+import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
 
+import java.util.Locale;
+
 
 
 public class PaintingActivity extends AppCompatActivity {
+    // Paint drain is averaged over the last few minutes of the job
+    private static final long DRAIN_WINDOW_MS = 5 * 60_000;
+
+    private final TelemetryRing.Stats drainStats = new TelemetryRing.Stats();
+    private ConnectionViewModel viewModel;
     private TextView percentLevel;
 
     private TextView percentSpray;
@@ -34,7 +42,7 @@ public class PaintingActivity extends AppCompatActivity {
         AnimationDrawable anim = (AnimationDrawable) loadingAnimation.getDrawable(); // or getBackground()
         anim.start();
 
-        ConnectionViewModel viewModel = ConnectionViewModel.getInstance(getApplication());
+        viewModel = ConnectionViewModel.getInstance(getApplication());
         
         viewModel.getConnectionStatus().observe(this, status -> {
             if (status == ConnectionStatus.DISCONNECTED) {
@@ -43,37 +51,16 @@ public class PaintingActivity extends AppCompatActivity {
                 progress.setProgress(70);
                 Connection.setText("Connection Status: Disconnected");
             }
+            else if (status == ConnectionStatus.CONNECTING) {
+                // Link dropped mid-job; BluetoothService is reconnecting and will resume the upload
+                Connection.setText("Connection Status: Reconnecting...");
+            }
             else{
                 Connection.setText("Connection Status: Connected");
             }
         });
 
 
-        //  Observe battery level updates in real-time
-        viewModel.getBatteryLevel().observe(this, level -> {
-            if (level != null) {
-                updateBatteryUI(level);
-                Log.d("Battery", "Battery updated: " + level);
-            }
-            else {
-                Log.d("Bluetooth", "Disconnected");
-                // Optional: fallback battery level if disconnected
-                updateBatteryUI(70);
-            }
-        });
-
-        viewModel.getSprayLevel().observe(this, level -> {
-            if (level != null) {
-                updateSprayUI(level);
-                Log.d("Spray", "Spray updated: " + level);
-            }
-            else {
-                Log.d("Bluetooth", "Disconnected");
-                // Optional: fallback battery level if disconnected
-                updateBatteryUI(100);
-            }
-        });
-
         Button actionButton = findViewById(R.id.cancelButton);
 
         // Default behavior (Cancel → Dashboard)
@@ -106,13 +93,33 @@ public class PaintingActivity extends AppCompatActivity {
 
         });
 
+        // Long press: stop every robot on the field, not just this one
+        pauseResumeButton.setOnLongClickListener(v -> {
+            int halted = viewModel.haltAllRobots();
+            if (halted == 0) {
+                // Nothing was stopped, so don't show a pause that isn't real
+                Toast.makeText(this, R.string.no_robot_reachable, Toast.LENGTH_SHORT).show();
+                return true;
+            }
+            pauseResumeButton.setImageResource(R.drawable.outline_arrow_drop_down_circle_24);
+            isPaused = true;
+            Toast.makeText(this, getString(R.string.robots_halted, halted), Toast.LENGTH_SHORT).show();
+            return true;
+        });
+
 // Set initial behavior
         actionButton.setOnClickListener(v -> defaultAction.run());
 
-        viewModel.getProgressLevel().observe(this, level -> {
-            if (level != null) {
+        //  Observe robot telemetry in real-time (one conflated snapshot, at most 10 Hz)
+        viewModel.getTelemetry().observe(this, snapshot -> {
+            if (snapshot == null) return;
+
+            if (snapshot.hasBatteryLevel()) updateBatteryUI(snapshot.getBatteryLevel());
+            if (snapshot.hasSprayLevel()) updateSprayUI(snapshot.getSprayLevel());
+
+            if (snapshot.hasProgressLevel()) {
+                int level = snapshot.getProgressLevel();
                 progress.setProgress(level);
-                Log.d("Progress", "Progress updated: " + level);
 
                 if (level >= 100) {
                     // Show DONE state
@@ -130,10 +137,6 @@ public class PaintingActivity extends AppCompatActivity {
                     actionButton.setOnClickListener(v -> defaultAction.run());
                 }
             }
-            else {
-                Log.d("Bluetooth", "Disconnected");
-                progress.setProgress(70);
-            }
         });
 
     }
@@ -142,7 +145,11 @@ public class PaintingActivity extends AppCompatActivity {
     }
 
     private void updateSprayUI(int sprayLevel) {
-        percentSpray.setText("Paint Remaining: "+sprayLevel + "%");
+        String text = "Paint Remaining: " + sprayLevel + "%";
+        float drain = viewModel.getTelemetryHistory().drainRatePerMinute(TelemetryChannel.SPRAY,
+                DRAIN_WINDOW_MS, SystemClock.elapsedRealtime(), drainStats);
+        if (drain > 0) text += String.format(Locale.US, " (%.1f%%/min)", drain);
+        percentSpray.setText(text);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.example.fieldpainterbot;
+
+import java.util.BitSet;
+
+/**
+ * Dead-reckons a {@link FieldPattern} the way Conversion_Service drives it:
+ * <ul>
+ *   <li>Walk: straight ahead, Quantity feet (nothing for zero or less)</li>
+ *   <li>Rotation: in place, Quantity degrees, positive counter-clockwise</li>
+ *   <li>Circle: a half circle counter-clockwise of radius Quantity feet,
+ *       always spraying (handle_arc ignores the Paint flag)</li>
+ * </ul>
+ * Distances go from feet to centimetres with the same 30.48 factor as
+ * Convert_To_Array. Pure arithmetic on primitive columns, so a thousand
+ * instructions simulate in well under a millisecond.
+ */
+public final class PathSimulator {
+
+    static final float CM_PER_FOOT = 30.48f;
+    static final float CIRCLE_SWEEP_DEGREES = 180f;
+
+    private PathSimulator() {}
+
+    public static SimulatedPath simulate(FieldPattern pattern) {
+        int n = pattern.size();
+        byte[] kinds = new byte[n];
+        float[] startX = new float[n];
+        float[] startY = new float[n];
+        float[] startHeading = new float[n];
+        float[] endX = new float[n];
+        float[] endY = new float[n];
+        float[] endHeading = new float[n];
+        float[] radius = new float[n];
+        BitSet painted = new BitSet(n);
+
+        // double while accumulating, so long patterns don't drift in float
+        double x = 0;
+        double y = 0;
+        double heading = 0;
+        double minX = 0, minY = 0, maxX = 0, maxY = 0;
+
+        for (int i = 0; i < n; i++) {
+            startX[i] = (float) x;
+            startY[i] = (float) y;
+            startHeading[i] = (float) heading;
+            double quantity = pattern.getQuantity(i);
+            double rad = Math.toRadians(heading);
+
+            switch (pattern.getType(i)) {
+                case FieldPattern.WALK: {
+                    kinds[i] = SimulatedPath.LINE;
+                    double distance = Math.max(0, quantity * CM_PER_FOOT);
+                    x += distance * Math.cos(rad);
+                    y += distance * Math.sin(rad);
+                    painted.set(i, pattern.isPaint(i) && distance > 0);
+                    break;
+                }
+                case FieldPattern.ROTATION:
+                    kinds[i] = SimulatedPath.TURN;
+                    heading += quantity;
+                    painted.set(i, pattern.isPaint(i));
+                    break;
+                case FieldPattern.CIRCLE: {
+                    kinds[i] = SimulatedPath.ARC;
+                    double r = Math.max(0, quantity * CM_PER_FOOT);
+                    radius[i] = (float) r;
+                    double centerX = x - r * Math.sin(rad);
+                    double centerY = y + r * Math.cos(rad);
+                    // Extremes of the half circle: any axis direction it sweeps through
+                    double startAngle = normalize(heading - 90);
+                    for (int axis = 0; axis < 360; axis += 90) {
+                        if (normalize(axis - startAngle) > CIRCLE_SWEEP_DEGREES) continue;
+                        double px = centerX + r * Math.cos(Math.toRadians(axis));
+                        double py = centerY + r * Math.sin(Math.toRadians(axis));
+                        minX = Math.min(minX, px);
+                        minY = Math.min(minY, py);
+                        maxX = Math.max(maxX, px);
+                        maxY = Math.max(maxY, py);
+                    }
+                    x = 2 * centerX - x;
+                    y = 2 * centerY - y;
+                    heading += CIRCLE_SWEEP_DEGREES;
+                    painted.set(i, r > 0);
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown movement type " + pattern.getType(i));
+            }
+            heading = normalize(heading);
+            endX[i] = (float) x;
+            endY[i] = (float) y;
+            endHeading[i] = (float) heading;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        return new SimulatedPath(n, kinds, startX, startY, startHeading, endX, endY, endHeading,
+                radius, painted, (float) minX, (float) minY, (float) maxX, (float) maxY);
+    }
+
+    // Into [0, 360)
+    static double normalize(double degrees) {
+        degrees %= 360;
+        return degrees < 0 ? degrees + 360 : degrees;
+    }
+}
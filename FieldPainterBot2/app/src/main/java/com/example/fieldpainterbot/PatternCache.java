@@ -0,0 +1,424 @@
+package com.example.fieldpainterbot;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-device copy of every field pattern fetched from the backend, keyed by
+ * collection name. Each entry keeps the server's ETag, a SHA-256 of the body
+ * and when it was fetched, so Start can go ahead on the cached copy while
+ * {@link FieldDatabaseConnection} revalidates it in the background.
+ *
+ * <p>Bodies live one per file under {@code filesDir/patterns}; a small index
+ * file holds the metadata in least-recently-used order. Once the bodies pass
+ * {@link #MAX_BYTES} the least recently used ones are deleted.
+ *
+ * <p>The ETag of the last whole bundle is kept too, with the collections it
+ * held, so a launch-time prefetch can be answered with a 304 while all of
+ * them are still here.
+ */
+public class PatternCache {
+
+    private static final String TAG = "PatternCache";
+    private static final String DIR_NAME = "patterns";
+    private static final String INDEX_FILE = "index.json";
+    private static final String BUNDLE_FILE = "bundle.json";
+    static final long MAX_BYTES = 2 * 1024 * 1024;
+
+    private static PatternCache instance;
+
+    /** One cached pattern. */
+    public static final class Entry {
+        public final String collection;
+        public final String body;
+        public final String etag;          // as sent by the server, null if it sent none
+        public final String sha256;        // hex digest of body
+        public final long fetchedAtMs;     // wall clock of the last 200 or 304
+
+        Entry(String collection, String body, String etag, String sha256, long fetchedAtMs) {
+            this.collection = collection;
+            this.body = body;
+            this.etag = etag;
+            this.sha256 = sha256;
+            this.fetchedAtMs = fetchedAtMs;
+        }
+    }
+
+    // Index row: everything but the body
+    private static final class Meta {
+        final String collection;
+        final String file;
+        final String etag;
+        final String sha256;
+        final long fetchedAtMs;
+        final long bytes;
+
+        Meta(String collection, String file, String etag, String sha256, long fetchedAtMs, long bytes) {
+            this.collection = collection;
+            this.file = file;
+            this.etag = etag;
+            this.sha256 = sha256;
+            this.fetchedAtMs = fetchedAtMs;
+            this.bytes = bytes;
+        }
+
+        Meta fetchedAt(long nowMs) {
+            return new Meta(collection, file, etag, sha256, nowMs, bytes);
+        }
+    }
+
+    private final File dir;
+    private final long maxBytes;
+    // guarded by this; least recently used first, reordered by get() only
+    private final LinkedHashMap<String, Meta> index = new LinkedHashMap<>();
+    // guarded by this; collections whose file has matched its hash since the index was loaded
+    private final Set<String> verified = new HashSet<>();
+    private long totalBytes;
+    // guarded by this; the last bundle stored, null etag if none
+    private String bundleEtag;
+    private List<String> bundleCollections = new ArrayList<>();
+
+    public static synchronized PatternCache get(Context context) {
+        if (instance == null) {
+            instance = new PatternCache(
+                    new File(context.getApplicationContext().getFilesDir(), DIR_NAME), MAX_BYTES);
+        }
+        return instance;
+    }
+
+    PatternCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Could not create " + dir);
+        }
+        loadIndex();
+        loadBundle();
+    }
+
+    /* ---------------- LOOKUP ---------------- */
+
+    /**
+     * The cached pattern, or null if there is none or its file no longer
+     * matches its hash. Counts as a use: the pattern becomes the last to be
+     * evicted.
+     */
+    public synchronized Entry get(String collection) {
+        Entry entry = read(collection);
+        if (entry != null && moveToNewest(collection)) saveIndex();
+        return entry;
+    }
+
+    /** Like {@link #get} but leaves the eviction order alone, for previews and other lookups that aren't a use. */
+    public synchronized Entry peek(String collection) {
+        return read(collection);
+    }
+
+    private Entry read(String collection) {
+        Meta meta = index.get(collection);
+        if (meta == null) return null;
+
+        String body;
+        try {
+            body = new String(readFile(new File(dir, meta.file)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Log.w(TAG, "Dropping unreadable pattern " + collection, e);
+            if (drop(collection)) saveIndex();
+            return null;
+        }
+        // Files only change through put(), so one check per load catches corruption on disk
+        if (!verified.contains(collection)) {
+            if (!sha256Hex(body).equals(meta.sha256)) {
+                Log.w(TAG, "Dropping corrupt pattern " + collection);
+                if (drop(collection)) saveIndex();
+                return null;
+            }
+            verified.add(collection);
+        }
+        return new Entry(collection, body, meta.etag, meta.sha256, meta.fetchedAtMs);
+    }
+
+    // Returns false if collection already was the most recently used
+    private boolean moveToNewest(String collection) {
+        String newest = null;
+        for (String key : index.keySet()) newest = key;
+        if (collection.equals(newest)) return false;
+        index.put(collection, index.remove(collection));
+        return true;
+    }
+
+    public synchronized boolean contains(String collection) {
+        return index.containsKey(collection);
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    /* ---------------- UPDATE ---------------- */
+
+    /** Stores a freshly fetched body, evicting older patterns past the size bound. */
+    public synchronized Entry put(String collection, String body, String etag, long nowMs) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String sha256 = sha256Hex(bytes);
+        if (bytes.length > maxBytes) {
+            Log.w(TAG, "Pattern " + collection + " is " + bytes.length + " bytes, not caching");
+            drop(collection);
+            return new Entry(collection, body, etag, sha256, nowMs);
+        }
+
+        String file = fileNameFor(collection);
+        try {
+            writeAtomically(new File(dir, file), bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not cache pattern " + collection, e);
+            return new Entry(collection, body, etag, sha256, nowMs);
+        }
+
+        Meta previous = index.remove(collection);
+        if (previous != null) totalBytes -= previous.bytes;
+        index.put(collection, new Meta(collection, file, etag, sha256, nowMs, bytes.length));
+        verified.add(collection);
+        totalBytes += bytes.length;
+        evict();
+        saveIndex();
+        return new Entry(collection, body, etag, sha256, nowMs);
+    }
+
+    /** Records a 304: the cached body is still current as of nowMs. */
+    public synchronized void markValidated(String collection, long nowMs) {
+        Meta meta = index.get(collection);
+        if (meta == null) return;
+        index.put(collection, meta.fetchedAt(nowMs));
+        saveIndex();
+    }
+
+    /**
+     * Records that the bundle with {@code etag} has just been stored, holding
+     * {@code collections}. A null etag forgets the previous one.
+     */
+    public synchronized void putBundle(String etag, List<String> collections) {
+        bundleEtag = etag;
+        bundleCollections = new ArrayList<>(collections);
+        saveBundle();
+    }
+
+    /**
+     * The ETag to revalidate the bundle with, or null if there is none or any
+     * collection it held has since been evicted; a 304 would leave that one
+     * out of the cache.
+     */
+    public synchronized String getBundleEtag() {
+        if (bundleEtag == null) return null;
+        for (String collection : bundleCollections) {
+            if (!index.containsKey(collection)) return null;
+        }
+        return bundleEtag;
+    }
+
+    /** Records a 304 for the bundle: every collection it held is current as of nowMs. */
+    public synchronized int markBundleValidated(long nowMs) {
+        int validated = 0;
+        for (String collection : bundleCollections) {
+            Meta meta = index.get(collection);
+            if (meta == null) continue;
+            index.put(collection, meta.fetchedAt(nowMs));
+            validated++;
+        }
+        saveIndex();
+        return validated;
+    }
+
+    public synchronized void remove(String collection) {
+        if (drop(collection)) saveIndex();
+    }
+
+    private boolean drop(String collection) {
+        Meta meta = index.remove(collection);
+        if (meta == null) return false;
+        verified.remove(collection);
+        totalBytes -= meta.bytes;
+        deleteQuietly(new File(dir, meta.file));
+        return true;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Meta>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Meta eldest = it.next().getValue();
+            it.remove();
+            verified.remove(eldest.collection);
+            totalBytes -= eldest.bytes;
+            deleteQuietly(new File(dir, eldest.file));
+            Log.d(TAG, "Evicted pattern " + eldest.collection);
+        }
+    }
+
+    /* ---------------- INDEX ---------------- */
+
+    private void loadIndex() {
+        File file = new File(dir, INDEX_FILE);
+        if (!file.exists()) return;
+        try {
+            JSONArray array = new JSONArray(new String(readFile(file), StandardCharsets.UTF_8));
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                Meta meta = new Meta(
+                        item.getString("collection"),
+                        item.getString("file"),
+                        item.has("etag") ? item.getString("etag") : null,
+                        item.getString("sha256"),
+                        item.optLong("fetchedAt", 0),
+                        item.getLong("bytes"));
+                if (!new File(dir, meta.file).exists()) continue;
+                index.put(meta.collection, meta);
+                totalBytes += meta.bytes;
+            }
+        } catch (IOException | JSONException e) {
+            // Losing the index only costs a refetch per field
+            Log.w(TAG, "Ignoring unreadable pattern index", e);
+            index.clear();
+            totalBytes = 0;
+        }
+    }
+
+    private void saveIndex() {
+        JSONArray array = new JSONArray();
+        try {
+            for (Meta meta : index.values()) {
+                JSONObject item = new JSONObject();
+                item.put("collection", meta.collection);
+                item.put("file", meta.file);
+                if (meta.etag != null) item.put("etag", meta.etag);
+                item.put("sha256", meta.sha256);
+                item.put("fetchedAt", meta.fetchedAtMs);
+                item.put("bytes", meta.bytes);
+                array.put(item);
+            }
+            writeAtomically(new File(dir, INDEX_FILE), array.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);  // only thrown for non-finite numbers
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save pattern index", e);
+        }
+    }
+
+    private void loadBundle() {
+        File file = new File(dir, BUNDLE_FILE);
+        if (!file.exists()) return;
+        try {
+            JSONObject bundle = new JSONObject(new String(readFile(file), StandardCharsets.UTF_8));
+            JSONArray collections = bundle.getJSONArray("collections");
+            List<String> names = new ArrayList<>(collections.length());
+            for (int i = 0; i < collections.length(); i++) names.add(collections.getString(i));
+            bundleEtag = bundle.getString("etag");
+            bundleCollections = names;
+        } catch (IOException | JSONException e) {
+            // Costs one full bundle download
+            Log.w(TAG, "Ignoring unreadable bundle record", e);
+        }
+    }
+
+    private void saveBundle() {
+        File file = new File(dir, BUNDLE_FILE);
+        if (bundleEtag == null) {
+            deleteQuietly(file);
+            return;
+        }
+        try {
+            JSONObject bundle = new JSONObject();
+            bundle.put("etag", bundleEtag);
+            bundle.put("collections", new JSONArray(bundleCollections));
+            writeAtomically(file, bundle.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save bundle record", e);
+        }
+    }
+
+    // Oldest first
+    synchronized List<String> collections() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    /* ---------------- FILES ---------------- */
+
+    // Collection names come from the backend; never let one pick its own path
+    private static String fileNameFor(String collection) {
+        return sha256Hex(collection).substring(0, 32) + ".json";
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            long length = file.length();
+            if (length > Integer.MAX_VALUE) throw new IOException(file + " too large");
+            byte[] bytes = new byte[(int) length];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) throw new IOException(file + " truncated");
+                read += n;
+            }
+            return bytes;
+        }
+    }
+
+    // Write then rename, so a crash mid-write leaves the old file intact
+    private static void writeAtomically(File file, byte[] bytes) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(bytes);
+        }
+        if (!tmp.renameTo(file)) {
+            deleteQuietly(tmp);
+            throw new IOException("Could not rename " + tmp);
+        }
+    }
+
+    private static void deleteQuietly(File file) {
+        if (file.exists() && !file.delete()) Log.w(TAG, "Could not delete " + file);
+    }
+
+    static String sha256Hex(String text) {
+        return sha256Hex(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String sha256Hex(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);  // every Android device has SHA-256
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package com.example.fieldpainterbot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reorders a field pattern to cut the unpainted travel between the lines it
+ * paints. The pattern is simulated, broken into painted elements (lines,
+ * half-circle arcs and spots sprayed while turning in place), and those are
+ * put in a new order: nearest neighbour or the authored order, whichever is
+ * cheaper, then 2-opt and Or-opt moves until nothing improves or a fixed
+ * number of candidate moves has been tried. The cap is a count, not a clock,
+ * so a pattern always comes out the same however busy the phone is. Lines
+ * may be driven either way; arcs only counter-clockwise from their original
+ * start, since that is the only way the robot draws them. The travel moves in
+ * between are generated afresh.
+ *
+ * <p>Costs follow Conversion_Service: CM_PER_SECOND and DEGREES_PER_SECOND
+ * for moving, a pause after every instruction, and the actuator's 1.5 s out
+ * and 1.5 s back for every painted one. The result is re-simulated and only
+ * used if it paints the same set and finishes sooner; otherwise the original
+ * pattern comes back unchanged.
+ */
+public final class PatternOptimizer {
+
+    // Conversion_Service calibration
+    static final double CM_PER_SECOND = 106.68;
+    static final double DEGREES_PER_SECOND = 166.67;
+    static final double PAUSE_SECONDS = 0.5;          // execute_field_pattern's pause_between
+    static final double SPRAY_TOGGLE_SECONDS = 3.0;   // handle_spray_on + handle_spray_off
+    static final double WHEEL_BASE_CM = 45.72;
+
+    // Candidate moves tried before settling; about half a second for 3000 instructions
+    static final long DEFAULT_MAX_MOVES = 2_000_000;
+    // How far the reordered pattern may put a painted mark from the original one
+    static final float MATCH_TOLERANCE_CM = 2f;
+
+    // Travel shorter than this, or turns smaller, are not worth an instruction
+    private static final double POSITION_EPSILON_CM = 0.5;
+    private static final double ANGLE_EPSILON_DEGREES = 0.05;
+    private static final double IMPROVEMENT_EPSILON = 1e-6;
+    private static final int MAX_OR_OPT_BLOCK = 3;
+    // The wire codec carries quantities in hundredths
+    private static final double QUANTITY_STEP = 1.0 / WireCodec.QUANTITY_SCALE;
+
+    private static final int START = -1;
+    private static final int END = -2;
+
+    /** The pattern to send and what reordering it bought. */
+    public static final class Result {
+        public final FieldPattern pattern;
+        public final boolean reordered;
+        public final double originalSeconds;
+        public final double optimizedSeconds;
+        public final long computeMs;
+        public final long moves;           // candidate moves tried, never more than the cap
+
+        Result(FieldPattern pattern, boolean reordered, double originalSeconds, double optimizedSeconds,
+               long computeMs, long moves) {
+            this.pattern = pattern;
+            this.reordered = reordered;
+            this.originalSeconds = originalSeconds;
+            this.optimizedSeconds = optimizedSeconds;
+            this.computeMs = computeMs;
+            this.moves = moves;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: %.0f s -> %.0f s (%d instructions, %d moves in %d ms)",
+                    reordered ? "Reordered" : "Kept original order", originalSeconds, optimizedSeconds,
+                    pattern.size(), moves, computeMs);
+        }
+    }
+
+    /*
+     * Painted elements, in oriented form: element e driven forwards is 2e,
+     * backwards 2e + 1 (lines only). Entry and exit headings are NaN where
+     * any heading will do (spots).
+     */
+    private final int elementCount;
+    private final byte[] kinds;
+    private final float[] quantities;
+    private final double[] entryX, entryY, entryHeading;
+    private final double[] exitX, exitY, exitHeading;
+    private final int[] fixedPrefix;   // fixedPrefix[k]: elements before position k of the tour that can't be reversed
+
+    private int[] tour;
+    // Candidate moves improve() may still try
+    private long movesLeft;
+
+    private PatternOptimizer(FieldPattern pattern, SimulatedPath path) {
+        List<Integer> painted = new ArrayList<>();
+        for (int i = 0; i < path.size(); i++) {
+            if (path.isPainted(i)) painted.add(i);
+        }
+        elementCount = painted.size();
+        kinds = new byte[elementCount];
+        quantities = new float[elementCount];
+        entryX = new double[elementCount * 2];
+        entryY = new double[elementCount * 2];
+        entryHeading = new double[elementCount * 2];
+        exitX = new double[elementCount * 2];
+        exitY = new double[elementCount * 2];
+        exitHeading = new double[elementCount * 2];
+        fixedPrefix = new int[elementCount + 1];
+
+        for (int e = 0; e < elementCount; e++) {
+            int i = painted.get(e);
+            kinds[e] = path.getKind(i);
+            quantities[e] = pattern.getQuantity(i);
+            int forward = 2 * e;
+            int backward = forward + 1;
+            entryX[forward] = path.getStartX(i);
+            entryY[forward] = path.getStartY(i);
+            exitX[forward] = path.getEndX(i);
+            exitY[forward] = path.getEndY(i);
+            switch (kinds[e]) {
+                case SimulatedPath.LINE:
+                    entryHeading[forward] = exitHeading[forward] = path.getStartHeading(i);
+                    entryX[backward] = exitX[forward];
+                    entryY[backward] = exitY[forward];
+                    exitX[backward] = entryX[forward];
+                    exitY[backward] = entryY[forward];
+                    entryHeading[backward] = exitHeading[backward] =
+                            PathSimulator.normalize(path.getStartHeading(i) + 180);
+                    break;
+                case SimulatedPath.ARC:
+                    entryHeading[forward] = path.getStartHeading(i);
+                    exitHeading[forward] = path.getEndHeading(i);
+                    break;
+                default:
+                    // Spot: the turn's end heading depends on how the robot arrived
+                    entryHeading[forward] = exitHeading[forward] = Double.NaN;
+            }
+        }
+    }
+
+    public static Result optimize(FieldPattern pattern) {
+        return optimize(pattern, DEFAULT_MAX_MOVES);
+    }
+
+    public static Result optimize(FieldPattern pattern, long maxMoves) {
+        long startNanos = System.nanoTime();
+        double originalSeconds = estimateSeconds(pattern);
+
+        SimulatedPath original = PathSimulator.simulate(pattern);
+        PatternOptimizer optimizer = new PatternOptimizer(pattern, original);
+        if (optimizer.elementCount == 0) {
+            return new Result(pattern, false, originalSeconds, originalSeconds, elapsedMs(startNanos), 0);
+        }
+
+        optimizer.seed();
+        optimizer.movesLeft = maxMoves;
+        optimizer.improve();
+        long moves = maxMoves - optimizer.movesLeft;
+        FieldPattern reordered = optimizer.emit();
+
+        double optimizedSeconds = estimateSeconds(reordered);
+        boolean better = optimizedSeconds < originalSeconds
+                && samePaint(original, PathSimulator.simulate(reordered), MATCH_TOLERANCE_CM);
+        return better
+                ? new Result(reordered, true, originalSeconds, optimizedSeconds, elapsedMs(startNanos), moves)
+                : new Result(pattern, false, originalSeconds, originalSeconds, elapsedMs(startNanos), moves);
+    }
+
+    /** How long the robot takes to run pattern, by Conversion_Service's timings. */
+    public static double estimateSeconds(FieldPattern pattern) {
+        double seconds = 0;
+        for (int i = 0; i < pattern.size(); i++) {
+            double quantity = pattern.getQuantity(i);
+            seconds += PAUSE_SECONDS;
+            switch (pattern.getType(i)) {
+                case FieldPattern.WALK:
+                    seconds += Math.max(0, quantity * PathSimulator.CM_PER_FOOT) / CM_PER_SECOND;
+                    if (pattern.isPaint(i)) seconds += SPRAY_TOGGLE_SECONDS;
+                    break;
+                case FieldPattern.ROTATION:
+                    seconds += Math.abs(quantity) / DEGREES_PER_SECOND;
+                    if (pattern.isPaint(i)) seconds += SPRAY_TOGGLE_SECONDS;
+                    break;
+                case FieldPattern.CIRCLE: {
+                    // handle_arc times the outer wheel, and always sprays
+                    double outerRadius = quantity * PathSimulator.CM_PER_FOOT + WHEEL_BASE_CM / 2;
+                    seconds += Math.max(0, Math.PI * outerRadius) / CM_PER_SECOND;
+                    seconds += SPRAY_TOGGLE_SECONDS;
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        return seconds;
+    }
+
+    /* ---------------- COST ---------------- */
+
+    // Seconds of travel from the end of oriented element a (or START) to the start of b; nothing to END
+    private double cost(int a, int b) {
+        if (b == END) return 0;
+        double x = a == START ? 0 : exitX[a];
+        double y = a == START ? 0 : exitY[a];
+        double heading = a == START ? 0 : exitHeading[a];
+        return travelSeconds(x, y, heading, entryX[b], entryY[b], entryHeading[b]);
+    }
+
+    private static double travelSeconds(double x, double y, double heading,
+                                        double toX, double toY, double toHeading) {
+        double seconds = 0;
+        double distance = Math.hypot(toX - x, toY - y);
+        if (distance > POSITION_EPSILON_CM) {
+            double direction = Math.toDegrees(Math.atan2(toY - y, toX - x));
+            if (!Double.isNaN(heading)) seconds += turnSeconds(direction - heading);
+            seconds += distance / CM_PER_SECOND + PAUSE_SECONDS;
+            heading = direction;
+        }
+        if (!Double.isNaN(toHeading) && !Double.isNaN(heading)) seconds += turnSeconds(toHeading - heading);
+        return seconds;
+    }
+
+    private static double turnSeconds(double degrees) {
+        double turn = Math.abs(shortestTurn(degrees));
+        return turn > ANGLE_EPSILON_DEGREES ? turn / DEGREES_PER_SECOND + PAUSE_SECONDS : 0;
+    }
+
+    // Into (-180, 180]
+    static double shortestTurn(double degrees) {
+        double turn = PathSimulator.normalize(degrees);
+        return turn > 180 ? turn - 360 : turn;
+    }
+
+    private boolean reversible(int oriented) {
+        return kinds[oriented >> 1] == SimulatedPath.LINE;
+    }
+
+    /* ---------------- CONSTRUCTION ---------------- */
+
+    // Whichever starts cheaper: nearest neighbour, or the order the pattern was authored in
+    private void seed() {
+        nearestNeighbour();
+        double nearest = tourCost();
+        int[] greedy = tour;
+        tour = new int[elementCount];
+        for (int e = 0; e < elementCount; e++) tour[e] = 2 * e;
+        if (nearest < tourCost()) tour = greedy;
+    }
+
+    private double tourCost() {
+        double total = 0;
+        for (int k = 0; k < elementCount; k++) total += cost(at(k - 1), tour[k]);
+        return total;
+    }
+
+    // Closest next start by straight-line distance: cheap, and a good seed for the moves below
+    private void nearestNeighbour() {
+        tour = new int[elementCount];
+        boolean[] used = new boolean[elementCount];
+        double x = 0;
+        double y = 0;
+        for (int k = 0; k < elementCount; k++) {
+            int best = -1;
+            double bestDistance = Double.MAX_VALUE;
+            for (int e = 0; e < elementCount; e++) {
+                if (used[e]) continue;
+                int orientations = kinds[e] == SimulatedPath.LINE ? 2 : 1;
+                for (int o = 0; o < orientations; o++) {
+                    int oriented = 2 * e + o;
+                    double dx = entryX[oriented] - x;
+                    double dy = entryY[oriented] - y;
+                    double distance = dx * dx + dy * dy;
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = oriented;
+                    }
+                }
+            }
+            tour[k] = best;
+            used[best >> 1] = true;
+            x = exitX[best];
+            y = exitY[best];
+        }
+    }
+
+    /* ---------------- IMPROVEMENT ---------------- */
+
+    private void improve() {
+        boolean improved = true;
+        while (improved && movesLeft > 0) {
+            improved = twoOpt();
+            improved |= orOpt();
+        }
+    }
+
+    private void updateFixedPrefix() {
+        for (int k = 0; k < elementCount; k++) {
+            fixedPrefix[k + 1] = fixedPrefix[k] + (reversible(tour[k]) ? 0 : 1);
+        }
+    }
+
+    // Tour positions from..to (inclusive) are all lines
+    private boolean allReversible(int from, int to) {
+        return fixedPrefix[to + 1] - fixedPrefix[from] == 0;
+    }
+
+    private int at(int position) {
+        if (position < 0) return START;
+        return position < elementCount ? tour[position] : END;
+    }
+
+    /*
+     * Reverses a run of lines, driving each the other way. Travel between two
+     * lines costs the same in both directions (the two turns swap places), so
+     * only the edges at either end change.
+     */
+    private boolean twoOpt() {
+        boolean improved = false;
+        updateFixedPrefix();
+        for (int i = 0; i < elementCount; i++) {
+            if (movesLeft <= 0) break;
+            int prev = at(i - 1);
+            for (int j = i; j < elementCount; j++) {
+                if (!reversible(tour[j]) || movesLeft <= 0) break;
+                movesLeft--;
+                int next = at(j + 1);
+                double delta = cost(prev, tour[j] ^ 1) + cost(tour[i] ^ 1, next)
+                        - cost(prev, tour[i]) - cost(tour[j], next);
+                if (delta < -IMPROVEMENT_EPSILON) {
+                    for (int a = i, b = j; a <= b; a++, b--) {
+                        int swap = tour[a] ^ 1;
+                        tour[a] = tour[b] ^ 1;
+                        tour[b] = swap;
+                    }
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    // Moves a block of up to three elements elsewhere in the tour, reversed too if it is all lines
+    private boolean orOpt() {
+        boolean improved = false;
+        for (int length = 1; length <= MAX_OR_OPT_BLOCK; length++) {
+            updateFixedPrefix();
+            for (int i = 0; i + length <= elementCount; i++) {
+                if (movesLeft <= 0) return improved;
+                int first = tour[i];
+                int last = tour[i + length - 1];
+                int prev = at(i - 1);
+                int next = at(i + length);
+                double removed = cost(prev, first) + cost(last, next) - cost(prev, next);
+                boolean canReverse = allReversible(i, i + length - 1);
+
+                double bestDelta = -IMPROVEMENT_EPSILON;
+                int bestGap = -1;
+                boolean bestReversed = false;
+                if (canReverse) {
+                    // Same place, other way round
+                    double delta = cost(prev, last ^ 1) + cost(first ^ 1, next)
+                            - cost(prev, first) - cost(last, next);
+                    if (delta < bestDelta) {
+                        bestDelta = delta;
+                        bestGap = i;
+                        bestReversed = true;
+                    }
+                }
+                // Gap k sits between positions k-1 and k; the block's own gaps are skipped
+                for (int k = 0; k <= elementCount; k++) {
+                    if (k >= i && k <= i + length) continue;
+                    if (movesLeft <= 0) break;
+                    movesLeft--;
+                    int u = at(k - 1);
+                    int v = at(k);
+                    double base = cost(u, v);
+                    double delta = cost(u, first) + cost(last, v) - base - removed;
+                    if (delta < bestDelta) {
+                        bestDelta = delta;
+                        bestGap = k;
+                        bestReversed = false;
+                    }
+                    if (canReverse) {
+                        delta = cost(u, last ^ 1) + cost(first ^ 1, v) - base - removed;
+                        if (delta < bestDelta) {
+                            bestDelta = delta;
+                            bestGap = k;
+                            bestReversed = true;
+                        }
+                    }
+                }
+                if (bestGap >= 0) {
+                    moveBlock(i, length, bestGap, bestReversed);
+                    updateFixedPrefix();
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    private void moveBlock(int from, int length, int gap, boolean reversed) {
+        int[] block = new int[length];
+        for (int k = 0; k < length; k++) {
+            block[k] = reversed ? tour[from + length - 1 - k] ^ 1 : tour[from + k];
+        }
+        int[] rest = new int[elementCount - length];
+        System.arraycopy(tour, 0, rest, 0, from);
+        System.arraycopy(tour, from + length, rest, from, elementCount - from - length);
+        int insertAt = gap > from ? gap - length : gap;
+        System.arraycopy(rest, 0, tour, 0, insertAt);
+        System.arraycopy(block, 0, tour, insertAt, length);
+        System.arraycopy(rest, insertAt, tour, insertAt + length, rest.length - insertAt);
+    }
+
+    /* ---------------- EMISSION ---------------- */
+
+    /*
+     * Travel is planned from where the robot will really be after each
+     * rounded instruction, not where it should be, so rounding never
+     * accumulates along the job.
+     */
+    private FieldPattern emit() {
+        FieldPattern.Builder builder = new FieldPattern.Builder(elementCount * 4);
+        double x = 0;
+        double y = 0;
+        double heading = 0;
+        for (int oriented : tour) {
+            int e = oriented >> 1;
+            double toX = entryX[oriented];
+            double toY = entryY[oriented];
+            double distance = Math.hypot(toX - x, toY - y);
+            if (distance > POSITION_EPSILON_CM) {
+                double turn = round(shortestTurn(Math.toDegrees(Math.atan2(toY - y, toX - x)) - heading));
+                if (Math.abs(turn) > ANGLE_EPSILON_DEGREES) {
+                    builder.add(builder.size() + 1, FieldPattern.ROTATION, (float) turn, false);
+                    heading = PathSimulator.normalize(heading + turn);
+                }
+                double feet = round(distance / PathSimulator.CM_PER_FOOT);
+                if (feet > 0) {
+                    builder.add(builder.size() + 1, FieldPattern.WALK, (float) feet, false);
+                    double rad = Math.toRadians(heading);
+                    x += feet * PathSimulator.CM_PER_FOOT * Math.cos(rad);
+                    y += feet * PathSimulator.CM_PER_FOOT * Math.sin(rad);
+                }
+            }
+            if (!Double.isNaN(entryHeading[oriented])) {
+                double turn = round(shortestTurn(entryHeading[oriented] - heading));
+                if (Math.abs(turn) > ANGLE_EPSILON_DEGREES) {
+                    builder.add(builder.size() + 1, FieldPattern.ROTATION, (float) turn, false);
+                    heading = PathSimulator.normalize(heading + turn);
+                }
+            }
+
+            // The painted instruction itself, as authored
+            float quantity = quantities[e];
+            double rad = Math.toRadians(heading);
+            switch (kinds[e]) {
+                case SimulatedPath.LINE:
+                    builder.add(builder.size() + 1, FieldPattern.WALK, quantity, true);
+                    x += quantity * PathSimulator.CM_PER_FOOT * Math.cos(rad);
+                    y += quantity * PathSimulator.CM_PER_FOOT * Math.sin(rad);
+                    break;
+                case SimulatedPath.ARC: {
+                    builder.add(builder.size() + 1, FieldPattern.CIRCLE, quantity, true);
+                    double r = quantity * PathSimulator.CM_PER_FOOT;
+                    x -= 2 * r * Math.sin(rad);
+                    y += 2 * r * Math.cos(rad);
+                    heading = PathSimulator.normalize(heading + PathSimulator.CIRCLE_SWEEP_DEGREES);
+                    break;
+                }
+                default:
+                    builder.add(builder.size() + 1, FieldPattern.ROTATION, quantity, true);
+                    heading = PathSimulator.normalize(heading + quantity);
+            }
+        }
+        return builder.build();
+    }
+
+    private static double round(double quantity) {
+        return Math.round(quantity / QUANTITY_STEP) * QUANTITY_STEP;
+    }
+
+    /* ---------------- VERIFICATION ---------------- */
+
+    /**
+     * Whether two simulations paint the same marks within tolerance: the same
+     * lines (in either direction), arcs and spots, each matched once.
+     */
+    static boolean samePaint(SimulatedPath a, SimulatedPath b, float tolerance) {
+        List<Integer> expected = paintedSegments(a);
+        List<Integer> actual = paintedSegments(b);
+        if (expected.size() != actual.size()) return false;
+
+        boolean[] matched = new boolean[actual.size()];
+        for (int i : expected) {
+            boolean found = false;
+            for (int k = 0; k < actual.size() && !found; k++) {
+                if (matched[k]) continue;
+                int j = actual.get(k);
+                if (sameMark(a, i, b, j, tolerance)) {
+                    matched[k] = true;
+                    found = true;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static List<Integer> paintedSegments(SimulatedPath path) {
+        List<Integer> out = new ArrayList<>();
+        for (int i = 0; i < path.size(); i++) {
+            if (path.isPainted(i)) out.add(i);
+        }
+        return out;
+    }
+
+    private static boolean sameMark(SimulatedPath a, int i, SimulatedPath b, int j, float tolerance) {
+        if (a.getKind(i) != b.getKind(j)) return false;
+        boolean sameStart = near(a.getStartX(i), a.getStartY(i), b.getStartX(j), b.getStartY(j), tolerance);
+        switch (a.getKind(i)) {
+            case SimulatedPath.LINE:
+                boolean sameEnd = near(a.getEndX(i), a.getEndY(i), b.getEndX(j), b.getEndY(j), tolerance);
+                boolean flipped = near(a.getStartX(i), a.getStartY(i), b.getEndX(j), b.getEndY(j), tolerance)
+                        && near(a.getEndX(i), a.getEndY(i), b.getStartX(j), b.getStartY(j), tolerance);
+                return (sameStart && sameEnd) || flipped;
+            case SimulatedPath.ARC:
+                return sameStart
+                        && near(a.getEndX(i), a.getEndY(i), b.getEndX(j), b.getEndY(j), tolerance)
+                        && Math.abs(a.getRadius(i) - b.getRadius(j)) <= tolerance;
+            default:
+                return sameStart;
+        }
+    }
+
+    private static boolean near(float x1, float y1, float x2, float y2, float tolerance) {
+        return Math.hypot(x1 - x2, y1 - y2) <= tolerance;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.fieldpainterbot;
+
+/**
+ * Point-in-time view of the reconnect supervisor.
+ */
+public final class ReconnectMetrics {
+
+    public static final ReconnectMetrics EMPTY = new ReconnectMetrics(0, 0, 0, 0, 0, 0);
+
+    public final long linkLosses;           // times the link dropped on its own
+    public final long attempts;             // connect attempts made while reconnecting
+    public final long reconnects;           // successful reconnects
+    public final long lastReconnectMs;      // link loss to reconnected, most recent
+    public final long averageReconnectMs;
+    public final long maxReconnectMs;
+
+    ReconnectMetrics(long linkLosses, long attempts, long reconnects,
+                     long lastReconnectMs, long averageReconnectMs, long maxReconnectMs) {
+        this.linkLosses = linkLosses;
+        this.attempts = attempts;
+        this.reconnects = reconnects;
+        this.lastReconnectMs = lastReconnectMs;
+        this.averageReconnectMs = averageReconnectMs;
+        this.maxReconnectMs = maxReconnectMs;
+    }
+}
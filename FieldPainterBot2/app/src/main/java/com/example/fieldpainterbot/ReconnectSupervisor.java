@@ -0,0 +1,170 @@
+package com.example.fieldpainterbot;
+
+import android.util.Log;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries a dropped connection with jittered exponential backoff until it
+ * succeeds, is cancelled, or has been down for longer than the give-up time.
+ * Attempts run one at a time on a single background thread.
+ */
+public class ReconnectSupervisor {
+
+    private static final String TAG = "ReconnectSupervisor";
+
+    public static final long DEFAULT_BASE_DELAY_MS = 500;
+    public static final long DEFAULT_MAX_DELAY_MS = 15_000;
+    public static final long DEFAULT_GIVE_UP_MS = 10 * 60_000;
+
+    public interface Connector {
+        // Blocking; true once the link is back up
+        boolean connect(int attempt);
+    }
+
+    public interface Listener {
+        void onReconnected(long downtimeMs);
+        void onGaveUp(int attempts);
+    }
+
+    private final Connector connector;
+    private final Listener listener;
+    private final ScheduledExecutorService executor;
+    private final Random random;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final long giveUpMs;
+
+    // guarded by this
+    private boolean active = false;
+    private int attempt = 0;
+    private long lostAtNanos;
+    private ScheduledFuture<?> pending;
+
+    // Metrics, guarded by this
+    private long linkLosses = 0;
+    private long attempts = 0;
+    private long reconnects = 0;
+    private long lastReconnectMs = 0;
+    private long totalReconnectMs = 0;
+    private long maxReconnectMs = 0;
+
+    public ReconnectSupervisor(Connector connector, Listener listener) {
+        this(connector, listener, Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "BluetoothReconnect");
+            thread.setDaemon(true);
+            return thread;
+        }), new Random(), DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS, DEFAULT_GIVE_UP_MS);
+    }
+
+    ReconnectSupervisor(Connector connector, Listener listener, ScheduledExecutorService executor,
+                        Random random, long baseDelayMs, long maxDelayMs, long giveUpMs) {
+        this.connector = connector;
+        this.listener = listener;
+        this.executor = executor;
+        this.random = random;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.giveUpMs = giveUpMs;
+    }
+
+    /** Starts reconnecting after a link loss; does nothing if already reconnecting. */
+    public synchronized void start() {
+        if (active) return;
+        active = true;
+        attempt = 0;
+        lostAtNanos = System.nanoTime();
+        linkLosses++;
+        scheduleNextLocked();
+    }
+
+    /** Stops any pending retry, e.g. when the user disconnects or picks another device. */
+    public synchronized void cancel() {
+        active = false;
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /** Cancels any retry and stops the timer thread for good; the supervisor can't be started again. */
+    public synchronized void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    public synchronized boolean isReconnecting() {
+        return active;
+    }
+
+    /**
+     * "Equal jitter": half of the exponential delay is fixed, the other half
+     * random, so robots that drop together don't retry in lockstep.
+     */
+    long delayForAttempt(int n) {
+        long exponential = Math.min(maxDelayMs, baseDelayMs << Math.min(n, 20));
+        long half = exponential / 2;
+        return half + (long) (random.nextDouble() * (exponential - half));
+    }
+
+    private void scheduleNextLocked() {
+        long delay = delayForAttempt(attempt);
+        Log.d(TAG, "Reconnect attempt " + (attempt + 1) + " in " + delay + " ms");
+        pending = executor.schedule(this::runAttempt, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void runAttempt() {
+        int current;
+        synchronized (this) {
+            if (!active) return;
+            current = ++attempt;
+            attempts++;
+        }
+
+        boolean connected;
+        try {
+            connected = connector.connect(current);
+        } catch (RuntimeException e) {
+            // e.g. a SecurityException once BLUETOOTH_CONNECT is revoked; the executor
+            // would swallow it and leave the supervisor active with nothing scheduled
+            Log.w(TAG, "Reconnect attempt " + current + " failed", e);
+            connected = false;
+        }
+
+        long downtimeMs;
+        synchronized (this) {
+            if (!active) return;  // cancelled while connecting
+            downtimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lostAtNanos);
+            if (!connected) {
+                if (downtimeMs < giveUpMs) {
+                    scheduleNextLocked();
+                    return;
+                }
+                active = false;
+            } else {
+                active = false;
+                reconnects++;
+                lastReconnectMs = downtimeMs;
+                totalReconnectMs += downtimeMs;
+                maxReconnectMs = Math.max(maxReconnectMs, downtimeMs);
+            }
+        }
+
+        if (connected) {
+            Log.d(TAG, "Reconnected after " + current + " attempts, " + downtimeMs + " ms");
+            listener.onReconnected(downtimeMs);
+        } else {
+            Log.w(TAG, "Giving up after " + current + " attempts");
+            listener.onGaveUp(current);
+        }
+    }
+
+    public synchronized ReconnectMetrics getMetrics() {
+        return new ReconnectMetrics(linkLosses, attempts, reconnects, lastReconnectMs,
+                reconnects > 0 ? totalReconnectMs / reconnects : 0, maxReconnectMs);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.fieldpainterbot;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Random;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Retries idempotent requests while the free-tier backend cold-starts: for
+ * the 30-odd seconds it takes to boot, Render answers 502/503 or drops the
+ * connection. Waits double from {@code baseDelayMs} up to {@code maxDelayMs}
+ * with jitter, and a Retry-After header is honoured up to the same cap. The
+ * client's call timeout bounds the whole sequence.
+ */
+public class RetryInterceptor implements Interceptor {
+
+    private static final String TAG = "RetryInterceptor";
+    static final int DEFAULT_MAX_ATTEMPTS = 5;
+    static final long DEFAULT_BASE_DELAY_MS = 1000;
+    static final long DEFAULT_MAX_DELAY_MS = 16000;
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final Random random = new Random();
+
+    public RetryInterceptor() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+    }
+
+    RetryInterceptor(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        // Only requests that are safe to repeat; a retried POST could insert a pattern twice
+        boolean idempotent = "GET".equals(request.method()) || "HEAD".equals(request.method());
+
+        for (int attempt = 1; ; attempt++) {
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if (!idempotent || attempt >= maxAttempts || chain.call().isCanceled()) throw e;
+                long delayMs = delayFor(attempt, null);
+                Log.w(TAG, request.url().encodedPath() + " attempt " + attempt + " failed ("
+                        + e.getMessage() + "), retrying in " + delayMs + " ms");
+                sleep(delayMs);
+                continue;
+            }
+
+            if (!idempotent || attempt >= maxAttempts || !isRetryable(response.code())) {
+                return response;
+            }
+            long delayMs = delayFor(attempt, response.header("Retry-After"));
+            Log.w(TAG, request.url().encodedPath() + " attempt " + attempt + " got HTTP "
+                    + response.code() + ", retrying in " + delayMs + " ms");
+            response.close();
+            sleep(delayMs);
+        }
+    }
+
+    // What Render and its proxy send while an instance is booting or overloaded
+    static boolean isRetryable(int code) {
+        return code == 408 || code == 429 || code == 502 || code == 503 || code == 504;
+    }
+
+    long delayFor(int attempt, String retryAfter) {
+        if (retryAfter != null) {
+            try {
+                return Math.min(maxDelayMs, Math.max(0, Long.parseLong(retryAfter.trim()) * 1000));
+            } catch (NumberFormatException ignored) {
+                // An HTTP date; fall back to our own schedule
+            }
+        }
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        // Half fixed, half random, so several phones don't hammer a booting instance in step
+        long half = ceiling / 2;
+        return half + (half > 0 ? (long) (random.nextDouble() * half) : 0);
+    }
+
+    private static void sleep(long delayMs) throws InterruptedIOException {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+}
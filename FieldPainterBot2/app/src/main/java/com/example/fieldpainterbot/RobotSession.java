@@ -0,0 +1,546 @@
+package com.example.fieldpainterbot;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Everything that belongs to one robot: its connection lifecycle, its own
+ * pooled reader and writer threads and send queue, its telemetry parser,
+ * history and journal, and the field upload in progress. Sessions share
+ * nothing with each other, so adding robots doesn't slow any one of them.
+ */
+public class RobotSession {
+
+    private static final String TAG = "RobotSession";
+    static final UUID APP_UUID =
+            UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    private static final String ACK_KEY = "ACK";
+    private static final String RESUME_JOB_KEY = "RESUME_JOB";
+    // Sent by the robot after HELLO: the RFCOMM channel it is listening on
+    private static final String CHANNEL_KEY = "CHANNEL";
+    // How long a new connection waits for the previous one's reader and writer to exit
+    private static final long STOP_TIMEOUT_MS = 2000;
+
+    public interface Listener {
+        // Both run on this session's own threads
+        void onStatusChanged(RobotSession session, ConnectionStatus status);
+        void onTelemetry(RobotSession session, TelemetryChannel channel, int value);
+        void onChannelReported(RobotSession session, int channel);
+    }
+
+    private final String address;
+    private volatile String name;
+    private final BluetoothAdapter bluetoothAdapter;
+    private final File journalDirectory;
+    private final Listener listener;
+
+    // Socket, reader, writer and status change together, see ConnectionStateMachine
+    private final ConnectionStateMachine<BluetoothDevice, BluetoothLink> lifecycle;
+    private final TelemetryParser telemetryParser = new TelemetryParser();
+    private final TelemetryHistory telemetryHistory = new TelemetryHistory();
+    // Last value per TelemetryChannel ordinal, for showing this robot again after a switch
+    private final AtomicIntegerArray latest = new AtomicIntegerArray(TelemetryChannel.values().length);
+    private final AtomicReference<TelemetryJournal> journal = new AtomicReference<>();
+    private final AtomicReference<FieldUpload> upload = new AtomicReference<>();
+    private volatile WireFormat wireFormat = WireFormat.TEXT;
+    private final AtomicInteger nextJobId = new AtomicInteger((int) (System.currentTimeMillis() / 1000 & 0xFFFFF));
+    private final ReconnectSupervisor reconnectSupervisor;
+    private final ConnectionExecutor ioExecutor = new ConnectionExecutor();
+    private final RttProbe rttProbe = new RttProbe(message ->
+            send(message, SendLane.CONTROL, () -> {}, () -> {}));
+    // Attempt id the reconnect supervisor is working on
+    private volatile long reconnectAttempt = -1;
+    // Last HALT/RESUME the user asked for, re-applied on the robot after a reconnect
+    private volatile boolean robotPaused = false;
+    // RFCOMM channel to dial directly, skipping the SDP lookup; KnownRobot.CHANNEL_UNKNOWN if none
+    private volatile int channel = KnownRobot.CHANNEL_UNKNOWN;
+
+    RobotSession(String address, String name, BluetoothAdapter bluetoothAdapter,
+                 File journalDirectory, Listener listener) {
+        this.address = address;
+        this.name = name;
+        this.bluetoothAdapter = bluetoothAdapter;
+        this.journalDirectory = journalDirectory;
+        this.listener = listener;
+        // Reports the latest status rather than the transition's, so racing posts can't leave a stale one
+        this.lifecycle = new ConnectionStateMachine<>(state ->
+                listener.onStatusChanged(this, getStatus()));
+
+        for (int i = 0; i < latest.length(); i++) latest.set(i, TelemetrySnapshot.UNKNOWN);
+        for (TelemetryChannel channel : TelemetryChannel.values()) {
+            telemetryParser.register(channel.getKey(), value -> onTelemetry(channel, value));
+        }
+        telemetryParser.register(ACK_KEY, this::onUploadAck);
+        telemetryParser.register(WireCodec.HELLO_KEY, this::onHello);
+        telemetryParser.register(RESUME_JOB_KEY, this::onResumeReply);
+        telemetryParser.register(CHANNEL_KEY, this::onChannel);
+        telemetryParser.register(RttProbe.CLOCK_KEY, rttProbe::onClock);
+        telemetryParser.register(RttProbe.PONG_KEY, rttProbe::onPong);
+
+        reconnectSupervisor = new ReconnectSupervisor(this::reconnect, new ReconnectSupervisor.Listener() {
+            @Override
+            public void onReconnected(long downtimeMs) {
+                resumeSession();
+            }
+
+            @Override
+            public void onGaveUp(int attempts) {
+                if (!lifecycle.attemptFailed(reconnectAttempt, false)) return;
+                finishJournal();
+                failUpload("link lost");
+            }
+        });
+    }
+
+    /** Device address; the key this session is known by. */
+    public String getAddress() {
+        return address;
+    }
+
+    public String getName() {
+        return name != null ? name : address;
+    }
+
+    public ConnectionStatus getStatus() {
+        return lifecycle.get().status;
+    }
+
+    ConnectionState<BluetoothDevice, BluetoothLink> getState() {
+        return lifecycle.get();
+    }
+
+    /* -------------------------------------------------------
+                          CONNECT
+       ------------------------------------------------------- */
+
+    /** Connects, trying {@code channelHint} first if it is known. */
+    void connect(BluetoothDevice device, int channelHint) {
+        if (channelHint != KnownRobot.CHANNEL_UNKNOWN) channel = channelHint;
+        long attempt = lifecycle.beginConnect(device);
+        if (attempt < 0) {
+            Log.d(TAG, "Already connected or connecting to " + address);
+            return;
+        }
+        if (device.getName() != null) name = device.getName();
+        // An explicit connect replaces any reconnect still in progress
+        reconnectSupervisor.cancel();
+        ioExecutor.execute(() -> open(device, attempt, false));
+    }
+
+    // Connects a socket for the given attempt; blocks, so runs on an I/O or the reconnect thread
+    private boolean open(BluetoothDevice device, long attempt, boolean retrying) {
+        try {
+            if (bluetoothAdapter != null) bluetoothAdapter.cancelDiscovery();
+            BluetoothSocket socket = openOnChannel(device, attempt, channel);
+            if (socket == null) {
+                socket = device.createInsecureRfcommSocketToServiceRecord(APP_UUID);
+                // Attached first so disconnect() can abort the blocking connect by closing it
+                if (!lifecycle.attach(attempt, BluetoothLink.connecting(socket))) return false;
+                socket.connect();  // <-- blocks until Pi accepts
+            }
+            Log.d(TAG, "Connected to " + address);
+            return startLink(attempt, BluetoothLink.open(socket, telemetryParser));
+        } catch (IOException e) {
+            Log.e(TAG, "Connection to " + address + " failed", e);
+            // Closes the attached socket; a stale attempt's socket was closed by whoever replaced it
+            lifecycle.attemptFailed(attempt, retrying);
+            return false;
+        }
+    }
+
+    // Dials a remembered channel without the SDP lookup the UUID socket does first. Uses the
+    // hidden createInsecureRfcommSocket(int), so null (and the caller looks the channel up)
+    // if the platform refuses, the channel went stale, or there is none.
+    private BluetoothSocket openOnChannel(BluetoothDevice device, long attempt, int knownChannel) {
+        if (knownChannel == KnownRobot.CHANNEL_UNKNOWN) return null;
+        BluetoothSocket socket;
+        try {
+            Method create = device.getClass().getMethod("createInsecureRfcommSocket", int.class);
+            socket = (BluetoothSocket) create.invoke(device, knownChannel);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Log.d(TAG, "Direct channel connect unavailable", e);
+            return null;
+        }
+        if (socket == null || !lifecycle.attach(attempt, BluetoothLink.connecting(socket))) return null;
+        try {
+            socket.connect();
+            Log.d(TAG, "Connected to " + address + " on remembered channel " + knownChannel);
+            return socket;
+        } catch (IOException e) {
+            // Attaching the UUID socket next closes this one
+            Log.d(TAG, "Channel " + knownChannel + " on " + address + " stale, looking it up");
+            return null;
+        }
+    }
+
+    // Runs on the I/O thread
+    private void onChannel(int reported) {
+        if (reported <= 0 || reported == channel) return;
+        channel = reported;
+        listener.onChannelReported(this, reported);
+    }
+
+    public int getChannel() {
+        return channel;
+    }
+
+    /** Takes over a socket the server accepted from this robot; false if already connected. */
+    boolean accept(BluetoothSocket socket) throws IOException {
+        lifecycle.setListening(true);
+        return startLink(-1, BluetoothLink.open(socket, telemetryParser));
+    }
+
+    void setListening(boolean listening) {
+        lifecycle.setListening(listening);
+    }
+
+    /* -------------------------------------------------------
+                          I/O THREADS
+       ------------------------------------------------------- */
+
+    // Installs a connected link (attempt -1: accepted by the server) and starts its reader and
+    // writer on this session's pooled threads, once the previous connection's have exited
+    private boolean startLink(long attempt, BluetoothLink link) {
+        link.reader.setOnLinkLost(() -> onLinkLost(link));
+        boolean installed = attempt < 0 ? lifecycle.accepted(link) : lifecycle.connected(attempt, link);
+        if (!installed) return false;
+
+        // Whatever this link replaced was closed by the transition; wait for its tasks to return
+        if (!ioExecutor.awaitIdle(STOP_TIMEOUT_MS)) {
+            Log.w(TAG, "Previous connection's I/O threads did not stop within " + STOP_TIMEOUT_MS + " ms");
+        }
+        wireFormat = WireFormat.TEXT;
+        // Restarted once the new link answers HELLO
+        rttProbe.stop();
+        link.start(ioExecutor);
+
+        // Offer the binary codec; a robot that doesn't know HELLO ignores it and we stay on text
+        link.writer.enqueue(SendLane.SAFETY,
+                BluetoothSendThread.encodeLine(WireCodec.HELLO_KEY + ":" + WireCodec.SUPPORTED_VERSIONS));
+        Log.d(TAG, address + " I/O threads: " + ioExecutor.getLiveThreadCount() + " live, "
+                + ioExecutor.getCreatedThreadCount() + " created since start");
+        return true;
+    }
+
+    // Writer of the live link, read lock-free from the current state
+    private BluetoothSendThread writer() {
+        BluetoothLink link = lifecycle.get().link;
+        return link != null ? link.writer : null;
+    }
+
+    // The robot answers HELLO with the codec versions it supports. Robots that
+    // answer also echo PING, so the round-trip probe starts here.
+    private void onHello(int peerVersions) {
+        rttProbe.start();
+        if (WireCodec.supports(peerVersions, WireCodec.VERSION_PACKED)) {
+            wireFormat = WireFormat.PACKED;
+        } else if (WireCodec.supports(peerVersions, 1)) {
+            wireFormat = WireFormat.BINARY;
+        } else {
+            return;
+        }
+        Log.d(TAG, address + " codec versions " + peerVersions + ", switching from text to " + wireFormat);
+    }
+
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    /* -------------------------------------------------------
+                          RECONNECT
+       ------------------------------------------------------- */
+
+    // Runs on the I/O thread when the link drops without disconnect() being called
+    private void onLinkLost(BluetoothLink link) {
+        ConnectionState<BluetoothDevice, BluetoothLink> next = lifecycle.linkLost(link);
+        if (next == null) return;  // already replaced or disconnected
+        wireFormat = WireFormat.TEXT;
+        rttProbe.stop();
+
+        if (next.status != ConnectionStatus.CONNECTING) {
+            // Server mode: the robot reconnects to us, the server thread is still accepting
+            Log.w(TAG, "Link to " + address + " lost");
+            failUpload("link lost");
+            return;
+        }
+        Log.w(TAG, "Link to " + address + " lost, reconnecting");
+        reconnectAttempt = next.attempt;
+        reconnectSupervisor.start();
+    }
+
+    // One try of the reconnect attempt, on the reconnect thread
+    private boolean reconnect(int tryNumber) {
+        ConnectionState<BluetoothDevice, BluetoothLink> current = lifecycle.get();
+        long attempt = reconnectAttempt;
+        // Superseded by a connect() or disconnect() since the link dropped
+        if (current.status != ConnectionStatus.CONNECTING || current.attempt != attempt) return false;
+
+        boolean connected = open(current.device, attempt, true);
+        if (!connected) Log.w(TAG, "Reconnect try " + tryNumber + " to " + address + " failed");
+        return connected;
+    }
+
+    // Tells the robot where the upload stands and whether it should be halted.
+    // Queued behind HELLO on the safety lane, so it goes out before any chunk.
+    private void resumeSession() {
+        FieldUpload current = upload.get();
+        if (current == null && !robotPaused) return;
+
+        String message = RESUME_JOB_KEY + ":" + (current != null ? current.getJobId() : 0)
+                + ":" + (current != null ? current.getLastAcked() : -1)
+                + ":" + (robotPaused ? 1 : 0);
+        send(message, SendLane.SAFETY, () -> Log.d(TAG, "Sent " + message), () -> {});
+    }
+
+    // Runs on the I/O thread with the robot's answer to RESUME_JOB
+    private void onResumeReply(int robotLastSeq) {
+        FieldUpload current = upload.get();
+        if (current == null) return;
+        current.onResume(robotLastSeq);
+        if (current.isFinished()) upload.compareAndSet(current, null);
+    }
+
+    public boolean isReconnecting() {
+        return reconnectSupervisor.isReconnecting();
+    }
+
+    // Link losses, attempts and time to reconnect since the session was created
+    public ReconnectMetrics getReconnectMetrics() {
+        return reconnectSupervisor.getMetrics();
+    }
+
+    /* -------------------------------------------------------
+                           SEND
+       ------------------------------------------------------- */
+
+    // HALT/RESUME/QUIT become binary command frames once the handshake picked binary mode
+    public SendFuture send(String message, SendLane lane, Runnable onSuccess, Runnable onError) {
+        // Recorded even if the send fails, so a HALT pressed while reconnecting still lands
+        if ("HALT".equals(message)) {
+            robotPaused = true;
+        } else if ("RESUME".equals(message)) {
+            robotPaused = false;
+        } else if ("QUIT".equals(message)) {
+            robotPaused = false;
+            cancelUpload();
+        }
+        return send(wireFormat.command(message), lane, onSuccess, onError);
+    }
+
+    // Frames are sent as-is, so text commands must already be newline terminated.
+    // onSuccess runs once the frame has been flushed to the socket, onError if it
+    // was rejected, dropped, timed out or the connection closed first; both run
+    // on a background thread.
+    public SendFuture send(byte[] frame, SendLane lane, Runnable onSuccess, Runnable onError) {
+        BluetoothSendThread thread = writer();
+        SendFuture future;
+        if (thread != null) {
+            future = thread.enqueue(lane, frame);
+        } else {
+            future = SendFuture.failed(new IOException("No connection"));
+        }
+        return future.whenDone(onSuccess, () -> {
+            Log.e(TAG, "Send to " + address + " failed", future.getFailure());
+            onError.run();
+        });
+    }
+
+    // Overwrites any unsent state instead of queueing behind it (manual drive heartbeat)
+    public void sendLatest(byte[] frame) {
+        BluetoothSendThread thread = writer();
+        if (thread != null) thread.offerLatest(frame);
+    }
+
+    // Worst enqueue-to-flush time of a HALT/RESUME/QUIT on the current connection
+    public long getMaxHaltLatencyMs() {
+        BluetoothSendThread thread = writer();
+        return thread != null ? thread.getMaxSafetyLatencyNanos() / 1_000_000 : 0;
+    }
+
+    // Threads alive in this session's pool; stays at ConnectionExecutor.CORE_THREADS across reconnects
+    public int getLiveIoThreadCount() {
+        return ioExecutor.getLiveThreadCount();
+    }
+
+    // Round-trip percentiles and robot clock offset since the session was created
+    public RttMetrics getRttMetrics() {
+        return rttProbe.getMetrics();
+    }
+
+    // Queue depth, enqueue-to-flush latency and overflow counters of the current connection
+    public SendMetrics getSendMetrics() {
+        BluetoothSendThread thread = writer();
+        return thread != null ? thread.getMetrics() : SendMetrics.EMPTY;
+    }
+
+    /* -------------------------------------------------------
+                       FIELD UPLOAD
+       ------------------------------------------------------- */
+
+    /**
+     * Streams a {"items":[...]} field pattern as a JOB header and numbered
+     * CHUNK lines with a sliding ack window. onStarted runs once the first
+     * chunk is flushed (the robot starts painting then), onComplete once the
+     * robot has acknowledged every chunk. Callbacks run on a background thread.
+     */
+    public void uploadField(String fieldJson, Runnable onStarted, Runnable onComplete, Runnable onError) {
+        if (writer() == null) {
+            Log.e(TAG, "Upload to " + address + " failed: no connection");
+            onError.run();
+            return;
+        }
+        FieldUpload started;
+        try {
+            started = new FieldUpload(nextJobId.incrementAndGet(), fieldJson, wireFormat,
+                    FieldUpload.DEFAULT_CHUNK_INSTRUCTIONS, FieldUpload.DEFAULT_WINDOW,
+                    FieldPayloadCodec.DEFAULT_THRESHOLD_BYTES,
+                    onStarted, onComplete, onError);
+        } catch (JSONException e) {
+            Log.e(TAG, "Field data is not a valid pattern", e);
+            onError.run();
+            return;
+        }
+
+        FieldUpload previous = upload.getAndSet(started);
+        if (previous != null) previous.fail("superseded by job " + started.getJobId());
+
+        Log.d(TAG, "Uploading job " + started.getJobId() + " to " + address + ": "
+                + started.getInstructionCount() + " instructions in " + started.getChunkCount() + " chunks, "
+                + started.getEncodedSize() + " bytes" + (started.isPacked() ? " packed" : " as " + wireFormat)
+                + String.format(Locale.US, " (%.1fx smaller than the JSON)", started.getCompressionRatio()));
+        started.start(frame -> {
+            BluetoothSendThread thread = writer();
+            return thread != null
+                    ? thread.enqueue(SendLane.BULK, frame)
+                    : SendFuture.failed(new IOException("No connection"));
+        }, () -> getStatus() == ConnectionStatus.CONNECTING || reconnectSupervisor.isReconnecting());
+    }
+
+    // Runs on the I/O thread
+    private void onUploadAck(int seq) {
+        FieldUpload current = upload.get();
+        if (current == null) return;
+        current.onAck(seq);
+        // The robot runs chunks as they arrive, so its newest ack is where the job has got to
+        TelemetryJournal currentJournal = journal.get();
+        if (currentJournal != null && seq >= 0 && seq < current.getChunkCount()) {
+            currentJournal.setInstructionIndex(current.firstInstructionOf(seq));
+        }
+        if (current.isFinished()) upload.compareAndSet(current, null);
+    }
+
+    private void failUpload(String reason) {
+        FieldUpload current = upload.getAndSet(null);
+        if (current != null) current.fail(reason);
+    }
+
+    private void cancelUpload() {
+        FieldUpload current = upload.getAndSet(null);
+        if (current != null) current.cancel();
+    }
+
+    /* -------------------------------------------------------
+                        DISCONNECT
+       ------------------------------------------------------- */
+
+    void disconnect() {
+        reconnectSupervisor.cancel();
+        rttProbe.stop();
+        robotPaused = false;
+
+        // Closes the socket and stops its reader and writer, or aborts a connect in progress
+        lifecycle.disconnect();
+
+        finishJournal();
+        failUpload("disconnected");
+        wireFormat = WireFormat.TEXT;
+        Log.d(TAG, "Disconnected from " + address);
+    }
+
+    /**
+     * Disconnects and stops this session's threads for good. Only for a robot
+     * that has been removed; a closed session can't connect again.
+     */
+    void close() {
+        disconnect();
+        reconnectSupervisor.shutdown();
+        ioExecutor.shutdown();
+        Log.d(TAG, "Closed session for " + address);
+    }
+
+    /* -------------------------------------------------------
+                          TELEMETRY
+       ------------------------------------------------------- */
+
+    // Runs on this session's I/O thread for every parsed telemetry frame
+    private void onTelemetry(TelemetryChannel channel, int value) {
+        long now = SystemClock.elapsedRealtime();
+        telemetryHistory.record(channel, now, value);
+        latest.set(channel.ordinal(), value);
+
+        TelemetryJournal currentJournal = journal.get();
+        if (currentJournal != null) {
+            currentJournal.append(channel, now, value);
+            if (channel == TelemetryChannel.PROGRESS && value >= 100
+                    && journal.compareAndSet(currentJournal, null)) {
+                currentJournal.finish();
+            }
+        }
+
+        listener.onTelemetry(this, channel, value);
+    }
+
+    /** Last value this robot reported on {@code channel}, or TelemetrySnapshot.UNKNOWN. */
+    public int getLatest(TelemetryChannel channel) {
+        return latest.get(channel.ordinal());
+    }
+
+    // Package-private for tests: feeds a received frame as if the reader had parsed it
+    TelemetryParser getTelemetryParser() {
+        return telemetryParser;
+    }
+
+    // One journal file per painting job, for comparing runs afterwards
+    public void startJournal(String fieldName) {
+        // Trends are per job: the last job's drain shouldn't skew this one's
+        telemetryHistory.clear();
+        TelemetryJournal started = TelemetryJournal.open(journalDirectory, fieldName,
+                System.currentTimeMillis(), SystemClock.elapsedRealtime());
+        TelemetryJournal previous = journal.getAndSet(started);
+        if (previous != null) previous.finish();
+    }
+
+    public void finishJournal() {
+        TelemetryJournal finished = journal.getAndSet(null);
+        if (finished != null) finished.finish();
+    }
+
+    // Timestamps are SystemClock.elapsedRealtime() milliseconds
+    public TelemetryHistory getTelemetryHistory() {
+        return telemetryHistory;
+    }
+
+    // New telemetry keys plug in here instead of another branch in the reader
+    public void registerTelemetryHandler(String key, TelemetryParser.Handler handler) {
+        telemetryParser.register(key, handler);
+    }
+
+    public long getTelemetryErrorCount() {
+        return telemetryParser.getErrorCount();
+    }
+}
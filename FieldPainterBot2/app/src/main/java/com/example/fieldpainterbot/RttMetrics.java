@@ -0,0 +1,41 @@
+package com.example.fieldpainterbot;
+
+/**
+ * Point-in-time view of the link round-trip-time probe.
+ */
+public final class RttMetrics {
+
+    public static final RttMetrics EMPTY =
+            new RttMetrics(0, 0, 0, 0, 0, 0, 0, 0, false, new long[LatencyHistogram.BUCKETS]);
+
+    public final long pingsSent;
+    public final long pongsReceived;
+    public final long p50Micros;
+    public final long p95Micros;
+    public final long p99Micros;
+    public final long maxMicros;
+    public final long lastMicros;
+    public final long clockOffsetMs;       // robot wall clock minus phone wall clock
+    public final boolean hasClockOffset;
+    public final long[] buckets;           // LatencyHistogram counts, see LatencyHistogram.lowerBound
+
+    RttMetrics(long pingsSent, long pongsReceived, long p50Micros, long p95Micros, long p99Micros,
+               long maxMicros, long lastMicros, long clockOffsetMs, boolean hasClockOffset,
+               long[] buckets) {
+        this.pingsSent = pingsSent;
+        this.pongsReceived = pongsReceived;
+        this.p50Micros = p50Micros;
+        this.p95Micros = p95Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+        this.lastMicros = lastMicros;
+        this.clockOffsetMs = clockOffsetMs;
+        this.hasClockOffset = hasClockOffset;
+        this.buckets = buckets;
+    }
+
+    // Pings with no answer yet count as lost, so this lags by up to one interval
+    public long getLostPings() {
+        return Math.max(0, pingsSent - pongsReceived);
+    }
+}
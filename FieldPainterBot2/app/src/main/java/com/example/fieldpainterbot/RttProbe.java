@@ -0,0 +1,162 @@
+package com.example.fieldpainterbot;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the round trip over the link to the robot's reader and back.
+ *
+ * Wire format (text in every codec mode):
+ * <pre>
+ *   app:   PING:&lt;seq&gt;:&lt;phone monotonic ms mod 2^31&gt;
+ *   robot: PONG_CLOCK:&lt;robot wall clock ms mod 2^31&gt;
+ *          PONG:&lt;seq&gt;
+ * </pre>
+ * Send times are kept here by sequence number, so the robot only has to echo
+ * it. The robot's clock reading is taken to be from the middle of the round
+ * trip; the offset reported is the one from the fastest recent round trip,
+ * where that guess is off by the least.
+ */
+class RttProbe {
+
+    static final String PING_KEY = "PING";
+    static final String PONG_KEY = "PONG";
+    static final String CLOCK_KEY = "PONG_CLOCK";
+    static final long DEFAULT_INTERVAL_MS = 1000;
+
+    interface Sender {
+        SendFuture send(String message);
+    }
+
+    // Pings still waiting for an answer; older ones count as lost
+    private static final int SLOTS = 64;
+    private static final int OFFSET_SAMPLES = 8;
+    private static final long CLOCK_WRAP = 1L << 31;
+
+    // One timer for every robot's probe: a tick only queues a line on that robot's writer
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "LinkProbe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Sender sender;
+    private final ScheduledExecutorService executor;
+    private final long intervalMs;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    // guarded by this
+    private ScheduledFuture<?> task;
+    private int nextSeq = 0;
+    private final int[] sentSeq = new int[SLOTS];
+    private final long[] sentNanos = new long[SLOTS];
+    private long pendingClock = -1;
+    private long pingsSent = 0;
+    private long pongsReceived = 0;
+    private long lastMicros = 0;
+    private final long[] offsetRttNanos = new long[OFFSET_SAMPLES];
+    private final long[] offsetMs = new long[OFFSET_SAMPLES];
+    private int offsetCount = 0;
+    private int offsetNext = 0;
+
+    RttProbe(Sender sender) {
+        this(sender, TIMER, DEFAULT_INTERVAL_MS);
+    }
+
+    RttProbe(Sender sender, ScheduledExecutorService executor, long intervalMs) {
+        this.sender = sender;
+        this.executor = executor;
+        this.intervalMs = intervalMs;
+        Arrays.fill(sentSeq, -1);
+    }
+
+    /** Starts pinging every interval; does nothing if already running. */
+    synchronized void start() {
+        if (task != null) return;
+        task = executor.scheduleWithFixedDelay(this::ping, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops pinging and forgets unanswered pings; the histogram is kept. */
+    synchronized void stop() {
+        if (task != null) task.cancel(false);
+        task = null;
+        Arrays.fill(sentSeq, -1);
+        pendingClock = -1;
+    }
+
+    void ping() {
+        ping(System.nanoTime());
+    }
+
+    void ping(long nowNanos) {
+        int seq;
+        synchronized (this) {
+            seq = nextSeq;
+            nextSeq = (nextSeq + 1) & Integer.MAX_VALUE;
+            sentSeq[seq % SLOTS] = seq;
+            sentNanos[seq % SLOTS] = nowNanos;
+            pingsSent++;
+        }
+        sender.send(PING_KEY + ":" + seq + ":" + (nowNanos / 1_000_000 & Integer.MAX_VALUE));
+    }
+
+    // Runs on the I/O thread; the robot sends this right before the PONG it belongs to
+    void onClock(int robotClockMs) {
+        synchronized (this) {
+            pendingClock = robotClockMs;
+        }
+    }
+
+    // Runs on the I/O thread
+    void onPong(int seq) {
+        onPong(seq, System.nanoTime(), System.currentTimeMillis());
+    }
+
+    void onPong(int seq, long nowNanos, long nowWallMs) {
+        long rttNanos;
+        synchronized (this) {
+            long clock = pendingClock;
+            pendingClock = -1;
+            // Unknown, answered twice, or so late its slot was reused
+            if (seq < 0 || sentSeq[seq % SLOTS] != seq) return;
+            sentSeq[seq % SLOTS] = -1;
+            rttNanos = Math.max(0, nowNanos - sentNanos[seq % SLOTS]);
+            pongsReceived++;
+            lastMicros = rttNanos / 1000;
+
+            if (clock >= 0) {
+                long midpointMs = nowWallMs - rttNanos / 2_000_000;
+                offsetRttNanos[offsetNext] = rttNanos;
+                offsetMs[offsetNext] = unwrap(clock, midpointMs) - midpointMs;
+                offsetNext = (offsetNext + 1) % OFFSET_SAMPLES;
+                offsetCount = Math.min(offsetCount + 1, OFFSET_SAMPLES);
+            }
+        }
+        histogram.record(rttNanos / 1000);
+    }
+
+    // The robot's clock comes modulo 2^31 ms (~24 days); take the reading nearest our own clock
+    static long unwrap(long robotClockMs, long phoneMs) {
+        long candidate = (phoneMs & ~(CLOCK_WRAP - 1)) + robotClockMs;
+        if (candidate - phoneMs > CLOCK_WRAP / 2) {
+            candidate -= CLOCK_WRAP;
+        } else if (phoneMs - candidate > CLOCK_WRAP / 2) {
+            candidate += CLOCK_WRAP;
+        }
+        return candidate;
+    }
+
+    synchronized RttMetrics getMetrics() {
+        int best = -1;
+        for (int i = 0; i < offsetCount; i++) {
+            if (best < 0 || offsetRttNanos[i] < offsetRttNanos[best]) best = i;
+        }
+        return new RttMetrics(pingsSent, pongsReceived,
+                histogram.percentileMicros(0.50), histogram.percentileMicros(0.95),
+                histogram.percentileMicros(0.99), histogram.getMaxMicros(), lastMicros,
+                best >= 0 ? offsetMs[best] : 0, best >= 0, histogram.getCounts());
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.fieldpainterbot;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completion of one queued message. It succeeds only once the message's
+ * bytes have been written and flushed to the socket, and fails if the
+ * message is rejected, dropped, times out or the connection closes first.
+ * Callbacks run on whichever thread completes the future.
+ */
+public class SendFuture {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private boolean completed = false;  // guarded by this
+    private IOException failure;        // guarded by this
+    private Runnable onSuccess;
+    private Runnable onError;
+
+    public static SendFuture failed(IOException cause) {
+        SendFuture future = new SendFuture();
+        future.fail(cause);
+        return future;
+    }
+
+    /** Registers callbacks; if the future is already done the matching one runs now. */
+    public SendFuture whenDone(Runnable onSuccess, Runnable onError) {
+        boolean runNow;
+        synchronized (this) {
+            runNow = completed;
+            if (!runNow) {
+                this.onSuccess = onSuccess;
+                this.onError = onError;
+            }
+        }
+        if (runNow) run(failure == null ? onSuccess : onError);
+        return this;
+    }
+
+    boolean complete() {
+        return finish(null);
+    }
+
+    boolean fail(IOException cause) {
+        return finish(cause);
+    }
+
+    private boolean finish(IOException cause) {
+        Runnable callback;
+        synchronized (this) {
+            if (completed) return false;
+            completed = true;
+            failure = cause;
+            callback = cause == null ? onSuccess : onError;
+            onSuccess = null;
+            onError = null;
+        }
+        done.countDown();
+        run(callback);
+        return true;
+    }
+
+    public synchronized boolean isDone() {
+        return completed;
+    }
+
+    public synchronized boolean isSuccessful() {
+        return completed && failure == null;
+    }
+
+    public synchronized IOException getFailure() {
+        return failure;
+    }
+
+    /** Waits for completion; returns false if the wait itself timed out. */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    private static void run(Runnable callback) {
+        if (callback != null) callback.run();
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.fieldpainterbot;
+
+/**
+ * Send priorities, highest first. The send thread always empties SAFETY
+ * before looking at the next lane, and BULK data goes out one chunk per
+ * pass so anything more urgent can cut in between chunks.
+ */
+public enum SendLane {
+    SAFETY,     // HALT / RESUME / QUIT
+    CONTROL,    // manual drive commands
+    TELEMETRY,  // small requests/probes to the robot
+    BULK        // field patterns and other large payloads
+}
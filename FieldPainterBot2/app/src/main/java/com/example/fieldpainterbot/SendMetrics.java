@@ -0,0 +1,33 @@
+package com.example.fieldpainterbot;
+
+/**
+ * Point-in-time view of the send path of one connection.
+ */
+public final class SendMetrics {
+
+    public static final SendMetrics EMPTY = new SendMetrics(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    public final int queueDepth;             // messages waiting across all lanes
+    public final int maxQueueDepth;
+    public final long averageFlushLatencyNanos;  // enqueue to flush
+    public final long maxFlushLatencyNanos;
+    public final long maxSafetyLatencyNanos;     // worst HALT/RESUME/QUIT
+    public final long sentMessages;
+    public final long droppedMessages;
+    public final long rejectedMessages;
+    public final long timedOutMessages;
+
+    SendMetrics(int queueDepth, int maxQueueDepth, long averageFlushLatencyNanos,
+                long maxFlushLatencyNanos, long maxSafetyLatencyNanos, long sentMessages,
+                long droppedMessages, long rejectedMessages, long timedOutMessages) {
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.averageFlushLatencyNanos = averageFlushLatencyNanos;
+        this.maxFlushLatencyNanos = maxFlushLatencyNanos;
+        this.maxSafetyLatencyNanos = maxSafetyLatencyNanos;
+        this.sentMessages = sentMessages;
+        this.droppedMessages = droppedMessages;
+        this.rejectedMessages = rejectedMessages;
+        this.timedOutMessages = timedOutMessages;
+    }
+}
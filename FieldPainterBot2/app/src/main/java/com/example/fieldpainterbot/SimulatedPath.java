@@ -0,0 +1,113 @@
+package com.example.fieldpainterbot;
+
+import java.util.BitSet;
+
+/**
+ * Where the robot goes for each instruction of a {@link FieldPattern}, as
+ * dead-reckoned by {@link PathSimulator}: one segment per instruction, in
+ * centimetres on a field whose origin is the start position, x along the
+ * initial heading and y to its left. Headings are degrees, counter-clockwise.
+ */
+public final class SimulatedPath {
+
+    public static final byte LINE = 0;   // walk: straight from start to end
+    public static final byte ARC = 1;    // circle: half turn counter-clockwise about a centre on the left
+    public static final byte TURN = 2;   // rotation in place: start and end points coincide
+
+    private final int size;
+    private final byte[] kinds;
+    private final float[] startX;
+    private final float[] startY;
+    private final float[] startHeading;
+    private final float[] endX;
+    private final float[] endY;
+    private final float[] endHeading;
+    private final float[] radius;        // arcs only
+    private final BitSet painted;
+    private final float minX, minY, maxX, maxY;
+
+    SimulatedPath(int size, byte[] kinds, float[] startX, float[] startY, float[] startHeading,
+                  float[] endX, float[] endY, float[] endHeading, float[] radius, BitSet painted,
+                  float minX, float minY, float maxX, float maxY) {
+        this.size = size;
+        this.kinds = kinds;
+        this.startX = startX;
+        this.startY = startY;
+        this.startHeading = startHeading;
+        this.endX = endX;
+        this.endY = endY;
+        this.endHeading = endHeading;
+        this.radius = radius;
+        this.painted = painted;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    public int size() { return size; }
+    public byte getKind(int i) { return kinds[i]; }
+    public float getStartX(int i) { return startX[i]; }
+    public float getStartY(int i) { return startY[i]; }
+    public float getStartHeading(int i) { return startHeading[i]; }
+    public float getEndX(int i) { return endX[i]; }
+    public float getEndY(int i) { return endY[i]; }
+    public float getEndHeading(int i) { return endHeading[i]; }
+    public float getRadius(int i) { return radius[i]; }
+
+    /** Whether the sprayer is on for this segment; a painted turn leaves a spot. */
+    public boolean isPainted(int i) { return painted.get(i); }
+
+    // Bounds of everything the robot covers, painted or not
+    public float getMinX() { return minX; }
+    public float getMinY() { return minY; }
+    public float getMaxX() { return maxX; }
+    public float getMaxY() { return maxY; }
+
+    public float getArcCenterX(int i) {
+        return startX[i] - radius[i] * (float) Math.sin(Math.toRadians(startHeading[i]));
+    }
+
+    public float getArcCenterY(int i) {
+        return startY[i] + radius[i] * (float) Math.cos(Math.toRadians(startHeading[i]));
+    }
+
+    /** Point at fraction t (0..1) along segment i. */
+    public float pointX(int i, float t) {
+        if (kinds[i] == ARC) {
+            double angle = Math.toRadians(PathSimulator.CIRCLE_SWEEP_DEGREES * t);
+            float dx = startX[i] - getArcCenterX(i);
+            float dy = startY[i] - getArcCenterY(i);
+            return getArcCenterX(i) + (float) (dx * Math.cos(angle) - dy * Math.sin(angle));
+        }
+        return startX[i] + (endX[i] - startX[i]) * t;
+    }
+
+    public float pointY(int i, float t) {
+        if (kinds[i] == ARC) {
+            double angle = Math.toRadians(PathSimulator.CIRCLE_SWEEP_DEGREES * t);
+            float dx = startX[i] - getArcCenterX(i);
+            float dy = startY[i] - getArcCenterY(i);
+            return getArcCenterY(i) + (float) (dx * Math.sin(angle) + dy * Math.cos(angle));
+        }
+        return startY[i] + (endY[i] - startY[i]) * t;
+    }
+
+    /** Distance the wheels cover on segment i, centre of the robot. */
+    public float lengthCm(int i) {
+        switch (kinds[i]) {
+            case LINE:
+                return (float) Math.hypot(endX[i] - startX[i], endY[i] - startY[i]);
+            case ARC:
+                return (float) (Math.PI * radius[i] * PathSimulator.CIRCLE_SWEEP_DEGREES / 180);
+            default:
+                return 0;
+        }
+    }
+
+    public float paintedLengthCm() {
+        float total = 0;
+        for (int i = painted.nextSetBit(0); i >= 0; i = painted.nextSetBit(i + 1)) total += lengthCm(i);
+        return total;
+    }
+}
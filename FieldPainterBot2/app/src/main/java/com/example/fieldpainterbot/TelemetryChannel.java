@@ -0,0 +1,20 @@
+package com.example.fieldpainterbot;
+
+/**
+ * Telemetry streams the robot reports, keyed by the prefix used on the wire.
+ */
+public enum TelemetryChannel {
+    BATTERY("BATTERY"),
+    SPRAY("SPRAY"),
+    PROGRESS("PROGRESS");
+
+    private final String key;
+
+    TelemetryChannel(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.fieldpainterbot;
+
+/**
+ * One TelemetryRing per channel. Fed from the I/O thread as frames are
+ * parsed; read from the UI to get trends such as battery or paint drain
+ * over the current job.
+ */
+public class TelemetryHistory {
+
+    // At the robot's 10 s status interval this covers over 11 hours per channel
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final TelemetryRing[] rings = new TelemetryRing[TelemetryChannel.values().length];
+
+    public TelemetryHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TelemetryHistory(int capacityPerChannel) {
+        for (int i = 0; i < rings.length; i++) {
+            rings[i] = new TelemetryRing(capacityPerChannel);
+        }
+    }
+
+    public void record(TelemetryChannel channel, long timestampMs, float value) {
+        rings[channel.ordinal()].append(timestampMs, value);
+    }
+
+    public TelemetryRing get(TelemetryChannel channel) {
+        return rings[channel.ordinal()];
+    }
+
+    /**
+     * Drain rate over the trailing window, in percent per minute (positive
+     * while the level is falling). Returns NaN with fewer than two samples.
+     * {@code stats} is the caller's reusable holder and is overwritten.
+     */
+    public float drainRatePerMinute(TelemetryChannel channel, long windowMs, long nowMs,
+                                    TelemetryRing.Stats stats) {
+        if (!get(channel).aggregateLast(windowMs, nowMs, stats) || stats.count < 2) {
+            return Float.NaN;
+        }
+        return -stats.slopePerMinute;
+    }
+
+    public void clear() {
+        for (TelemetryRing ring : rings) {
+            ring.clear();
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.fieldpainterbot;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only binary journal of one painting session, written through a
+ * memory-mapped file in fixed-size records.
+ *
+ * The I/O thread only ever stores into the mapping; creating, flushing and
+ * closing the file happen on a single background thread. Every record ends
+ * with a commit marker derived from its index that is written last, so a
+ * reader stops cleanly at a record torn by a crash, and pages written before
+ * the crash are already in the kernel's page cache. Opening a session prunes
+ * the oldest ones beyond {@link #MAX_SESSIONS} or {@link #MAX_TOTAL_BYTES}.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *   header  0  int    magic "FPJ1"
+ *           4  int    version
+ *           8  int    record size
+ *          12  int    capacity (records)
+ *          16  long   wall-clock start, ms
+ *          24  long   elapsedRealtime start, ms
+ *          32  short  field name length, followed by up to 30 ASCII bytes
+ *   record  0  long   elapsedRealtime, ms
+ *           8  float  value
+ *          12  int    instruction index (first of the newest acked chunk), -1 if unknown
+ *          16  short  TelemetryChannel ordinal
+ *          18  short  reserved
+ *          20  int    commit marker
+ * </pre>
+ */
+public class TelemetryJournal {
+
+    private static final String TAG = "TelemetryJournal";
+
+    public static final String FILE_SUFFIX = ".fpj";
+    public static final int DEFAULT_CAPACITY = 1 << 16;  // 1.5 MB per session
+    public static final int UNKNOWN_INSTRUCTION = -1;
+    // Retention: each session preallocates its full capacity, so keep a bounded number
+    public static final int MAX_SESSIONS = 20;
+    public static final long MAX_TOTAL_BYTES = 32L * 1024 * 1024;
+
+    static final int MAGIC = 0x46504A31;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 24;
+    private static final int MAX_NAME_LENGTH = 30;
+    private static final int COMMIT_SALT = 0x6A6F7572;
+    private static final int FORCE_EVERY_RECORDS = 256;
+
+    private static final ExecutorService diskExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "TelemetryJournal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public interface RecordVisitor {
+        void onRecord(long timestampMs, TelemetryChannel channel, float value, int instructionIndex);
+    }
+
+    public static final class Header {
+        public final String fieldName;
+        public final long startWallClockMs;
+        public final long startElapsedMs;
+        public final int capacity;
+
+        Header(String fieldName, long startWallClockMs, long startElapsedMs, int capacity) {
+            this.fieldName = fieldName;
+            this.startWallClockMs = startWallClockMs;
+            this.startElapsedMs = startElapsedMs;
+            this.capacity = capacity;
+        }
+    }
+
+    private final File file;
+    private final int capacity;
+
+    // Null until the disk thread has mapped the file
+    private volatile MappedByteBuffer buffer;
+    private volatile FileChannel channel;
+    private volatile boolean closed = false;
+    private volatile int instructionIndex = UNKNOWN_INSTRUCTION;
+
+    private int recordCount = 0;  // writer thread only
+    private final AtomicLong droppedRecords = new AtomicLong();
+
+    private TelemetryJournal(File file, int capacity) {
+        this.file = file;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Starts a new session file in {@code directory}. Returns immediately; the
+     * file is created and mapped in the background, and records appended before
+     * that finishes are counted as dropped.
+     */
+    public static TelemetryJournal open(File directory, String fieldName,
+                                        long startWallClockMs, long startElapsedMs) {
+        return open(directory, fieldName, startWallClockMs, startElapsedMs, DEFAULT_CAPACITY);
+    }
+
+    static TelemetryJournal open(File directory, String fieldName, long startWallClockMs,
+                                 long startElapsedMs, int capacity) {
+        String safeName = fieldName.replaceAll("[^A-Za-z0-9_]", "_");
+        if (safeName.length() > MAX_NAME_LENGTH) safeName = safeName.substring(0, MAX_NAME_LENGTH);
+
+        File file = new File(directory, safeName + "-" + startWallClockMs + FILE_SUFFIX);
+        TelemetryJournal journal = new TelemetryJournal(file, capacity);
+
+        String name = safeName;
+        diskExecutor.execute(() -> {
+            journal.map(directory, name, startWallClockMs, startElapsedMs);
+            prune(directory, MAX_SESSIONS, MAX_TOTAL_BYTES, file);
+        });
+        return journal;
+    }
+
+    /**
+     * Deletes the oldest sessions until at most {@code maxSessions} remain
+     * and they take at most {@code maxBytes}. {@code keep} (the session
+     * being written) is never deleted. Returns how many files were removed.
+     */
+    static int prune(File directory, int maxSessions, long maxBytes, File keep) {
+        File[] sessions = listSessions(directory);
+        int remaining = sessions.length;
+        long totalBytes = 0;
+        for (File session : sessions) totalBytes += session.length();
+
+        int removed = 0;
+        for (File session : sessions) {
+            if (remaining <= maxSessions && totalBytes <= maxBytes) break;
+            if (session.equals(keep)) continue;
+            long length = session.length();
+            if (session.delete()) {
+                remaining--;
+                totalBytes -= length;
+                removed++;
+            } else {
+                Log.w(TAG, "Could not delete old journal " + session.getName());
+            }
+        }
+        if (removed > 0) Log.d(TAG, "Pruned " + removed + " old journal(s)");
+        return removed;
+    }
+
+    // Package-private for tests: waits until every queued disk task has run
+    static void awaitDisk() throws InterruptedException {
+        try {
+            diskExecutor.submit(() -> {}).get();
+        } catch (ExecutionException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private void map(File directory, String fieldName, long startWallClockMs, long startElapsedMs) {
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+
+            long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.setLength(size);
+            FileChannel fileChannel = raf.getChannel();
+            MappedByteBuffer mapped = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            byte[] name = fieldName.getBytes(StandardCharsets.US_ASCII);
+            mapped.putInt(0, MAGIC);
+            mapped.putInt(4, VERSION);
+            mapped.putInt(8, RECORD_SIZE);
+            mapped.putInt(12, capacity);
+            mapped.putLong(16, startWallClockMs);
+            mapped.putLong(24, startElapsedMs);
+            mapped.putShort(32, (short) name.length);
+            for (int i = 0; i < name.length; i++) {
+                mapped.put(34 + i, name[i]);
+            }
+
+            channel = fileChannel;
+            buffer = mapped;
+            Log.d(TAG, "Journal started: " + file.getName());
+        } catch (IOException e) {
+            Log.e(TAG, "Could not create journal " + file, e);
+        }
+    }
+
+    /** Instruction the robot is on; stamped on every record that follows. */
+    public void setInstructionIndex(int index) {
+        instructionIndex = index;
+    }
+
+    /** Called from the I/O thread only. Never touches the disk. */
+    public void append(TelemetryChannel telemetryChannel, long timestampMs, float value) {
+        MappedByteBuffer mapped = buffer;
+        if (mapped == null || closed || recordCount >= capacity) {
+            droppedRecords.incrementAndGet();
+            return;
+        }
+
+        int position = HEADER_SIZE + recordCount * RECORD_SIZE;
+        mapped.putLong(position, timestampMs);
+        mapped.putFloat(position + 8, value);
+        mapped.putInt(position + 12, instructionIndex);
+        mapped.putShort(position + 16, (short) telemetryChannel.ordinal());
+        mapped.putShort(position + 18, (short) 0);
+        mapped.putInt(position + 20, commitMarker(recordCount));  // last: marks the record complete
+        recordCount++;
+
+        if (recordCount % FORCE_EVERY_RECORDS == 0) {
+            diskExecutor.execute(() -> force(mapped));
+        }
+    }
+
+    /** Flushes and closes the file in the background. Further appends are dropped. */
+    public void finish() {
+        closed = true;
+        diskExecutor.execute(this::close);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    private void close() {
+        MappedByteBuffer mapped = buffer;
+        FileChannel fileChannel = channel;
+        if (mapped == null || fileChannel == null) return;
+
+        force(mapped);
+        try {
+            fileChannel.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing journal", e);
+        }
+        channel = null;
+    }
+
+    private static void force(MappedByteBuffer mapped) {
+        try {
+            mapped.force();
+        } catch (Exception e) {
+            Log.w(TAG, "Journal flush failed", e);
+        }
+    }
+
+    private static int commitMarker(int recordIndex) {
+        return (recordIndex + 1) ^ COMMIT_SALT;
+    }
+
+    /* -------------------------------------------------------
+                            READER
+       ------------------------------------------------------- */
+
+    /** Session files in {@code directory}, oldest first. */
+    public static File[] listSessions(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) return new File[0];
+        // Names end in the start time, which breaks ties between files modified in the same second
+        Arrays.sort(files, (a, b) -> {
+            if (a.lastModified() != b.lastModified()) return Long.compare(a.lastModified(), b.lastModified());
+            long aStart = startTimeOf(a);
+            long bStart = startTimeOf(b);
+            return aStart != bStart ? Long.compare(aStart, bStart) : a.getName().compareTo(b.getName());
+        });
+        return files;
+    }
+
+    // The <startMs> of <field>-<startMs>.fpj, or -1 for a name that doesn't have one
+    static long startTimeOf(File file) {
+        String name = file.getName();
+        int dash = name.lastIndexOf('-');
+        int end = name.length() - FILE_SUFFIX.length();
+        if (dash < 0 || dash + 1 >= end) return -1;
+        try {
+            return Long.parseLong(name.substring(dash + 1, end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public static Header readHeader(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            return parseHeader(mapped, file);
+        }
+    }
+
+    /**
+     * Visits every committed record of a finished (or crashed) session and
+     * returns how many were read.
+     */
+    public static int scan(File file, RecordVisitor visitor) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel fileChannel = raf.getChannel();
+            MappedByteBuffer mapped = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            Header header = parseHeader(mapped, file);
+
+            TelemetryChannel[] channels = TelemetryChannel.values();
+            long available = (fileChannel.size() - HEADER_SIZE) / RECORD_SIZE;
+            int limit = (int) Math.min(header.capacity, available);
+
+            int count = 0;
+            for (; count < limit; count++) {
+                int position = HEADER_SIZE + count * RECORD_SIZE;
+                if (mapped.getInt(position + 20) != commitMarker(count)) break;
+
+                int ordinal = mapped.getShort(position + 16);
+                if (ordinal < 0 || ordinal >= channels.length) continue;
+
+                visitor.onRecord(
+                        mapped.getLong(position),
+                        channels[ordinal],
+                        mapped.getFloat(position + 8),
+                        mapped.getInt(position + 12));
+            }
+            return count;
+        }
+    }
+
+    private static Header parseHeader(MappedByteBuffer mapped, File file) throws IOException {
+        if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+                || mapped.getInt(8) != RECORD_SIZE) {
+            throw new IOException("Not a telemetry journal: " + file);
+        }
+
+        int nameLength = Math.min(mapped.getShort(32), MAX_NAME_LENGTH);
+        byte[] name = new byte[Math.max(nameLength, 0)];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = mapped.get(34 + i);
+        }
+
+        return new Header(
+                new String(name, StandardCharsets.US_ASCII),
+                mapped.getLong(16),
+                mapped.getLong(24),
+                mapped.getInt(12));
+    }
+}
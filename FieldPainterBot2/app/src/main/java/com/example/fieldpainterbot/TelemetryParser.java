@@ -0,0 +1,167 @@
+package com.example.fieldpainterbot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Parses "KEY:value" telemetry frames straight from the receive buffer and
+ * dispatches the integer value to the handler registered for KEY.
+ * Keys are looked up in a table indexed by their first byte, so a frame is
+ * handled without creating any String or boxed Integer.
+ */
+public class TelemetryParser {
+
+    public interface Handler {
+        void onValue(int value);
+    }
+
+    private static final byte SEPARATOR = ':';
+
+    private static final class Entry {
+        final byte[] key;
+        final Handler handler;
+
+        Entry(byte[] key, Handler handler) {
+            this.key = key;
+            this.handler = handler;
+        }
+    }
+
+    // One bucket per ASCII first byte; buckets are replaced, never mutated
+    private final AtomicReferenceArray<Entry[]> table = new AtomicReferenceArray<>(128);
+
+    private final AtomicLong parsedCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong unknownKeyCount = new AtomicLong();
+
+    /**
+     * Registers (or replaces) the handler for a key. Safe to call while
+     * frames are being parsed; the new bucket is published in one write.
+     */
+    public synchronized void register(String key, Handler handler) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.US_ASCII);
+        if (keyBytes.length == 0 || keyBytes[0] < 0) {
+            throw new IllegalArgumentException("Telemetry key must be non-empty ASCII: " + key);
+        }
+
+        Entry[] bucket = table.get(keyBytes[0]);
+        Entry entry = new Entry(keyBytes, handler);
+
+        if (bucket == null) {
+            table.set(keyBytes[0], new Entry[] { entry });
+            return;
+        }
+
+        for (int i = 0; i < bucket.length; i++) {
+            if (keyMatches(bucket[i].key, keyBytes, 0, keyBytes.length)) {
+                Entry[] copy = bucket.clone();
+                copy[i] = entry;
+                table.set(keyBytes[0], copy);
+                return;
+            }
+        }
+
+        Entry[] grown = new Entry[bucket.length + 1];
+        System.arraycopy(bucket, 0, grown, 0, bucket.length);
+        grown[bucket.length] = entry;
+        table.set(keyBytes[0], grown);
+    }
+
+    /**
+     * Parses one frame. Returns false when the frame is malformed or its key
+     * has no handler; both cases are counted instead of logged.
+     */
+    public boolean parse(byte[] frame, int offset, int length) {
+        int end = offset + length;
+        int separator = -1;
+        for (int i = offset; i < end; i++) {
+            if (frame[i] == SEPARATOR) {
+                separator = i;
+                break;
+            }
+        }
+
+        if (separator <= offset || separator == end - 1) {
+            errorCount.incrementAndGet();
+            return false;
+        }
+
+        Handler handler = lookup(frame, offset, separator - offset);
+        if (handler == null) {
+            unknownKeyCount.incrementAndGet();
+            return false;
+        }
+
+        // Parse the ASCII integer in place, e.g. "SPRAY:ERR" ends up here as an error
+        int i = separator + 1;
+        boolean negative = frame[i] == '-';
+        if (negative) i++;
+        if (i == end) {
+            errorCount.incrementAndGet();
+            return false;
+        }
+
+        // One more on the negative side, so Integer.MIN_VALUE still parses
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = frame[i] - '0';
+            if (digit < 0 || digit > 9) {
+                errorCount.incrementAndGet();
+                return false;
+            }
+            value = value * 10 + digit;
+            if (value > limit) {
+                errorCount.incrementAndGet();
+                return false;
+            }
+        }
+
+        parsedCount.incrementAndGet();
+        handler.onValue(negative ? (int) -value : (int) value);
+        return true;
+    }
+
+    /**
+     * Dispatches a value that arrived already decoded (binary telemetry frame).
+     * Returns false if nothing is registered for {@code key}.
+     */
+    public boolean dispatch(byte[] key, int value) {
+        Handler handler = lookup(key, 0, key.length);
+        if (handler == null) {
+            unknownKeyCount.incrementAndGet();
+            return false;
+        }
+        parsedCount.incrementAndGet();
+        handler.onValue(value);
+        return true;
+    }
+
+    public long getParsedCount() { return parsedCount.get(); }
+    public long getErrorCount() { return errorCount.get(); }
+    public long getUnknownKeyCount() { return unknownKeyCount.get(); }
+
+    private Handler lookup(byte[] frame, int offset, int length) {
+        byte first = frame[offset];
+        if (first < 0) return null;
+
+        Entry[] bucket = table.get(first);
+        if (bucket == null) return null;
+
+        for (Entry entry : bucket) {
+            if (keyMatches(entry.key, frame, offset, length)) {
+                return entry.handler;
+            }
+        }
+        return null;
+    }
+
+    private static boolean keyMatches(byte[] key, byte[] frame, int offset, int length) {
+        if (key.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (key[i] != frame[offset + i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.fieldpainterbot;
+
+import android.os.SystemClock;
+
+import androidx.lifecycle.MutableLiveData;
+
+/**
+ * Collects telemetry updates from the I/O thread and publishes them to the
+ * main thread as one TelemetrySnapshot, at most once per interval and only
+ * when something actually changed. However fast the robot streams, the UI
+ * sees at most 1000 / intervalMs renders per second.
+ */
+public class TelemetryPublisher {
+
+    public static final long DEFAULT_INTERVAL_MS = 100; // 10 Hz
+
+    // Where publishing happens and what time it is: the main thread in the app, a fake in tests
+    interface Scheduler {
+        void postDelayed(Runnable runnable, long delayMs);
+        long uptimeMillis();
+    }
+
+    interface Sink {
+        void onSnapshot(TelemetrySnapshot snapshot);
+    }
+
+    private final Sink sink;
+    private final Scheduler scheduler;
+    private final long intervalMs;
+    private final Object lock = new Object();
+
+    // Current state, written in place by the I/O thread (guarded by lock)
+    private int batteryLevel = TelemetrySnapshot.UNKNOWN;
+    private int sprayLevel = TelemetrySnapshot.UNKNOWN;
+    private int progressLevel = TelemetrySnapshot.UNKNOWN;
+    private boolean publishScheduled = false;
+    private long lastPublishUptime = 0;
+
+    // Only touched on the main thread
+    private TelemetrySnapshot lastPublished = TelemetrySnapshot.EMPTY;
+
+    private final Runnable publishRunnable = this::publish;
+
+    public TelemetryPublisher(MutableLiveData<TelemetrySnapshot> telemetry) {
+        this(telemetry, DEFAULT_INTERVAL_MS);
+    }
+
+    public TelemetryPublisher(MutableLiveData<TelemetrySnapshot> telemetry, long intervalMs) {
+        this(telemetry::setValue, intervalMs, new Scheduler() {
+            private final MainThreadExecutor mainThread = MainThreadExecutor.get();
+
+            @Override
+            public void postDelayed(Runnable runnable, long delayMs) {
+                mainThread.postDelayed(runnable, delayMs);
+            }
+
+            @Override
+            public long uptimeMillis() {
+                return SystemClock.uptimeMillis();
+            }
+        });
+    }
+
+    TelemetryPublisher(Sink sink, long intervalMs, Scheduler scheduler) {
+        this.sink = sink;
+        this.intervalMs = intervalMs;
+        this.scheduler = scheduler;
+    }
+
+    public void updateBatteryLevel(int level) {
+        synchronized (lock) {
+            if (batteryLevel == level) return;
+            batteryLevel = level;
+            schedulePublishLocked();
+        }
+    }
+
+    public void updateSprayLevel(int level) {
+        synchronized (lock) {
+            if (sprayLevel == level) return;
+            sprayLevel = level;
+            schedulePublishLocked();
+        }
+    }
+
+    public void updateProgressLevel(int level) {
+        synchronized (lock) {
+            if (progressLevel == level) return;
+            progressLevel = level;
+            schedulePublishLocked();
+        }
+    }
+
+    private void schedulePublishLocked() {
+        if (publishScheduled) return; // the pending publish will pick this change up
+        publishScheduled = true;
+
+        long delay = Math.max(0, lastPublishUptime + intervalMs - scheduler.uptimeMillis());
+        scheduler.postDelayed(publishRunnable, delay);
+    }
+
+    private void publish() {
+        TelemetrySnapshot snapshot;
+        synchronized (lock) {
+            publishScheduled = false;
+            lastPublishUptime = scheduler.uptimeMillis();
+            snapshot = new TelemetrySnapshot(batteryLevel, sprayLevel, progressLevel);
+        }
+
+        // Values can change and change back inside one interval
+        if (snapshot.equals(lastPublished)) return;
+
+        lastPublished = snapshot;
+        sink.onSnapshot(snapshot);
+    }
+}
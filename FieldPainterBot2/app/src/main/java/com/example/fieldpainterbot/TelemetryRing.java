@@ -0,0 +1,139 @@
+package com.example.fieldpainterbot;
+
+/**
+ * Fixed-capacity history of one telemetry channel, stored in primitive
+ * arrays so samples are never boxed. Appends are O(1) and overwrite the
+ * oldest sample once full; window queries binary search the timestamps,
+ * which must be appended in non-decreasing order.
+ */
+public class TelemetryRing {
+
+    /** Reusable result holder so aggregate queries don't allocate. */
+    public static final class Stats {
+        public int count;
+        public float min;
+        public float max;
+        public float average;
+        public float slopePerMinute;  // least-squares trend, value units per minute
+        public long firstTimestampMs;
+        public long lastTimestampMs;
+
+        void clear() {
+            count = 0;
+            min = max = average = slopePerMinute = 0f;
+            firstTimestampMs = lastTimestampMs = 0;
+        }
+    }
+
+    private final long[] timestamps;
+    private final float[] values;
+    private int head = 0;  // next write position
+    private int size = 0;
+
+    public TelemetryRing(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.timestamps = new long[capacity];
+        this.values = new float[capacity];
+    }
+
+    public synchronized void append(long timestampMs, float value) {
+        timestamps[head] = timestampMs;
+        values[head] = value;
+        head = (head + 1) % timestamps.length;
+        if (size < timestamps.length) size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /** Latest value, or {@code fallback} if nothing has been recorded. */
+    public synchronized float latest(float fallback) {
+        if (size == 0) return fallback;
+        return values[physical(size - 1)];
+    }
+
+    /**
+     * Aggregates every sample with {@code fromMs <= timestamp <= toMs}.
+     * Returns false (and leaves {@code out.count == 0}) if the window is empty.
+     */
+    public synchronized boolean aggregate(long fromMs, long toMs, Stats out) {
+        out.clear();
+        int start = firstAtOrAfter(fromMs);
+        if (start == size) return false;
+
+        // Regression is done on time relative to the first sample to keep precision
+        long origin = timestamps[physical(start)];
+        double sumT = 0, sumV = 0, sumTT = 0, sumTV = 0;
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        int count = 0;
+        long last = origin;
+
+        for (int i = start; i < size; i++) {
+            int p = physical(i);
+            long timestamp = timestamps[p];
+            if (timestamp > toMs) break;
+
+            float value = values[p];
+            double t = (timestamp - origin) / 60000.0;  // minutes
+            sumT += t;
+            sumV += value;
+            sumTT += t * t;
+            sumTV += t * value;
+            if (value < min) min = value;
+            if (value > max) max = value;
+            last = timestamp;
+            count++;
+        }
+
+        if (count == 0) return false;
+
+        out.count = count;
+        out.min = min;
+        out.max = max;
+        out.average = (float) (sumV / count);
+        out.firstTimestampMs = origin;
+        out.lastTimestampMs = last;
+
+        double denominator = count * sumTT - sumT * sumT;
+        if (count > 1 && denominator > 0) {
+            out.slopePerMinute = (float) ((count * sumTV - sumT * sumV) / denominator);
+        }
+        return true;
+    }
+
+    /** Aggregates the trailing window of {@code windowMs} ending at {@code nowMs}. */
+    public boolean aggregateLast(long windowMs, long nowMs, Stats out) {
+        return aggregate(nowMs - windowMs, nowMs, out);
+    }
+
+    // Logical index 0 is the oldest retained sample
+    private int physical(int logicalIndex) {
+        int index = head - size + logicalIndex;
+        return index < 0 ? index + timestamps.length : index;
+    }
+
+    private int firstAtOrAfter(long timestampMs) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[physical(mid)] < timestampMs) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
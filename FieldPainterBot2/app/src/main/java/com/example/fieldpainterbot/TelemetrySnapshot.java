@@ -0,0 +1,59 @@
+package com.example.fieldpainterbot;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Immutable view of everything the robot has reported, published to the UI
+ * as a single value instead of one LiveData per field.
+ */
+public final class TelemetrySnapshot {
+
+    public static final int UNKNOWN = -1;
+
+    public static final TelemetrySnapshot EMPTY =
+            new TelemetrySnapshot(UNKNOWN, UNKNOWN, UNKNOWN);
+
+    private final int batteryLevel;
+    private final int sprayLevel;
+    private final int progressLevel;
+
+    public TelemetrySnapshot(int batteryLevel, int sprayLevel, int progressLevel) {
+        this.batteryLevel = batteryLevel;
+        this.sprayLevel = sprayLevel;
+        this.progressLevel = progressLevel;
+    }
+
+    public int getBatteryLevel() { return batteryLevel; }
+    public int getSprayLevel() { return sprayLevel; }
+    public int getProgressLevel() { return progressLevel; }
+
+    public boolean hasBatteryLevel() { return batteryLevel != UNKNOWN; }
+    public boolean hasSprayLevel() { return sprayLevel != UNKNOWN; }
+    public boolean hasProgressLevel() { return progressLevel != UNKNOWN; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TelemetrySnapshot)) return false;
+        TelemetrySnapshot other = (TelemetrySnapshot) o;
+        return batteryLevel == other.batteryLevel
+                && sprayLevel == other.sprayLevel
+                && progressLevel == other.progressLevel;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = batteryLevel;
+        result = 31 * result + sprayLevel;
+        result = 31 * result + progressLevel;
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "TelemetrySnapshot{battery=" + batteryLevel
+                + ", spray=" + sprayLevel
+                + ", progress=" + progressLevel + "}";
+    }
+}
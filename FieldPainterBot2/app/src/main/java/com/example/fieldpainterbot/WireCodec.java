@@ -0,0 +1,350 @@
+package com.example.fieldpainterbot;
+
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary wire format (versions 1 and 2), shared with rfserver's wire_codec.py.
+ *
+ * <pre>
+ *   frame    0xB1 | varint payload length | payload | CRC32 of payload (4 bytes, big-endian)
+ *   payload  type byte | fields
+ * </pre>
+ * 0xB1 can never start a UTF-8 text line, so binary frames and newline
+ * terminated text frames can be mixed on one stream; the handshake only
+ * decides which one each side sends. Integers are LEB128 varints (signed ones
+ * zigzag encoded) and instruction quantities are fixed-point hundredths.
+ */
+public final class WireCodec {
+
+    public static final int VERSION = 2;
+    public static final int VERSION_PACKED = 2;  // adds PACKED_CHUNK
+    public static final int SUPPORTED_VERSIONS = (1 << VERSION) - 1;  // bitmask sent in HELLO, bit n-1 = version n
+    public static final String HELLO_KEY = "HELLO";
+
+    public static final byte SYNC = (byte) 0xB1;
+
+    public static final int TYPE_TELEMETRY = 1;  // key id, zigzag value
+    public static final int TYPE_COMMAND = 2;    // command id
+    public static final int TYPE_DRIVE = 3;      // button mask
+    public static final int TYPE_JOB = 4;        // job id, instruction count, chunk count
+    public static final int TYPE_CHUNK = 5;      // job id, seq, count, instructions
+    public static final int TYPE_PACKED_CHUNK = 6;  // v2: job id, seq, deflated FieldPayloadCodec ops
+
+    // Telemetry key ids; index 0 is unused
+    static final String[] TELEMETRY_KEYS = {null, "BATTERY", "SPRAY", "PROGRESS", "ACK"};
+    private static final byte[][] TELEMETRY_KEY_BYTES = new byte[TELEMETRY_KEYS.length][];
+    static {
+        for (int i = 1; i < TELEMETRY_KEYS.length; i++) {
+            TELEMETRY_KEY_BYTES[i] = TELEMETRY_KEYS[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+    static final String[] COMMANDS = {null, "HALT", "RESUME", "QUIT"};
+    static final String[] MOVEMENT_TYPES = {"walk", "rotation", "circle"};
+    static final int MOVEMENT_OTHER = 0xFF;  // followed by the type name
+
+    static final int QUANTITY_SCALE = 100;
+    private static final int FLAG_PAINT = 1;
+
+    private static final String ORDER_KEY = "Instruction Order";
+    private static final String TYPE_KEY = "Type of Movement";
+    private static final String QUANTITY_KEY = "Quantity";
+    private static final String PAINT_KEY = "Paint";
+
+    private WireCodec() {}
+
+    /** One decoded field instruction. */
+    public static final class Instruction {
+        public final int order;
+        public final String type;   // lower case, as the robot's handlers expect
+        public final double quantity;
+        public final boolean paint;
+
+        public Instruction(int order, String type, double quantity, boolean paint) {
+            this.order = order;
+            this.type = type;
+            this.quantity = quantity;
+            this.paint = paint;
+        }
+    }
+
+    /** Decoded CHUNK payload. */
+    public static final class Chunk {
+        public final int jobId;
+        public final int seq;
+        public final Instruction[] instructions;
+
+        Chunk(int jobId, int seq, Instruction[] instructions) {
+            this.jobId = jobId;
+            this.seq = seq;
+            this.instructions = instructions;
+        }
+    }
+
+    /* -------------------------------------------------------
+                            ENCODING
+       ------------------------------------------------------- */
+
+    /** Returns the command id for HALT/RESUME/QUIT, or 0 if it has none. */
+    public static int commandId(String command) {
+        for (int i = 1; i < COMMANDS.length; i++) {
+            if (COMMANDS[i].equals(command)) return i;
+        }
+        return 0;
+    }
+
+    public static int telemetryKeyId(String key) {
+        for (int i = 1; i < TELEMETRY_KEYS.length; i++) {
+            if (TELEMETRY_KEYS[i].equals(key)) return i;
+        }
+        return 0;
+    }
+
+    public static byte[] encodeCommand(int commandId) {
+        return new Writer(4).writeByte(TYPE_COMMAND).writeVarint(commandId).toFrame();
+    }
+
+    public static byte[] encodeDrive(int buttons) {
+        return new Writer(4).writeByte(TYPE_DRIVE).writeVarint(buttons).toFrame();
+    }
+
+    public static byte[] encodeTelemetry(int keyId, int value) {
+        return new Writer(8).writeByte(TYPE_TELEMETRY).writeVarint(keyId).writeZigZag(value).toFrame();
+    }
+
+    public static byte[] encodeJobHeader(int jobId, int instructionCount, int chunkCount) {
+        return new Writer(16).writeByte(TYPE_JOB)
+                .writeVarint(jobId).writeVarint(instructionCount).writeVarint(chunkCount)
+                .toFrame();
+    }
+
+    /** Encodes backend items ({"Instruction Order", "Type of Movement", "Quantity", "Paint"}). */
+    public static byte[] encodeChunk(int jobId, int seq, List<JSONObject> items) {
+        Writer writer = new Writer(16 + items.size() * 8)
+                .writeByte(TYPE_CHUNK).writeVarint(jobId).writeVarint(seq).writeVarint(items.size());
+        for (JSONObject item : items) {
+            writer.writeVarint(item.optInt(ORDER_KEY, 0));
+
+            String type = item.optString(TYPE_KEY, "").toLowerCase();
+            int code = indexOf(MOVEMENT_TYPES, type);
+            if (code >= 0) {
+                writer.writeByte(code);
+            } else {
+                writer.writeByte(MOVEMENT_OTHER).writeString(type);
+            }
+
+            writer.writeByte(item.optBoolean(PAINT_KEY, false) ? FLAG_PAINT : 0);
+            writer.writeZigZag((int) Math.round(item.optDouble(QUANTITY_KEY, 0) * QUANTITY_SCALE));
+        }
+        return writer.toFrame();
+    }
+
+    public static byte[] encodePackedChunk(int jobId, int seq, byte[] deflated) {
+        return new Writer(12 + deflated.length).writeByte(TYPE_PACKED_CHUNK)
+                .writeVarint(jobId).writeVarint(seq).writeBytes(deflated)
+                .toFrame();
+    }
+
+    /** True if the robot's HELLO mask includes codec version {@code version}. */
+    public static boolean supports(int peerVersions, int version) {
+        return (peerVersions & (1 << (version - 1))) != 0;
+    }
+
+    /* -------------------------------------------------------
+                            DECODING
+       ------------------------------------------------------- */
+
+    /** Type byte of a payload handed over by {@link FrameDecoder}. */
+    public static int type(byte[] payload, int offset, int length) {
+        if (length < 1) throw new IllegalArgumentException("Empty payload");
+        return payload[offset] & 0xFF;
+    }
+
+    /** Decodes a TELEMETRY payload and hands it to {@code parser}; false if the key is unknown. */
+    public static boolean dispatchTelemetry(byte[] payload, int offset, int length, TelemetryParser parser) {
+        Reader reader = new Reader(payload, offset + 1, length - 1);
+        int keyId = reader.readVarint();
+        int value = reader.readZigZag();
+        if (keyId <= 0 || keyId >= TELEMETRY_KEYS.length) return false;
+        return parser.dispatch(TELEMETRY_KEY_BYTES[keyId], value);
+    }
+
+    public static Chunk decodeChunk(byte[] payload, int offset, int length) {
+        Reader reader = new Reader(payload, offset + 1, length - 1);
+        int jobId = reader.readVarint();
+        int seq = reader.readVarint();
+        int count = reader.readVarint();
+        if (count > length) throw new IllegalArgumentException("Bad instruction count " + count);
+
+        Instruction[] instructions = new Instruction[count];
+        for (int i = 0; i < count; i++) {
+            int order = reader.readVarint();
+            int code = reader.readByte();
+            String type = code == MOVEMENT_OTHER ? reader.readString()
+                    : code < MOVEMENT_TYPES.length ? MOVEMENT_TYPES[code] : "";
+            boolean paint = (reader.readByte() & FLAG_PAINT) != 0;
+            double quantity = reader.readZigZag() / (double) QUANTITY_SCALE;
+            instructions[i] = new Instruction(order, type, quantity, paint);
+        }
+        return new Chunk(jobId, seq, instructions);
+    }
+
+    /** Decodes a single-varint payload (COMMAND or DRIVE). */
+    public static int decodeValue(byte[] payload, int offset, int length) {
+        return new Reader(payload, offset + 1, length - 1).readVarint();
+    }
+
+    /** Decodes a JOB payload into {jobId, instructionCount, chunkCount}. */
+    public static int[] decodeJobHeader(byte[] payload, int offset, int length) {
+        Reader reader = new Reader(payload, offset + 1, length - 1);
+        return new int[] {reader.readVarint(), reader.readVarint(), reader.readVarint()};
+    }
+
+    static int crc32(byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static int indexOf(String[] values, String value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) return i;
+        }
+        return -1;
+    }
+
+    /* -------------------------------------------------------
+                        VARINT BUFFERS
+       ------------------------------------------------------- */
+
+    static final class Writer {
+        private byte[] buffer;
+        private int length = 0;
+
+        Writer(int initialCapacity) {
+            buffer = new byte[Math.max(initialCapacity, 8)];
+        }
+
+        Writer writeByte(int value) {
+            ensure(1);
+            buffer[length++] = (byte) value;
+            return this;
+        }
+
+        Writer writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+            return this;
+        }
+
+        Writer writeZigZag(int value) {
+            return writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        Writer writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+            return this;
+        }
+
+        byte[] toByteArray() {
+            byte[] copy = new byte[length];
+            System.arraycopy(buffer, 0, copy, 0, length);
+            return copy;
+        }
+
+        Writer writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+            return this;
+        }
+
+        // sync | varint length | payload | crc32
+        byte[] toFrame() {
+            int lengthBytes = 1;
+            for (int v = length; (v & ~0x7F) != 0; v >>>= 7) lengthBytes++;
+
+            byte[] frame = new byte[1 + lengthBytes + length + 4];
+            int pos = 0;
+            frame[pos++] = SYNC;
+            int v = length;
+            while ((v & ~0x7F) != 0) {
+                frame[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            frame[pos++] = (byte) v;
+            System.arraycopy(buffer, 0, frame, pos, length);
+            pos += length;
+
+            int crc = crc32(buffer, 0, length);
+            frame[pos++] = (byte) (crc >>> 24);
+            frame[pos++] = (byte) (crc >>> 16);
+            frame[pos++] = (byte) (crc >>> 8);
+            frame[pos] = (byte) crc;
+            return frame;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+                System.arraycopy(buffer, 0, grown, 0, length);
+                buffer = grown;
+            }
+        }
+    }
+
+    static final class Reader {
+        private final byte[] buffer;
+        private int position;
+        private final int end;
+
+        Reader(byte[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        int remaining() {
+            return end - position;
+        }
+
+        int readByte() {
+            if (position >= end) throw new IllegalArgumentException("Truncated payload");
+            return buffer[position++] & 0xFF;
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("Varint too long");
+        }
+
+        int readZigZag() {
+            int raw = readVarint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        String readString() {
+            int length = readVarint();
+            if (length < 0 || length > end - position) throw new IllegalArgumentException("Truncated string");
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.fieldpainterbot;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * How outgoing messages are encoded on the current connection. Every
+ * connection starts in TEXT; it switches to BINARY (codec v1) or PACKED
+ * (v2: BINARY plus deflated field uploads) once the robot answers the HELLO
+ * handshake with a codec version both ends support.
+ */
+public enum WireFormat {
+
+    TEXT {
+        @Override
+        byte[] command(String command) {
+            return BluetoothSendThread.encodeLine(command);
+        }
+
+        @Override
+        byte[] drive(int buttons) {
+            return BluetoothSendThread.encodeLine("DRIVE:" + buttons);
+        }
+
+        @Override
+        byte[] jobHeader(int jobId, int instructionCount, int chunkCount) {
+            return BluetoothSendThread.encodeLine("JOB:" + jobId + ":" + instructionCount + ":" + chunkCount);
+        }
+
+        @Override
+        byte[] chunk(int jobId, int seq, List<JSONObject> items) {
+            return BluetoothSendThread.encodeLine("CHUNK:" + jobId + ":" + seq + ":" + new JSONArray(items));
+        }
+    },
+
+    BINARY {
+        @Override
+        byte[] command(String command) {
+            int id = WireCodec.commandId(command);
+            // Anything without a binary form still goes as text; the robot reads both
+            return id != 0 ? WireCodec.encodeCommand(id) : TEXT.command(command);
+        }
+
+        @Override
+        byte[] drive(int buttons) {
+            return WireCodec.encodeDrive(buttons);
+        }
+
+        @Override
+        byte[] jobHeader(int jobId, int instructionCount, int chunkCount) {
+            return WireCodec.encodeJobHeader(jobId, instructionCount, chunkCount);
+        }
+
+        @Override
+        byte[] chunk(int jobId, int seq, List<JSONObject> items) {
+            return WireCodec.encodeChunk(jobId, seq, items);
+        }
+    },
+
+    PACKED {
+        @Override
+        byte[] command(String command) {
+            return BINARY.command(command);
+        }
+
+        @Override
+        byte[] drive(int buttons) {
+            return BINARY.drive(buttons);
+        }
+
+        @Override
+        byte[] jobHeader(int jobId, int instructionCount, int chunkCount) {
+            return BINARY.jobHeader(jobId, instructionCount, chunkCount);
+        }
+
+        @Override
+        byte[] chunk(int jobId, int seq, List<JSONObject> items) {
+            return BINARY.chunk(jobId, seq, items);
+        }
+
+        @Override
+        boolean canPack() {
+            return true;
+        }
+    };
+
+    // Whole uploads can be sent as FieldPayloadCodec PACKED_CHUNK frames
+    boolean canPack() {
+        return false;
+    }
+
+    abstract byte[] command(String command);
+
+    abstract byte[] drive(int buttons);
+
+    abstract byte[] jobHeader(int jobId, int instructionCount, int chunkCount);
+
+    abstract byte[] chunk(int jobId, int seq, List<JSONObject> items);
+}
@@ -0,0 +1,122 @@
+package com.example.fieldpainterbot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import mockwebserver3.MockResponse;
+import mockwebserver3.MockWebServer;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import static org.junit.Assert.*;
+
+public class BackendHttpTest {
+
+    private final MockWebServer server = new MockWebServer();
+    private final HttpTimingListener timings = new HttpTimingListener();
+    // Same client as the app, with backoff shrunk to milliseconds
+    private final OkHttpClient client =
+            BackendHttp.newClientBuilder(timings, new RetryInterceptor(3, 10, 40)).build();
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    private Response get(String path) throws IOException {
+        return client.newCall(new Request.Builder().url(server.url(path)).build()).execute();
+    }
+
+    @Test
+    public void coldStartErrorsAreRetried() throws IOException {
+        server.enqueue(new MockResponse.Builder().code(503).build());
+        server.enqueue(new MockResponse.Builder().code(502).build());
+        server.enqueue(new MockResponse.Builder().body("ok").build());
+
+        try (Response response = get("/FieldData")) {
+            assertEquals(200, response.code());
+            assertEquals("ok", response.body().string());
+        }
+        assertEquals(3, server.getRequestCount());
+
+        HttpMetrics metrics = timings.getMetrics();
+        assertEquals(1, metrics.calls);
+        assertEquals(2, metrics.retries);
+        assertEquals(3, metrics.last.attempts);
+    }
+
+    @Test
+    public void retriesStopAtTheLimit() throws IOException {
+        for (int i = 0; i < 4; i++) server.enqueue(new MockResponse.Builder().code(503).build());
+
+        try (Response response = get("/FieldData")) {
+            assertEquals(503, response.code());
+        }
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void clientErrorsAndPostsAreNotRetried() throws IOException {
+        server.enqueue(new MockResponse.Builder().code(404).build());
+        server.enqueue(new MockResponse.Builder().code(503).build());
+
+        try (Response response = get("/FieldData")) {
+            assertEquals(404, response.code());
+        }
+        Request post = new Request.Builder()
+                .url(server.url("/FieldData"))
+                .post(RequestBody.create("[]", MediaType.get("application/json")))
+                .build();
+        try (Response response = client.newCall(post).execute()) {
+            assertEquals(503, response.code());
+        }
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void secondCallReusesTheConnection() throws IOException {
+        server.enqueue(new MockResponse.Builder().body("one").build());
+        server.enqueue(new MockResponse.Builder().body("two").build());
+
+        try (Response response = get("/status")) {
+            response.body().string();
+        }
+        HttpTiming first = timings.getMetrics().last;
+        try (Response response = get("/status")) {
+            response.body().string();
+        }
+        HttpTiming second = timings.getMetrics().last;
+
+        assertFalse(first.reusedConnection);
+        assertTrue(first.connectMicros >= 0);
+        assertTrue(first.ttfbMicros >= 0);
+        assertTrue(second.reusedConnection);
+        assertEquals(HttpTiming.NOT_MEASURED, second.connectMicros);
+        assertEquals(HttpTiming.NOT_MEASURED, second.tlsMicros);
+        assertEquals(1, timings.getMetrics().reusedConnections);
+        assertEquals("/status", second.path);
+    }
+
+    @Test
+    public void backoffDoublesAndHonoursRetryAfter() {
+        RetryInterceptor retry = new RetryInterceptor(5, 1000, 16000);
+        for (int attempt = 1; attempt <= 6; attempt++) {
+            long ceiling = Math.min(16000, 1000L << (attempt - 1));
+            long delay = retry.delayFor(attempt, null);
+            assertTrue(delay >= ceiling / 2 && delay <= ceiling);
+        }
+        assertEquals(3000, retry.delayFor(1, "3"));
+        assertEquals(16000, retry.delayFor(1, "600"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the old one-flush-per-message send loop against the batched
+ * BluetoothSendThread: the same bytes in the same order, in fewer flushes.
+ * Flushes are what cost on a real link (a syscall plus an RFCOMM packet
+ * each), so the count is checked rather than wall-clock time.
+ */
+public class BluetoothSendThreadBenchmarkTest {
+
+    private static final int MESSAGES = 2000;
+
+    @Test
+    public void batchedSendLoop_deliversEverythingInOrderWithFewerFlushes() throws Exception {
+        String[] messages = new String[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            messages[i] = "{\"command\":\"FORWARD\",\"state\":\"" + (i % 2 == 0 ? "pressed" : "released") + "\"}";
+        }
+
+        SimulatedLink legacyLink = new SimulatedLink(Long.MAX_VALUE);
+        for (String msg : messages) {
+            // Old BluetoothSendThread.run() body
+            legacyLink.write((msg + "\n").getBytes());
+            legacyLink.flush();
+        }
+
+        int totalBytes = legacyLink.received.size();
+        SimulatedLink batchedLink = new SimulatedLink(totalBytes);
+        BluetoothSendThread sendThread = new BluetoothSendThread(batchedLink);
+        // Everything is queued up front, before the writer starts
+        sendThread.configureLane(SendLane.CONTROL, MESSAGES, OverflowPolicy.REJECT);
+        for (String msg : messages) {
+            sendThread.enqueueMessage(msg);
+        }
+        sendThread.start();
+        assertTrue(batchedLink.done.await(30, TimeUnit.SECONDS));
+        sendThread.close();
+
+        assertArrayEquals(legacyLink.received.toByteArray(), batchedLink.received.toByteArray());
+        assertEquals(MESSAGES, legacyLink.flushes);
+        assertTrue(batchedLink.flushes + " flushes", batchedLink.flushes < MESSAGES / 10);
+    }
+
+    private static final class SimulatedLink extends OutputStream {
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final CountDownLatch done = new CountDownLatch(1);
+        final long expectedBytes;
+        int flushes = 0;
+
+        SimulatedLink(long expectedBytes) {
+            this.expectedBytes = expectedBytes;
+        }
+
+        @Override
+        public void write(int b) {
+            received.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            received.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+            if (received.size() >= expectedBytes) done.countDown();
+        }
+    }
+}
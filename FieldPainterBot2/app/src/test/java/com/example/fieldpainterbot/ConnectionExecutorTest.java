@@ -0,0 +1,93 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ConnectionExecutorTest {
+
+    @Test
+    public void reconnectsReuseTheSameThreads() throws Exception {
+        ConnectionExecutor executor = new ConnectionExecutor();
+
+        for (int connection = 0; connection < 20; connection++) {
+            BluetoothSendThread writer = new BluetoothSendThread(new ByteArrayOutputStream());
+            writer.start(executor);
+            SendFuture hello = writer.enqueue(SendLane.SAFETY, BluetoothSendThread.encodeLine("HELLO:3"));
+            assertTrue(hello.await(2, TimeUnit.SECONDS));
+
+            writer.close();
+            assertTrue("writer of connection " + connection + " stopped", executor.awaitIdle(2000));
+            assertEquals(0, executor.getActiveTaskCount());
+        }
+
+        assertTrue(executor.getCreatedThreadCount() <= ConnectionExecutor.CORE_THREADS);
+        assertTrue(executor.getLiveThreadCount() <= ConnectionExecutor.CORE_THREADS);
+    }
+
+    @Test
+    public void awaitIdleSkipsTheCallersOwnTask() throws Exception {
+        ConnectionExecutor executor = new ConnectionExecutor();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicBoolean idle = new AtomicBoolean();
+
+        // e.g. the connect task starting the next connection's threads
+        executor.execute(() -> {
+            idle.set(executor.awaitIdle(1000));
+            done.countDown();
+        });
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertTrue(idle.get());
+    }
+
+    @Test
+    public void stuckTaskIsInterruptedBeforeTheNextConnection() throws Exception {
+        ConnectionExecutor executor = new ConnectionExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        assertTrue(executor.awaitIdle(50));
+        assertTrue(interrupted.get());
+        assertEquals(0, executor.getActiveTaskCount());
+    }
+
+    @Test
+    public void shutdownLetsTheThreadsGo() throws Exception {
+        ConnectionExecutor executor = new ConnectionExecutor();
+        CountDownLatch ran = new CountDownLatch(1);
+        executor.execute(ran::countDown);
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        assertTrue(executor.awaitIdle(2000));
+        assertEquals(1, executor.getLiveThreadCount());
+
+        executor.shutdown();
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (executor.getLiveThreadCount() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(0, executor.getLiveThreadCount());
+        assertTrue(executor.isShutdown());
+        try {
+            executor.execute(() -> {});
+            fail("a shut down executor took a task");
+        } catch (RejectedExecutionException expected) {
+            assertEquals(0, executor.getActiveTaskCount());
+        }
+    }
+}
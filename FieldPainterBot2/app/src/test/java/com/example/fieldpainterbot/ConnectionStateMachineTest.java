@@ -0,0 +1,224 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConnectionStateMachineTest {
+
+    // Like BluetoothLink: a live link owns the socket its pending link was connecting
+    private static final class FakeLink implements Closeable {
+        final FakeLink pending;
+        final AtomicInteger closes = new AtomicInteger();
+
+        FakeLink(FakeLink pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public void close() {
+            closes.incrementAndGet();
+            if (pending != null) pending.close();
+        }
+    }
+
+    private final Queue<FakeLink> links = new ConcurrentLinkedQueue<>();
+
+    private FakeLink newLink() {
+        return newLink(null);
+    }
+
+    private FakeLink newLink(FakeLink pending) {
+        FakeLink link = new FakeLink(pending);
+        links.add(link);
+        return link;
+    }
+
+    // Invariants every snapshot has to hold, whatever thread is looking
+    private static void assertConsistent(ConnectionState<String, FakeLink> state) {
+        switch (state.status) {
+            case CONNECTED:
+                assertNotNull("connected without a link: " + state, state.link);
+                break;
+            case CONNECTING:
+                assertNotNull("connecting without a device: " + state, state.device);
+                break;
+            default:
+                assertNull("idle with a link: " + state, state.link);
+                assertNull("idle with a device: " + state, state.device);
+                assertEquals(state.listening ? ConnectionStatus.LISTENING : ConnectionStatus.DISCONNECTED,
+                        state.status);
+        }
+    }
+
+    @Test
+    public void doubleTapOpensOneConnection() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            ConnectionStateMachine<String, FakeLink> machine = new ConnectionStateMachine<>(null);
+            int taps = 8;
+            CyclicBarrier barrier = new CyclicBarrier(taps);
+            AtomicInteger winners = new AtomicInteger();
+            Thread[] threads = new Thread[taps];
+            for (int i = 0; i < taps; i++) {
+                threads[i] = new Thread(() -> {
+                    try {
+                        barrier.await();
+                    } catch (Exception e) {
+                        return;
+                    }
+                    if (machine.beginConnect("robot") >= 0) winners.incrementAndGet();
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) thread.join();
+            assertEquals(1, winners.get());
+            assertEquals(ConnectionStatus.CONNECTING, machine.get().status);
+        }
+    }
+
+    @Test
+    public void staleAttemptCannotCompleteAfterDisconnect() {
+        ConnectionStateMachine<String, FakeLink> machine = new ConnectionStateMachine<>(null);
+        long attempt = machine.beginConnect("robot");
+        FakeLink pending = newLink();
+        assertTrue(machine.attach(attempt, pending));
+
+        machine.disconnect();
+        assertEquals("disconnect aborts the blocking connect", 1, pending.closes.get());
+
+        FakeLink live = newLink(pending);
+        assertFalse(machine.connected(attempt, live));
+        assertEquals(1, live.closes.get());
+        assertEquals(ConnectionStatus.DISCONNECTED, machine.get().status);
+    }
+
+    @Test
+    public void lostClientLinkReconnectsAndServerLinkGoesBackToListening() {
+        ConnectionStateMachine<String, FakeLink> machine = new ConnectionStateMachine<>(null);
+        long attempt = machine.beginConnect("robot");
+        FakeLink client = newLink();
+        assertTrue(machine.connected(attempt, client));
+
+        ConnectionState<String, FakeLink> reconnecting = machine.linkLost(client);
+        assertEquals(ConnectionStatus.CONNECTING, reconnecting.status);
+        assertEquals("robot", reconnecting.device);
+        assertNull("a second report of the same loss is ignored", machine.linkLost(client));
+        assertEquals(1, client.closes.get());
+
+        assertTrue(machine.attemptFailed(reconnecting.attempt, false));
+        machine.setListening(true);
+        assertEquals(ConnectionStatus.LISTENING, machine.get().status);
+
+        FakeLink incoming = newLink();
+        assertTrue(machine.accepted(incoming));
+        assertEquals(ConnectionStatus.LISTENING, machine.linkLost(incoming).status);
+        assertEquals(ConnectionStatus.LISTENING, machine.get().status);
+    }
+
+    @Test
+    public void concurrentConnectDisconnectAcceptAndLossStayConsistent() throws Exception {
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        ConnectionStateMachine<String, FakeLink> machine =
+                new ConnectionStateMachine<>(state -> {
+                    try {
+                        assertConsistent(state);
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                });
+        machine.setListening(true);
+
+        int iterations = 20_000;
+        AtomicBoolean done = new AtomicBoolean();
+
+        Runnable connector = () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < iterations; i++) {
+                long attempt = machine.beginConnect(random.nextBoolean() ? "left" : "right");
+                if (attempt < 0) continue;
+                FakeLink pending = newLink();
+                if (!machine.attach(attempt, pending)) continue;
+                if (random.nextInt(4) == 0) {
+                    machine.attemptFailed(attempt, random.nextBoolean());
+                } else {
+                    machine.connected(attempt, newLink(pending));
+                }
+            }
+        };
+        Runnable acceptor = () -> {
+            for (int i = 0; i < iterations; i++) machine.accepted(newLink());
+        };
+        Runnable disconnector = () -> {
+            for (int i = 0; i < iterations / 10; i++) {
+                machine.disconnect();
+                machine.setListening(true);
+                Thread.yield();
+            }
+        };
+        Runnable linkKiller = () -> {
+            for (int i = 0; i < iterations; i++) {
+                ConnectionState<String, FakeLink> state = machine.get();
+                if (state.status == ConnectionStatus.CONNECTED) machine.linkLost(state.link);
+            }
+        };
+        Runnable observer = () -> {
+            long lastAttempt = -1;
+            while (!done.get()) {
+                ConnectionState<String, FakeLink> state = machine.get();
+                assertConsistent(state);
+                assertTrue("attempt ids never go back", state.attempt >= lastAttempt);
+                lastAttempt = state.attempt;
+            }
+        };
+
+        Thread watcher = start(observer, failures);
+        Thread[] workers = {
+                start(connector, failures), start(connector, failures), start(acceptor, failures),
+                start(disconnector, failures), start(linkKiller, failures)
+        };
+        for (Thread worker : workers) worker.join();
+        done.set(true);
+        watcher.join();
+        if (!failures.isEmpty()) throw new AssertionError(failures.get(0));
+
+        machine.disconnect();
+        assertEquals(ConnectionStatus.DISCONNECTED, machine.get().status);
+        Set<FakeLink> promoted = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (FakeLink link : links) {
+            if (link.pending != null) promoted.add(link.pending);
+        }
+        for (FakeLink link : links) {
+            assertTrue("every link ends up closed", link.closes.get() >= 1);
+            // Only a pending socket can be closed twice: by a disconnect aborting it, then
+            // with the live link its connect lost the race to install
+            if (!promoted.contains(link)) {
+                assertEquals("links are closed exactly once", 1, link.closes.get());
+            }
+        }
+    }
+
+    private static Thread start(Runnable body, List<Throwable> failures) {
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } catch (Throwable t) {
+                failures.add(t);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DiscoveryStoreTest {
+
+    // Known robots are set before any sighting so nothing is published to the main thread here
+    private final DiscoveryStore store = new DiscoveryStore(null);
+
+    private static List<String> addresses(List<DiscoveredDevice> devices) {
+        List<String> out = new ArrayList<>();
+        for (DiscoveredDevice device : devices) out.add(device.getAddress());
+        return out;
+    }
+
+    @Test
+    public void repeatSightingsUpdateInPlace() {
+        assertTrue(store.record(null, "AA", "Phone", -70, 1000));
+        assertTrue(store.record(null, "BB", "Speaker", -80, 1100));
+
+        // Same RSSI: only the last-seen time moves, nothing to redraw
+        assertFalse(store.record(null, "AA", "Phone", -70, 2000));
+        // A missing RSSI keeps the last one
+        assertFalse(store.record(null, "AA", null, DiscoveredDevice.RSSI_UNKNOWN, 2500));
+        assertTrue(store.record(null, "AA", "Phone", -60, 3000));
+
+        List<DiscoveredDevice> devices = store.snapshot();
+        assertEquals(2, store.size());
+        assertEquals(Arrays.asList("AA", "BB"), addresses(devices));
+        assertEquals(-60, devices.get(0).getRssi());
+        assertEquals("Phone", devices.get(0).getName());
+        assertEquals(3000, devices.get(0).getLastSeenMs());
+    }
+
+    @Test
+    public void knownRobotsComeFirstByStrongestSignal() {
+        store.setKnownRobots(Arrays.asList("R1", "R2"));
+
+        store.record(null, "X1", "Headphones", -40, 0);
+        store.record(null, "R1", "fieldbot-1", -75, 0);
+        store.record(null, "X2", "Watch", -90, 0);
+        store.record(null, "R2", "fieldbot-2", -55, 0);
+        store.record(null, "X3", "Car", -30, 0);
+
+        // Other devices keep discovery order however their signal changes
+        assertEquals(Arrays.asList("R2", "R1", "X1", "X2", "X3"), addresses(store.snapshot()));
+
+        store.record(null, "R1", "fieldbot-1", -50, 10);
+        store.record(null, "X3", "Car", -20, 10);
+        assertEquals(Arrays.asList("R1", "R2", "X1", "X2", "X3"), addresses(store.snapshot()));
+        assertTrue(store.snapshot().get(0).isKnownRobot());
+        assertFalse(store.snapshot().get(2).isKnownRobot());
+    }
+
+    @Test
+    public void rowsOnlyDifferWhenWhatTheyShowChanges() {
+        DiscoveredDevice device = new DiscoveredDevice(null, "AA", "Phone", -70, 0, false);
+
+        assertTrue(device.sameContents(device.withSighting("Phone", -70, 5000)));
+        assertFalse(device.sameContents(device.withSighting("Phone", -71, 5000)));
+        assertFalse(device.sameContents(device.withSighting("Phone 2", -70, 5000)));
+        assertFalse(device.sameContents(device.withKnownRobot(true)));
+    }
+}
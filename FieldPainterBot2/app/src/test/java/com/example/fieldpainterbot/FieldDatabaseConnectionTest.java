@@ -0,0 +1,257 @@
+package com.example.fieldpainterbot;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import mockwebserver3.MockResponse;
+import mockwebserver3.MockWebServer;
+import mockwebserver3.RecordedRequest;
+import okhttp3.OkHttpClient;
+
+import static org.junit.Assert.*;
+
+public class FieldDatabaseConnectionTest {
+
+    private static final String PATTERN = "{\"items\":[{\"Instruction Order\":1}]}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private PatternCache cache;
+    private FieldDatabaseConnection db;
+
+    @Before
+    public void setUp() throws Exception {
+        server.start();
+        cache = new PatternCache(folder.newFolder("patterns"), PatternCache.MAX_BYTES);
+        String baseUrl = server.url("/").toString().replaceAll("/$", "");
+        db = new FieldDatabaseConnection(new OkHttpClient(), baseUrl, cache);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void firstFetchDownloadsAndCaches() throws Exception {
+        server.enqueue(new MockResponse.Builder().body(PATTERN).addHeader("ETag", "\"v1\"").build());
+
+        db.fetchData("soccer", received::add);
+
+        assertEquals(PATTERN, received.poll(5, TimeUnit.SECONDS));
+        RecordedRequest request = server.takeRequest();
+        assertEquals("soccer", request.getUrl().queryParameter("collection_name"));
+        assertNull(request.getHeaders().get("If-None-Match"));
+        assertEquals("\"v1\"", cache.get("soccer").etag);
+    }
+
+    @Test
+    public void cachedCopyIsServedThenRevalidated() throws Exception {
+        cache.put("soccer", PATTERN, "\"v1\"", 1000);
+        server.enqueue(new MockResponse.Builder().code(304).addHeader("ETag", "\"v1\"").build());
+
+        db.fetchData("soccer", received::add);
+
+        assertEquals(PATTERN, received.poll(5, TimeUnit.SECONDS));
+        assertEquals("\"v1\"", server.takeRequest(5, TimeUnit.SECONDS).getHeaders().get("If-None-Match"));
+        // The 304 only refreshes the fetch time, and never calls back a second time
+        waitForFetchTimeAfter(1000);
+        assertEquals(PATTERN, cache.get("soccer").body);
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void changedPatternReplacesTheCacheForNextTime() throws Exception {
+        String updated = "{\"items\":[{\"Instruction Order\":2}]}";
+        cache.put("soccer", PATTERN, "\"v1\"", 1000);
+        server.enqueue(new MockResponse.Builder().body(updated).addHeader("ETag", "\"v2\"").build());
+
+        db.fetchData("soccer", received::add);
+
+        assertEquals(PATTERN, received.poll(5, TimeUnit.SECONDS));
+        waitForFetchTimeAfter(1000);
+        assertEquals(updated, cache.get("soccer").body);
+        assertEquals("\"v2\"", cache.get("soccer").etag);
+    }
+
+    @Test
+    public void cachedCopyIsServedWhenTheBackendIsDown() throws Exception {
+        cache.put("soccer", PATTERN, "\"v1\"", 1000);
+        server.close();
+
+        db.fetchData("soccer", received::add);
+
+        assertEquals(PATTERN, received.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void bundlePrefetchAnswersStartWithoutTheNetwork() throws Exception {
+        server.enqueue(new MockResponse.Builder().body(bundle("soccer", "rugby")).build());
+
+        db.prefetchAll();
+        assertEquals("/FieldData/bundle", server.takeRequest(5, TimeUnit.SECONDS).getUrl().encodedPath());
+        waitForCached("rugby");
+
+        db.fetchData("soccer", received::add);
+        assertEquals(pattern("soccer"), received.poll(5, TimeUnit.SECONDS));
+        assertEquals("\"soccer-etag\"", cache.get("soccer").etag);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void unchangedBundleIsRevalidatedOnTheNextLaunch() throws Exception {
+        server.enqueue(new MockResponse.Builder().body(bundle("soccer", "rugby")).addHeader("ETag", "\"b1\"").build());
+        db.prefetchAll();
+        assertNull(server.takeRequest(5, TimeUnit.SECONDS).getHeaders().get("If-None-Match"));
+        waitForCached("rugby");
+        long fetchedAtMs = cache.get("soccer").fetchedAtMs;
+
+        // Next launch: a fresh connection over the cache reloaded from disk
+        Thread.sleep(5);
+        cache = new PatternCache(new File(folder.getRoot(), "patterns"), PatternCache.MAX_BYTES);
+        String baseUrl = server.url("/").toString().replaceAll("/$", "");
+        db = new FieldDatabaseConnection(new OkHttpClient(), baseUrl, cache);
+        server.enqueue(new MockResponse.Builder().code(304).addHeader("ETag", "\"b1\"").build());
+        db.prefetchAll();
+
+        assertEquals("\"b1\"", server.takeRequest(5, TimeUnit.SECONDS).getHeaders().get("If-None-Match"));
+        waitForFetchTimeAfter(fetchedAtMs);
+        db.fetchData("rugby", received::add);
+        assertEquals(pattern("rugby"), received.poll(5, TimeUnit.SECONDS));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void bundleIsNotRevalidatedOnceOneOfItsPatternsIsGone() throws Exception {
+        server.enqueue(new MockResponse.Builder().body(bundle("soccer", "rugby")).addHeader("ETag", "\"b1\"").build());
+        db.prefetchAll();
+        server.takeRequest(5, TimeUnit.SECONDS);
+        waitForCached("rugby");
+        assertEquals("\"b1\"", cache.getBundleEtag());
+
+        cache.remove("rugby");
+
+        assertNull(cache.getBundleEtag());
+    }
+
+    @Test
+    public void fieldsAskedForDuringTheBundleWaitForIt() throws Exception {
+        server.enqueue(new MockResponse.Builder()
+                .body(bundle("soccer"))
+                .headersDelay(300, TimeUnit.MILLISECONDS)
+                .build());
+
+        db.prefetchAll();
+        db.prefetchAll();  // already running
+        db.fetchData("soccer", received::add);
+
+        assertEquals(pattern("soccer"), received.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void failedBundleFallsBackToOneRequestPerField() throws Exception {
+        server.enqueue(new MockResponse.Builder().code(503).headersDelay(300, TimeUnit.MILLISECONDS).build());
+        server.enqueue(new MockResponse.Builder().body(PATTERN).build());
+
+        db.prefetchAll();
+        db.fetchData("soccer", received::add);
+        db.fetchData("soccer", received::add);
+
+        assertEquals(PATTERN, received.poll(5, TimeUnit.SECONDS));
+        assertEquals(PATTERN, received.poll(5, TimeUnit.SECONDS));
+        assertEquals("/FieldData/bundle", server.takeRequest().getUrl().encodedPath());
+        assertEquals("/FieldData", server.takeRequest().getUrl().encodedPath());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void concurrentFetchesOfOneFieldShareACall() throws Exception {
+        server.enqueue(new MockResponse.Builder().body(PATTERN).headersDelay(300, TimeUnit.MILLISECONDS).build());
+
+        db.fetchData("soccer", received::add);
+        db.fetchData("soccer", received::add);
+        db.fetchData("soccer", received::add);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(PATTERN, received.poll(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void errorsReachTheCaller() throws Exception {
+        BlockingQueue<String> errors = new LinkedBlockingQueue<>();
+        server.enqueue(new MockResponse.Builder().code(404).build());
+
+        db.fetchData("nowhere", received::add, errors::add);
+
+        assertEquals("No field named nowhere", errors.poll(5, TimeUnit.SECONDS));
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void unreachableServerWithNothingCachedReportsAnError() throws Exception {
+        BlockingQueue<String> errors = new LinkedBlockingQueue<>();
+        server.close();
+
+        db.fetchData("soccer", received::add, errors::add);
+
+        assertNotNull(errors.poll(5, TimeUnit.SECONDS));
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void invalidPatternIsNeitherDeliveredNorCached() throws Exception {
+        BlockingQueue<String> errors = new LinkedBlockingQueue<>();
+        server.enqueue(new MockResponse.Builder().body("<html>Service Unavailable</html>").build());
+
+        db.fetchData("soccer", received::add, errors::add);
+
+        assertNotNull(errors.poll(5, TimeUnit.SECONDS));
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+        assertFalse(cache.contains("soccer"));
+    }
+
+    private static String pattern(String name) {
+        return "{\"items\":[{\"Field\":\"" + name + "\"}]}";
+    }
+
+    private static String bundle(String... names) throws Exception {
+        JSONArray collections = new JSONArray();
+        for (String name : names) {
+            collections.put(new JSONObject()
+                    .put("name", name)
+                    .put("etag", "\"" + name + "-etag\"")
+                    .put("body", pattern(name)));
+        }
+        return new JSONObject().put("collections", collections).toString();
+    }
+
+    private void waitForCached(String collection) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!cache.contains(collection) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void waitForFetchTimeAfter(long fetchedAtMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.get("soccer").fetchedAtMs == fetchedAtMs && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
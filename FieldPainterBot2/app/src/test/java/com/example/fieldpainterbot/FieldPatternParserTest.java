@@ -0,0 +1,101 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+
+public class FieldPatternParserTest {
+
+    private static final String SOCCER = "{\"items\": [\n"
+            + "  {\"Instruction Order\": 1, \"Type of Movement\": \"Walk\", \"Quantity\": 120, \"Paint\": true},\n"
+            + "  {\"Instruction Order\": 2, \"Type of Movement\": \"Rotation\", \"Quantity\": -90, \"Paint\": false},\n"
+            + "  {\"Instruction Order\": 3, \"Type of Movement\": \"circle\", \"Quantity\": 31.5, \"Paint\": true}\n"
+            + "]}";
+
+    @Test
+    public void decodesInstructionsIntoColumns() throws IOException {
+        FieldPattern pattern = FieldPatternParser.parse(new Buffer().writeUtf8(SOCCER));
+
+        assertEquals(3, pattern.size());
+        assertEquals(FieldPattern.WALK, pattern.getType(0));
+        assertEquals(120f, pattern.getQuantity(0), 0);
+        assertTrue(pattern.isPaint(0));
+        assertEquals(FieldPattern.ROTATION, pattern.getType(1));
+        assertEquals(-90f, pattern.getQuantity(1), 0);
+        assertFalse(pattern.isPaint(1));
+        assertEquals(FieldPattern.CIRCLE, pattern.getType(2));
+        assertEquals(31.5f, pattern.getQuantity(2), 0);
+        assertEquals(3, pattern.getOrder(2));
+    }
+
+    @Test
+    public void readsItemsTheWayTheRobotDoes() throws IOException {
+        FieldPattern pattern = FieldPatternParser.parse("{\"meta\":{\"a\":[1,{\"b\":null}],\"c\":\"x\\\"y\"},"
+                + "\"items\":[{}, 7,"
+                + "{\"Instruction Order\":\"2\",\"Type of Movement\":\"W\\u0061lk\",\"Quantity\":\"1.5\",\"Paint\":1},"
+                + "{\"Instruction Order\":1,\"Type of Movement\":\"ROTATION\",\"Quantity\":null,\"Notes\":[true]},"
+                + "{\"Instruction Order\":3,\"Quantity\":4}]}");
+
+        // Empty, non-object and type-less items dropped; sorted by order
+        assertEquals(2, pattern.size());
+        assertEquals(FieldPattern.ROTATION, pattern.getType(0));
+        assertEquals(0f, pattern.getQuantity(0), 0);
+        assertFalse(pattern.isPaint(0));
+        assertEquals(FieldPattern.WALK, pattern.getType(1));
+        assertEquals(1.5f, pattern.getQuantity(1), 0);
+        assertTrue(pattern.isPaint(1));
+    }
+
+    @Test
+    public void reEncodesToTheBackendsJson() throws IOException {
+        FieldPattern pattern = FieldPatternParser.parse(SOCCER);
+        String json = pattern.toJson();
+
+        assertTrue(json.startsWith("{\"items\":[{\"Instruction Order\":1,\"Paint\":true,\"Quantity\":120,"
+                + "\"Type of Movement\":\"Walk\"}"));
+        FieldPattern again = FieldPatternParser.parse(json);
+        assertEquals(json, again.toJson());
+        assertEquals(31.5f, again.getQuantity(2), 0);
+    }
+
+    @Test
+    public void rejectsWhatTheRobotCouldNotRun() {
+        assertRejected("{\"items\":[{\"Type of Movement\":\"Hop\",\"Quantity\":1}]}");
+        assertRejected("{\"items\":[{\"Type of Movement\":\"Walk\",\"Quantity\":\"far\"}]}");
+        assertRejected("{\"detail\":\"Collection not found or empty\"}");
+        assertRejected("{\"items\":[{\"Type of Movement\":\"Walk\"");
+        assertRejected("<html>Service Unavailable</html>");
+        assertRejected("{\"items\":[]} trailing");
+    }
+
+    @Test
+    public void thousandInstructionsStayCompact() throws IOException {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 1; i <= 1000; i++) {
+            if (i > 1) json.append(',');
+            json.append("{\"Instruction Order\":").append(i)
+                    .append(",\"Type of Movement\":\"").append(i % 2 == 0 ? "Rotation" : "Walk")
+                    .append("\",\"Quantity\":").append(i % 2 == 0 ? "90" : "12.5")
+                    .append(",\"Paint\":").append(i % 4 == 1).append('}');
+        }
+        FieldPattern pattern = FieldPatternParser.parse(json.append("]}").toString());
+
+        assertEquals(1000, pattern.size());
+        assertTrue(pattern.estimateBytes() < 10 * 1024);
+        assertTrue(pattern.isPaint(996));
+        assertEquals(1000, pattern.getOrder(999));
+    }
+
+    private static void assertRejected(String json) {
+        try {
+            FieldPatternParser.parse(json);
+            fail("Accepted " + json);
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+}
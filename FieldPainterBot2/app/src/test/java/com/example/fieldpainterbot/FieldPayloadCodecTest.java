@@ -0,0 +1,128 @@
+package com.example.fieldpainterbot;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FieldPayloadCodecTest {
+
+    private static JSONObject item(int order, String type, double quantity, boolean paint) throws Exception {
+        return new JSONObject()
+                .put("Instruction Order", order)
+                .put("Type of Movement", type)
+                .put("Quantity", quantity)
+                .put("Paint", paint);
+    }
+
+    // Touch-line box, then stripes back and forth across the field, like the stored patterns
+    private static List<JSONObject> field() throws Exception {
+        List<JSONObject> items = new ArrayList<>();
+        int order = 1;
+        for (int side = 0; side < 4; side++) {
+            items.add(item(order++, "Walk", side % 2 == 0 ? 120 : 75, true));
+            items.add(item(order++, "Rotation", -90, false));
+        }
+        for (int stripe = 0; stripe < 60; stripe++) {
+            items.add(item(order++, "Walk", 75, true));
+            items.add(item(order++, "Rotation", stripe % 2 == 0 ? 90 : -90, false));
+            items.add(item(order++, "Walk", 2, false));
+            items.add(item(order++, "Rotation", stripe % 2 == 0 ? 90 : -90, false));
+        }
+        items.add(item(order++, "Circle", 10, true));
+        items.add(item(order + 10, "Zigzag", 3.25, true));  // gap in the order and an unknown type
+        return items;
+    }
+
+    private static void assertSameSteps(List<JSONObject> items, List<FieldPayloadCodec.Step> steps) {
+        assertEquals(items.size(), steps.size());
+        for (int i = 0; i < items.size(); i++) {
+            FieldPayloadCodec.Step expected = FieldPayloadCodec.Step.of(items.get(i));
+            FieldPayloadCodec.Step actual = steps.get(i);
+            assertEquals("order at " + i, expected.order, actual.order);
+            assertTrue("move at " + i, expected.sameMove(actual));
+        }
+    }
+
+    @Test
+    public void packRoundTrip() throws Exception {
+        List<JSONObject> items = field();
+        byte[][] chunks = FieldPayloadCodec.pack(items, 8);
+        assertSameSteps(items, FieldPayloadCodec.unpack(chunks));
+    }
+
+    @Test
+    public void everyChunkPrefixDecodesOnItsOwn() throws Exception {
+        List<JSONObject> items = field();
+        byte[][] chunks = FieldPayloadCodec.pack(items, 8);
+
+        int decoded = 0;
+        for (int n = 1; n <= chunks.length; n++) {
+            List<FieldPayloadCodec.Step> steps = FieldPayloadCodec.unpack(Arrays.copyOf(chunks, n));
+            assertTrue("chunk " + n + " adds instructions", steps.size() > decoded);
+            assertSameSteps(items.subList(0, steps.size()), steps);
+            decoded = steps.size();
+        }
+        assertEquals(items.size(), decoded);
+    }
+
+    @Test
+    public void repeatsStopAtChunkBoundaries() throws Exception {
+        // 64 identical instructions would otherwise collapse into one REPEAT spanning every chunk
+        List<JSONObject> items = new ArrayList<>();
+        for (int order = 1; order <= 64; order++) items.add(item(order, "Walk", 2, true));
+        byte[][] chunks = FieldPayloadCodec.pack(items, 8);
+
+        assertEquals(8, chunks.length);
+        for (int n = 1; n <= chunks.length; n++) {
+            assertEquals("instructions through chunk " + n, 8 * n,
+                    FieldPayloadCodec.unpack(Arrays.copyOf(chunks, n)).size());
+        }
+    }
+
+    @Test
+    public void fieldChunksHoldTheirShareOfInstructions() throws Exception {
+        List<JSONObject> items = field();
+        byte[][] chunks = FieldPayloadCodec.pack(items, 8);
+
+        assertEquals((items.size() + 7) / 8, chunks.length);
+        for (int n = 1; n < chunks.length; n++) {
+            assertEquals(8 * n, FieldPayloadCodec.unpack(Arrays.copyOf(chunks, n)).size());
+        }
+    }
+
+    @Test
+    public void emptyPatternStillProducesOneChunk() throws Exception {
+        byte[][] chunks = FieldPayloadCodec.pack(new ArrayList<>(), 8);
+        assertEquals(1, chunks.length);
+        assertTrue(FieldPayloadCodec.unpack(chunks).isEmpty());
+    }
+
+    @Test
+    public void largeUploadsArePackedAutomatically() throws Exception {
+        JSONArray array = new JSONArray();
+        for (JSONObject item : field()) array.put(item);
+        String json = new JSONObject().put("items", array).toString();
+
+        FieldUpload binary = new FieldUpload(1, json, WireFormat.BINARY, 8, 4,
+                FieldPayloadCodec.DEFAULT_THRESHOLD_BYTES, () -> {}, () -> {}, () -> {});
+        FieldUpload packed = new FieldUpload(1, json, WireFormat.PACKED, 8, 4,
+                FieldPayloadCodec.DEFAULT_THRESHOLD_BYTES, () -> {}, () -> {}, () -> {});
+        assertFalse(binary.isPacked());
+        assertTrue(packed.isPacked());
+
+        // The stripes repeat, so deflate should at least halve the plain binary form
+        assertTrue(packed.getEncodedSize() + " vs " + binary.getEncodedSize() + " bytes",
+                2 * packed.getEncodedSize() < binary.getEncodedSize());
+
+        String small = new JSONObject().put("items", new JSONArray().put(item(1, "Walk", 5, true))).toString();
+        assertFalse("tiny patterns are not worth deflating",
+                new FieldUpload(2, small, WireFormat.PACKED, 8, 4,
+                        FieldPayloadCodec.DEFAULT_THRESHOLD_BYTES, () -> {}, () -> {}, () -> {}).isPacked());
+    }
+}
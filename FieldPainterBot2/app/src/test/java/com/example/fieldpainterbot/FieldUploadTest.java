@@ -0,0 +1,218 @@
+package com.example.fieldpainterbot;
+
+import org.json.JSONArray;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class FieldUploadTest {
+
+    private static final FieldUpload.LinkState LINK_UP = () -> false;
+    private static final FieldUpload.LinkState REDIALLING = () -> true;
+
+    // Records each frame and reports it flushed
+    private static FieldUpload.Sender recorder(List<String> sent) {
+        return frame -> {
+            synchronized (sent) {
+                sent.add(new String(frame, StandardCharsets.UTF_8).trim());
+            }
+            SendFuture future = new SendFuture();
+            future.complete();
+            return future;
+        };
+    }
+
+    private static String field(int instructions) {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        // Deliberately out of order; the robot executes chunks as they arrive
+        for (int i = instructions; i >= 1; i--) {
+            if (i < instructions) json.append(',');
+            json.append("{\"Instruction Order\": ").append(i)
+                    .append(", \"Type of Movement\": \"Walk\", \"Quantity\": 10, \"Paint\": true}");
+        }
+        return json.append("]}").toString();
+    }
+
+    @Test
+    public void sendsHeaderThenKeepsWindowOfChunksInFlight() throws Exception {
+        List<String> sent = new ArrayList<>();
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+
+        FieldUpload upload = new FieldUpload(42, field(20), WireFormat.TEXT, 3, 2,
+                started::incrementAndGet, completed::incrementAndGet, () -> fail("no error expected"));
+        assertEquals(7, upload.getChunkCount());
+
+        upload.start(recorder(sent), LINK_UP);
+
+        assertEquals("JOB:42:20:7", sent.get(0));
+        assertEquals("header plus a window of two chunks", 3, sent.size());
+        assertEquals(1, firstOrder(sent.get(1), 0));
+        assertEquals(1, started.get());
+
+        upload.onAck(0);
+        assertEquals(4, sent.size());
+        assertEquals(7, firstOrder(sent.get(3), 2));
+
+        upload.onAck(0);  // duplicate ack sends nothing new
+        assertEquals(4, sent.size());
+
+        for (int seq = 1; seq < 7; seq++) upload.onAck(seq);
+        assertEquals(8, sent.size());
+        assertEquals(19, firstOrder(sent.get(7), 6));
+        assertEquals(1, completed.get());
+        assertTrue(upload.isFinished());
+    }
+
+    // "CHUNK:<job>:<seq>:[...]" -> Instruction Order of the first item
+    private static int firstOrder(String line, int expectedSeq) throws Exception {
+        String[] parts = line.split(":", 4);
+        assertEquals("CHUNK", parts[0]);
+        assertEquals(expectedSeq, Integer.parseInt(parts[2]));
+        return new JSONArray(parts[3]).getJSONObject(0).getInt("Instruction Order");
+    }
+
+    @Test
+    public void failedSendWaitsForResumeAndFailsOnce() throws Exception {
+        AtomicInteger errors = new AtomicInteger();
+        FieldUpload upload = new FieldUpload(1, field(5), WireFormat.TEXT, 2, 4,
+                () -> fail("never started"), () -> fail("never completed"), errors::incrementAndGet);
+
+        upload.setTimeouts(FieldUpload.DEFAULT_ACK_TIMEOUT_MS, 20);
+        upload.start(frame -> SendFuture.failed(new java.io.IOException("No connection")), REDIALLING);
+        Thread.sleep(200);
+        assertFalse("a dropped link is resumed, not failed", upload.isFinished());
+
+        upload.fail("disconnected");
+        upload.fail("disconnected");
+
+        assertEquals(1, errors.get());
+        assertTrue(upload.isFinished());
+    }
+
+    @Test
+    public void resumeContinuesAfterTheRobotsLastChunk() throws Exception {
+        List<String> sent = new ArrayList<>();
+        AtomicInteger completed = new AtomicInteger();
+        FieldUpload upload = new FieldUpload(7, field(20), WireFormat.TEXT, 2, 3,
+                () -> {}, completed::incrementAndGet, () -> fail("no error expected"));
+        upload.start(recorder(sent), LINK_UP);
+        upload.onAck(1);
+        sent.clear();
+
+        // Link dropped; the robot only got chunks 0..2 in order
+        upload.onResume(2);
+        assertEquals(2, upload.getLastAcked());
+        assertEquals("chunks 3..5 fill the window again", 3, sent.size());
+        assertEquals(7, firstOrder(sent.get(0), 3));
+
+        // Robot never saw the header: everything goes again
+        sent.clear();
+        upload.onResume(FieldUpload.RESUME_UNKNOWN_JOB);
+        assertEquals("JOB:7:20:10", sent.get(0));
+        assertEquals(1, firstOrder(sent.get(1), 0));
+        assertEquals(-1, upload.getLastAcked());
+
+        // Everything arrived, only the final ACK was lost
+        upload.onResume(9);
+        assertEquals(1, completed.get());
+        assertTrue(upload.isFinished());
+    }
+
+    @Test
+    public void abandonedJobFailsOnResume() throws Exception {
+        AtomicInteger errors = new AtomicInteger();
+        FieldUpload upload = new FieldUpload(3, field(10), WireFormat.TEXT, 2, 2,
+                () -> {}, () -> fail("never completed"), errors::incrementAndGet);
+        upload.start(frame -> SendFuture.failed(new java.io.IOException("No connection")), REDIALLING);
+
+        upload.onResume(FieldUpload.RESUME_ABANDONED);
+
+        assertEquals(1, errors.get());
+        assertTrue(upload.isFinished());
+    }
+
+    @Test
+    public void failedSendOnALiveLinkFailsTheUpload() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        FieldUpload upload = new FieldUpload(5, field(5), WireFormat.TEXT, 2, 4,
+                () -> fail("never started"), () -> fail("never completed"), failed::countDown);
+        upload.setTimeouts(FieldUpload.DEFAULT_ACK_TIMEOUT_MS, 20);
+
+        // E.g. the BULK lane timed out while the link stayed up: no resume will ever come
+        upload.start(frame -> SendFuture.failed(new java.io.IOException("Timed out waiting for room on BULK")),
+                LINK_UP);
+
+        assertTrue("onError, so the Start screen leaves Sending", failed.await(5, TimeUnit.SECONDS));
+        assertTrue(upload.isFinished());
+    }
+
+    @Test
+    public void missingAckResendsFromTheLastAckedChunk() throws Exception {
+        List<String> sent = new ArrayList<>();
+        FieldUpload upload = new FieldUpload(9, field(20), WireFormat.TEXT, 2, 2,
+                () -> {}, () -> {}, () -> fail("no error expected"));
+        upload.setTimeouts(100, FieldUpload.DEFAULT_SEND_FAILURE_GRACE_MS);
+        upload.start(recorder(sent), LINK_UP);
+        upload.onAck(1);  // chunks 2..4 go out, then nothing comes back
+        synchronized (sent) {
+            sent.clear();
+        }
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (snapshot(sent).size() < 3 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+
+        List<String> resent = snapshot(sent);
+        assertTrue(resent.toString(), resent.size() >= 3);
+        assertEquals(5, firstOrder(resent.get(0), 2));
+        assertEquals(7, firstOrder(resent.get(1), 3));
+        assertFalse("the header only goes again while nothing is acked", resent.get(0).startsWith("JOB"));
+        assertEquals(1, upload.getLastAcked());
+
+        upload.cancel();
+    }
+
+    @Test
+    public void noAckAtAllResendsTheHeaderThenGivesUp() throws Exception {
+        List<String> sent = new ArrayList<>();
+        CountDownLatch failed = new CountDownLatch(1);
+        FieldUpload upload = new FieldUpload(11, field(4), WireFormat.TEXT, 2, 4,
+                () -> {}, () -> fail("never completed"), failed::countDown);
+        upload.setTimeouts(20, FieldUpload.DEFAULT_SEND_FAILURE_GRACE_MS);
+        upload.start(recorder(sent), LINK_UP);
+
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        int headers = 0;
+        for (String line : snapshot(sent)) if (line.startsWith("JOB:11:")) headers++;
+        assertEquals("first send plus every resend", 1 + FieldUpload.MAX_RETRANSMITS, headers);
+    }
+
+    @Test
+    public void ackTimeoutWaitsWhileTheLinkIsRedialled() throws Exception {
+        List<String> sent = new ArrayList<>();
+        FieldUpload upload = new FieldUpload(12, field(4), WireFormat.TEXT, 2, 4,
+                () -> {}, () -> {}, () -> fail("no error while redialling"));
+        upload.setTimeouts(20, FieldUpload.DEFAULT_SEND_FAILURE_GRACE_MS);
+        upload.start(recorder(sent), REDIALLING);
+        int initial = snapshot(sent).size();
+
+        Thread.sleep(300);
+
+        assertEquals("no resends until RESUME_JOB answers", initial, snapshot(sent).size());
+        assertFalse(upload.isFinished());
+        upload.cancel();
+    }
+
+    private static List<String> snapshot(List<String> sent) {
+        synchronized (sent) {
+            return new ArrayList<>(sent);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameDecoderTest {
+
+    private static final String[] KEYS = {"BATTERY", "SPRAY", "PROGRESS"};
+
+    private final List<String> frames = new ArrayList<>();
+    private final FrameDecoder decoder = new FrameDecoder(64, (buf, off, len) ->
+            frames.add(new String(buf, off, len, StandardCharsets.UTF_8)));
+
+    @Test
+    public void randomlyFragmentedStream_losesNoFrames() {
+        for (long seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            frames.clear();
+            decoder.reset();
+
+            List<String> expected = new ArrayList<>();
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            int count = 1 + random.nextInt(100);
+            for (int i = 0; i < count; i++) {
+                String frame = KEYS[random.nextInt(KEYS.length)] + ":" + random.nextInt(101);
+                expected.add(frame);
+                byte[] bytes = (frame + "\n").getBytes(StandardCharsets.UTF_8);
+                stream.write(bytes, 0, bytes.length);
+            }
+
+            feedInRandomPieces(stream.toByteArray(), random);
+
+            assertEquals("seed " + seed, expected, frames);
+        }
+    }
+
+    @Test
+    public void concatenatedFramesInOneRead_areAllEmitted() {
+        feed("BATTERY:66\nSPRAY:33\nPROGRESS:60\n");
+
+        assertEquals(List.of("BATTERY:66", "SPRAY:33", "PROGRESS:60"), frames);
+    }
+
+    @Test
+    public void partialFrame_isHeldUntilDelimiterArrives() {
+        feed("BATT");
+        assertTrue(frames.isEmpty());
+
+        feed("ERY:4");
+        feed("2\n");
+
+        assertEquals(List.of("BATTERY:42"), frames);
+    }
+
+    @Test
+    public void carriageReturnsAndBlankLines_areSkipped() {
+        feed("SPRAY:10\r\n\r\n\nPROGRESS:5\r\n");
+
+        assertEquals(List.of("SPRAY:10", "PROGRESS:5"), frames);
+    }
+
+    @Test
+    public void oversizedFrame_isDroppedAndDecoderResyncs() {
+        StringBuilder junk = new StringBuilder();
+        for (int i = 0; i < 200; i++) junk.append('x');
+
+        feed("BATTERY:1\nPROG");
+        feed(junk.toString());
+        feed(junk + "\nSPRAY:7\n");
+
+        assertEquals(List.of("BATTERY:1", "SPRAY:7"), frames);
+        assertEquals(1, decoder.getDroppedFrames());
+    }
+
+    @Test
+    public void frameOverflowingInTheReadThatEndsIt_doesNotCostTheNextFrame() {
+        String x40 = "xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx";
+
+        feed("BATTERY:1\nPROG" + x40);  // held, still under the 64 byte limit
+        feed(x40 + "\nSPRAY:7\n");     // overflows and ends at the same delimiter
+
+        assertEquals(List.of("BATTERY:1", "SPRAY:7"), frames);
+        assertEquals(1, decoder.getDroppedFrames());
+    }
+
+    private void feed(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        decoder.feed(bytes, 0, bytes.length);
+    }
+
+    private void feedInRandomPieces(byte[] data, Random random) {
+        // Reuse one read buffer like BluetoothIOThread does, so leftover bytes
+        // from an earlier read can't leak into a later frame
+        byte[] readBuffer = new byte[32];
+        int position = 0;
+        while (position < data.length) {
+            int size = Math.min(1 + random.nextInt(readBuffer.length), data.length - position);
+            System.arraycopy(data, position, readBuffer, 0, size);
+            decoder.feed(readBuffer, 0, size);
+            position += size;
+        }
+    }
+}
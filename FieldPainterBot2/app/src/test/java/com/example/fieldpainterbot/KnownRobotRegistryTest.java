@@ -0,0 +1,88 @@
+package com.example.fieldpainterbot;
+
+import android.content.SharedPreferences;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class KnownRobotRegistryTest {
+
+    // Just enough SharedPreferences for the registry: strings, applied immediately
+    private static final class FakePrefs implements SharedPreferences {
+        final Map<String, Object> values = new HashMap<>();
+
+        @Override public Map<String, ?> getAll() { return values; }
+        @Override public String getString(String key, String defValue) {
+            return values.containsKey(key) ? (String) values.get(key) : defValue;
+        }
+        @Override public Set<String> getStringSet(String key, Set<String> defValues) { return defValues; }
+        @Override public int getInt(String key, int defValue) { return defValue; }
+        @Override public long getLong(String key, long defValue) { return defValue; }
+        @Override public float getFloat(String key, float defValue) { return defValue; }
+        @Override public boolean getBoolean(String key, boolean defValue) { return defValue; }
+        @Override public boolean contains(String key) { return values.containsKey(key); }
+        @Override public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener l) {}
+        @Override public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener l) {}
+
+        @Override
+        public Editor edit() {
+            Map<String, Object> pending = new HashMap<>();
+            return new Editor() {
+                @Override public Editor putString(String key, String value) { pending.put(key, value); return this; }
+                @Override public Editor putStringSet(String key, Set<String> values) { return this; }
+                @Override public Editor putInt(String key, int value) { return this; }
+                @Override public Editor putLong(String key, long value) { return this; }
+                @Override public Editor putFloat(String key, float value) { return this; }
+                @Override public Editor putBoolean(String key, boolean value) { return this; }
+                @Override public Editor remove(String key) { return this; }
+                @Override public Editor clear() { return this; }
+                @Override public boolean commit() { apply(); return true; }
+                @Override public void apply() { values.putAll(pending); }
+            };
+        }
+    }
+
+    private final FakePrefs prefs = new FakePrefs();
+
+    @Test
+    public void mostRecentConnectionComesFirstAndSurvivesRestart() {
+        KnownRobotRegistry registry = new KnownRobotRegistry(prefs);
+        registry.record("AA", "fieldbot-1", 1, 1000);
+        registry.record("BB", "fieldbot-2", 2, 2000);
+        registry.record("AA", null, KnownRobot.CHANNEL_UNKNOWN, 3000);
+
+        List<KnownRobot> robots = new KnownRobotRegistry(prefs).getAll();
+        assertEquals(2, robots.size());
+        assertEquals("AA", robots.get(0).address);
+        // Unknown name and channel keep what was remembered
+        assertEquals("fieldbot-1", robots.get(0).name);
+        assertEquals(1, robots.get(0).channel);
+        assertEquals(3000, robots.get(0).lastConnectedMs);
+        assertEquals("BB", robots.get(1).address);
+    }
+
+    @Test
+    public void oldestRobotsAreDroppedPastTheLimit() {
+        KnownRobotRegistry registry = new KnownRobotRegistry(prefs);
+        for (int i = 0; i < KnownRobotRegistry.MAX_ROBOTS + 3; i++) {
+            registry.record("R" + i, null, i, i);
+        }
+
+        List<String> addresses = registry.getAddresses();
+        assertEquals(KnownRobotRegistry.MAX_ROBOTS, addresses.size());
+        assertEquals("R" + (KnownRobotRegistry.MAX_ROBOTS + 2), addresses.get(0));
+        assertFalse(addresses.contains("R0"));
+    }
+
+    @Test
+    public void unreadablePrefsStartEmpty() {
+        prefs.values.put("robots", "{not json");
+        assertTrue(new KnownRobotRegistry(prefs).getAll().isEmpty());
+    }
+}
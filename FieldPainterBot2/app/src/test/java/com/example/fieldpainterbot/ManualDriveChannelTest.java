@@ -0,0 +1,109 @@
+package com.example.fieldpainterbot;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ManualDriveChannelTest {
+
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger threadsCreated = new AtomicInteger();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        threadsCreated.incrementAndGet();
+        Thread thread = new Thread(r, "TestTicker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ManualDriveChannel.Link link = new ManualDriveChannel.Link() {
+        @Override
+        public WireFormat getWireFormat() {
+            return WireFormat.TEXT;
+        }
+
+        @Override
+        public void sendLatest(byte[] frame) {
+            sent.add(new String(frame, StandardCharsets.UTF_8).trim());
+        }
+    };
+
+    @After
+    public void tearDown() {
+        ticker.shutdownNow();
+    }
+
+    @Test
+    public void pressesAndReleases_sendOnlyRealChanges() {
+        // 1 Hz: no tick lands while the test runs
+        ManualDriveChannel channel = new ManualDriveChannel(link, 1, ticker);
+
+        channel.press(ManualDriveChannel.FORWARD);
+        channel.press(ManualDriveChannel.FORWARD);  // already held
+        channel.press(ManualDriveChannel.SPRAY);
+        channel.release(ManualDriveChannel.FORWARD);
+        channel.release(ManualDriveChannel.FORWARD);  // already released
+        channel.release(ManualDriveChannel.BACK);     // never held
+
+        assertEquals(List.of("DRIVE:1", "DRIVE:17", "DRIVE:16"), sent);
+    }
+
+    @Test
+    public void stop_releasesEveryButtonOnTheRobot() {
+        ManualDriveChannel channel = new ManualDriveChannel(link, 1, ticker);
+        channel.start();
+        channel.press(ManualDriveChannel.LEFT);
+        channel.press(ManualDriveChannel.SPRAY);
+        sent.clear();
+
+        channel.stop();
+
+        assertEquals(List.of("DRIVE:0"), sent);
+        assertFalse(channel.isRunning());
+        // The next session starts from nothing held
+        channel.start();
+        assertEquals("DRIVE:0", sent.get(sent.size() - 1));
+        channel.stop();
+    }
+
+    @Test
+    public void stopWithoutStart_sendsNothing() {
+        new ManualDriveChannel(link, 1, ticker).stop();
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void heartbeat_repeatsTheHeldState() throws InterruptedException {
+        ManualDriveChannel channel = new ManualDriveChannel(link, 100, ticker);
+        channel.start();
+        channel.press(ManualDriveChannel.RIGHT);
+
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (Collections.frequency(new ArrayList<>(sent), "DRIVE:8") < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        channel.stop();
+
+        assertTrue(sent.toString(), Collections.frequency(new ArrayList<>(sent), "DRIVE:8") >= 4);
+        assertEquals("DRIVE:0", sent.get(sent.size() - 1));
+    }
+
+    @Test
+    public void restarting_reusesTheOneTickerThread() throws InterruptedException {
+        ManualDriveChannel channel = new ManualDriveChannel(link, 100, ticker);
+        for (int i = 0; i < 5; i++) {
+            channel.start();
+            channel.start();  // no second heartbeat
+            Thread.sleep(25);
+            channel.stop();
+        }
+        assertEquals(1, threadsCreated.get());
+    }
+}
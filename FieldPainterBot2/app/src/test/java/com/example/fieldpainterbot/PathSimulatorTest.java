@@ -0,0 +1,89 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import static com.example.fieldpainterbot.TestPatterns.pattern;
+import static org.junit.Assert.*;
+
+public class PathSimulatorTest {
+
+    private static final float EPS = 0.01f;
+
+    @Test
+    public void walksAreFeetAndPositiveRotationIsCounterClockwise() {
+        SimulatedPath path = PathSimulator.simulate(pattern(
+                FieldPattern.WALK, 10, true,
+                FieldPattern.ROTATION, 90, false,
+                FieldPattern.WALK, 5, false,
+                FieldPattern.ROTATION, -90, false,
+                FieldPattern.WALK, 1, true));
+
+        assertEquals(304.8f, path.getEndX(0), EPS);
+        assertEquals(0f, path.getEndY(0), EPS);
+        assertEquals(SimulatedPath.TURN, path.getKind(1));
+        assertEquals(90f, path.getEndHeading(1), EPS);
+        // Turned left: y grows
+        assertEquals(304.8f, path.getEndX(2), EPS);
+        assertEquals(152.4f, path.getEndY(2), EPS);
+        assertEquals(335.28f, path.getEndX(4), EPS);
+        assertEquals(152.4f, path.getEndY(4), EPS);
+
+        assertTrue(path.isPainted(0));
+        assertFalse(path.isPainted(2));
+        assertEquals(304.8f + 30.48f, path.paintedLengthCm(), EPS);
+        assertEquals(335.28f, path.getMaxX(), EPS);
+        assertEquals(152.4f, path.getMaxY(), EPS);
+    }
+
+    @Test
+    public void circleIsAHalfTurnToTheLeftAndAlwaysPaints() {
+        SimulatedPath path = PathSimulator.simulate(pattern(FieldPattern.CIRCLE, 2, false));
+
+        float r = 2 * PathSimulator.CM_PER_FOOT;
+        assertEquals(SimulatedPath.ARC, path.getKind(0));
+        assertEquals(0f, path.getArcCenterX(0), EPS);
+        assertEquals(r, path.getArcCenterY(0), EPS);
+        assertEquals(0f, path.getEndX(0), EPS);
+        assertEquals(2 * r, path.getEndY(0), EPS);
+        assertEquals(180f, path.getEndHeading(0), EPS);
+        // Heading east and curving left, it bulges furthest east halfway round
+        assertEquals(r, path.pointX(0, 0.5f), EPS);
+        assertEquals(r, path.pointY(0, 0.5f), EPS);
+        assertTrue(path.isPainted(0));
+        assertEquals((float) Math.PI * r, path.paintedLengthCm(), EPS);
+        assertEquals(0f, path.getMinX(), EPS);
+        assertEquals(r, path.getMaxX(), EPS);
+        assertEquals(2 * r, path.getMaxY(), EPS);
+    }
+
+    @Test
+    public void nonPositiveDistancesDoNotMove() {
+        SimulatedPath path = PathSimulator.simulate(pattern(
+                FieldPattern.WALK, -3, true,
+                FieldPattern.ROTATION, -450, true));
+
+        assertEquals(0f, path.getEndX(0), EPS);
+        assertFalse(path.isPainted(0));
+        assertEquals(270f, path.getEndHeading(1), EPS);
+        // A painted turn still sprays where it stands
+        assertTrue(path.isPainted(1));
+    }
+
+    @Test
+    public void closedSquareReturnsHome() {
+        Object[] steps = new Object[24];
+        for (int i = 0; i < 4; i++) {
+            steps[i * 6] = FieldPattern.WALK;
+            steps[i * 6 + 1] = 100;
+            steps[i * 6 + 2] = true;
+            steps[i * 6 + 3] = FieldPattern.ROTATION;
+            steps[i * 6 + 4] = 90;
+            steps[i * 6 + 5] = false;
+        }
+        SimulatedPath path = PathSimulator.simulate(pattern(steps));
+
+        assertEquals(0f, path.getEndX(7), 0.1f);
+        assertEquals(0f, path.getEndY(7), 0.1f);
+        assertEquals(0f, path.getEndHeading(7), EPS);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PatternCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String body(char fill, int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, fill);
+        return new String(chars);
+    }
+
+    @Test
+    public void entriesSurviveRestart() throws IOException {
+        File dir = folder.newFolder("patterns");
+        new PatternCache(dir, PatternCache.MAX_BYTES).put("soccer", "{\"items\":[]}", "\"abc\"", 1000);
+
+        PatternCache.Entry entry = new PatternCache(dir, PatternCache.MAX_BYTES).get("soccer");
+        assertNotNull(entry);
+        assertEquals("{\"items\":[]}", entry.body);
+        assertEquals("\"abc\"", entry.etag);
+        assertEquals(PatternCache.sha256Hex("{\"items\":[]}"), entry.sha256);
+        assertEquals(1000, entry.fetchedAtMs);
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvictedPastTheBound() throws IOException {
+        PatternCache cache = new PatternCache(folder.newFolder("patterns"), 250);
+        cache.put("a", body('a', 100), null, 0);
+        cache.put("b", body('b', 100), null, 0);
+        cache.get("a");                          // b is now the eldest
+        cache.put("c", body('c', 100), null, 0);
+
+        assertEquals(Arrays.asList("a", "c"), cache.collections());
+        assertEquals(200, cache.totalBytes());
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void revalidationOnlyMovesTheFetchTime() throws IOException {
+        PatternCache cache = new PatternCache(folder.newFolder("patterns"), PatternCache.MAX_BYTES);
+        cache.put("soccer", "v1", "\"1\"", 1000);
+        cache.markValidated("soccer", 5000);
+
+        PatternCache.Entry entry = cache.get("soccer");
+        assertEquals("v1", entry.body);
+        assertEquals("\"1\"", entry.etag);
+        assertEquals(5000, entry.fetchedAtMs);
+    }
+
+    @Test
+    public void tamperedBodyIsDropped() throws IOException {
+        File dir = folder.newFolder("patterns");
+        PatternCache cache = new PatternCache(dir, PatternCache.MAX_BYTES);
+        cache.put("soccer", "v1", null, 0);
+
+        for (File file : dir.listFiles()) {
+            if (file.getName().equals("index.json")) continue;
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write("v2".getBytes("UTF-8"));
+            }
+        }
+        // Checked once per load: the next start of the app notices
+        cache = new PatternCache(dir, PatternCache.MAX_BYTES);
+        assertNull(cache.get("soccer"));
+        assertFalse(cache.contains("soccer"));
+    }
+
+    @Test
+    public void peekLeavesTheEvictionOrderAlone() throws IOException {
+        PatternCache cache = new PatternCache(folder.newFolder("patterns"), 250);
+        cache.put("a", body('a', 100), null, 0);
+        cache.put("b", body('b', 100), null, 0);
+        assertEquals(body('a', 100), cache.peek("a").body);  // e.g. drawing its preview
+        cache.put("c", body('c', 100), null, 0);
+
+        assertEquals(Arrays.asList("b", "c"), cache.collections());
+    }
+
+    @Test
+    public void indexIsOnlyRewrittenWhenTheOrderChanges() throws IOException {
+        File dir = folder.newFolder("patterns");
+        PatternCache cache = new PatternCache(dir, PatternCache.MAX_BYTES);
+        cache.put("a", "v1", null, 0);
+        cache.put("b", "v2", null, 0);
+        File index = new File(dir, "index.json");
+        assertTrue(index.setLastModified(1_000_000L));
+
+        assertNotNull(cache.get("b"));  // already the most recently used
+        assertNotNull(cache.peek("a"));
+        assertEquals(1_000_000L, index.lastModified());
+
+        assertNotNull(cache.get("a"));
+        assertNotEquals(1_000_000L, index.lastModified());
+        assertEquals(Arrays.asList("b", "a"), new PatternCache(dir, PatternCache.MAX_BYTES).collections());
+    }
+}
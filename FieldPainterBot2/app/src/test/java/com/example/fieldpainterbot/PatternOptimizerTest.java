@@ -0,0 +1,195 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static com.example.fieldpainterbot.TestPatterns.pattern;
+import static org.junit.Assert.*;
+
+public class PatternOptimizerTest {
+
+    private static final float EPS = 0.01f;
+
+    /*
+     * Ten parallel 20 ft lines, 2 ft apart, every one painted walking east and
+     * with a trip back to the west side in between, visited 0, 5, 1, 6, ...
+     */
+    private static FieldPattern badlyOrderedStripes() {
+        FieldPattern.Builder builder = new FieldPattern.Builder();
+        int[] rows = {0, 5, 1, 6, 2, 7, 3, 8, 4, 9};
+        int currentRow = 0;
+        for (int row : rows) {
+            int rise = row - currentRow;
+            if (rise != 0) {
+                builder.add(builder.size() + 1, FieldPattern.ROTATION, rise > 0 ? 90 : -90, false);
+                builder.add(builder.size() + 1, FieldPattern.WALK, Math.abs(rise) * 2, false);
+                builder.add(builder.size() + 1, FieldPattern.ROTATION, rise > 0 ? -90 : 90, false);
+            }
+            builder.add(builder.size() + 1, FieldPattern.WALK, 20, true);
+            builder.add(builder.size() + 1, FieldPattern.ROTATION, 180, false);
+            builder.add(builder.size() + 1, FieldPattern.WALK, 20, false);
+            builder.add(builder.size() + 1, FieldPattern.ROTATION, 180, false);
+            currentRow = row;
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void timeModelFollowsConversionService() {
+        FieldPattern pattern = pattern(
+                FieldPattern.WALK, 3.5, false,      // 106.68 cm: one second
+                FieldPattern.ROTATION, -166.67, true,
+                FieldPattern.CIRCLE, 0, false);
+
+        double arc = Math.PI * PatternOptimizer.WHEEL_BASE_CM / 2 / PatternOptimizer.CM_PER_SECOND;
+        assertEquals(3 * 0.5 + 1 + 1 + 3 + 3 + arc, PatternOptimizer.estimateSeconds(pattern), 1e-3);
+    }
+
+    @Test
+    public void reorderingPaintsTheSameStripesMuchFaster() {
+        FieldPattern original = badlyOrderedStripes();
+        PatternOptimizer.Result result = PatternOptimizer.optimize(original);
+
+        assertTrue(result.reordered);
+        assertTrue(PatternOptimizer.samePaint(PathSimulator.simulate(original),
+                PathSimulator.simulate(result.pattern), PatternOptimizer.MATCH_TOLERANCE_CM));
+        // Boustrophedon instead of walking every line back: well over a third saved
+        assertTrue(result.toString(), result.optimizedSeconds < result.originalSeconds * 0.65);
+        assertEquals(PathSimulator.simulate(original).paintedLengthCm(),
+                PathSimulator.simulate(result.pattern).paintedLengthCm(), 1f);
+    }
+
+    @Test
+    public void orderIsRenumberedAndRoundTripsThroughJson() throws IOException {
+        PatternOptimizer.Result result = PatternOptimizer.optimize(badlyOrderedStripes());
+        FieldPattern reordered = result.pattern;
+        for (int i = 0; i < reordered.size(); i++) assertEquals(i + 1, reordered.getOrder(i));
+
+        FieldPattern parsed = FieldPatternParser.parse(reordered.toJson());
+        assertEquals(reordered.size(), parsed.size());
+        assertTrue(PatternOptimizer.samePaint(PathSimulator.simulate(reordered),
+                PathSimulator.simulate(parsed), PatternOptimizer.MATCH_TOLERANCE_CM));
+    }
+
+    @Test
+    public void arcsKeepTheirStartAndDirection() {
+        // An arc authored last, far from a line authored first
+        FieldPattern original = pattern(
+                FieldPattern.WALK, 10, true,
+                FieldPattern.ROTATION, 90, false,
+                FieldPattern.WALK, 30, false,
+                FieldPattern.ROTATION, 90, false,
+                FieldPattern.WALK, 10, false,
+                FieldPattern.CIRCLE, 3, false,
+                FieldPattern.WALK, 10, false,
+                FieldPattern.WALK, 4, true,
+                FieldPattern.ROTATION, 360, true);
+        PatternOptimizer.Result result = PatternOptimizer.optimize(original);
+
+        SimulatedPath before = PathSimulator.simulate(original);
+        SimulatedPath after = PathSimulator.simulate(result.pattern);
+        assertTrue(PatternOptimizer.samePaint(before, after, PatternOptimizer.MATCH_TOLERANCE_CM));
+        int arcs = 0;
+        for (int i = 0; i < after.size(); i++) {
+            if (after.getKind(i) != SimulatedPath.ARC) continue;
+            arcs++;
+            assertEquals(before.getStartX(5), after.getStartX(i), PatternOptimizer.MATCH_TOLERANCE_CM);
+            assertEquals(before.getStartY(5), after.getStartY(i), PatternOptimizer.MATCH_TOLERANCE_CM);
+            assertEquals(before.getStartHeading(5), after.getStartHeading(i), 0.5f);
+        }
+        assertEquals(1, arcs);
+    }
+
+    @Test
+    public void anAlreadyTightPatternIsLeftAlone() {
+        FieldPattern original = pattern(
+                FieldPattern.WALK, 10, true,
+                FieldPattern.ROTATION, 90, false,
+                FieldPattern.WALK, 10, true);
+        PatternOptimizer.Result result = PatternOptimizer.optimize(original);
+
+        assertFalse(result.reordered);
+        assertSame(original, result.pattern);
+        assertEquals(result.originalSeconds, result.optimizedSeconds, 0);
+    }
+
+    @Test
+    public void nothingPaintedIsLeftAlone() {
+        FieldPattern original = pattern(FieldPattern.WALK, 10, false, FieldPattern.ROTATION, 90, false);
+        PatternOptimizer.Result result = PatternOptimizer.optimize(original);
+        assertFalse(result.reordered);
+        assertSame(original, result.pattern);
+    }
+
+    @Test
+    public void samePaintNoticesAMovedLine() {
+        SimulatedPath a = PathSimulator.simulate(pattern(FieldPattern.WALK, 10, true));
+        SimulatedPath reversed = PathSimulator.simulate(pattern(
+                FieldPattern.WALK, 10, false,
+                FieldPattern.ROTATION, 180, false,
+                FieldPattern.WALK, 10, true));
+        SimulatedPath shifted = PathSimulator.simulate(pattern(
+                FieldPattern.WALK, 1, false,
+                FieldPattern.WALK, 10, true));
+
+        assertTrue(PatternOptimizer.samePaint(a, reversed, PatternOptimizer.MATCH_TOLERANCE_CM));
+        assertFalse(PatternOptimizer.samePaint(a, shifted, PatternOptimizer.MATCH_TOLERANCE_CM));
+    }
+
+    @Test
+    public void sameMoveCapGivesTheSameOrderEveryTime() throws IOException {
+        FieldPattern original = randomPattern(7, 600);
+        for (long cap : new long[] {0, 1_000, PatternOptimizer.DEFAULT_MAX_MOVES}) {
+            String first = PatternOptimizer.optimize(original, cap).pattern.toJson();
+            for (int run = 0; run < 3; run++) {
+                assertEquals("cap " + cap, first, PatternOptimizer.optimize(original, cap).pattern.toJson());
+            }
+        }
+        assertEquals(1_000, PatternOptimizer.optimize(original, 1_000).moves);
+        // More moves never end up slower
+        assertTrue(PatternOptimizer.optimize(original, PatternOptimizer.DEFAULT_MAX_MOVES).optimizedSeconds
+                <= PatternOptimizer.optimize(original, 1_000).optimizedSeconds);
+    }
+
+    @Test
+    public void largeRandomPatternStopsAtTheMoveCap() throws IOException {
+        FieldPattern original = randomPattern(25, 3000);
+
+        PatternOptimizer.Result result = PatternOptimizer.optimize(original);
+
+        // Far from converged, so the whole budget is spent and not a move more
+        assertEquals(PatternOptimizer.DEFAULT_MAX_MOVES, result.moves);
+        assertEquals(result.pattern.toJson(), PatternOptimizer.optimize(original).pattern.toJson());
+        assertTrue(result.optimizedSeconds <= result.originalSeconds);
+        assertTrue(PatternOptimizer.samePaint(PathSimulator.simulate(original),
+                PathSimulator.simulate(result.pattern), PatternOptimizer.MATCH_TOLERANCE_CM));
+    }
+
+    @Test
+    public void shortestTurnPicksTheSmallerWay() {
+        assertEquals(-90, PatternOptimizer.shortestTurn(270), EPS);
+        assertEquals(180, PatternOptimizer.shortestTurn(-180), EPS);
+        assertEquals(10, PatternOptimizer.shortestTurn(370), EPS);
+    }
+
+    private static FieldPattern randomPattern(long seed, int size) {
+        Random random = new Random(seed);
+        FieldPattern.Builder builder = new FieldPattern.Builder();
+        for (int i = 0; i < size; i++) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    builder.add(i + 1, FieldPattern.CIRCLE, 1 + random.nextInt(4), true);
+                    break;
+                case 1:
+                case 2:
+                    builder.add(i + 1, FieldPattern.ROTATION, random.nextInt(360) - 180, false);
+                    break;
+                default:
+                    builder.add(i + 1, FieldPattern.WALK, 1 + random.nextInt(20), random.nextBoolean());
+            }
+        }
+        return builder.build();
+    }
+}
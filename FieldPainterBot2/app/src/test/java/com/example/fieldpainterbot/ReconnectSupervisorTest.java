@@ -0,0 +1,130 @@
+package com.example.fieldpainterbot;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ReconnectSupervisorTest {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static ReconnectSupervisor.Listener listener(CountDownLatch reconnected, CountDownLatch gaveUp) {
+        return new ReconnectSupervisor.Listener() {
+            @Override
+            public void onReconnected(long downtimeMs) {
+                reconnected.countDown();
+            }
+
+            @Override
+            public void onGaveUp(int attempts) {
+                gaveUp.countDown();
+            }
+        };
+    }
+
+    @Test
+    public void backoffDoublesWithJitterUpToTheCap() {
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(attempt -> false,
+                listener(new CountDownLatch(1), new CountDownLatch(1)),
+                executor, new Random(7), 500, 15_000, 60_000);
+
+        for (int n = 0; n < 40; n++) {
+            long ceiling = Math.min(15_000, 500L << Math.min(n, 20));
+            for (int sample = 0; sample < 50; sample++) {
+                long delay = supervisor.delayForAttempt(n);
+                assertTrue("attempt " + n + ": " + delay, delay >= ceiling / 2 && delay <= ceiling);
+            }
+        }
+    }
+
+    @Test
+    public void retriesUntilConnectedAndRecordsMetrics() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch reconnected = new CountDownLatch(1);
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(attempt -> calls.incrementAndGet() == 3,
+                listener(reconnected, new CountDownLatch(1)),
+                executor, new Random(1), 2, 20, 60_000);
+
+        supervisor.start();
+        supervisor.start();  // already reconnecting: no second loop
+        assertTrue(reconnected.await(5, TimeUnit.SECONDS));
+
+        assertFalse(supervisor.isReconnecting());
+        ReconnectMetrics metrics = supervisor.getMetrics();
+        assertEquals(1, metrics.linkLosses);
+        assertEquals(3, metrics.attempts);
+        assertEquals(1, metrics.reconnects);
+        assertEquals(metrics.lastReconnectMs, metrics.maxReconnectMs);
+    }
+
+    @Test
+    public void connectorThatThrowsIsRetriedLikeAFailedAttempt() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch reconnected = new CountDownLatch(1);
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(attempt -> {
+            if (calls.incrementAndGet() < 3) throw new SecurityException("BLUETOOTH_CONNECT revoked");
+            return true;
+        }, listener(reconnected, new CountDownLatch(1)), executor, new Random(1), 2, 20, 60_000);
+
+        supervisor.start();
+
+        assertTrue(reconnected.await(5, TimeUnit.SECONDS));
+        assertEquals(3, supervisor.getMetrics().attempts);
+    }
+
+    @Test
+    public void connectorThatAlwaysThrowsStillGivesUp() throws Exception {
+        CountDownLatch gaveUp = new CountDownLatch(1);
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(attempt -> {
+            throw new SecurityException("BLUETOOTH_CONNECT revoked");
+        }, listener(new CountDownLatch(1), gaveUp), executor, new Random(1), 2, 10, 50);
+
+        supervisor.start();
+
+        assertTrue(gaveUp.await(5, TimeUnit.SECONDS));
+        assertFalse(supervisor.isReconnecting());
+    }
+
+    @Test
+    public void givesUpAfterTheDeadline() throws Exception {
+        CountDownLatch gaveUp = new CountDownLatch(1);
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(attempt -> false,
+                listener(new CountDownLatch(1), gaveUp),
+                executor, new Random(1), 2, 10, 50);
+
+        supervisor.start();
+        assertTrue(gaveUp.await(5, TimeUnit.SECONDS));
+        assertFalse(supervisor.isReconnecting());
+        assertEquals(0, supervisor.getMetrics().reconnects);
+    }
+
+    @Test
+    public void cancelStopsRetrying() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(attempt -> {
+            calls.incrementAndGet();
+            return false;
+        }, listener(new CountDownLatch(1), new CountDownLatch(1)),
+                executor, new Random(1), 50, 50, 60_000);
+
+        supervisor.start();
+        supervisor.cancel();
+        Thread.sleep(200);
+
+        assertEquals(0, calls.get());
+        assertFalse(supervisor.isReconnecting());
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class RobotSessionTest {
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    private final RobotSession.Listener listener = new RobotSession.Listener() {
+        @Override
+        public void onStatusChanged(RobotSession session, ConnectionStatus status) {
+            events.add(session.getAddress() + " " + status);
+        }
+
+        @Override
+        public void onTelemetry(RobotSession session, TelemetryChannel channel, int value) {
+            events.add(session.getAddress() + " " + channel + "=" + value);
+        }
+
+        @Override
+        public void onChannelReported(RobotSession session, int channel) {
+            events.add(session.getAddress() + " channel " + channel);
+        }
+    };
+
+    private RobotSession newSession(String address) {
+        return new RobotSession(address, null, null, null, listener);
+    }
+
+    private static void receive(RobotSession session, String line) {
+        byte[] frame = line.getBytes(StandardCharsets.US_ASCII);
+        session.getTelemetryParser().parse(frame, 0, frame.length);
+    }
+
+    @Test
+    public void telemetryStaysWithItsOwnRobot() {
+        RobotSession a = newSession("AA");
+        RobotSession b = newSession("BB");
+
+        receive(a, "BATTERY:80");
+        receive(b, "BATTERY:20");
+        receive(b, "SPRAY:55");
+
+        assertEquals(80, a.getLatest(TelemetryChannel.BATTERY));
+        assertEquals(TelemetrySnapshot.UNKNOWN, a.getLatest(TelemetryChannel.SPRAY));
+        assertEquals(20, b.getLatest(TelemetryChannel.BATTERY));
+        assertEquals(55, b.getLatest(TelemetryChannel.SPRAY));
+        assertEquals(1, a.getTelemetryHistory().get(TelemetryChannel.BATTERY).size());
+        assertEquals(1, b.getTelemetryHistory().get(TelemetryChannel.BATTERY).size());
+        assertEquals(List.of("AA BATTERY=80", "BB BATTERY=20", "BB SPRAY=55"), events);
+    }
+
+    @Test
+    public void reportedChannelIsRemembered() {
+        RobotSession session = newSession("AA");
+        assertEquals(KnownRobot.CHANNEL_UNKNOWN, session.getChannel());
+
+        receive(session, "CHANNEL:3");
+        receive(session, "CHANNEL:3");
+
+        assertEquals(3, session.getChannel());
+        assertEquals(List.of("AA channel 3"), events);
+    }
+
+    @Test
+    public void malformedFramesOnlyCountAgainstTheirRobot() {
+        RobotSession a = newSession("AA");
+        RobotSession b = newSession("BB");
+
+        receive(a, "SPRAY:ERR");
+
+        assertEquals(1, a.getTelemetryErrorCount());
+        assertEquals(0, b.getTelemetryErrorCount());
+    }
+
+    @Test
+    public void sendWithoutAConnectionFailsFast() {
+        RobotSession session = newSession("AA");
+        AtomicBoolean failed = new AtomicBoolean();
+
+        SendFuture future = session.send("HALT", SendLane.SAFETY, () -> fail("sent"), () -> failed.set(true));
+
+        assertTrue(future.isDone());
+        assertTrue(failed.get());
+        assertEquals(ConnectionStatus.DISCONNECTED, session.getStatus());
+        assertEquals(WireFormat.TEXT, session.getWireFormat());
+    }
+
+    @Test
+    public void disconnectLeavesOtherRobotsAlone() {
+        RobotSession a = newSession("AA");
+        RobotSession b = newSession("BB");
+        a.setListening(true);
+        b.setListening(true);
+        events.clear();
+
+        a.disconnect();
+
+        assertTrue(events.stream().allMatch(event -> event.startsWith("AA ")));
+        assertEquals(ConnectionStatus.LISTENING, b.getStatus());
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RttProbeTest {
+
+    private static final long MS = 1_000_000;
+
+    private final List<String> sent = new ArrayList<>();
+    private final RttProbe probe = new RttProbe(message -> {
+        sent.add(message);
+        return SendFuture.failed(new IOException("not connected"));
+    }, null, RttProbe.DEFAULT_INTERVAL_MS);
+
+    @Test
+    public void bucketsAreContiguousAndTight() {
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+            long lower = LatencyHistogram.lowerBound(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketFor(lower));
+            assertEquals(bucket, LatencyHistogram.bucketFor(LatencyHistogram.upperBound(bucket)));
+            // 8 buckets per power of two: no bucket is wider than 1/8 of its lower edge
+            if (lower >= LatencyHistogram.SUB_BUCKETS) {
+                assertTrue(LatencyHistogram.upperBound(bucket) - lower < lower / 8 + 1);
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketFor(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesComeFromTheRightBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) histogram.record(10_000);   // 10 ms
+        for (int i = 0; i < 9; i++) histogram.record(50_000);    // 50 ms
+        histogram.record(400_000);                               // one 400 ms outlier
+
+        assertEquals(100, histogram.getCount());
+        assertWithin(10_000, histogram.percentileMicros(0.50));
+        assertWithin(50_000, histogram.percentileMicros(0.95));
+        assertWithin(50_000, histogram.percentileMicros(0.99));
+        assertEquals(400_000, histogram.percentileMicros(1.0));
+        assertEquals(400_000, histogram.getMaxMicros());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 8);
+    }
+
+    @Test
+    public void pongIsMatchedToItsPingBySequence() {
+        probe.ping(100 * MS);
+        probe.ping(200 * MS);
+        assertEquals("PING:0:100", sent.get(0));
+        assertEquals("PING:1:200", sent.get(1));
+
+        // Answered out of order and one twice; only the first answer per ping counts
+        probe.onPong(1, 230 * MS, 0);
+        probe.onPong(0, 260 * MS, 0);
+        probe.onPong(1, 300 * MS, 0);
+        probe.onPong(7, 300 * MS, 0);
+
+        RttMetrics metrics = probe.getMetrics();
+        assertEquals(2, metrics.pingsSent);
+        assertEquals(2, metrics.pongsReceived);
+        assertEquals(0, metrics.getLostPings());
+        assertEquals(160_000, metrics.lastMicros);
+        assertEquals(160_000, metrics.maxMicros);
+        assertFalse(metrics.hasClockOffset);
+    }
+
+    @Test
+    public void clockOffsetUsesTheFastestRoundTrip() {
+        long phoneWall = 1_700_000_000_000L;
+        long robotAhead = 250;
+
+        // Slow round trip: the robot stamped early, so the midpoint guess is 100 ms off
+        probe.ping(0);
+        probe.onClock(robotClock(phoneWall + robotAhead + 100));
+        probe.onPong(0, 400 * MS, phoneWall + 400);
+
+        // Fast round trip: 10 ms, stamped right in the middle
+        probe.ping(1000 * MS);
+        probe.onClock(robotClock(phoneWall + 1000 + 5 + robotAhead));
+        probe.onPong(1, 1010 * MS, phoneWall + 1010);
+
+        RttMetrics metrics = probe.getMetrics();
+        assertTrue(metrics.hasClockOffset);
+        assertEquals(robotAhead, metrics.clockOffsetMs);
+    }
+
+    @Test
+    public void robotClockIsUnwrappedNearThePhoneClock() {
+        long phone = (5L << 31) + 10;
+        // Robot a little behind, across the wrap
+        assertEquals(phone - 20, RttProbe.unwrap(((phone - 20) & 0x7FFFFFFF), phone));
+        // Robot a little ahead
+        assertEquals(phone + 20, RttProbe.unwrap(((phone + 20) & 0x7FFFFFFF), phone));
+    }
+
+    @Test
+    public void stopForgetsOutstandingPings() {
+        probe.ping(0);
+        probe.stop();
+        probe.onPong(0, 5 * MS, 0);
+
+        RttMetrics metrics = probe.getMetrics();
+        assertEquals(0, metrics.pongsReceived);
+        assertEquals(1, metrics.getLostPings());
+    }
+
+    private static int robotClock(long wallMs) {
+        return (int) (wallMs & 0x7FFFFFFF);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class SendLanePriorityTest {
+
+    // ~50 kB/s, the better end of what the RFCOMM link manages in the field
+    private static final long NANOS_PER_BYTE = 20_000;
+
+    @Test
+    public void haltCutsInBetweenBulkChunks() throws Exception {
+        StringBuilder field = new StringBuilder("{\"items\":[");
+        for (int i = 1; i <= 300; i++) {
+            if (i > 1) field.append(',');
+            field.append("{\"Instruction Order\": ").append(i)
+                    .append(", \"Type of Movement\": \"Walk\", \"Quantity\": 12.5, \"Paint\": true}");
+        }
+        field.append("]}");
+        String payload = field.toString();
+
+        SlowLink link = new SlowLink();
+        BluetoothSendThread sendThread = new BluetoothSendThread(link);
+        sendThread.start();
+
+        sendThread.enqueue(SendLane.BULK, BluetoothSendThread.encodeLine(payload));
+        Thread.sleep(30);  // let the first chunks go out
+        sendThread.enqueueMessage("{\"command\":\"FORWARD\",\"state\":\"pressed\"}");
+        sendThread.enqueue(SendLane.SAFETY, BluetoothSendThread.encodeLine("HALT"));
+
+        waitForBytes(link, payload.length());
+        sendThread.close();
+
+        String[] lines = link.text().split("\n");
+        int haltLine = indexOf(lines, "HALT");
+        int controlLine = indexOf(lines, "{\"command\":\"FORWARD\",\"state\":\"pressed\"}");
+        int finalChunk = -1;
+        StringBuilder reassembled = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].startsWith("@B+")) reassembled.append(lines[i].substring(3));
+            if (lines[i].startsWith("@B.")) {
+                reassembled.append(lines[i].substring(3));
+                finalChunk = i;
+            }
+        }
+
+        assertEquals(payload, reassembled.toString());
+        assertTrue("HALT must not wait for the whole payload", haltLine >= 0 && haltLine < finalChunk);
+        assertTrue("safety goes before control", haltLine < controlLine);
+
+        long chunkNanos = (BluetoothSendThread.BULK_CHUNK_SIZE + 4) * NANOS_PER_BYTE;
+        assertTrue(sendThread.getMaxSafetyLatencyNanos() < 3 * chunkNanos);
+    }
+
+    private static int indexOf(String[] lines, String line) {
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].equals(line)) return i;
+        }
+        return -1;
+    }
+
+    private static void waitForBytes(SlowLink link, int atLeast) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (link.size() < atLeast && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+    }
+
+    private static final class SlowLink extends OutputStream {
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) throws java.io.IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            long end = System.nanoTime() + len * NANOS_PER_BYTE;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            synchronized (this) {
+                received.write(b, off, len);
+            }
+        }
+
+        synchronized int size() {
+            return received.size();
+        }
+
+        synchronized String text() {
+            return new String(received.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
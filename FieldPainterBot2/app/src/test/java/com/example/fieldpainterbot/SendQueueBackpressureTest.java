@@ -0,0 +1,198 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SendQueueBackpressureTest {
+
+    @Test
+    public void futureCompletesOnlyAfterFlush() throws Exception {
+        GatedLink link = new GatedLink();
+        BluetoothSendThread sendThread = new BluetoothSendThread(link);
+        sendThread.start();
+
+        SendFuture future = sendThread.enqueueMessage("RESUME");
+        assertTrue(link.writing.await(5, TimeUnit.SECONDS));
+        assertFalse("not flushed yet", future.isDone());
+
+        link.open.countDown();
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isSuccessful());
+        assertEquals("RESUME\n", link.text());
+        assertTrue(sendThread.getMetrics().maxFlushLatencyNanos > 0);
+        sendThread.close();
+    }
+
+    @Test
+    public void rejectFailsNewMessageWhenLaneIsFull() {
+        BluetoothSendThread sendThread = new BluetoothSendThread(new ByteArrayOutputStream());
+        sendThread.configureLane(SendLane.TELEMETRY, 2, OverflowPolicy.REJECT);
+
+        SendFuture first = sendThread.enqueue(SendLane.TELEMETRY, BluetoothSendThread.encodeLine("A"));
+        SendFuture second = sendThread.enqueue(SendLane.TELEMETRY, BluetoothSendThread.encodeLine("B"));
+        SendFuture third = sendThread.enqueue(SendLane.TELEMETRY, BluetoothSendThread.encodeLine("C"));
+
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        assertTrue(third.isDone());
+        assertNotNull(third.getFailure());
+        assertEquals(2, sendThread.getQueueDepth(SendLane.TELEMETRY));
+        assertEquals(1, sendThread.getMetrics().rejectedMessages);
+        sendThread.close();
+    }
+
+    @Test
+    public void dropOldestFailsOldestMessageAndKeepsNewest() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BluetoothSendThread sendThread = new BluetoothSendThread(out);
+        sendThread.configureLane(SendLane.CONTROL, 2, OverflowPolicy.DROP_OLDEST);
+
+        SendFuture first = sendThread.enqueueMessage("A");
+        sendThread.enqueueMessage("B");
+        SendFuture third = sendThread.enqueueMessage("C");
+
+        assertTrue(first.isDone());
+        assertFalse(first.isSuccessful());
+        assertEquals(1, sendThread.getMetrics().droppedMessages);
+
+        sendThread.start();
+        assertTrue(third.await(5, TimeUnit.SECONDS));
+        assertEquals("B\nC\n", out.toString("UTF-8"));
+        sendThread.close();
+    }
+
+    @Test
+    public void blockWaitsForRoomThenTimesOut() {
+        BluetoothSendThread sendThread = new BluetoothSendThread(new ByteArrayOutputStream());
+        sendThread.configureLane(SendLane.BULK, 1, OverflowPolicy.BLOCK);
+        sendThread.setSendTimeout(100, TimeUnit.MILLISECONDS);
+
+        sendThread.enqueue(SendLane.BULK, BluetoothSendThread.encodeLine("field"));
+        long start = System.nanoTime();
+        SendFuture blocked = sendThread.enqueue(SendLane.BULK, BluetoothSendThread.encodeLine("field"));
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertFalse(blocked.isSuccessful());
+        assertEquals(1, sendThread.getMetrics().timedOutMessages);
+        sendThread.close();
+    }
+
+    @Test
+    public void stuckLinkFailsFutureAfterTimeout() throws Exception {
+        GatedLink link = new GatedLink();
+        BluetoothSendThread sendThread = new BluetoothSendThread(link);
+        sendThread.setSendTimeout(200, TimeUnit.MILLISECONDS);
+        sendThread.start();
+
+        SendFuture future = sendThread.enqueue(SendLane.SAFETY, BluetoothSendThread.encodeLine("HALT"));
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertFalse(future.isSuccessful());
+        assertTrue(future.getFailure().getMessage().contains("timed out"));
+
+        link.open.countDown();
+        sendThread.close();
+    }
+
+    @Test
+    public void safetyLaneNeverWaitsForRoom() {
+        BluetoothSendThread sendThread = new BluetoothSendThread(new ByteArrayOutputStream());
+        sendThread.setSendTimeout(10, TimeUnit.SECONDS);
+
+        // Nothing drains the queue, yet no HALT waits or is turned away
+        long start = System.nanoTime();
+        for (int i = 0; i < 1_000; i++) {
+            assertFalse(sendThread.enqueue(SendLane.SAFETY, BluetoothSendThread.encodeLine("HALT")).isDone());
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1_000, sendThread.getQueueDepth(SendLane.SAFETY));
+        assertEquals(0, sendThread.getMetrics().rejectedMessages);
+        sendThread.close();
+    }
+
+    @Test
+    public void halfSentBulkMessageIsNotFailedByTheWatchdog() throws Exception {
+        GatedLink link = new GatedLink();
+        BluetoothSendThread sendThread = new BluetoothSendThread(link);
+        sendThread.setSendTimeout(100, TimeUnit.MILLISECONDS);
+        sendThread.start();
+
+        char[] body = new char[3 * BluetoothSendThread.BULK_CHUNK_SIZE];
+        java.util.Arrays.fill(body, 'x');
+        SendFuture future = sendThread.enqueue(SendLane.BULK, BluetoothSendThread.encodeLine(new String(body)));
+        assertTrue(link.writing.await(5, TimeUnit.SECONDS));  // first chunk stuck in write
+
+        Thread.sleep(500);  // several watchdog passes past the deadline
+        assertFalse(future.isDone());
+
+        link.open.countDown();
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isSuccessful());
+        assertTrue(link.text().endsWith("x\n"));
+        assertEquals(3, link.text().split("\n").length);
+        sendThread.close();
+    }
+
+    @Test
+    public void binaryBulkFrameIsSentWhole() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BluetoothSendThread sendThread = new BluetoothSendThread(out);
+        sendThread.start();
+
+        byte[] frame = new byte[3 * BluetoothSendThread.BULK_CHUNK_SIZE];
+        for (int i = 0; i < frame.length; i++) frame[i] = (byte) (i * 31);
+        frame[0] = WireCodec.SYNC;
+        frame[frame.length - 1] = '\n';  // e.g. the last CRC byte
+        SendFuture future = sendThread.enqueue(SendLane.BULK, frame);
+
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isSuccessful());
+        assertArrayEquals(frame, out.toByteArray());
+        sendThread.close();
+    }
+
+    @Test
+    public void closeFailsPendingMessages() {
+        BluetoothSendThread sendThread = new BluetoothSendThread(new ByteArrayOutputStream());
+        SendFuture pending = sendThread.enqueueMessage("A");
+        sendThread.close();
+
+        assertTrue(pending.isDone());
+        assertFalse(pending.isSuccessful());
+        assertFalse(sendThread.enqueueMessage("B").isSuccessful());
+    }
+
+    // Holds every write until the test opens it, like a stalled RFCOMM link
+    private static final class GatedLink extends OutputStream {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch open = new CountDownLatch(1);
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            writing.countDown();
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                received.write(b, off, len);
+            }
+        }
+
+        synchronized String text() {
+            return new String(received.toByteArray(), java.nio.charset.StandardCharsets.UTF_8);
+        }
+    }
+}
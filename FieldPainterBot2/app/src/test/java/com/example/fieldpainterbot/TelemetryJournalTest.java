@@ -0,0 +1,132 @@
+package com.example.fieldpainterbot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TelemetryJournalTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        directory.delete();
+    }
+
+    private TelemetryJournal openMapped(String field, long startMs) throws InterruptedException {
+        TelemetryJournal journal = TelemetryJournal.open(directory, field, startMs, 500, 64);
+        TelemetryJournal.awaitDisk();
+        return journal;
+    }
+
+    private static List<String> readAll(File file, int[] count) throws IOException {
+        List<String> records = new ArrayList<>();
+        count[0] = TelemetryJournal.scan(file, (timestampMs, channel, value, instruction) ->
+                records.add(timestampMs + " " + channel + " " + (int) value + " @" + instruction));
+        return records;
+    }
+
+    @Test
+    public void finishedSession_readsBackEveryRecordAndTheHeader() throws Exception {
+        TelemetryJournal journal = openMapped("Soccer field!", 1_000);
+        journal.append(TelemetryChannel.BATTERY, 600, 90);
+        journal.setInstructionIndex(16);
+        journal.append(TelemetryChannel.PROGRESS, 700, 12);
+        journal.finish();
+        TelemetryJournal.awaitDisk();
+
+        TelemetryJournal.Header header = TelemetryJournal.readHeader(journal.getFile());
+        assertEquals("Soccer_field_", header.fieldName);
+        assertEquals(1_000, header.startWallClockMs);
+        assertEquals(500, header.startElapsedMs);
+        assertEquals(64, header.capacity);
+
+        int[] count = new int[1];
+        assertEquals(List.of("600 BATTERY 90 @-1", "700 PROGRESS 12 @16"), readAll(journal.getFile(), count));
+        assertEquals(2, count[0]);
+    }
+
+    @Test
+    public void tornLastRecord_stopsTheScanBeforeIt() throws Exception {
+        TelemetryJournal journal = openMapped("rugby", 2_000);
+        for (int i = 0; i < 5; i++) journal.append(TelemetryChannel.SPRAY, 1_000 + i, 80 - i);
+        journal.finish();
+        TelemetryJournal.awaitDisk();
+
+        // A crash mid-write: the last record's commit marker never made it
+        try (RandomAccessFile raf = new RandomAccessFile(journal.getFile(), "rw")) {
+            raf.seek(TelemetryJournal.HEADER_SIZE + 4L * TelemetryJournal.RECORD_SIZE + 20);
+            raf.writeInt(0);
+        }
+
+        int[] count = new int[1];
+        List<String> records = readAll(journal.getFile(), count);
+        assertEquals(4, count[0]);
+        assertEquals(4, records.size());
+        assertEquals("1003 SPRAY 77 @-1", records.get(3));
+    }
+
+    @Test
+    public void appendsBeforeTheFileIsMapped_orAfterFinish_areDropped() throws Exception {
+        TelemetryJournal journal = openMapped("baseball", 3_000);
+        journal.finish();
+        journal.append(TelemetryChannel.BATTERY, 1, 1);
+        TelemetryJournal.awaitDisk();
+
+        assertEquals(1, journal.getDroppedRecords());
+        assertEquals(0, TelemetryJournal.scan(journal.getFile(), (t, c, v, i) -> fail()));
+    }
+
+    @Test
+    public void prune_deletesTheOldestSessionsButNeverTheCurrentOne() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            TelemetryJournal journal = openMapped("field", 10_000 + i);
+            journal.finish();
+            TelemetryJournal.awaitDisk();
+            journal.getFile().setLastModified(1_000_000L * (i + 1));
+            files.add(journal.getFile());
+        }
+
+        assertEquals(2, TelemetryJournal.prune(directory, 3, Long.MAX_VALUE, files.get(4)));
+        assertFalse(files.get(0).exists());
+        assertFalse(files.get(1).exists());
+        assertTrue(files.get(2).exists());
+
+        // By size: room for one file, and the current one is kept even if it is the oldest
+        long oneFile = files.get(2).length();
+        assertEquals(2, TelemetryJournal.prune(directory, 10, oneFile, files.get(2)));
+        assertArrayEquals(new File[] {files.get(2)}, TelemetryJournal.listSessions(directory));
+    }
+
+    @Test
+    public void listSessions_breaksMtimeTiesByStartTimeNotFieldName() throws Exception {
+        // Same second on disk; by name "alpha" would sort before "zeta" and look older
+        File older = new File(directory, "zeta-9000" + TelemetryJournal.FILE_SUFFIX);
+        File newer = new File(directory, "alpha-10000" + TelemetryJournal.FILE_SUFFIX);
+        assertTrue(older.createNewFile());
+        assertTrue(newer.createNewFile());
+        older.setLastModified(5_000_000L);
+        newer.setLastModified(5_000_000L);
+
+        assertArrayEquals(new File[] {older, newer}, TelemetryJournal.listSessions(directory));
+        assertEquals(1, TelemetryJournal.prune(directory, 1, Long.MAX_VALUE, null));
+        assertTrue(newer.exists());
+    }
+}
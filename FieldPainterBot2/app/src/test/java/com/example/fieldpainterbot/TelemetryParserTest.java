@@ -0,0 +1,114 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TelemetryParserTest {
+
+    private final TelemetryParser parser = new TelemetryParser();
+    private final List<String> seen = new ArrayList<>();
+
+    private void listen(String key) {
+        parser.register(key, value -> seen.add(key + "=" + value));
+    }
+
+    private boolean parse(String frame) {
+        byte[] bytes = ("xx" + frame + "yy").getBytes(StandardCharsets.US_ASCII);
+        // Offset into a larger buffer, as the frame decoder hands them over
+        return parser.parse(bytes, 2, bytes.length - 4);
+    }
+
+    @Test
+    public void keysSharingAFirstByte_goToTheirOwnHandlers() {
+        listen("SPRAY");
+        listen("SPEED");
+        listen("S");
+
+        assertTrue(parse("SPEED:12"));
+        assertTrue(parse("SPRAY:40"));
+        assertTrue(parse("S:7"));
+        assertFalse(parse("SP:1"));     // a prefix of both, registered for neither
+        assertFalse(parse("SPRAYS:1"));
+
+        assertEquals(List.of("SPEED=12", "SPRAY=40", "S=7"), seen);
+        assertEquals(3, parser.getParsedCount());
+        assertEquals(2, parser.getUnknownKeyCount());
+    }
+
+    @Test
+    public void registeringAKeyAgain_replacesOnlyThatHandler() {
+        listen("SPRAY");
+        listen("SPEED");
+        parser.register("SPRAY", value -> seen.add("new=" + value));
+
+        parse("SPRAY:1");
+        parse("SPEED:2");
+
+        assertEquals(List.of("new=1", "SPEED=2"), seen);
+    }
+
+    @Test
+    public void negativeValuesAndIntBounds() {
+        listen("BATTERY");
+
+        assertTrue(parse("BATTERY:-5"));
+        assertTrue(parse("BATTERY:2147483647"));
+        assertTrue(parse("BATTERY:-2147483648"));
+        assertFalse(parse("BATTERY:2147483648"));
+        assertFalse(parse("BATTERY:-2147483649"));
+        assertFalse(parse("BATTERY:99999999999999999999"));
+
+        assertEquals(List.of("BATTERY=-5", "BATTERY=2147483647", "BATTERY=-2147483648"), seen);
+        assertEquals(3, parser.getErrorCount());
+    }
+
+    @Test
+    public void sprayErrAndOtherMalformedValues_areCountedAsErrors() {
+        listen("SPRAY");
+
+        assertFalse(parse("SPRAY:ERR"));
+        assertFalse(parse("SPRAY:-"));
+        assertFalse(parse("SPRAY:"));
+        assertFalse(parse("SPRAY:1.5"));
+        assertFalse(parse(":5"));
+        assertFalse(parse("SPRAY5"));
+
+        assertTrue(seen.isEmpty());
+        assertEquals(6, parser.getErrorCount());
+        assertEquals(0, parser.getParsedCount());
+    }
+
+    @Test
+    public void unknownKeys_areCountedNotDispatched() {
+        listen("BATTERY");
+
+        assertFalse(parse("TEMP:30"));
+        assertFalse(parse("battery:30"));
+        // Not ASCII: no bucket at all
+        assertFalse(parser.parse(new byte[] {(byte) 0xC3, ':', '1'}, 0, 3));
+
+        assertTrue(seen.isEmpty());
+        assertEquals(3, parser.getUnknownKeyCount());
+        assertEquals(0, parser.getErrorCount());
+    }
+
+    @Test
+    public void dispatch_usesTheSameTable() {
+        listen("PROGRESS");
+
+        assertTrue(parser.dispatch("PROGRESS".getBytes(StandardCharsets.US_ASCII), 60));
+        assertFalse(parser.dispatch("PROG".getBytes(StandardCharsets.US_ASCII), 60));
+
+        assertEquals(List.of("PROGRESS=60"), seen);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyKey_isRejected() {
+        listen("");
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TelemetryPublisherTest {
+
+    // A main thread that only runs when told to, with a clock the test moves
+    private static final class FakeScheduler implements TelemetryPublisher.Scheduler {
+        long now = 1_000;
+        final List<Runnable> tasks = new ArrayList<>();
+        final List<Long> dueAt = new ArrayList<>();
+
+        @Override
+        public void postDelayed(Runnable runnable, long delayMs) {
+            tasks.add(runnable);
+            dueAt.add(now + delayMs);
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return now;
+        }
+
+        // Moves the clock forward, running whatever falls due on the way
+        void advanceTo(long time) {
+            while (true) {
+                int next = -1;
+                for (int i = 0; i < tasks.size(); i++) {
+                    if (dueAt.get(i) <= time && (next == -1 || dueAt.get(i) < dueAt.get(next))) next = i;
+                }
+                if (next == -1) break;
+                now = Math.max(now, dueAt.remove(next));
+                tasks.remove(next).run();
+            }
+            now = time;
+        }
+    }
+
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private final List<TelemetrySnapshot> published = new ArrayList<>();
+    private final TelemetryPublisher publisher =
+            new TelemetryPublisher(published::add, TelemetryPublisher.DEFAULT_INTERVAL_MS, scheduler);
+
+    @Test
+    public void burstWithinOneInterval_publishesOneSnapshotWithTheLatestValues() {
+        for (int i = 0; i <= 100; i++) {
+            publisher.updateBatteryLevel(100 - i / 2);
+            publisher.updateSprayLevel(i);
+            publisher.updateProgressLevel(i / 4);
+        }
+        assertEquals(1, scheduler.tasks.size());
+
+        scheduler.advanceTo(scheduler.now + 100);
+
+        assertEquals(List.of(new TelemetrySnapshot(50, 100, 25)), published);
+    }
+
+    @Test
+    public void steadyStream_isConflatedToTenHertz() {
+        // The robot reports every 5 ms for one second
+        for (long t = 1_000; t < 2_000; t += 5) {
+            scheduler.advanceTo(t);
+            publisher.updateProgressLevel((int) (t - 1_000) / 5);
+        }
+        scheduler.advanceTo(2_100);
+
+        assertTrue("published " + published.size(), published.size() >= 10 && published.size() <= 11);
+        assertEquals(199, published.get(published.size() - 1).getProgressLevel());
+    }
+
+    @Test
+    public void nextPublish_waitsOutTheRestOfTheInterval() {
+        publisher.updateBatteryLevel(90);
+        scheduler.advanceTo(1_000);
+        assertEquals(1, published.size());
+
+        scheduler.advanceTo(1_030);
+        publisher.updateBatteryLevel(80);
+        assertEquals(Long.valueOf(1_100), scheduler.dueAt.get(0));
+
+        scheduler.advanceTo(1_099);
+        assertEquals(1, published.size());
+        scheduler.advanceTo(1_100);
+        assertEquals(80, published.get(1).getBatteryLevel());
+    }
+
+    @Test
+    public void valueThatChangesAndChangesBack_publishesNothing() {
+        publisher.updateSprayLevel(40);
+        scheduler.advanceTo(1_100);
+        assertEquals(1, published.size());
+
+        publisher.updateSprayLevel(41);
+        publisher.updateSprayLevel(40);
+        scheduler.advanceTo(1_300);
+
+        assertEquals(1, published.size());
+    }
+
+    @Test
+    public void unchangedValue_schedulesNothing() {
+        publisher.updateBatteryLevel(TelemetrySnapshot.UNKNOWN);
+        assertTrue(scheduler.tasks.isEmpty());
+    }
+}
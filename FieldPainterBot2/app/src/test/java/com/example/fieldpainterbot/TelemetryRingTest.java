@@ -0,0 +1,115 @@
+package com.example.fieldpainterbot;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TelemetryRingTest {
+
+    private static final float EPS = 1e-3f;
+
+    private final TelemetryRing.Stats stats = new TelemetryRing.Stats();
+
+    @Test
+    public void wrappedRing_keepsTheNewestSamplesInOrder() {
+        TelemetryRing ring = new TelemetryRing(8);
+        for (int i = 0; i < 21; i++) ring.append(i * 1000L, i);
+
+        assertEquals(8, ring.size());
+        assertEquals(20f, ring.latest(-1f), 0f);
+        // Everything: only 13..20 survive
+        assertTrue(ring.aggregate(Long.MIN_VALUE, Long.MAX_VALUE, stats));
+        assertEquals(8, stats.count);
+        assertEquals(13f, stats.min, 0f);
+        assertEquals(20f, stats.max, 0f);
+        assertEquals(13_000L, stats.firstTimestampMs);
+        assertEquals(20_000L, stats.lastTimestampMs);
+    }
+
+    @Test
+    public void windowSearch_findsEveryStartAcrossTheWrap() {
+        TelemetryRing ring = new TelemetryRing(8);
+        for (int i = 0; i < 13; i++) ring.append(i * 1000L, i);  // physical start is mid-array
+
+        for (int from = 5; from <= 12; from++) {
+            assertTrue(ring.aggregate(from * 1000L, Long.MAX_VALUE, stats));
+            assertEquals("from " + from, 13 - from, stats.count);
+            assertEquals(from, stats.min, 0f);
+        }
+        // Between samples: starts at the next one
+        assertTrue(ring.aggregate(7_500L, Long.MAX_VALUE, stats));
+        assertEquals(8f, stats.min, 0f);
+        // Before the oldest retained: clamps to it
+        assertTrue(ring.aggregate(0L, Long.MAX_VALUE, stats));
+        assertEquals(5f, stats.min, 0f);
+    }
+
+    @Test
+    public void windowBounds_areInclusiveAndEmptyWindowsReportNothing() {
+        TelemetryRing ring = new TelemetryRing(4);
+        for (int i = 1; i <= 6; i++) ring.append(i * 100L, i * 10);
+
+        assertTrue(ring.aggregate(400, 500, stats));
+        assertEquals(2, stats.count);
+        assertEquals(45f, stats.average, EPS);
+
+        assertTrue(ring.aggregateLast(100, 600, stats));
+        assertEquals(2, stats.count);
+        assertEquals(500L, stats.firstTimestampMs);
+
+        assertFalse(ring.aggregate(601, 10_000, stats));
+        assertEquals(0, stats.count);
+        assertFalse(ring.aggregate(410, 490, stats));
+        assertEquals(0, stats.count);
+        assertFalse(new TelemetryRing(4).aggregate(0, 1, stats));
+    }
+
+    @Test
+    public void slope_isTheLeastSquaresTrendPerMinute() {
+        TelemetryRing ring = new TelemetryRing(16);
+        // Falls 2 % a minute, sampled every 10 s, well away from time zero
+        for (int i = 0; i < 12; i++) ring.append(3_600_000L + i * 10_000L, 100f - i * (2f / 6f));
+        assertTrue(ring.aggregate(0, Long.MAX_VALUE, stats));
+        assertEquals(-2f, stats.slopePerMinute, EPS);
+
+        // Two points either side of a line: the fit goes between them
+        TelemetryRing noisy = new TelemetryRing(4);
+        noisy.append(0, 11);
+        noisy.append(0, 9);
+        noisy.append(60_000, 21);
+        noisy.append(60_000, 19);
+        assertTrue(noisy.aggregate(0, 60_000, stats));
+        assertEquals(10f, stats.slopePerMinute, EPS);
+
+        TelemetryRing flat = new TelemetryRing(4);
+        flat.append(0, 50);
+        assertTrue(flat.aggregate(0, 0, stats));
+        assertEquals(0f, stats.slopePerMinute, 0f);  // one sample: no trend
+    }
+
+    @Test
+    public void clear_emptiesTheRingForReuse() {
+        TelemetryRing ring = new TelemetryRing(4);
+        for (int i = 0; i < 6; i++) ring.append(i, i);
+        ring.clear();
+
+        assertEquals(0, ring.size());
+        assertEquals(-1f, ring.latest(-1f), 0f);
+        ring.append(100, 7);
+        assertTrue(ring.aggregate(0, 1000, stats));
+        assertEquals(1, stats.count);
+    }
+
+    @Test
+    public void history_drainRateUsesTheCallersStats() {
+        TelemetryHistory history = new TelemetryHistory(32);
+        for (int i = 0; i <= 10; i++) history.record(TelemetryChannel.BATTERY, i * 60_000L, 90 - i * 3);
+
+        assertEquals(3f, history.drainRatePerMinute(TelemetryChannel.BATTERY, 10 * 60_000L, 600_000L, stats), EPS);
+        assertEquals(11, stats.count);
+        assertTrue(Float.isNaN(history.drainRatePerMinute(TelemetryChannel.SPRAY, 60_000L, 600_000L, stats)));
+
+        history.clear();
+        assertEquals(0, history.get(TelemetryChannel.BATTERY).size());
+    }
+}
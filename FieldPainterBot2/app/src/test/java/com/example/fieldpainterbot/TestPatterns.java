@@ -0,0 +1,16 @@
+package com.example.fieldpainterbot;
+
+/** Builds small field patterns for tests. */
+final class TestPatterns {
+
+    private TestPatterns() {}
+
+    // Triples of type, quantity and paint, ordered 1..n
+    static FieldPattern pattern(Object... steps) {
+        FieldPattern.Builder builder = new FieldPattern.Builder();
+        for (int i = 0; i < steps.length; i += 3) {
+            builder.add(i / 3 + 1, (Byte) steps[i], ((Number) steps[i + 1]).floatValue(), (Boolean) steps[i + 2]);
+        }
+        return builder.build();
+    }
+}
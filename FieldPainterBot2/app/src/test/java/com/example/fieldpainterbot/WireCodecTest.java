@@ -0,0 +1,198 @@
+package com.example.fieldpainterbot;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WireCodecTest {
+
+    private static List<JSONObject> items(int count) throws Exception {
+        List<JSONObject> items = new ArrayList<>();
+        String[] types = {"Walk", "Rotation", "Circle", "Walk"};
+        for (int i = 1; i <= count; i++) {
+            JSONObject item = new JSONObject();
+            item.put("Instruction Order", i);
+            item.put("Type of Movement", types[i % types.length]);
+            item.put("Quantity", i % 4 == 1 ? 90 : 12.5 + i * 0.25);
+            item.put("Paint", i % 3 != 0);
+            items.add(item);
+        }
+        return items;
+    }
+
+    // Collects every payload FrameDecoder hands over, as copies
+    private static final class Collector implements FrameDecoder.FrameListener, FrameDecoder.BinaryFrameListener {
+        final List<String> lines = new ArrayList<>();
+        final List<byte[]> payloads = new ArrayList<>();
+
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length) {
+            lines.add(new String(buffer, offset, length, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void onBinaryFrame(byte[] payload, int offset, int length) {
+            byte[] copy = new byte[length];
+            System.arraycopy(payload, offset, copy, 0, length);
+            payloads.add(copy);
+        }
+    }
+
+    private static Collector decode(byte[]... frames) {
+        Collector collector = new Collector();
+        FrameDecoder decoder = new FrameDecoder(1024, collector);
+        decoder.setBinaryListener(collector);
+        for (byte[] frame : frames) decoder.feed(frame, 0, frame.length);
+        return collector;
+    }
+
+    @Test
+    public void chunkRoundTrip() throws Exception {
+        List<JSONObject> items = items(8);
+        JSONObject odd = new JSONObject();
+        odd.put("Instruction Order", 9);
+        odd.put("Type of Movement", "Zigzag");
+        odd.put("Quantity", -3.75);
+        odd.put("Paint", true);
+        items.add(odd);
+
+        Collector collector = decode(WireCodec.encodeChunk(77, 3, items));
+        assertEquals(1, collector.payloads.size());
+        byte[] payload = collector.payloads.get(0);
+        assertEquals(WireCodec.TYPE_CHUNK, WireCodec.type(payload, 0, payload.length));
+
+        WireCodec.Chunk chunk = WireCodec.decodeChunk(payload, 0, payload.length);
+        assertEquals(77, chunk.jobId);
+        assertEquals(3, chunk.seq);
+        assertEquals(items.size(), chunk.instructions.length);
+        for (int i = 0; i < items.size(); i++) {
+            JSONObject item = items.get(i);
+            WireCodec.Instruction instruction = chunk.instructions[i];
+            assertEquals(item.getInt("Instruction Order"), instruction.order);
+            assertEquals(item.getString("Type of Movement").toLowerCase(), instruction.type);
+            assertEquals(item.getDouble("Quantity"), instruction.quantity, 0.005);
+            assertEquals(item.getBoolean("Paint"), instruction.paint);
+        }
+    }
+
+    @Test
+    public void smallMessagesRoundTrip() {
+        Collector collector = decode(
+                WireCodec.encodeCommand(WireCodec.commandId("HALT")),
+                WireCodec.encodeDrive(ManualDriveChannel.FORWARD | ManualDriveChannel.SPRAY),
+                WireCodec.encodeJobHeader(123456, 300, 38));
+
+        byte[] command = collector.payloads.get(0);
+        assertEquals("HALT", WireCodec.COMMANDS[WireCodec.decodeValue(command, 0, command.length)]);
+        byte[] drive = collector.payloads.get(1);
+        assertEquals(17, WireCodec.decodeValue(drive, 0, drive.length));
+        byte[] job = collector.payloads.get(2);
+        assertArrayEquals(new int[] {123456, 300, 38}, WireCodec.decodeJobHeader(job, 0, job.length));
+    }
+
+    @Test
+    public void binaryTelemetryReachesParserHandlers() {
+        TelemetryParser parser = new TelemetryParser();
+        int[] seen = new int[2];
+        parser.register("BATTERY", value -> seen[0] = value);
+        parser.register("ACK", value -> seen[1] = value);
+
+        Collector collector = decode(
+                WireCodec.encodeTelemetry(WireCodec.telemetryKeyId("BATTERY"), 87),
+                WireCodec.encodeTelemetry(WireCodec.telemetryKeyId("ACK"), -1));
+        for (byte[] payload : collector.payloads) {
+            assertTrue(WireCodec.dispatchTelemetry(payload, 0, payload.length, parser));
+        }
+        assertEquals(87, seen[0]);
+        assertEquals(-1, seen[1]);
+    }
+
+    @Test
+    public void corruptedFrameIsDroppedAndStreamResyncs() {
+        byte[] good = WireCodec.encodeDrive(4);
+        byte[] bad = WireCodec.encodeDrive(8);
+        bad[3] ^= 0x01;  // flips a CRC bit
+
+        Collector collector = new Collector();
+        FrameDecoder decoder = new FrameDecoder(1024, collector);
+        decoder.setBinaryListener(collector);
+        for (byte[] frame : new byte[][] {bad, "BATTERY:50\n".getBytes(StandardCharsets.US_ASCII), good}) {
+            decoder.feed(frame, 0, frame.length);
+        }
+
+        assertEquals(1, decoder.getCorruptFrames());
+        assertEquals(1, collector.payloads.size());
+        assertEquals(4, WireCodec.decodeValue(collector.payloads.get(0), 0, collector.payloads.get(0).length));
+        assertEquals(List.of("BATTERY:50"), collector.lines);
+    }
+
+    @Test
+    public void mixedTextAndBinarySurviveAnyFragmentation() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        List<String> expectedLines = new ArrayList<>();
+        int expectedBinary = 0;
+        for (int i = 0; i < 50; i++) {
+            String line = "PROGRESS:" + i;
+            stream.write((line + "\n").getBytes(StandardCharsets.US_ASCII));
+            expectedLines.add(line);
+            stream.write(WireCodec.encodeChunk(1, i, items(8)));
+            stream.write(WireCodec.encodeTelemetry(1, i));
+            expectedBinary += 2;
+        }
+        byte[] bytes = stream.toByteArray();
+
+        for (int seed = 0; seed < 100; seed++) {
+            Random random = new Random(seed);
+            Collector collector = new Collector();
+            FrameDecoder decoder = new FrameDecoder(1024, collector);
+            decoder.setBinaryListener(collector);
+            int pos = 0;
+            while (pos < bytes.length) {
+                int n = Math.min(bytes.length - pos, 1 + random.nextInt(64));
+                decoder.feed(bytes, pos, n);
+                pos += n;
+            }
+            assertEquals("seed " + seed, expectedLines, collector.lines);
+            assertEquals("seed " + seed, expectedBinary, collector.payloads.size());
+            assertEquals(0, decoder.getCorruptFrames());
+        }
+    }
+
+    @Test
+    public void binaryFieldUploadIsSeveralTimesSmaller() throws Exception {
+        JSONArray array = new JSONArray();
+        for (JSONObject item : items(300)) array.put(item);
+        String field = new JSONObject().put("items", array).toString();
+
+        int text = new FieldUpload(1, field, WireFormat.TEXT, 8, 4, () -> {}, () -> {}, () -> {}).getEncodedSize();
+        int binary = new FieldUpload(1, field, WireFormat.BINARY, 8, 4, () -> {}, () -> {}, () -> {}).getEncodedSize();
+        assertTrue(text + " vs " + binary + " bytes", text > 4 * binary);
+    }
+
+    @Test
+    public void backToBackFramesAllDecode() throws Exception {
+        List<JSONObject> chunk = items(8);
+        int rounds = 20_000;
+
+        byte[] frame = null;
+        for (int i = 0; i < rounds; i++) frame = WireCodec.encodeChunk(1, i, chunk);
+
+        Collector collector = new Collector();
+        FrameDecoder decoder = new FrameDecoder(1024, collector);
+        int[] decoded = new int[1];
+        decoder.setBinaryListener((payload, offset, length) ->
+                decoded[0] += WireCodec.decodeChunk(payload, offset, length).instructions.length);
+        for (int i = 0; i < rounds; i++) decoder.feed(frame, 0, frame.length);
+
+        assertEquals(rounds * 8, decoded[0]);
+        assertEquals(0, decoder.getCorruptFrames());
+    }
+}